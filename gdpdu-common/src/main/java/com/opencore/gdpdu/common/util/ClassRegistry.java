@@ -9,6 +9,7 @@ import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.opencore.gdpdu.common.exceptions.ParsingException;
 import com.opencore.gdpdu.index.annotations.Column;
@@ -21,8 +22,9 @@ public final class ClassRegistry {
 
   /**
    * This maps (for each model class) from field names to the setter method and annotation for each field that is annotated with the "Column" annotation.
+   * It is shared by all parsers so it needs to be safe for concurrent access.
    */
-  private static final Map<Class<?>, Map<String, ColumnInfo>> COLUMN_INFO_MAP = new HashMap<>();
+  private static final Map<Class<?>, Map<String, ColumnInfo>> COLUMN_INFO_MAP = new ConcurrentHashMap<>();
 
   private ClassRegistry() {
   }
@@ -65,14 +67,17 @@ public final class ClassRegistry {
 
       infoMap.put(annotation.value(), new ColumnInfo(annotation, propertyDescriptor.getWriteMethod()));
     }
-    COLUMN_INFO_MAP.put(clazz, infoMap);
-    return infoMap;
+    // Another thread might have registered the same class in the meantime, both results are equivalent
+    Map<String, ColumnInfo> existing = COLUMN_INFO_MAP.putIfAbsent(clazz, infoMap);
+    return existing == null ? infoMap : existing;
   }
 
   public static Map<String, ColumnInfo> getClassInformation(Class<?> clazz) throws ParsingException {
     Map<String, ColumnInfo> infoMap = COLUMN_INFO_MAP.get(clazz);
     if (infoMap == null) {
-      infoMap = registerClass(clazz);
+      // registerClass returns null if another thread registered the class concurrently so we look it up again
+      registerClass(clazz);
+      infoMap = COLUMN_INFO_MAP.get(clazz);
     }
     return infoMap;
   }
@@ -0,0 +1,167 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes gzip files that can be decompressed in parallel by a {@link ParallelGzipInputStream}.
+ * <p/>
+ * The data is split into blocks that are compressed independently, every block is a complete gzip member.
+ * The header of every member carries its compressed length in an extra field (subfield {@code GD}), so a reader can find the next member
+ * without inflating the current one. The result is a regular multi-member gzip file that every gzip tool can read.
+ */
+public final class BlockGzipOutputStream extends OutputStream {
+
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+  static final int FEXTRA = 4;
+  static final int SUBFIELD_ID1 = 'G';
+  static final int SUBFIELD_ID2 = 'D';
+
+  // Fixed header (10 bytes), XLEN (2 bytes) and the subfield with the member length (8 bytes)
+  private static final int HEADER_LENGTH = 20;
+  private static final int TRAILER_LENGTH = 8;
+
+  private final OutputStream out;
+  private final byte[] buffer;
+  private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  private final CRC32 crc = new CRC32();
+  private byte[] member;
+  private int count;
+  private boolean closed;
+
+  public BlockGzipOutputStream(OutputStream out) {
+    this(out, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @param blockSize uncompressed bytes per block, smaller blocks allow more parallelism but compress worse
+   */
+  public BlockGzipOutputStream(OutputStream out, int blockSize) {
+    this.out = Objects.requireNonNull(out, "'out' can't be null");
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("'blockSize' must be at least 1, was [" + blockSize + "]");
+    }
+    this.buffer = new byte[blockSize];
+    this.member = new byte[HEADER_LENGTH + blockSize / 2 + TRAILER_LENGTH];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    buffer[count++] = (byte) b;
+    if (count == buffer.length) {
+      writeBlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    Objects.checkFromIndexSize(off, len, b.length);
+    while (len > 0) {
+      int chunk = Math.min(len, buffer.length - count);
+      System.arraycopy(b, off, buffer, count, chunk);
+      count += chunk;
+      off += chunk;
+      len -= chunk;
+      if (count == buffer.length) {
+        writeBlock();
+      }
+    }
+  }
+
+  /**
+   * Writes the buffered data as a (possibly short) block.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    if (count > 0) {
+      writeBlock();
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      if (count > 0) {
+        writeBlock();
+      }
+    } finally {
+      closed = true;
+      deflater.end();
+      out.close();
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    deflater.reset();
+    deflater.setInput(buffer, 0, count);
+    deflater.finish();
+    int length = HEADER_LENGTH;
+    while (!deflater.finished()) {
+      if (length == member.length - TRAILER_LENGTH) {
+        member = Arrays.copyOf(member, member.length * 2);
+      }
+      length += deflater.deflate(member, length, member.length - TRAILER_LENGTH - length);
+    }
+    crc.reset();
+    crc.update(buffer, 0, count);
+
+    int memberLength = length + TRAILER_LENGTH;
+    member[0] = (byte) 0x1f;
+    member[1] = (byte) 0x8b;
+    member[2] = Deflater.DEFLATED;
+    member[3] = FEXTRA;
+    // No modification time, no extra flags, unknown OS
+    Arrays.fill(member, 4, 9, (byte) 0);
+    member[9] = (byte) 0xff;
+    writeShort(member, 10, 8);
+    member[12] = SUBFIELD_ID1;
+    member[13] = SUBFIELD_ID2;
+    writeShort(member, 14, 4);
+    writeInt(member, 16, memberLength);
+    writeInt(member, length, (int) crc.getValue());
+    writeInt(member, length + 4, count);
+    out.write(member, 0, memberLength);
+    count = 0;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private static void writeShort(byte[] b, int offset, int value) {
+    b[offset] = (byte) value;
+    b[offset + 1] = (byte) (value >>> 8);
+  }
+
+  private static void writeInt(byte[] b, int offset, int value) {
+    writeShort(b, offset, value);
+    writeShort(b, offset + 2, value >>> 16);
+  }
+
+}
@@ -0,0 +1,538 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+
+/**
+ * Statistics about blocks of consecutive records of a variable length data file, so that filtered reads can skip blocks that can't match.
+ * <p/>
+ * For every block of {@code blockSize} records the offset of its first record is kept, the minimum and maximum value of every {@code Numeric}
+ * and {@code Date} column (a zone map) and a Bloom filter of the raw values of the chosen columns, typically keys like an account number.
+ * Empty values and values that can't be decoded are not part of the zone map, just like {@link RecordFilter} never matches them.
+ * <p/>
+ * The statistics can be persisted as a sidecar file next to the data file. Offsets are computed like for a {@link RecordIndex}.
+ */
+public final class BlockStatistics {
+
+  public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+  // "GDBS" followed by the format version
+  private static final int MAGIC = 0x47444253;
+  private static final int VERSION = 2;
+  private static final int BLOOM_BITS_PER_RECORD = 10;
+  private static final int BLOOM_HASHES = 7;
+
+  private static final int NUMERIC_ZONE = 1;
+  private static final int DATE_ZONE = 2;
+  private static final int BLOOM_FILTER = 4;
+
+  private final int blockSize;
+  private final long recordCount;
+  private final SidecarHeader header;
+  private final long[] recordNumbers;
+  private final long[] offsets;
+  private final ColumnStatistics[] columns;
+
+  private BlockStatistics(int blockSize, long recordCount, SidecarHeader header, long[] recordNumbers, long[] offsets,
+                          ColumnStatistics[] columns) {
+    this.blockSize = blockSize;
+    this.recordCount = recordCount;
+    this.header = header;
+    this.recordNumbers = recordNumbers;
+    this.offsets = offsets;
+    this.columns = columns;
+  }
+
+  /**
+   * Lexes the whole table without mapping the records, the stream must start at the beginning of the file.
+   *
+   * @param bloomColumns names of the columns to build Bloom filters for, these are meant for equality filters
+   */
+  public static BlockStatistics build(InputStream tableStream, Table table, int blockSize, Collection<String> bloomColumns) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(bloomColumns, "'bloomColumns' can't be null");
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("'blockSize' must be at least 1, was [" + blockSize + "]");
+    }
+    if (table.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be indexed");
+    }
+
+    List<VariableColumn> definitions = TableColumns.getColumns(table);
+    Set<String> remaining = new HashSet<>(bloomColumns);
+    ColumnBuilder[] builders = new ColumnBuilder[definitions.size()];
+    for (int i = 0; i < builders.length; i++) {
+      VariableColumn definition = definitions.get(i);
+      boolean bloom = remaining.remove(definition.getName());
+      DatePattern pattern = definition.getDataType() == DataType.Date && definition.getFormat() != null
+        ? DatePattern.compile(definition, table)
+        : null;
+      if (bloom || pattern != null || definition.getDataType() == DataType.Numeric) {
+        builders[i] = new ColumnBuilder(definition.getDataType() == DataType.Numeric, pattern, bloom ? bloomWords(blockSize) : 0);
+      }
+    }
+    if (!remaining.isEmpty()) {
+      throw new ParsingException("Columns " + remaining + " don't exist in table [" + table.getName() + "]");
+    }
+
+    SidecarHeader.Builder headerBuilder = new SidecarHeader.Builder();
+    GdpduDataLexer lexer = new GdpduDataLexer(GdpduDataParser.createContext(table, null));
+    lexer.open(headerBuilder.wrap(tableStream));
+    String decimalSymbol = table.getDecimalSymbol();
+    String digitGroupingSymbol = table.getDigitGroupingSymbol() == null ? "" : table.getDigitGroupingSymbol();
+    NumericValue numeric = new NumericValue();
+    KeyEncoder encoder = new KeyEncoder();
+    long[] recordNumbers = new long[16];
+    long[] offsets = new long[16];
+    int blocks = 0;
+    int recordsInBlock = blockSize;
+    long recordCount = 0;
+    try {
+      Record record = new Record();
+      while (lexer.nextRecord(record)) {
+        if (record.getColumns().isEmpty()) {
+          // Only the lexer's final record after the last record delimiter can be completely empty
+          continue;
+        }
+        if (lexer.getRecordOffset() == -1) {
+          break;
+        }
+        recordCount = lexer.getRecordNumber();
+        if (recordsInBlock == blockSize) {
+          if (blocks == recordNumbers.length) {
+            recordNumbers = Arrays.copyOf(recordNumbers, blocks * 2);
+            offsets = Arrays.copyOf(offsets, blocks * 2);
+          }
+          recordNumbers[blocks] = lexer.getRecordNumber();
+          offsets[blocks] = lexer.getRecordOffset();
+          blocks++;
+          recordsInBlock = 0;
+          for (ColumnBuilder builder : builders) {
+            if (builder != null) {
+              builder.startBlock();
+            }
+          }
+        }
+        recordsInBlock++;
+
+        List<String> values = record.getColumns();
+        for (int i = 0; i < builders.length && i < values.size(); i++) {
+          if (builders[i] != null) {
+            builders[i].add(values.get(i), numeric, decimalSymbol, digitGroupingSymbol, encoder);
+          }
+        }
+      }
+    } finally {
+      lexer.close();
+    }
+
+    SidecarHeader header = headerBuilder.finish(lexer, table);
+    ColumnStatistics[] columns = new ColumnStatistics[builders.length];
+    for (int i = 0; i < builders.length; i++) {
+      if (builders[i] != null) {
+        columns[i] = builders[i].finish();
+      }
+    }
+    return new BlockStatistics(blockSize, recordCount, header, Arrays.copyOf(recordNumbers, blocks), Arrays.copyOf(offsets, blocks), columns);
+  }
+
+  /**
+   * Reads statistics that have been written by {@link #write(Path)}.
+   */
+  public static BlockStatistics read(Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("[" + path + "] is not a block statistics file");
+      }
+      int blockSize = in.readInt();
+      long recordCount = in.readLong();
+      SidecarHeader header = SidecarHeader.read(in);
+      int blocks = in.readInt();
+      long[] recordNumbers = new long[blocks];
+      long[] offsets = new long[blocks];
+      for (int i = 0; i < blocks; i++) {
+        recordNumbers[i] = in.readLong();
+        offsets[i] = in.readLong();
+      }
+      ColumnStatistics[] columns = new ColumnStatistics[in.readInt()];
+      for (int i = 0; i < columns.length; i++) {
+        int flags = in.readByte();
+        if (flags != 0) {
+          columns[i] = ColumnStatistics.read(in, flags, blocks);
+        }
+      }
+      return new BlockStatistics(blockSize, recordCount, header, recordNumbers, offsets, columns);
+    }
+  }
+
+  public void write(Path path) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(blockSize);
+      out.writeLong(recordCount);
+      header.write(out);
+      out.writeInt(recordNumbers.length);
+      for (int i = 0; i < recordNumbers.length; i++) {
+        out.writeLong(recordNumbers[i]);
+        out.writeLong(offsets[i]);
+      }
+      out.writeInt(columns.length);
+      for (ColumnStatistics column : columns) {
+        if (column == null) {
+          out.writeByte(0);
+        } else {
+          column.write(out);
+        }
+      }
+    }
+  }
+
+  /**
+   * Whether these statistics have been built from the given file, this is checked like {@link RecordIndex#matches(File)}.
+   */
+  public boolean matches(File dataFile) throws IOException {
+    return header.matches(dataFile);
+  }
+
+  /**
+   * Like {@link #matches(File)} but compares the checksum of the whole file, this reads the whole file.
+   */
+  public boolean verify(File dataFile) throws IOException {
+    return header.verify(dataFile);
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public int getBlockCount() {
+    return recordNumbers.length;
+  }
+
+  /**
+   * The number of the last record in the file.
+   */
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  public long getFileLength() {
+    return header.getFileLength();
+  }
+
+  public long getSampleChecksum() {
+    return header.getSampleChecksum();
+  }
+
+  public long getChecksum() {
+    return header.getChecksum();
+  }
+
+  SidecarHeader getHeader() {
+    return header;
+  }
+
+  long getRecordNumber(int block) {
+    return recordNumbers[block];
+  }
+
+  long getOffset(int block) {
+    return offsets[block];
+  }
+
+  /**
+   * @return the offset after the last byte of the block
+   */
+  long getEndOffset(int block) {
+    return block + 1 < offsets.length ? offsets[block + 1] : header.getFileLength();
+  }
+
+  boolean hasNumericZone(int column) {
+    return column < columns.length && columns[column] != null && columns[column].numericMin != null;
+  }
+
+  boolean hasDateZone(int column) {
+    return column < columns.length && columns[column] != null && columns[column].dateMin != null;
+  }
+
+  boolean hasBloomFilter(int column) {
+    return column < columns.length && columns[column] != null && columns[column].bloom != null;
+  }
+
+  /**
+   * @return the smallest valid value of the column in the block or null if there is none
+   */
+  BigDecimal getNumericMin(int column, int block) {
+    return columns[column].numericMin[block];
+  }
+
+  BigDecimal getNumericMax(int column, int block) {
+    return columns[column].numericMax[block];
+  }
+
+  /**
+   * @return the smallest valid timestamp (see {@link DatePattern#parseTimestamp(String)}) of the column in the block,
+   * {@link Long#MAX_VALUE} if there is none
+   */
+  long getDateMin(int column, int block) {
+    return columns[column].dateMin[block];
+  }
+
+  long getDateMax(int column, int block) {
+    return columns[column].dateMax[block];
+  }
+
+  /**
+   * @return false if no record of the block has exactly this value in the column
+   */
+  boolean mightContain(int column, int block, long hash) {
+    long[] bits = columns[column].bloom[block];
+    return bloomContains(bits, hash);
+  }
+
+  static long hash(KeyEncoder encoder, String value) {
+    encoder.reset();
+    encoder.add(value);
+    return encoder.hash();
+  }
+
+  private static int bloomWords(int blockSize) {
+    return (int) Math.min(Integer.MAX_VALUE / 64, ((long) blockSize * BLOOM_BITS_PER_RECORD + 63) / 64);
+  }
+
+  /**
+   * Derives all bit positions from the two halves of a single 64 bit hash (Kirsch and Mitzenmacher).
+   */
+  private static void bloomAdd(long[] bits, long hash) {
+    long size = bits.length * 64L;
+    int first = (int) hash;
+    int second = (int) (hash >>> 32);
+    for (int i = 0; i < BLOOM_HASHES; i++) {
+      long bit = Math.floorMod(first + i * second, size);
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  private static boolean bloomContains(long[] bits, long hash) {
+    long size = bits.length * 64L;
+    int first = (int) hash;
+    int second = (int) (hash >>> 32);
+    for (int i = 0; i < BLOOM_HASHES; i++) {
+      long bit = Math.floorMod(first + i * second, size);
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", BlockStatistics.class.getSimpleName() + "[", "]")
+      .add("blockSize=" + blockSize)
+      .add("blocks=" + recordNumbers.length)
+      .add("recordCount=" + recordCount)
+      .add("fileLength=" + header.getFileLength())
+      .add("sampleChecksum=" + header.getSampleChecksum())
+      .add("checksum=" + header.getChecksum())
+      .toString();
+  }
+
+  private static final class ColumnStatistics {
+
+    private final BigDecimal[] numericMin;
+    private final BigDecimal[] numericMax;
+    private final long[] dateMin;
+    private final long[] dateMax;
+    private final long[][] bloom;
+
+    private ColumnStatistics(BigDecimal[] numericMin, BigDecimal[] numericMax, long[] dateMin, long[] dateMax, long[][] bloom) {
+      this.numericMin = numericMin;
+      this.numericMax = numericMax;
+      this.dateMin = dateMin;
+      this.dateMax = dateMax;
+      this.bloom = bloom;
+    }
+
+    static ColumnStatistics read(DataInputStream in, int flags, int blocks) throws IOException {
+      BigDecimal[] numericMin = null;
+      BigDecimal[] numericMax = null;
+      long[] dateMin = null;
+      long[] dateMax = null;
+      long[][] bloom = null;
+      if ((flags & NUMERIC_ZONE) != 0) {
+        numericMin = new BigDecimal[blocks];
+        numericMax = new BigDecimal[blocks];
+        for (int i = 0; i < blocks; i++) {
+          if (in.readBoolean()) {
+            numericMin[i] = new BigDecimal(in.readUTF());
+            numericMax[i] = new BigDecimal(in.readUTF());
+          }
+        }
+      }
+      if ((flags & DATE_ZONE) != 0) {
+        dateMin = new long[blocks];
+        dateMax = new long[blocks];
+        for (int i = 0; i < blocks; i++) {
+          dateMin[i] = in.readLong();
+          dateMax[i] = in.readLong();
+        }
+      }
+      if ((flags & BLOOM_FILTER) != 0) {
+        int words = in.readInt();
+        bloom = new long[blocks][words];
+        for (long[] bits : bloom) {
+          for (int i = 0; i < words; i++) {
+            bits[i] = in.readLong();
+          }
+        }
+      }
+      return new ColumnStatistics(numericMin, numericMax, dateMin, dateMax, bloom);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeByte((numericMin != null ? NUMERIC_ZONE : 0) | (dateMin != null ? DATE_ZONE : 0) | (bloom != null ? BLOOM_FILTER : 0));
+      if (numericMin != null) {
+        for (int i = 0; i < numericMin.length; i++) {
+          out.writeBoolean(numericMin[i] != null);
+          if (numericMin[i] != null) {
+            out.writeUTF(numericMin[i].toString());
+            out.writeUTF(numericMax[i].toString());
+          }
+        }
+      }
+      if (dateMin != null) {
+        for (int i = 0; i < dateMin.length; i++) {
+          out.writeLong(dateMin[i]);
+          out.writeLong(dateMax[i]);
+        }
+      }
+      if (bloom != null) {
+        out.writeInt(bloom.length == 0 ? 0 : bloom[0].length);
+        for (long[] bits : bloom) {
+          for (long word : bits) {
+            out.writeLong(word);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the statistics of one column block by block.
+   */
+  private static final class ColumnBuilder {
+
+    private final boolean numeric;
+    private final DatePattern datePattern;
+    private final int bloomWords;
+    private final List<BigDecimal> numericMin = new ArrayList<>();
+    private final List<BigDecimal> numericMax = new ArrayList<>();
+    private final List<long[]> bloom = new ArrayList<>();
+    private long[] dateMin = new long[16];
+    private long[] dateMax = new long[16];
+    private int blocks;
+    private NumericValue currentMin;
+    private NumericValue currentMax;
+    private long[] currentBloom;
+
+    private ColumnBuilder(boolean numeric, DatePattern datePattern, int bloomWords) {
+      this.numeric = numeric;
+      this.datePattern = datePattern;
+      this.bloomWords = bloomWords;
+    }
+
+    void startBlock() {
+      finishBlock();
+      if (blocks == dateMin.length) {
+        dateMin = Arrays.copyOf(dateMin, blocks * 2);
+        dateMax = Arrays.copyOf(dateMax, blocks * 2);
+      }
+      dateMin[blocks] = Long.MAX_VALUE;
+      dateMax[blocks] = Long.MIN_VALUE;
+      if (bloomWords > 0) {
+        currentBloom = new long[bloomWords];
+      }
+      blocks++;
+    }
+
+    void add(String value, NumericValue decoded, String decimalSymbol, String digitGroupingSymbol, KeyEncoder encoder) {
+      if (numeric && decoded.decode(value, decimalSymbol, digitGroupingSymbol)) {
+        if (currentMin == null || decoded.compareTo(currentMin) < 0) {
+          currentMin = decoded.copy();
+        }
+        if (currentMax == null || decoded.compareTo(currentMax) > 0) {
+          currentMax = decoded.copy();
+        }
+      }
+      if (datePattern != null) {
+        long timestamp = datePattern.parseTimestamp(value);
+        if (timestamp != DatePattern.INVALID) {
+          dateMin[blocks - 1] = Math.min(dateMin[blocks - 1], timestamp);
+          dateMax[blocks - 1] = Math.max(dateMax[blocks - 1], timestamp);
+        }
+      }
+      if (currentBloom != null) {
+        bloomAdd(currentBloom, hash(encoder, value));
+      }
+    }
+
+    ColumnStatistics finish() {
+      finishBlock();
+      return new ColumnStatistics(numeric ? numericMin.toArray(new BigDecimal[0]) : null,
+                                  numeric ? numericMax.toArray(new BigDecimal[0]) : null,
+                                  datePattern != null ? Arrays.copyOf(dateMin, blocks) : null,
+                                  datePattern != null ? Arrays.copyOf(dateMax, blocks) : null,
+                                  bloomWords > 0 ? bloom.toArray(new long[0][]) : null);
+    }
+
+    private void finishBlock() {
+      if (numericMin.size() < blocks) {
+        numericMin.add(currentMin == null ? null : currentMin.toBigDecimal());
+        numericMax.add(currentMax == null ? null : currentMax.toBigDecimal());
+        currentMin = null;
+        currentMax = null;
+      }
+      if (currentBloom != null) {
+        bloom.add(currentBloom);
+        currentBloom = null;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+
+/**
+ * The position of a scan between two records, a later scan of the same file can resume from it instead of starting at the beginning.
+ * <p/>
+ * Besides the byte offset a checkpoint holds the state of the lexer and the cursor (record numbers and counts) and an opaque state
+ * of the caller, e.g. its running aggregates. Checkpoints are taken by {@link RecordCursor#checkpoint()} or periodically by
+ * {@link GdpduDataParser#scanVariableLengthTable(java.io.InputStream, com.opencore.gdpdu.index.models.Table, ParseLimits, RecordHandler, Checkpoint, long, CheckpointHandler)}.
+ * <p/>
+ * A checkpoint remembers the length of the data file if it is known (e.g. when scanning a {@link java.io.File}) and resuming on a file
+ * that is shorter is rejected. Other changes are not detected, resuming on a different file of at least the same length returns garbage.
+ * Offsets can't be computed for UTF-16 files, see {@link GdpduDataLexer#getRecordOffset()}.
+ */
+public final class Checkpoint {
+
+  // "GDCP" followed by the format version
+  private static final int MAGIC = 0x47444350;
+  private static final int VERSION = 2;
+  private static final String TEMP_FILE_PREFIX = "gdpdu-checkpoint-";
+
+  private final String tableName;
+  private final long byteOffset;
+  private final long fileLength;
+  private final long recordNumber;
+  private final long lexedRecords;
+  private final long count;
+  private final byte[] state;
+
+  Checkpoint(String tableName, long byteOffset, long fileLength, long recordNumber, long lexedRecords, long count, byte[] state) {
+    this.tableName = tableName;
+    this.byteOffset = byteOffset;
+    this.fileLength = fileLength;
+    this.recordNumber = recordNumber;
+    this.lexedRecords = lexedRecords;
+    this.count = count;
+    this.state = state;
+  }
+
+  /**
+   * Reads a checkpoint that has been written by {@link #write(Path)}.
+   */
+  public static Checkpoint read(Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("[" + path + "] is not a checkpoint");
+      }
+      String tableName = in.readUTF();
+      long byteOffset = in.readLong();
+      long fileLength = in.readLong();
+      long recordNumber = in.readLong();
+      long lexedRecords = in.readLong();
+      long count = in.readLong();
+      byte[] state = new byte[in.readInt()];
+      in.readFully(state);
+      return new Checkpoint(tableName, byteOffset, fileLength, recordNumber, lexedRecords, count, state);
+    }
+  }
+
+  /**
+   * Writes this checkpoint to a temporary file first and then replaces the target, so a job that is killed while writing
+   * still leaves the previous checkpoint behind.
+   */
+  public void write(Path path) throws IOException {
+    Path parent = path.toAbsolutePath().getParent();
+    Path tempFile = Files.createTempFile(parent, TEMP_FILE_PREFIX, ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(tableName);
+        out.writeLong(byteOffset);
+        out.writeLong(fileLength);
+        out.writeLong(recordNumber);
+        out.writeLong(lexedRecords);
+        out.writeLong(count);
+        out.writeInt(state.length);
+        out.write(state);
+      }
+      Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * Returns a copy of this checkpoint with the given state of the caller.
+   */
+  public Checkpoint withState(byte[] state) {
+    Objects.requireNonNull(state, "'state' can't be null");
+    return new Checkpoint(tableName, byteOffset, fileLength, recordNumber, lexedRecords, count, state.clone());
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * The offset of the first record after the checkpoint within the data file.
+   */
+  public long getByteOffset() {
+    return byteOffset;
+  }
+
+  /**
+   * The length of the data file when the checkpoint was taken or -1 if it was read from a stream of unknown length.
+   */
+  public long getFileLength() {
+    return fileLength;
+  }
+
+  /**
+   * Rejects resuming on a data file that is shorter than when the checkpoint was taken.
+   *
+   * @param fileLength the current length of the data file, -1 if unknown
+   */
+  void checkFileLength(long fileLength) throws ParsingException {
+    long minimum = Math.max(byteOffset, this.fileLength);
+    if (fileLength != -1 && fileLength < minimum) {
+      throw new ParsingException("Data file of table [" + tableName + "] has [" + fileLength + "] bytes but had at least [" + minimum
+                                 + "] bytes when the checkpoint was taken, it has been truncated or replaced");
+    }
+  }
+
+  /**
+   * The number of the last record before the checkpoint, records dropped because of the limits still count.
+   */
+  public long getRecordNumber() {
+    return recordNumber;
+  }
+
+  long getLexedRecords() {
+    return lexedRecords;
+  }
+
+  /**
+   * Number of records that have been returned (or handled) before the checkpoint.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * The state of the caller, empty if none has been attached.
+   */
+  public byte[] getState() {
+    return state.clone();
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", Checkpoint.class.getSimpleName() + "[", "]")
+      .add("tableName='" + tableName + "'")
+      .add("byteOffset=" + byteOffset)
+      .add("fileLength=" + fileLength)
+      .add("recordNumber=" + recordNumber)
+      .add("count=" + count)
+      .add("state=" + state.length + " bytes")
+      .toString();
+  }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+
+/**
+ * Receives the checkpoints of a scan, see
+ * {@link GdpduDataParser#scanVariableLengthTable(java.io.InputStream, com.opencore.gdpdu.index.models.Table, ParseLimits, RecordHandler, Checkpoint, long, CheckpointHandler)}.
+ */
+@FunctionalInterface
+public interface CheckpointHandler {
+
+  /**
+   * Called on the scanning thread after all records up to the checkpoint have been handled and before the next one is,
+   * so the state of the record handler matches the checkpoint. Typically the state is attached with {@link Checkpoint#withState(byte[])}
+   * and the checkpoint is written with {@link Checkpoint#write(java.nio.file.Path)}.
+   */
+  void checkpoint(Checkpoint checkpoint) throws ParsingException;
+
+}
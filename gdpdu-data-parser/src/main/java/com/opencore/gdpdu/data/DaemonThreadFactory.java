@@ -0,0 +1,40 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads, so worker pools never keep the JVM from exiting.
+ */
+public final class DaemonThreadFactory implements ThreadFactory {
+
+  private final String namePrefix;
+  private final AtomicInteger threadNumber = new AtomicInteger();
+
+  /**
+   * @param namePrefix the thread names are this prefix followed by a running number starting at 1, e.g. {@code gdpdu-sort-1}
+   */
+  public DaemonThreadFactory(String namePrefix) {
+    this.namePrefix = namePrefix;
+  }
+
+  @Override
+  public Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+
+/**
+ * A compiled GDPdU date format like {@code DD.MM.YYYY} or {@code YYYYMMDD hh:mm:ss}.
+ * <p/>
+ * Supported fields are {@code YYYY}, {@code YY}, {@code MM} (month), {@code DD}, {@code hh} (or {@code HH}), {@code mm} (minute) and {@code ss},
+ * every other character has to match literally. All fields have a fixed width so values are checked in a single pass without allocating.
+ * Instances are immutable and thread-safe.
+ */
+public final class DatePattern {
+
+  public static final long INVALID = -1;
+
+  private static final int LITERAL = 0;
+  private static final int YEAR = 1;
+  private static final int SHORT_YEAR = 2;
+  private static final int MONTH = 3;
+  private static final int DAY = 4;
+  private static final int HOUR = 5;
+  private static final int MINUTE = 6;
+  private static final int SECOND = 7;
+
+  private final String format;
+  private final int[] fields;
+  private final boolean hasDate;
+  private final boolean shortYear;
+
+  private DatePattern(String format, int[] fields, boolean hasDate, boolean shortYear) {
+    this.format = format;
+    this.fields = fields;
+    this.hasDate = hasDate;
+    this.shortYear = shortYear;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the format contains a field more than once
+   */
+  public static DatePattern compile(String format) {
+    int[] fields = new int[format.length()];
+    int year = 0;
+    int month = 0;
+    int day = 0;
+    boolean shortYear = false;
+    int i = 0;
+    while (i < format.length()) {
+      int field;
+      int width = 2;
+      if (format.startsWith("YYYY", i)) {
+        field = YEAR;
+        width = 4;
+        year++;
+      } else if (format.startsWith("YY", i)) {
+        field = SHORT_YEAR;
+        year++;
+        shortYear = true;
+      } else if (format.startsWith("MM", i)) {
+        field = MONTH;
+        month++;
+      } else if (format.startsWith("DD", i)) {
+        field = DAY;
+        day++;
+      } else if (format.startsWith("hh", i) || format.startsWith("HH", i)) {
+        field = HOUR;
+      } else if (format.startsWith("mm", i)) {
+        field = MINUTE;
+      } else if (format.startsWith("ss", i) || format.startsWith("SS", i)) {
+        field = SECOND;
+      } else {
+        field = LITERAL;
+        width = 1;
+      }
+      for (int j = 0; j < width; j++) {
+        fields[i + j] = field;
+      }
+      i += width;
+    }
+    if (year > 1 || month > 1 || day > 1) {
+      throw new IllegalArgumentException("Date format [" + format + "] contains a field more than once");
+    }
+    return new DatePattern(format, fields, year == 1 && month == 1 && day == 1, shortYear);
+  }
+
+  /**
+   * Compiles the format of a {@code Date} column.
+   *
+   * @throws ParsingException if the column has no format or it's invalid
+   */
+  public static DatePattern compile(VariableColumn column, Table table) throws ParsingException {
+    if (column.getFormat() == null) {
+      throw new ParsingException("Column [" + column.getName() + "] in table [" + table.getName() + "] has no date format");
+    }
+    try {
+      return compile(column.getFormat());
+    } catch (IllegalArgumentException e) {
+      throw new ParsingException("Column [" + column.getName() + "] in table [" + table.getName() + "] has an invalid date format: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Whether this pattern contains a year, a month and a day, only then {@link #parse(String)} returns a comparable date.
+   */
+  public boolean hasDate() {
+    return hasDate;
+  }
+
+  /**
+   * @return {@link #INVALID} if the value doesn't match the pattern or isn't a valid date/time,
+   * otherwise the date as {@code yyyyMMdd} (0 if the pattern has no complete date)
+   */
+  public long parse(String value) {
+    long timestamp = parseTimestamp(value);
+    return timestamp == INVALID ? INVALID : timestamp / 1_000_000;
+  }
+
+  /**
+   * Like {@link #parse(String)} but includes the time as {@code yyyyMMddhhmmss}, fields missing from the pattern are 0.
+   * Two values of the same pattern compare like the points in time they represent.
+   */
+  public long parseTimestamp(String value) {
+    if (value.length() != fields.length) {
+      return INVALID;
+    }
+    int year = 0;
+    int month = 0;
+    int day = 0;
+    int hour = 0;
+    int minute = 0;
+    int second = 0;
+    for (int i = 0; i < fields.length; i++) {
+      char c = value.charAt(i);
+      if (fields[i] == LITERAL) {
+        if (c != format.charAt(i)) {
+          return INVALID;
+        }
+        continue;
+      }
+      if (c < '0' || c > '9') {
+        return INVALID;
+      }
+      int digit = c - '0';
+      switch (fields[i]) {
+        case YEAR:
+        case SHORT_YEAR:
+          year = year * 10 + digit;
+          break;
+        case MONTH:
+          month = month * 10 + digit;
+          break;
+        case DAY:
+          day = day * 10 + digit;
+          break;
+        case HOUR:
+          hour = hour * 10 + digit;
+          break;
+        case MINUTE:
+          minute = minute * 10 + digit;
+          break;
+        default:
+          second = second * 10 + digit;
+          break;
+      }
+    }
+
+    if (hour > 23 || minute > 59 || second > 59) {
+      return INVALID;
+    }
+    long time = hour * 10000L + minute * 100L + second;
+    if (!hasDate) {
+      return month > 12 || day > 31 ? INVALID : time;
+    }
+    if (shortYear) {
+      // Same pivot as POSIX strptime
+      year += year < 69 ? 2000 : 1900;
+    }
+    if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+      return INVALID;
+    }
+    return (year * 10000L + month * 100L + day) * 1_000_000 + time;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return format;
+  }
+
+}
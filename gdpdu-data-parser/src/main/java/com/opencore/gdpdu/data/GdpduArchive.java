@@ -0,0 +1,705 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.IntPredicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.common.util.ClassRegistry;
+import com.opencore.gdpdu.index.GdpduIndexCache;
+import com.opencore.gdpdu.index.models.DataSet;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.ForeignKey;
+import com.opencore.gdpdu.index.models.Media;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This represents a GDPdU export: An {@code index.xml} file and the data files it describes.
+ * <p/>
+ * The {@code index.xml} file is parsed and validated exactly once when the archive is opened, all tables can then be read without parsing it again.
+ * An export can also be read directly from a ZIP file (see {@link #openZip(File)}), every table is then inflated while it's being read
+ * without extracting anything to disk.
+ * This class is thread-safe, multiple tables can be read concurrently. Archives should be closed to release ZIP files and key indexes.
+ */
+public final class GdpduArchive implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GdpduArchive.class);
+
+  private static final String RECORD_INDEX_SUFFIX = ".gdpdu-index";
+  private static final String KEY_INDEX_SUFFIX = ".gdpdu-keys";
+  private static final String BLOCK_STATISTICS_SUFFIX = ".gdpdu-stats";
+
+  private static final String INDEX_XML = "index.xml";
+  private static final String GZIP_SUFFIX = ".gz";
+  private static final String ZSTD_SUFFIX = ".zst";
+
+  private final File indexXml;
+  private final DataSet dataSet;
+  private final ZipFile zipFile;
+  private final String zipDirectory;
+  private final Map<String, RecordIndex> recordIndexes = new ConcurrentHashMap<>();
+  // Building a key index scans the whole table, concurrent callers wait for the first one instead of blocking the map
+  private final Map<String, FutureTask<KeyIndex>> keyIndexes = new ConcurrentHashMap<>();
+  private final Map<String, BlockStatistics> blockStatistics = new ConcurrentHashMap<>();
+  private final Map<String, TailReader> tailReaders = new ConcurrentHashMap<>();
+  private volatile boolean buildRecordIndexes;
+  private volatile boolean useBlockStatistics;
+  private volatile boolean verifySidecars;
+  private volatile int decompressionThreads = Runtime.getRuntime().availableProcessors();
+  private volatile int readAheadBlockSize;
+  private volatile int readAheadDepth;
+
+  private GdpduArchive(File indexXml, DataSet dataSet) {
+    this(indexXml, dataSet, null, null);
+  }
+
+  private GdpduArchive(File indexXml, DataSet dataSet, ZipFile zipFile, String zipDirectory) {
+    this.indexXml = indexXml;
+    this.dataSet = dataSet;
+    this.zipFile = zipFile;
+    this.zipDirectory = zipDirectory;
+  }
+
+  /**
+   * Opens an archive by parsing and validating its {@code index.xml} file.
+   */
+  public static GdpduArchive open(File indexXml) throws ParsingException {
+    Objects.requireNonNull(indexXml, "`indexXml` can't be null");
+    // TODO Validate that it can be read etc. I have a method somewhere
+
+    byte[] bytes;
+    try (InputStream is = new FileInputStream(indexXml)) {
+      bytes = is.readAllBytes();
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    return new GdpduArchive(indexXml, GdpduIndexCache.parseAndValidate(bytes));
+  }
+
+  /**
+   * Opens an archive and takes the {@link DataSet} from the cache if an identical {@code index.xml} has been seen before.
+   */
+  public static GdpduArchive open(File indexXml, GdpduIndexCache cache) throws ParsingException {
+    Objects.requireNonNull(indexXml, "`indexXml` can't be null");
+    Objects.requireNonNull(cache, "`cache` can't be null");
+    return new GdpduArchive(indexXml, cache.load(indexXml));
+  }
+
+  /**
+   * Opens an archive from a ZIP file that contains the {@code index.xml} file and the data files.
+   * The {@code index.xml} file may be in a directory of the ZIP file, the one closest to the root is used.
+   */
+  public static GdpduArchive openZip(File zipFile) throws ParsingException {
+    return openZip(zipFile, null);
+  }
+
+  /**
+   * Like {@link #openZip(File)} but takes the {@link DataSet} from the cache if an identical {@code index.xml} has been seen before.
+   *
+   * @param cache the cache or null to always parse the {@code index.xml} file
+   */
+  public static GdpduArchive openZip(File zipFile, GdpduIndexCache cache) throws ParsingException {
+    Objects.requireNonNull(zipFile, "`zipFile` can't be null");
+
+    ZipFile zip;
+    try {
+      zip = new ZipFile(zipFile);
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    try {
+      ZipEntry indexEntry = findIndexXml(zip);
+      if (indexEntry == null) {
+        throw new ParsingException("[" + zipFile + "] doesn't contain an " + INDEX_XML + " file");
+      }
+      byte[] bytes;
+      try (InputStream is = zip.getInputStream(indexEntry)) {
+        bytes = is.readAllBytes();
+      }
+      DataSet dataSet = cache == null ? GdpduIndexCache.parseAndValidate(bytes) : cache.load(bytes);
+      String name = indexEntry.getName();
+      return new GdpduArchive(zipFile, dataSet, zip, name.substring(0, name.lastIndexOf('/') + 1));
+    } catch (IOException | ParsingException | RuntimeException e) {
+      closeQuietly(zip);
+      throw e instanceof ParsingException ? (ParsingException) e : new ParsingException(e);
+    }
+  }
+
+  /**
+   * The {@code index.xml} file or, for archives read from a ZIP file, the ZIP file.
+   */
+  public File getIndexXml() {
+    return indexXml;
+  }
+
+  /**
+   * Whether the tables of this archive are read from a ZIP file.
+   */
+  public boolean isZip() {
+    return zipFile != null;
+  }
+
+  /**
+   * The parsed {@code index.xml}, this may be shared with other archives so it must not be modified.
+   */
+  public DataSet getDataSet() {
+    return dataSet;
+  }
+
+  /**
+   * Finds a table by its name or its URL.
+   *
+   * @throws ParsingException if there is no such table
+   */
+  public Table getTable(String tableName) throws ParsingException {
+    Objects.requireNonNull(tableName, "`tableName` can't be null");
+
+    for (Media tmpMedia : dataSet.getMedia()) {
+      for (Table tmpTable : tmpMedia.getTables()) {
+        if (tableName.equals(tmpTable.getName()) || tableName.equals(tmpTable.getUrl())) {
+          return tmpTable;
+        }
+      }
+    }
+    LOG.error("Table [{}] could not be found, aborting", tableName);
+    throw new ParsingException("Table could not be found, aborting");
+  }
+
+  /**
+   * Returns the data file of a table, relative URLs are resolved against the directory of the {@code index.xml} file.
+   *
+   * @throws UnsupportedOperationException if the archive is read from a ZIP file, the tables are no files then
+   */
+  public File getDataFile(Table table) {
+    Objects.requireNonNull(table, "`table` can't be null");
+    if (zipFile != null) {
+      throw new UnsupportedOperationException("Table [" + table.getName() + "] is read from the ZIP file [" + indexXml + "]");
+    }
+    return new File(indexXml.getAbsoluteFile().getParentFile(), table.getUrl());
+  }
+
+  /**
+   * Opens the data file of a table, the caller is responsible for closing the stream.
+   * Tables of a ZIP file are inflated while they are read, multiple tables can be read concurrently.
+   * Data files with the suffix {@value #GZIP_SUFFIX} are decompressed transparently, see {@link ParallelGzipInputStream}.
+   */
+  public InputStream openTable(Table table) throws ParsingException {
+    Objects.requireNonNull(table, "`table` can't be null");
+    if (table.getUrl().toLowerCase(Locale.ROOT).endsWith(ZSTD_SUFFIX)) {
+      throw new ParsingException("Table [" + table.getName() + "] is compressed with Zstandard, only gzip is supported");
+    }
+    InputStream is = null;
+    try {
+      is = zipFile != null ? zipFile.getInputStream(getZipEntry(table)) : new FileInputStream(getDataFile(table));
+      if (readAheadDepth > 0) {
+        is = new ReadAheadInputStream(is, readAheadBlockSize, readAheadDepth);
+      }
+      return isCompressed(table) ? new ParallelGzipInputStream(is, decompressionThreads) : is;
+    } catch (IOException e) {
+      closeQuietly(is);
+      throw new ParsingException(e);
+    }
+  }
+
+  /**
+   * Whether the data file of a table is gzip compressed, the offsets of its indexes refer to the decompressed data.
+   */
+  public boolean isCompressed(Table table) {
+    return table.getUrl().toLowerCase(Locale.ROOT).endsWith(GZIP_SUFFIX);
+  }
+
+  /**
+   * Reads data files on a background thread while they are parsed, see {@link ReadAheadInputStream}.
+   * This mostly helps with slow or network-mounted storage, it's disabled by default.
+   *
+   * @param blockSize bytes per read, e.g. {@link ReadAheadInputStream#DEFAULT_BLOCK_SIZE}
+   * @param depth     number of blocks that are read ahead, 0 disables reading ahead
+   */
+  public void setReadAhead(int blockSize, int depth) {
+    if (depth < 0) {
+      throw new IllegalArgumentException("'depth' must be at least 0, was [" + depth + "]");
+    }
+    if (depth > 0 && blockSize < 1) {
+      throw new IllegalArgumentException("'blockSize' must be at least 1, was [" + blockSize + "]");
+    }
+    this.readAheadBlockSize = blockSize;
+    this.readAheadDepth = depth;
+  }
+
+  /**
+   * @param decompressionThreads number of threads that decompress a block gzip table, defaults to the number of processors
+   */
+  public void setDecompressionThreads(int decompressionThreads) {
+    if (decompressionThreads < 1) {
+      throw new IllegalArgumentException("'decompressionThreads' must be at least 1, was [" + decompressionThreads + "]");
+    }
+    this.decompressionThreads = decompressionThreads;
+  }
+
+  /**
+   * Parses a single {@link Table} of this archive into a List of domain objects.
+   */
+  public <T> List<T> parseTable(String tableName, Class<T> clazz) throws ParsingException {
+    return parseTable(tableName, clazz, null);
+  }
+
+  /**
+   * Parses only the records of a {@link Table} that match the filter, all other records are dropped before they are deserialized.
+   *
+   * @param filter the filter to apply or null to return all records
+   */
+  public <T> List<T> parseTable(String tableName, Class<T> clazz, RecordFilter filter) throws ParsingException {
+    Table table = getTable(tableName);
+    if (filter != null && useBlockStatistics && table.getVariableLength() != null) {
+      BlockStatistics statistics = getBlockStatistics(table);
+      try (InputStream is = openTable(table)) {
+        return GdpduDataParser.parseVariableLengthTable(is, table, clazz, filter, statistics);
+      } catch (IOException e) {
+        throw new ParsingException(e);
+      }
+    }
+    RecordIndex.Builder indexBuilder = null;
+    if (buildRecordIndexes && table.getVariableLength() != null && !recordIndexes.containsKey(table.getUrl())) {
+      indexBuilder = new RecordIndex.Builder(RecordIndex.DEFAULT_INTERVAL);
+    }
+    try (InputStream is = openTable(table)) {
+      List<T> results = GdpduDataParser.parseTable(is, table, clazz, filter, indexBuilder);
+      if (indexBuilder != null && indexBuilder.getIndex() != null) {
+        storeRecordIndex(table, indexBuilder.getIndex());
+      }
+      return results;
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  /**
+   * Parses up to {@code maxRecords} records of a {@link Table} starting at the record number {@code fromRecord} (1-based).
+   * Only the records from the closest indexed record on are lexed, see {@link #getRecordIndex(Table)}.
+   */
+  public <T> List<T> parseTable(String tableName, Class<T> clazz, long fromRecord, int maxRecords) throws ParsingException {
+    Table table = getTable(tableName);
+    RecordIndex index = getRecordIndex(table);
+    try (InputStream is = openTable(table)) {
+      return GdpduDataParser.parseVariableLengthTable(is, table, clazz, index, fromRecord, maxRecords);
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  /**
+   * Parses the records that have been appended to the data file of a {@link Table} since the last call, the first call parses the whole table.
+   * A last record that isn't terminated by a record delimiter yet is returned by a later call once it's complete, see {@link TailReader}.
+   */
+  public <T> List<T> parseNewRecords(String tableName, Class<T> clazz) throws ParsingException {
+    Table table = getTable(tableName);
+    if (zipFile != null || isCompressed(table)) {
+      throw new ParsingException("Only uncompressed data files can be read incrementally");
+    }
+    TailReader reader = tailReaders.computeIfAbsent(table.getUrl(), url -> new TailReader(table));
+    synchronized (reader) {
+      return reader.read(getDataFile(table), clazz);
+    }
+  }
+
+  /**
+   * Returns the records of a {@link Table} with the given primary key, usually there is at most one.
+   * Only the matching records are read, see {@link #getKeyIndex(Table)}.
+   *
+   * @param key the values of the primary key columns in their declared order, written as in the data file
+   */
+  public <T> List<T> lookup(String tableName, Class<T> clazz, String... key) throws ParsingException {
+    Table table = getTable(tableName);
+    if (useBlockStatistics && !mightContainKey(table, key)) {
+      return new ArrayList<>();
+    }
+    ClassRegistry.registerClass(clazz);
+    KeyIndex index = getKeyIndex(table);
+    return GdpduDataParser.lookup(getDataFile(table), table, clazz, index, Arrays.asList(key));
+  }
+
+  /**
+   * Whether full parses of tables build a {@link RecordIndex} as a side effect and store it next to the data file.
+   */
+  public void setBuildRecordIndexes(boolean buildRecordIndexes) {
+    this.buildRecordIndexes = buildRecordIndexes;
+  }
+
+  /**
+   * Whether sidecar files are matched to their data file by the checksum of the whole file instead of only its first and last bytes.
+   * This reads the whole data file once per sidecar file, it's meant for files that might be modified in place without changing their length.
+   */
+  public void setVerifySidecars(boolean verifySidecars) {
+    this.verifySidecars = verifySidecars;
+  }
+
+  /**
+   * Whether filtered parses and lookups use {@link BlockStatistics} to skip blocks of records that can't match.
+   * The statistics are built on first use and stored next to the data file, their Bloom filters cover the primary and foreign key columns.
+   */
+  public void setUseBlockStatistics(boolean useBlockStatistics) {
+    this.useBlockStatistics = useBlockStatistics;
+  }
+
+  /**
+   * Returns the block statistics of a table, they are loaded and stored like a record index (see {@link #getRecordIndex(Table)}).
+   */
+  public BlockStatistics getBlockStatistics(Table table) throws ParsingException {
+    Objects.requireNonNull(table, "`table` can't be null");
+    BlockStatistics statistics = blockStatistics.get(table.getUrl());
+    if (statistics != null) {
+      return statistics;
+    }
+
+    File sidecar = getBlockStatisticsFile(table);
+    if (sidecar.isFile()) {
+      try {
+        statistics = BlockStatistics.read(sidecar.toPath());
+        if (isCurrent(table, statistics.getHeader())) {
+          blockStatistics.put(table.getUrl(), statistics);
+          return statistics;
+        }
+        LOG.debug("Block statistics [{}] don't match their data file anymore, rebuilding them", sidecar);
+      } catch (IOException e) {
+        LOG.debug("Could not read block statistics [{}], rebuilding them", sidecar, e);
+      }
+    }
+
+    Set<String> bloomColumns = new LinkedHashSet<>();
+    if (table.getVariableLength() != null) {
+      for (VariableColumn column : table.getVariableLength().getVariablePrimaryKeys()) {
+        bloomColumns.add(column.getName());
+      }
+      for (ForeignKey foreignKey : table.getVariableLength().getForeignKeys()) {
+        bloomColumns.addAll(foreignKey.getNames());
+      }
+    }
+    try (InputStream is = openTable(table)) {
+      statistics = BlockStatistics.build(is, table, BlockStatistics.DEFAULT_BLOCK_SIZE, bloomColumns);
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    blockStatistics.put(table.getUrl(), statistics);
+    try {
+      statistics.write(sidecar.toPath());
+    } catch (IOException e) {
+      LOG.warn("Could not write block statistics [{}], they are only kept in memory", sidecar, e);
+    }
+    return statistics;
+  }
+
+  /**
+   * The sidecar file of the block statistics of a table, it's the data file with the suffix {@value #BLOCK_STATISTICS_SUFFIX}.
+   */
+  public File getBlockStatisticsFile(Table table) {
+    return getSidecarFile(table, BLOCK_STATISTICS_SUFFIX);
+  }
+
+  private boolean mightContainKey(Table table, String... key) throws ParsingException {
+    List<VariableColumn> primaryKeys = table.getVariableLength() == null ? null : table.getVariableLength().getVariablePrimaryKeys();
+    if (primaryKeys == null || primaryKeys.size() != key.length) {
+      // The lookup reports the mismatch
+      return true;
+    }
+    RecordFilter[] filters = new RecordFilter[key.length];
+    for (int i = 0; i < key.length; i++) {
+      // A filter on a Numeric or Date column would compare values instead of their notation
+      if (primaryKeys.get(i).getDataType() != DataType.AlphaNumeric) {
+        return true;
+      }
+      filters[i] = RecordFilter.equalTo(primaryKeys.get(i).getName(), key[i]);
+    }
+    BlockStatistics statistics = getBlockStatistics(table);
+    IntPredicate blocks = RecordFilter.and(filters).bindBlocks(table, statistics);
+    for (int block = 0; block < statistics.getBlockCount(); block++) {
+      if (blocks.test(block)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the record index of a table.
+   * <p/>
+   * An index is kept in memory once it has been loaded. Otherwise the sidecar file (see {@link #getRecordIndexFile(Table)}) is used
+   * if it still matches the data file, if not the index is built by lexing the table and the sidecar file is written.
+   * The sidecar file is optional, if it can't be written (e.g. on read-only media) the index is only kept in memory.
+   */
+  public RecordIndex getRecordIndex(Table table) throws ParsingException {
+    Objects.requireNonNull(table, "`table` can't be null");
+    RecordIndex index = recordIndexes.get(table.getUrl());
+    if (index != null) {
+      return index;
+    }
+
+    File sidecar = getRecordIndexFile(table);
+    if (sidecar.isFile()) {
+      try {
+        index = RecordIndex.read(sidecar.toPath());
+        if (isCurrent(table, index.getHeader())) {
+          recordIndexes.put(table.getUrl(), index);
+          return index;
+        }
+        LOG.debug("Record index [{}] doesn't match its data file anymore, rebuilding it", sidecar);
+      } catch (IOException e) {
+        LOG.debug("Could not read record index [{}], rebuilding it", sidecar, e);
+      }
+    }
+
+    try (InputStream is = openTable(table)) {
+      index = RecordIndex.build(is, table, RecordIndex.DEFAULT_INTERVAL);
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    storeRecordIndex(table, index);
+    return index;
+  }
+
+  /**
+   * The sidecar file of the record index of a table, it's the data file with the suffix {@value #RECORD_INDEX_SUFFIX}.
+   */
+  public File getRecordIndexFile(Table table) {
+    return getSidecarFile(table, RECORD_INDEX_SUFFIX);
+  }
+
+  /**
+   * Returns the primary key index of a table.
+   * <p/>
+   * Like {@link #getRecordIndex(Table)} the index is kept open once it has been loaded and the sidecar file (see {@link #getKeyIndexFile(Table)})
+   * is used if it still matches the data file. If the sidecar file can't be written the index is built in a temporary file instead.
+   */
+  public KeyIndex getKeyIndex(Table table) throws ParsingException {
+    Objects.requireNonNull(table, "`table` can't be null");
+    if (zipFile != null || isCompressed(table)) {
+      // Every lookup would have to inflate the table up to the record
+      throw new ParsingException("Key lookups are not supported for tables in ZIP files or compressed tables");
+    }
+    FutureTask<KeyIndex> task = new FutureTask<>(() -> loadKeyIndex(table));
+    FutureTask<KeyIndex> existing = keyIndexes.putIfAbsent(table.getUrl(), task);
+    if (existing == null) {
+      existing = task;
+      task.run();
+    }
+    try {
+      return existing.get();
+    } catch (ExecutionException e) {
+      // A failed build is not kept, the next call tries again
+      keyIndexes.remove(table.getUrl(), existing);
+      Throwable cause = e.getCause();
+      if (cause instanceof ParsingException) {
+        throw (ParsingException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new ParsingException(cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ParsingException(e);
+    }
+  }
+
+  /**
+   * The sidecar file of the primary key index of a table, it's the data file with the suffix {@value #KEY_INDEX_SUFFIX}.
+   */
+  public File getKeyIndexFile(Table table) {
+    return getSidecarFile(table, KEY_INDEX_SUFFIX);
+  }
+
+  private KeyIndex loadKeyIndex(Table table) throws ParsingException {
+    File sidecar = getKeyIndexFile(table);
+    if (sidecar.isFile()) {
+      try {
+        KeyIndex index = KeyIndex.open(sidecar.toPath());
+        if (verifySidecars ? index.verify(getDataFile(table)) : index.matches(getDataFile(table))) {
+          return index;
+        }
+        index.close();
+        LOG.debug("Key index [{}] doesn't match its data file anymore, rebuilding it", sidecar);
+      } catch (IOException e) {
+        LOG.debug("Could not read key index [{}], rebuilding it", sidecar, e);
+      }
+    }
+
+    try (InputStream is = openTable(table)) {
+      return KeyIndex.build(is, table, sidecar.toPath(), KeyIndex.DEFAULT_MEMORY_BUDGET, null);
+    } catch (ParsingException | IOException e) {
+      if (sidecar.getParentFile() != null && Files.isWritable(sidecar.getParentFile().toPath())) {
+        throw e instanceof ParsingException ? (ParsingException) e : new ParsingException(e);
+      }
+      LOG.warn("Could not write key index [{}], using a temporary file", sidecar, e);
+    }
+    try (InputStream is = openTable(table)) {
+      Path tempFile = Files.createTempFile("gdpdu-keys-", KEY_INDEX_SUFFIX);
+      tempFile.toFile().deleteOnExit();
+      return KeyIndex.build(is, table, tempFile, KeyIndex.DEFAULT_MEMORY_BUDGET, null);
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  /**
+   * Releases the ZIP file and the key indexes, streams that are still open can't be read anymore.
+   */
+  @Override
+  public void close() throws IOException {
+    for (FutureTask<KeyIndex> task : keyIndexes.values()) {
+      KeyIndex index = getIfBuilt(task);
+      if (index != null) {
+        index.close();
+      }
+    }
+    keyIndexes.clear();
+    if (zipFile != null) {
+      zipFile.close();
+    }
+  }
+
+  /**
+   * @return the key index or null if it's still being built or the build failed
+   */
+  private static KeyIndex getIfBuilt(FutureTask<KeyIndex> task) {
+    if (!task.isDone()) {
+      return null;
+    }
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * Sidecar files are stored next to the data file or, for ZIP files, next to the ZIP file.
+   */
+  private File getSidecarFile(Table table, String suffix) {
+    if (zipFile != null) {
+      String entryName = (zipDirectory + normalizeUrl(table.getUrl())).replace('/', '_');
+      return new File(indexXml.getAbsoluteFile().getParentFile(), indexXml.getName() + "." + entryName + suffix);
+    }
+    File dataFile = getDataFile(table);
+    return new File(dataFile.getParentFile(), dataFile.getName() + suffix);
+  }
+
+  /**
+   * Whether an index with this header belongs to the current data of the table.
+   * For data files only the first and last bytes are compared unless {@link #setVerifySidecars(boolean)} is set.
+   * The CRC32 of a ZIP entry is stored in the ZIP file so nothing needs to be read for those,
+   * compressed tables have to be decompressed because indexes refer to the decompressed data.
+   */
+  private boolean isCurrent(Table table, SidecarHeader header) throws IOException {
+    if (isCompressed(table)) {
+      try (CountingInputStream is = new CountingInputStream(openTable(table))) {
+        return SidecarHeader.checksum(is) == header.getChecksum() && is.getCount() == header.getFileLength();
+      } catch (ParsingException e) {
+        throw new IOException(e);
+      }
+    }
+    if (zipFile != null) {
+      try {
+        ZipEntry entry = getZipEntry(table);
+        return entry.getSize() == header.getFileLength() && entry.getCrc() == header.getChecksum();
+      } catch (ParsingException e) {
+        throw new IOException(e);
+      }
+    }
+    File dataFile = getDataFile(table);
+    return verifySidecars ? header.verify(dataFile) : header.matches(dataFile);
+  }
+
+  private ZipEntry getZipEntry(Table table) throws ParsingException {
+    ZipEntry entry = zipFile.getEntry(zipDirectory + normalizeUrl(table.getUrl()));
+    if (entry == null) {
+      throw new ParsingException("Table [" + table.getName() + "] not found in ZIP file [" + indexXml + "]");
+    }
+    return entry;
+  }
+
+  private static String normalizeUrl(String url) {
+    String normalized = url.replace('\\', '/');
+    return normalized.startsWith("./") ? normalized.substring(2) : normalized;
+  }
+
+  /**
+   * @return the {@code index.xml} entry with the fewest directories or null if there is none
+   */
+  private static ZipEntry findIndexXml(ZipFile zip) {
+    ZipEntry result = null;
+    int depth = Integer.MAX_VALUE;
+    Enumeration<? extends ZipEntry> entries = zip.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+      String name = entry.getName();
+      String fileName = name.substring(name.lastIndexOf('/') + 1);
+      if (!entry.isDirectory() && fileName.equalsIgnoreCase(INDEX_XML)) {
+        int entryDepth = name.length() - name.replace("/", "").length();
+        if (entryDepth < depth) {
+          result = entry;
+          depth = entryDepth;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      LOG.debug("Could not close [{}]", closeable, e);
+    }
+  }
+
+  private void storeRecordIndex(Table table, RecordIndex index) {
+    recordIndexes.put(table.getUrl(), index);
+    File sidecar = getRecordIndexFile(table);
+    try {
+      index.write(sidecar.toPath());
+    } catch (IOException e) {
+      LOG.warn("Could not write record index [{}], it is only kept in memory", sidecar, e);
+    }
+  }
+
+}
@@ -3,6 +3,9 @@ package com.opencore.gdpdu.data;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -17,14 +20,25 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This class is not thread-safe.
+ * <p/>
+ * Column and record lengths can be limited using the {@link DeserializationContext}.
+ * When a limit is hit the lexer either fails or (if {@link DeserializationContext#isSkipOversizedRecords()} is set)
+ * drops the record and resumes after the next record delimiter.
+ * Resyncing doesn't respect text encapsulators as the offending column may well be an encapsulated column that is never closed.
  */
-// TODO: Make sure that the builder doesn't grow unbounded, allow a limit in case we see malformed data files or have a bug while parsing
 // TODO: Support Range in the Parser?
 public class GdpduDataLexer {
 
   private static final Logger LOG = LoggerFactory.getLogger(GdpduDataLexer.class);
 
-  private List<Record> records;
+  private static final int OFFSETS_UNSUPPORTED = 0;
+  private static final int SINGLE_BYTE = 1;
+  private static final int UTF8 = 2;
+
+  private Reader reader;
+  private ParsingState state;
+  private boolean finished;
+  private boolean recordCompleted;
   private Record currentRecord;
   private StringBuilder builder;
   private final DeserializationContext context;
@@ -36,8 +50,25 @@ public class GdpduDataLexer {
   private final Trie unencapsulatedTrie;
   private final Trie encapsulatedTrie;
 
+  // This Trie is used to find the next record after a record has been dropped
+  private final Trie recordDelimiterTrie;
+
   private int currentIndex = 0;
 
+  // The limits allow some slack for delimiter characters that are only removed from the builder once the delimiter is complete
+  private final int delimiterSlack;
+  private long recordNumber;
+  private long recordLength;
+  private long columnLimit;
+  private long appendLimit;
+  private boolean discardRecord;
+  private long skippedRecords;
+
+  // Byte offsets are derived from the characters that have been read, the reader itself buffers ahead
+  private int offsetEncoding;
+  private long byteOffset;
+  private long recordOffset;
+
   public GdpduDataLexer(@NotNull DeserializationContext context) {
     Objects.requireNonNull(context, "`context` can't be null");
 
@@ -45,32 +76,111 @@ public class GdpduDataLexer {
     unknownTrie = buildTrie(context.getRecordDelimiter(), context.getColumnDelimiter(), context.getTextEncapsulator());
     unencapsulatedTrie = buildTrie2(context.getRecordDelimiter(), context.getColumnDelimiter());
     encapsulatedTrie = buildTrie3(context.getTextEncapsulator());
+    recordDelimiterTrie = new Trie();
+    recordDelimiterTrie.insert(context.getRecordDelimiter(), OUTPUT.RECORD_DELIMITER);
+    delimiterSlack = Math.max(Math.max(context.getTextEncapsulator().length(), context.getRecordDelimiter().length()), context.getColumnDelimiter().length()) - 1;
   }
 
   // TODO:IOException -> ParsingException
   public List<Record> parseData(@NotNull InputStream inputStream) throws ParsingException {
     Objects.requireNonNull(inputStream, "`inputStream` can't be null");
 
-    records = new ArrayList<>();
-    resetTries();
-    currentIndex = 0;
-    builder = new StringBuilder();
-    currentRecord = new Record();
+    List<Record> records = new ArrayList<>();
+    open(inputStream);
+    try {
+      Record record;
+      while ((record = nextRecord()) != null) {
+        records.add(record);
+      }
+    } finally {
+      close();
+    }
+
+    return records;
+  }
+
+  /**
+   * Prepares this lexer to read records from the given stream.
+   * Records can then be pulled one by one using {@link #nextRecord()} which avoids holding the whole file in memory.
+   * The stream will be closed by {@link #close()}.
+   */
+  public void open(@NotNull InputStream inputStream) throws ParsingException {
+    Objects.requireNonNull(inputStream, "`inputStream` can't be null");
 
+    long skip;
     try {
-      long skip = inputStream.skip(context.getSkipNumBytes());
+      skip = inputStream.skip(context.getSkipNumBytes());
       if (skip != context.getSkipNumBytes()) {
         LOG.warn("Skipped only [{}] bytes instead of [{}]", skip, context.getSkipNumBytes());
       }
     } catch (IOException e) {
       throw new ParsingException(e);
     }
+    open(inputStream, skip, 0);
+  }
 
-    try (InputStreamReader reader = new InputStreamReader(inputStream, context.getCharset())) {
-      ParsingState state = ParsingState.UNKNOWN; // At the very beginning we have no idea what's to come
+  /**
+   * Like {@link #open(InputStream)} but the stream has already been positioned at the start of a record, e.g. using a {@link RecordIndex}.
+   * Nothing is skipped.
+   *
+   * @param byteOffset   the position of the stream within the file
+   * @param recordNumber the number of records before that position
+   */
+  void open(InputStream inputStream, long byteOffset, long recordNumber) {
+    resetTries();
+    currentIndex = 0;
+    builder = new StringBuilder();
+    state = ParsingState.UNKNOWN; // At the very beginning we have no idea what's to come
+    finished = false;
+    recordCompleted = false;
+    this.recordNumber = recordNumber;
+    skippedRecords = 0;
+    discardRecord = false;
+    this.byteOffset = byteOffset;
+    recordOffset = byteOffset;
+    offsetEncoding = offsetEncoding(context.getCharset());
+
+    reader = new InputStreamReader(inputStream, context.getCharset());
+  }
+
+  /**
+   * Reads the next record.
+   *
+   * @return the next record or null if the end of the file has been reached
+   */
+  public Record nextRecord() throws ParsingException {
+    Record record = new Record();
+    return nextRecord(record) ? record : null;
+  }
+
+  /**
+   * Reads the next record into the given (possibly reused) {@link Record} object.
+   * Any columns that the record held before will be removed.
+   *
+   * @return true if a record has been read, false if the end of the file has been reached
+   */
+  public boolean nextRecord(@NotNull Record record) throws ParsingException {
+    Objects.requireNonNull(record, "`record` can't be null");
+    if (reader == null) {
+      throw new IllegalStateException("Lexer has not been opened");
+    }
+    if (finished) {
+      return false;
+    }
+
+    record.clear();
+    currentRecord = record;
+    startRecord();
+    try {
       int currentChar;
       while ((currentChar = reader.read()) != -1) {
         currentIndex++;
+        if (offsetEncoding == UTF8) {
+          // A surrogate pair is four bytes, two for each half
+          byteOffset += currentChar < 0x80 ? 1 : currentChar < 0x800 || Character.isSurrogate((char) currentChar) ? 2 : 3;
+        } else {
+          byteOffset++;
+        }
 
         switch (state) {
           /*
@@ -153,6 +263,15 @@ public class GdpduDataLexer {
             break;
           }
 
+          case SKIPPING: {
+            if (recordDelimiterTrie.search(currentChar) == OUTPUT.RECORD_DELIMITER) {
+              LOG.trace("Found Record Delimiter [State: Skipping]");
+              skippedRecord();
+              state = ParsingState.UNKNOWN;
+            }
+            break;
+          }
+
           case ENCAPSULATED_COLUMN: {
             OUTPUT output = encapsulatedTrie.search(currentChar);
             switch (output) {
@@ -174,40 +293,199 @@ public class GdpduDataLexer {
           }
 
         }
+
+        if (builder.length() > appendLimit) {
+          limitExceeded(builder.length());
+        }
+
+        if (discardRecord) {
+          if (recordCompleted) {
+            recordCompleted = false;
+            skippedRecord();
+          } else {
+            resetTries();
+            builder = new StringBuilder();
+            state = ParsingState.SKIPPING;
+          }
+        } else if (recordCompleted) {
+          recordCompleted = false;
+          return true;
+        }
       }
     } catch (IOException e) {
       throw new ParsingException(e);
     }
     LOG.trace("End of File");
-    if (builder.length() > 0) {
-      newRecord();
-    } else {
-      records.add(currentRecord);
+    finished = true;
+    if (state != ParsingState.SKIPPING && builder.length() > 0) {
+      newColumn();
+    }
+    if (state == ParsingState.SKIPPING || discardRecord) {
+      skippedRecords++;
+      recordNumber++;
+      return false;
     }
 
-    return records;
+    recordNumber++;
+    return true;
   }
 
-  private void newColumn() {
-    String column = builder.toString();
-    currentRecord.addColumn(column);
+  /**
+   * The number of records that have been dropped because they exceeded a limit.
+   */
+  public long getSkippedRecords() {
+    return skippedRecords;
+  }
+
+  /**
+   * Lets the caller drop the record that has just been read because it exceeds a limit the lexer doesn't know about.
+   * This fails or counts the record as skipped, just like the limits of the lexer itself.
+   */
+  void skipRecord(String message) throws ParsingException {
+    if (!context.isSkipOversizedRecords()) {
+      throw new ParsingException(message);
+    }
+    LOG.warn("{}, skipping record", message);
+    skippedRecords++;
+  }
+
+  /**
+   * The byte offset of the record that has just been read within the file or -1 if the encoding doesn't allow to compute it.
+   * <p/>
+   * Offsets are computed from the decoded characters: This works for single byte encodings and UTF-8,
+   * but not for UTF-16 (byte order marks) or if the file contains malformed byte sequences.
+   */
+  public long getRecordOffset() {
+    return offsetEncoding == OFFSETS_UNSUPPORTED ? -1 : recordOffset;
+  }
+
+  /**
+   * The number of bytes that have been consumed so far, see {@link #getRecordOffset()}.
+   */
+  long getByteOffset() {
+    return offsetEncoding == OFFSETS_UNSUPPORTED ? -1 : byteOffset;
+  }
+
+  /**
+   * Whether the end of the stream has been reached, the record that has just been read then wasn't terminated by a record delimiter.
+   */
+  boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * The number of records that have been read so far including the dropped ones, this is 1-based.
+   */
+  public long getRecordNumber() {
+    return recordNumber;
+  }
+
+  /**
+   * Closes the underlying stream.
+   */
+  public void close() throws ParsingException {
+    if (reader == null) {
+      return;
+    }
+    try {
+      reader.close();
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    } finally {
+      reader = null;
+    }
+  }
+
+  private void newColumn() throws ParsingException {
+    if (builder.length() > columnLimit || recordLength + builder.length() > context.getMaxRecordLength()) {
+      limitExceeded(builder.length());
+    }
+    if (!discardRecord) {
+      String column = builder.toString();
+      currentRecord.addColumn(column);
+      recordLength += column.length();
+      LOG.trace("Found column [{}]", column);
+    }
     currentIndex = 0;
 
     resetTries();
     builder = new StringBuilder();
-    LOG.trace("Found column [{}]", column);
+    updateLimits();
   }
 
-  private void newRecord() {
+  private void newRecord() throws ParsingException {
     newColumn();
-    records.add(currentRecord);
-    currentRecord = new Record();
+    recordCompleted = true;
+    if (!discardRecord) {
+      recordNumber++;
+    }
+  }
+
+  private void startRecord() {
+    recordOffset = byteOffset;
+    recordLength = 0;
+    discardRecord = false;
+    updateLimits();
+  }
+
+  private void skippedRecord() {
+    skippedRecords++;
+    recordNumber++;
+    currentRecord.clear();
+    resetTries();
+    builder = new StringBuilder();
+    currentIndex = 0;
+    startRecord();
+  }
+
+  private static int offsetEncoding(Charset charset) {
+    if (charset.equals(StandardCharsets.UTF_8)) {
+      return UTF8;
+    }
+    return charset.newEncoder().maxBytesPerChar() == 1 ? SINGLE_BYTE : OFFSETS_UNSUPPORTED;
+  }
+
+  private void updateLimits() {
+    int columnIndex = currentRecord.getColumns().size();
+    long[] columnMaxLengths = context.getColumnMaxLengths();
+    if (columnMaxLengths != null && columnIndex < columnMaxLengths.length && columnMaxLengths[columnIndex] >= 0) {
+      columnLimit = columnMaxLengths[columnIndex];
+    } else {
+      columnLimit = context.getMaxColumnLength();
+    }
+    long recordLimit = context.getMaxRecordLength() - recordLength;
+    appendLimit = saturatedAdd(Math.min(columnLimit, recordLimit), delimiterSlack);
+  }
+
+  private void limitExceeded(long columnLength) throws ParsingException {
+    if (discardRecord) {
+      return;
+    }
+    long record = recordNumber + 1;
+    int column = currentRecord.getColumns().size() + 1;
+    String message;
+    if (columnLength > columnLimit) {
+      message = "Column [" + column + "] of record [" + record + "] exceeds the limit of [" + columnLimit + "] characters";
+    } else {
+      message = "Record [" + record + "] exceeds the limit of [" + context.getMaxRecordLength() + "] characters";
+    }
+    if (!context.isSkipOversizedRecords()) {
+      throw new ParsingException(message);
+    }
+    LOG.warn("{}, skipping record", message);
+    discardRecord = true;
+  }
+
+  private static long saturatedAdd(long a, long b) {
+    long result = a + b;
+    return result < a ? Long.MAX_VALUE : result;
   }
 
   private void resetTries() {
     unknownTrie.reset();
     encapsulatedTrie.reset();
     unencapsulatedTrie.reset();
+    recordDelimiterTrie.reset();
   }
 
   private static Trie buildTrie(String recordDelimiter, String columnDelimiter, String textEncapsulator) {
@@ -241,7 +519,8 @@ public class GdpduDataLexer {
   private enum ParsingState {
     UNKNOWN, // When we haven't checked yet whether there's a TextEncapsulator at the beginning of the column, a column can also be totally empty, we can be at the EOF, ...
     UNENCAPSULATED_COLUMN,
-    ENCAPSULATED_COLUMN
+    ENCAPSULATED_COLUMN,
+    SKIPPING // A record is being dropped, we're looking for the next record delimiter
   }
 
   private static class Trie {
@@ -14,42 +14,31 @@ package com.opencore.gdpdu.data;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import javax.validation.ConstraintViolation;
+import java.util.function.IntPredicate;
 
 import com.opencore.gdpdu.common.exceptions.ParsingException;
 import com.opencore.gdpdu.common.util.ClassRegistry;
-import com.opencore.gdpdu.common.util.ColumnInfo;
 import com.opencore.gdpdu.data.deserializers.DeserializationContext;
-import com.opencore.gdpdu.data.deserializers.Deserializers;
-import com.opencore.gdpdu.index.GdpduIndexParser;
 import com.opencore.gdpdu.index.GdpduIndexValidator;
 import com.opencore.gdpdu.index.annotations.Column;
-import com.opencore.gdpdu.index.models.DataSet;
-import com.opencore.gdpdu.index.models.Media;
 import com.opencore.gdpdu.index.models.Range;
 import com.opencore.gdpdu.index.models.Table;
 import com.opencore.gdpdu.index.models.VariableColumn;
-import com.opencore.gdpdu.index.models.VariableLength;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-// TODO: Make it so that index.xml doesn't need to be parsed again for each table
-
 /**
  * This class can be used to read GDPdu conformant data files into Java objects.
  * These objects have to be annotated with the {@link Column} annotation.
  *
  * This parser is not thread-safe.
+ *
+ * @see GdpduArchive for reading multiple tables from the same {@code index.xml} file
  */
 public final class GdpduDataParser {
 
@@ -67,38 +56,7 @@ public final class GdpduDataParser {
    */
   @SuppressWarnings("WeakerAccess")
   public static <T> List<T> parseTable(File indexXml, String tableName, Class<T> clazz) throws ParsingException {
-    Objects.requireNonNull(indexXml, "`indexXml` can't be null");
-    // TODO Validate that it can be read etc. I have a method somewhere
-
-    DataSet dataSet;
-    try {
-      dataSet = parseIndexXml(new FileInputStream(indexXml));
-    } catch (FileNotFoundException e) {
-      throw new ParsingException(e);
-    }
-    validateDataSet(dataSet);
-
-    // Try to find the table in our index.xml file
-    Table table = null;
-    for (Media tmpMedia : dataSet.getMedia()) {
-      for (Table tmpTable : tmpMedia.getTables()) {
-        if (tableName.equals(tmpTable.getName()) || tableName.equals(tmpTable.getUrl())) {
-          table = tmpTable;
-          break;
-        }
-      }
-    }
-    if (table == null) {
-      LOG.error("Table [{}] could not be found, aborting", tableName);
-      throw new ParsingException("Table could not be found, aborting");
-    }
-
-    File dataFile = new File(indexXml.getAbsoluteFile().getParentFile(), table.getUrl());
-    try (InputStream fis = new FileInputStream(dataFile)) {
-      return parseTable(fis, table, clazz);
-    } catch (IOException e) {
-      throw new ParsingException(e);
-    }
+    return GdpduArchive.open(indexXml).parseTable(tableName, clazz);
   }
 
   /**
@@ -107,6 +65,24 @@ public final class GdpduDataParser {
    */
   @SuppressWarnings("WeakerAccess")
   public static <T> List<T> parseTable(InputStream tableStream, Table table, Class<T> clazz) throws ParsingException {
+    return parseTable(tableStream, table, clazz, null);
+  }
+
+  /**
+   * This works like {@link #parseTable(InputStream, Table, Class)} but only returns the records that match the filter.
+   *
+   * @param filter the filter to apply or null to return all records
+   */
+  @SuppressWarnings("WeakerAccess")
+  public static <T> List<T> parseTable(InputStream tableStream, Table table, Class<T> clazz, RecordFilter filter) throws ParsingException {
+    return parseTable(tableStream, table, clazz, filter, null);
+  }
+
+  /**
+   * @param indexBuilder collects a {@link RecordIndex} while the table is parsed, null to not build one
+   */
+  static <T> List<T> parseTable(InputStream tableStream, Table table, Class<T> clazz, RecordFilter filter, RecordIndex.Builder indexBuilder)
+    throws ParsingException {
     Objects.requireNonNull(tableStream, "`tableStream` can't be null");
     Objects.requireNonNull(table, "'table' can't be null");
     Objects.requireNonNull(clazz, "'clazz' can't be null");
@@ -126,7 +102,7 @@ public final class GdpduDataParser {
 
     if (table.getVariableLength() != null) {
       LOG.trace("[{}] is VariableLength table, parsing now", table.getName());
-      return parseVariableLengthTable(tableStream, table, clazz);
+      return parseVariableLengthTable(tableStream, table, clazz, null, filter, indexBuilder);
     } else if (table.getFixedLength() != null) {
       LOG.trace("[{}] is FixedLength table, parsing now", table.getName());
       //TODO Support fixedLength
@@ -143,115 +119,471 @@ public final class GdpduDataParser {
   // TODO: Switch to a custom parser and remove the Commons CSV dependency
   @SuppressWarnings("WeakerAccess")
   public static <T> List<T> parseVariableLengthTable(InputStream tableStream, Table table, Class<T> clazz) throws ParsingException {
+    return parseVariableLengthTable(tableStream, table, clazz, null);
+  }
+
+  /**
+   * This works like {@link #parseVariableLengthTable(InputStream, Table, Class)} but bounds the size of columns and records.
+   *
+   * @param limits the limits to apply or null to parse without any limits
+   */
+  @SuppressWarnings("WeakerAccess")
+  public static <T> List<T> parseVariableLengthTable(InputStream tableStream, Table table, Class<T> clazz, ParseLimits limits) throws ParsingException {
+    return parseVariableLengthTable(tableStream, table, clazz, limits, null);
+  }
+
+  /**
+   * This works like {@link #parseVariableLengthTable(InputStream, Table, Class, ParseLimits)} but only maps the records that match the filter.
+   * The filter is evaluated on the raw values right after lexing, records that don't match are never deserialized.
+   * They still count towards the {@link Range} of the table.
+   *
+   * @param limits the limits to apply or null to parse without any limits
+   * @param filter the filter to apply or null to return all records
+   */
+  @SuppressWarnings("WeakerAccess")
+  public static <T> List<T> parseVariableLengthTable(InputStream tableStream, Table table, Class<T> clazz, ParseLimits limits, RecordFilter filter)
+    throws ParsingException {
+    return parseVariableLengthTable(tableStream, table, clazz, limits, filter, null);
+  }
+
+  /**
+   * An index is only built if the whole file has been read, i.e. not if the {@link Range} of the table ends before the end of the file.
+   *
+   * @param indexBuilder collects a {@link RecordIndex} while the table is parsed, null to not build one
+   */
+  static <T> List<T> parseVariableLengthTable(InputStream tableStream, Table table, Class<T> clazz, ParseLimits limits, RecordFilter filter,
+                                              RecordIndex.Builder indexBuilder) throws ParsingException {
     Objects.requireNonNull(tableStream, "'tableStream' can't be null");
     Objects.requireNonNull(table, "'table' can't be null");
     Objects.requireNonNull(clazz, "'clazz' can't be null");
 
-    VariableLength variableLength = table.getVariableLength();
-
     LongRange range = fillDefaults(table.getRange());
 
     // TODO: Only supports VariableLength for now
-    DeserializationContext context = new DeserializationContext();
-    context.setDecimalSymbol(table.getDecimalSymbol());
-    context.setDigitGroupingSymbol(table.getDigitGroupingSymbol());
-    context.setColumnDelimiter(table.getVariableLength().getColumnDelimiter());
-    context.setRecordDelimiter(table.getVariableLength().getRecordDelimiter());
-    context.setTextEncapsulator(table.getVariableLength().getTextEncapsulator());
-    context.setTrim(false);
-    context.setSkipNumBytes(table.getSkipNumBytes());
-    context.setCharset(table.getEncoding().getCharset());
+    DeserializationContext context = createContext(table, limits);
+    MappingHandler<T> handler = new MappingHandler<>(table, context, clazz);
+    RecordFilter.Predicate predicate = filter == null ? null : filter.bind(table);
 
-    // We first parse the file into a generic "record" that's based only on Strings
+    // We first parse the file into a generic "record" that's based only on Strings, one record at a time
     GdpduDataLexer lexer = new GdpduDataLexer(context);
-    List<Record> records = lexer.parseData(tableStream);
+    lexer.open(indexBuilder == null ? tableStream : indexBuilder.wrap(tableStream));
+    boolean complete = true;
 
     // Convert the "generic" record into the specific type
-    List<T> results = new ArrayList<>();
     try {
       // GDPdU seems to be "1" based. We increment the index at the beginning of the loop so we start at 0 here
       int index = 0;
       int count = 0;
-      for (Record record : records) {
+      Record record;
+      while ((record = lexer.nextRecord()) != null) {
         index++;
+        if (indexBuilder != null) {
+          indexBuilder.add(lexer, record);
+        }
         if (index < range.from) {
           continue;
         }
         if (index > range.to) {
+          complete = false;
           break;
         }
         if (count > range.length) {
+          complete = false;
           break;
         }
         count++;
-
-        // TODO: Do something with these errors and make it configurable whether to abort on error or not
-        List<ParsingException> exceptions = new ArrayList<>();
-        try {
-          results.add(parseRecord(record, table, context, clazz));
-        } catch (ParsingException e) {
-          LOG.warn("Encountered error while parsing record [{}] from table [{}] into class [{}]", record, table.getName(), clazz, e);
-          exceptions.add(e);
+        if (predicate != null && !predicate.test(record)) {
+          continue;
         }
+
+        handler.add(record);
       }
     } catch (IllegalStateException e) {
       // TODO Handle
       LOG.error("Exception parsing", e);
+      complete = false;
+    } finally {
+      lexer.close();
+    }
+    if (lexer.getSkippedRecords() > 0) {
+      LOG.warn("Skipped [{}] records of table [{}] because they exceeded the limits", lexer.getSkippedRecords(), table.getName());
+    }
+    if (indexBuilder != null && complete) {
+      try {
+        indexBuilder.finish(lexer, table);
+      } catch (ParsingException e) {
+        // The parse itself was fine, the table just can't be indexed
+        LOG.debug("Could not build a record index for table [{}]", table.getName(), e);
+      }
     }
-    return results;
+    return handler.getResults();
   }
 
-  private static <T> T newInstance(Class<T> clazz) throws ParsingException {
-    T t;
+  /**
+   * Parses up to {@code maxRecords} records starting at the record number {@code fromRecord} (1-based, counted from the start of the file)
+   * without lexing all records before it: The stream is skipped to the closest record in the index first.
+   * Records outside of the {@link Range} of the table are not returned.
+   * <p/>
+   * This is meant for paging through large tables, the index must have been built from the same file.
+   *
+   * @param tableStream a stream at the beginning of the data file, skipping should be cheap (e.g. a {@link java.io.FileInputStream})
+   */
+  @SuppressWarnings("WeakerAccess")
+  public static <T> List<T> parseVariableLengthTable(InputStream tableStream, Table table, Class<T> clazz, RecordIndex index, long fromRecord,
+                                                     int maxRecords) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(clazz, "'clazz' can't be null");
+    Objects.requireNonNull(index, "'index' can't be null");
+    if (fromRecord < 1) {
+      throw new IllegalArgumentException("'fromRecord' must be at least 1, was [" + fromRecord + "]");
+    }
+    if (maxRecords < 0) {
+      throw new IllegalArgumentException("'maxRecords' must be at least 0, was [" + maxRecords + "]");
+    }
+
+    LongRange range = fillDefaults(table.getRange());
+    long first = Math.max(fromRecord, range.from);
+    long last = Math.min(range.to, first + maxRecords - 1);
+    if (range.length != Long.MAX_VALUE) {
+      last = Math.min(last, range.from + range.length - 1);
+    }
+    if (first > last || first > index.getRecordCount()) {
+      return new ArrayList<>();
+    }
+
+    DeserializationContext context = createContext(table, null);
+    MappingHandler<T> handler = new MappingHandler<>(table, context, clazz);
+    GdpduDataLexer lexer = new GdpduDataLexer(context);
+    if (index.size() == 0) {
+      lexer.open(tableStream);
+    } else {
+      int entry = index.find(first);
+      skipFully(tableStream, index.getOffset(entry));
+      lexer.open(tableStream, index.getOffset(entry), index.getRecordNumber(entry) - 1);
+    }
     try {
-      t = clazz.getDeclaredConstructor().newInstance();
-    } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-      throw new ParsingException(e);
+      Record record = new Record();
+      while (lexer.nextRecord(record)) {
+        long recordNumber = lexer.getRecordNumber();
+        if (record.getColumns().isEmpty() || recordNumber < first) {
+          continue;
+        }
+        if (recordNumber > last) {
+          break;
+        }
+        handler.add(record);
+      }
+    } finally {
+      lexer.close();
     }
-    return t;
+    return handler.getResults();
   }
 
   /**
-   * This takes a value that we read from an input data file and tries to serialize it into a Java object.
+   * Parses only the records that match the filter and skips all blocks of records that can't match according to the {@link BlockStatistics},
+   * these are neither lexed nor decoded. The statistics must have been built from the same file.
+   *
+   * @param tableStream a stream at the beginning of the data file, skipping should be cheap (e.g. a {@link java.io.FileInputStream})
    */
-  private static <T> void deserializeValue(T t, VariableColumn currentColumn, String currentValue, DeserializationContext context, Method method) throws ParsingException {
-    if (method == null) {
-      return;
+  @SuppressWarnings("WeakerAccess")
+  public static <T> List<T> parseVariableLengthTable(InputStream tableStream, Table table, Class<T> clazz, RecordFilter filter,
+                                                     BlockStatistics statistics) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(clazz, "'clazz' can't be null");
+    Objects.requireNonNull(filter, "'filter' can't be null");
+    Objects.requireNonNull(statistics, "'statistics' can't be null");
+
+    LongRange range = fillDefaults(table.getRange());
+    long last = range.length == Long.MAX_VALUE ? range.to : Math.min(range.to, range.from + range.length - 1);
+    RecordFilter.Predicate predicate = filter.bind(table);
+    IntPredicate blocks = filter.bindBlocks(table, statistics);
+    DeserializationContext context = createContext(table, null);
+    MappingHandler<T> handler = new MappingHandler<>(table, context, clazz);
+    long position = 0;
+    int skipped = 0;
+    Record record = new Record();
+    for (int block = 0; block < statistics.getBlockCount(); block++) {
+      if (statistics.getRecordNumber(block) > last) {
+        break;
+      }
+      if (!blocks.test(block)) {
+        skipped++;
+        continue;
+      }
+      // Consecutive blocks are read in one go
+      int end = block;
+      while (end + 1 < statistics.getBlockCount() && statistics.getRecordNumber(end + 1) <= last && blocks.test(end + 1)) {
+        end++;
+      }
+      long offset = statistics.getOffset(block);
+      long endOffset = statistics.getEndOffset(end);
+      skipFully(tableStream, offset - position);
+      GdpduDataLexer lexer = new GdpduDataLexer(context);
+      lexer.open(new BoundedInputStream(tableStream, endOffset - offset), offset, statistics.getRecordNumber(block) - 1);
+      try {
+        while (lexer.nextRecord(record)) {
+          long recordNumber = lexer.getRecordNumber();
+          if (record.getColumns().isEmpty() || recordNumber < range.from || !predicate.test(record)) {
+            continue;
+          }
+          if (recordNumber > last) {
+            break;
+          }
+          handler.add(record);
+        }
+      } finally {
+        lexer.close();
+      }
+      position = endOffset;
+      block = end;
     }
+    LOG.debug("Skipped [{}] of [{}] blocks of table [{}]", skipped, statistics.getBlockCount(), table.getName());
+    return handler.getResults();
+  }
 
+  /**
+   * Returns the records of a table with the given primary key, only the matching records are lexed using the {@link KeyIndex}.
+   * The index must have been built from the same file.
+   *
+   * @param key the values of the primary key columns in their declared order, written as in the data file
+   */
+  @SuppressWarnings("WeakerAccess")
+  public static <T> List<T> lookup(File dataFile, Table table, Class<T> clazz, KeyIndex index, List<String> key) throws ParsingException {
+    Objects.requireNonNull(clazz, "'clazz' can't be null");
+    Objects.requireNonNull(index, "'index' can't be null");
+
+    MappingHandler<T> handler = new MappingHandler<>(table, createContext(table, null), clazz);
+    index.lookup(dataFile, table, key, handler);
+    return handler.getResults();
+  }
+
+  private static void skipFully(InputStream inputStream, long bytes) throws ParsingException {
     try {
-      Class<?> parameterType = method.getParameterTypes()[0]; // In the ClassRegistry we checked that every write method has exactly one parameter
-      Object object = Deserializers.deserialize(currentValue, parameterType, currentColumn.getDataType(), context);
-      method.invoke(t, object);
-    } catch (IllegalAccessException | InvocationTargetException e) {
+      long remaining = bytes;
+      while (remaining > 0) {
+        long skipped = inputStream.skip(remaining);
+        if (skipped <= 0) {
+          if (inputStream.read() == -1) {
+            throw new ParsingException("Data file ended before offset [" + bytes + "], the index or checkpoint doesn't match the file");
+          }
+          skipped = 1;
+        }
+        remaining -= skipped;
+      }
+    } catch (IOException e) {
       throw new ParsingException(e);
     }
   }
 
-  private static void validateDataSet(DataSet dataSet) throws ParsingException {
-    Set<ConstraintViolation<DataSet>> constraintViolations = GdpduIndexValidator.validateDataSet(dataSet);
-    if (!constraintViolations.isEmpty()) {
-      for (ConstraintViolation<DataSet> constraintViolation : constraintViolations) {
-        LOG.warn("Violation found [{}] [{}]", constraintViolation.getPropertyPath(), constraintViolation.getMessage());
+  /**
+   * This streams the raw records of a variable length table to a handler without mapping them to domain objects.
+   * Only records within the {@link Range} of the table are passed on, the trailing empty record at the end of a file is dropped.
+   * <p/>
+   * This is the basis for checks that look at whole tables (e.g. key constraints) in a single pass and constant memory.
+   *
+   * @param limits the limits to apply or null to scan without any limits
+   * @return the number of records that have been passed to the handler
+   */
+  @SuppressWarnings("WeakerAccess")
+  public static long scanVariableLengthTable(InputStream tableStream, Table table, ParseLimits limits, RecordHandler handler) throws ParsingException {
+    Objects.requireNonNull(handler, "'handler' can't be null");
+
+    long count = 0;
+    try (RecordCursor cursor = openVariableLengthTable(tableStream, table, limits)) {
+      while (cursor.next()) {
+        count++;
+        // Records dropped because of the limits still count towards the record number
+        handler.handle(cursor.getRecordNumber(), cursor.getRecord());
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Like {@link #scanVariableLengthTable(InputStream, Table, ParseLimits, RecordHandler)} but the scan can be resumed:
+   * After every {@code interval} handled records a {@link Checkpoint} is passed to the checkpoint handler.
+   * A later scan of the same file that is given this checkpoint continues with the next record instead of starting at the beginning.
+   *
+   * @param tableStream a stream at the beginning of the data file, skipping should be cheap (e.g. a {@link java.io.FileInputStream})
+   * @param from        the checkpoint to resume from or null to start at the beginning
+   * @return the number of records that have been passed to the handler by this call
+   */
+  @SuppressWarnings("WeakerAccess")
+  public static long scanVariableLengthTable(InputStream tableStream, Table table, ParseLimits limits, RecordHandler handler, Checkpoint from,
+                                             long interval, CheckpointHandler checkpointHandler) throws ParsingException {
+    Objects.requireNonNull(handler, "'handler' can't be null");
+    Objects.requireNonNull(checkpointHandler, "'checkpointHandler' can't be null");
+    if (interval < 1) {
+      throw new IllegalArgumentException("'interval' must be at least 1, was [" + interval + "]");
+    }
+
+    try (RecordCursor cursor = openVariableLengthTable(tableStream, table, limits, from)) {
+      return scan(cursor, handler, interval, checkpointHandler);
+    }
+  }
+
+  /**
+   * Like {@link #scanVariableLengthTable(InputStream, Table, ParseLimits, RecordHandler, Checkpoint, long, CheckpointHandler)} but the checkpoints
+   * remember the length of the file, resuming is rejected if the file has become shorter since.
+   */
+  @SuppressWarnings("WeakerAccess")
+  public static long scanVariableLengthTable(File dataFile, Table table, ParseLimits limits, RecordHandler handler, Checkpoint from,
+                                             long interval, CheckpointHandler checkpointHandler) throws ParsingException {
+    Objects.requireNonNull(handler, "'handler' can't be null");
+    Objects.requireNonNull(checkpointHandler, "'checkpointHandler' can't be null");
+    if (interval < 1) {
+      throw new IllegalArgumentException("'interval' must be at least 1, was [" + interval + "]");
+    }
+
+    try (RecordCursor cursor = openVariableLengthTable(dataFile, table, limits, from)) {
+      return scan(cursor, handler, interval, checkpointHandler);
+    }
+  }
+
+  private static long scan(RecordCursor cursor, RecordHandler handler, long interval, CheckpointHandler checkpointHandler) throws ParsingException {
+    long count = 0;
+    while (cursor.next()) {
+      count++;
+      handler.handle(cursor.getRecordNumber(), cursor.getRecord());
+      if (count % interval == 0) {
+        checkpointHandler.checkpoint(cursor.checkpoint());
       }
-      throw new ParsingException("invalid index.xml file");
     }
+    return count;
+  }
+
+  /**
+   * Opens a cursor over the raw records of a variable length table, see {@link #scanVariableLengthTable(InputStream, Table, ParseLimits, RecordHandler)}.
+   * The cursor must be closed by the caller.
+   *
+   * @param limits the limits to apply or null to read without any limits
+   */
+  public static RecordCursor openVariableLengthTable(InputStream tableStream, Table table, ParseLimits limits) throws ParsingException {
+    return openVariableLengthTable(tableStream, table, limits, null);
+  }
+
+  /**
+   * Opens a cursor that continues at a checkpoint taken by {@link RecordCursor#checkpoint()}, the stream is skipped to its offset.
+   *
+   * @param tableStream a stream at the beginning of the data file, skipping should be cheap (e.g. a {@link java.io.FileInputStream})
+   * @param from        the checkpoint to resume from or null to start at the beginning
+   */
+  public static RecordCursor openVariableLengthTable(InputStream tableStream, Table table, ParseLimits limits, Checkpoint from)
+    throws ParsingException {
+    return openVariableLengthTable(tableStream, -1, table, limits, from);
   }
 
-  private static DataSet parseIndexXml(InputStream indexXmlFile) throws ParsingException {
-    LOG.trace("Beginning to parse index.xml");
-    DataSet dataSet;
+  /**
+   * Opens a cursor over a data file, its checkpoints remember the length of the file and resuming is rejected if the file has become shorter since.
+   *
+   * @param from the checkpoint to resume from or null to start at the beginning
+   */
+  public static RecordCursor openVariableLengthTable(File dataFile, Table table, ParseLimits limits, Checkpoint from) throws ParsingException {
+    Objects.requireNonNull(dataFile, "'dataFile' can't be null");
+
+    InputStream is;
     try {
-      dataSet = GdpduIndexParser.parseXmlFile(indexXmlFile);
+      is = new FileInputStream(dataFile);
     } catch (IOException e) {
       throw new ParsingException(e);
     }
-    LOG.debug("Successfully parsed index.xml");
-    return dataSet;
+    boolean opened = false;
+    try {
+      RecordCursor cursor = openVariableLengthTable(is, dataFile.length(), table, limits, from);
+      opened = true;
+      return cursor;
+    } finally {
+      if (!opened) {
+        try {
+          is.close();
+        } catch (IOException e) {
+          LOG.debug("Could not close data file [{}]", dataFile, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param fileLength the length of the data file, -1 if unknown
+   */
+  static RecordCursor openVariableLengthTable(InputStream tableStream, long fileLength, Table table, ParseLimits limits, Checkpoint from)
+    throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    if (table.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be scanned");
+    }
+
+    GdpduDataLexer lexer = new GdpduDataLexer(createContext(table, limits));
+    if (from == null) {
+      lexer.open(tableStream);
+      return new RecordCursor(lexer, fillDefaults(table.getRange()), table.getName(), fileLength);
+    }
+    if (!table.getName().equals(from.getTableName())) {
+      throw new ParsingException("Checkpoint of table [" + from.getTableName() + "] can't be used for table [" + table.getName() + "]");
+    }
+    from.checkFileLength(fileLength);
+    skipFully(tableStream, from.getByteOffset());
+    lexer.open(tableStream, from.getByteOffset(), from.getRecordNumber());
+    return new RecordCursor(lexer, fillDefaults(table.getRange()), table.getName(), fileLength, from);
+  }
+
+  /**
+   * This works like {@link #parseVariableLengthTable(InputStream, Table, Class)} but lexing and mapping run concurrently.
+   * One thread lexes the file while {@code mapperThreads} threads deserialize the records, the order of the records is preserved.
+   * <p/>
+   * This pays off when mapping (e.g. dates or decimals) is about as expensive as lexing.
+   *
+   * @see PipelinedTableParser
+   */
+  @SuppressWarnings("WeakerAccess")
+  public static <T> List<T> parseVariableLengthTablePipelined(InputStream tableStream, Table table, Class<T> clazz, int mapperThreads) throws ParsingException {
+    return new PipelinedTableParser(mapperThreads, PipelinedTableParser.DEFAULT_RING_SIZE).parse(tableStream, table, clazz);
+  }
+
+  /**
+   * This creates the context for the lexer and the deserializers from a table definition.
+   */
+  static DeserializationContext createContext(Table table) {
+    return createContext(table, null);
+  }
+
+  /**
+   * This creates the context for the lexer and the deserializers from a table definition and optional limits.
+   * Unless disabled the {@code MaxLength} of each column becomes the limit for that column.
+   */
+  static DeserializationContext createContext(Table table, ParseLimits limits) {
+    DeserializationContext context = new DeserializationContext();
+    context.setDecimalSymbol(table.getDecimalSymbol());
+    context.setDigitGroupingSymbol(table.getDigitGroupingSymbol());
+    context.setColumnDelimiter(table.getVariableLength().getColumnDelimiter());
+    context.setRecordDelimiter(table.getVariableLength().getRecordDelimiter());
+    context.setTextEncapsulator(table.getVariableLength().getTextEncapsulator());
+    context.setTrim(false);
+    context.setSkipNumBytes(table.getSkipNumBytes());
+    context.setCharset(table.getEncoding().getCharset());
+
+    if (limits != null) {
+      context.setMaxColumnLength(limits.getMaxColumnLength());
+      context.setMaxRecordLength(limits.getMaxRecordLength());
+      context.setSkipOversizedRecords(limits.getOnLimitExceeded() == ParseLimits.Action.SKIP_RECORD);
+      if (limits.isUseIndexMaxLength()) {
+        List<VariableColumn> columns = TableColumns.getColumns(table);
+        long[] columnMaxLengths = new long[columns.size()];
+        for (int i = 0; i < columnMaxLengths.length; i++) {
+          Long maxLength = columns.get(i).getMaxLength();
+          columnMaxLengths[i] = maxLength == null ? -1 : maxLength;
+        }
+        context.setColumnMaxLengths(columnMaxLengths);
+      }
+    }
+    return context;
   }
 
   // TODO: Need to deal with values that are not valid numbers
-  private static LongRange fillDefaults(Range range) {
+  static LongRange fillDefaults(Range range) {
     LongRange longRange = new LongRange();
     if (range == null) {
       return longRange;
@@ -268,45 +600,7 @@ public final class GdpduDataParser {
     return longRange;
   }
 
-  // TODO: This is specific to variable length stuff now, need to see if this can be made generic enough to support fixed length as well
-  private static <T> T parseRecord(Record record, Table table, DeserializationContext context, Class<T> clazz) throws ParsingException {
-    Objects.requireNonNull(record, "'record' can't be null");
-    Objects.requireNonNull(table, "'table' can't be null");
-    Objects.requireNonNull(clazz, "'clazz' can't be null");
-
-    Map<String, ColumnInfo> writeMethods = ClassRegistry.getClassInformation(clazz);
-
-    // TODO: This repeats for every row, move this up
-    List<VariableColumn> columns = new ArrayList<>();
-    columns.addAll(table.getVariableLength().getVariablePrimaryKeys());
-    columns.addAll(table.getVariableLength().getVariableColumns());
-
-    if (columns.size() != record.getColumns().size()) {
-      throw new ParsingException("The table definition has [" + columns.size() + "] columns, but the parsed record has [" + record.getColumns().size() + "]");
-    }
-
-    T t = newInstance(clazz);
-    // The order of columns is not specified by a header in the file but by the order in the XML file
-    // So we iterate over the defined columns here
-    for (int i = 0; i < columns.size(); i++) {
-      VariableColumn currentColumn = columns.get(i);
-      String currentValue = record.getColumns().get(i);
-
-      // Validation happens later
-      if (currentValue == null || currentValue.isBlank()) {
-        LOG.trace("Skipping empty value for column [{}]", currentColumn.getName());
-        continue;
-      }
-
-      // Here we deserialize the Strings into strongly typed values depending on their type
-      Method method = writeMethods.get(currentColumn.getName()).setter;
-      deserializeValue(t, currentColumn, currentValue, context, method);
-    }
-
-    return t;
-  }
-
-  private static class LongRange {
+  static class LongRange {
 
     long from = 1;
     long to = Long.MAX_VALUE;
@@ -0,0 +1,142 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps encoded group keys (see {@link KeyEncoder}) to dense group numbers {@code 0..size-1}.
+ * <p/>
+ * This is an open-addressing hash table on primitive arrays: the slots hold the hash and the group number,
+ * the key bytes of all groups are appended to a single byte array. No object is created per record or per group.
+ * It is shared by operators that need to find all records with the same key, e.g. aggregations and joins.
+ * This class is not thread-safe.
+ */
+public final class GroupMap {
+
+  private long[] slotHashes = new long[16];
+  private int[] slotGroups = new int[16];
+
+  private byte[] arena = new byte[1024];
+  private int arenaLength;
+  private int[] offsets = new int[16];
+  private int[] lengths = new int[16];
+  private long[] hashes = new long[16];
+  private int size;
+
+  /**
+   * @return the number of the group, a new group is created if the key hasn't been seen yet
+   */
+  public int findOrInsert(long hash, byte[] key, int length) {
+    int index = findSlot(hash, key, length);
+    if (slotGroups[index] != 0) {
+      return slotGroups[index] - 1;
+    }
+
+    int group = size++;
+    if (group == offsets.length) {
+      offsets = Arrays.copyOf(offsets, group * 2);
+      lengths = Arrays.copyOf(lengths, group * 2);
+      hashes = Arrays.copyOf(hashes, group * 2);
+    }
+    if (arenaLength + length > arena.length) {
+      arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + length));
+    }
+    System.arraycopy(key, 0, arena, arenaLength, length);
+    offsets[group] = arenaLength;
+    lengths[group] = length;
+    hashes[group] = hash;
+    arenaLength += length;
+
+    slotHashes[index] = hash;
+    slotGroups[index] = group + 1;
+    if (size * 10 > slotHashes.length * 7) {
+      resize();
+    }
+    return group;
+  }
+
+  /**
+   * @return the number of the group or -1 if the key hasn't been seen yet
+   */
+  public int find(long hash, byte[] key, int length) {
+    return slotGroups[findSlot(hash, key, length)] - 1;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getHash(int group) {
+    return hashes[group];
+  }
+
+  /**
+   * Finds or creates the group with the key of a group of another map, e.g. to merge partial results.
+   */
+  public int findOrInsert(GroupMap other, int group) {
+    byte[] key = Arrays.copyOfRange(other.arena, other.offsets[group], other.offsets[group] + other.lengths[group]);
+    return findOrInsert(other.hashes[group], key, key.length);
+  }
+
+  public List<String> getKey(int group) {
+    return KeyEncoder.decode(arena, offsets[group], lengths[group]);
+  }
+
+  /**
+   * @return the slot that holds the key or the empty slot where it would be inserted
+   */
+  private int findSlot(long hash, byte[] key, int length) {
+    int mask = slotHashes.length - 1;
+    int index = (int) hash & mask;
+    while (slotGroups[index] != 0) {
+      if (slotHashes[index] == hash && keyEquals(slotGroups[index] - 1, key, length)) {
+        break;
+      }
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private boolean keyEquals(int group, byte[] key, int length) {
+    if (lengths[group] != length) {
+      return false;
+    }
+    int offset = offsets[group];
+    for (int i = 0; i < length; i++) {
+      if (arena[offset + i] != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void resize() {
+    int capacity = slotHashes.length * 2;
+    long[] newHashes = new long[capacity];
+    int[] newGroups = new int[capacity];
+    int mask = capacity - 1;
+    for (int group = 0; group < size; group++) {
+      int index = (int) hashes[group] & mask;
+      while (newGroups[index] != 0) {
+        index = (index + 1) & mask;
+      }
+      newHashes[index] = hashes[group];
+      newGroups[index] = group + 1;
+    }
+    slotHashes = newHashes;
+    slotGroups = newGroups;
+  }
+
+}
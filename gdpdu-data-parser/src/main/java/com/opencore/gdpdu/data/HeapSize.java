@@ -0,0 +1,53 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+/**
+ * Rough heap sizes of the objects records are held in, used to decide when an in-memory buffer is full.
+ * The sizes assume a 64 bit JVM with compressed oops.
+ */
+public final class HeapSize {
+
+  public static final int REFERENCE_SIZE = 4;
+
+  // Object header and length of an array
+  private static final int ARRAY_OVERHEAD = 16;
+  // Object header, hash and the backing byte array of a String, compact strings use a byte per character for Latin-1
+  private static final int STRING_OVERHEAD = 40;
+
+  private HeapSize() {
+  }
+
+  /**
+   * An array of references, without the objects it refers to.
+   */
+  public static long ofArray(int length) {
+    return ARRAY_OVERHEAD + (long) length * REFERENCE_SIZE;
+  }
+
+  public static long of(String value) {
+    return STRING_OVERHEAD + value.length();
+  }
+
+  /**
+   * An array of strings including the strings.
+   */
+  public static long of(String[] values) {
+    long size = ofArray(values.length);
+    for (String value : values) {
+      size += of(value);
+    }
+    return size;
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the estimated heap used by records that are in flight between the lexer and the consumer of a {@link RecordRingBuffer}.
+ * <p/>
+ * The lexer acquires the size of a record before publishing it and waits while the budget is used up, the consumer releases it again.
+ */
+final class InFlightBudget {
+
+  // Rough per-object overheads of a 64 bit JVM with compressed oops
+  private static final long RECORD_OVERHEAD = 64;
+  private static final long COLUMN_OVERHEAD = 48;
+
+  private final long capacity;
+  private final AtomicLong used = new AtomicLong();
+
+  InFlightBudget(long capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("'capacity' must be at least 1, was [" + capacity + "]");
+    }
+    this.capacity = capacity;
+  }
+
+  long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Waits until {@code bytes} fit into the budget.
+   * The caller needs to check beforehand that {@code bytes} doesn't exceed the capacity, otherwise this would wait forever.
+   *
+   * @return false if the pipeline has been aborted while waiting
+   */
+  boolean acquire(long bytes, RecordRingBuffer ring) {
+    for (int i = 0; ; i++) {
+      long current = used.get();
+      if (current + bytes <= capacity) {
+        if (used.compareAndSet(current, current + bytes)) {
+          return true;
+        }
+        continue;
+      }
+      if (ring.isAborted()) {
+        return false;
+      }
+      RecordRingBuffer.idle(i);
+    }
+  }
+
+  void release(long bytes) {
+    used.addAndGet(-bytes);
+  }
+
+  /**
+   * Estimates the heap used by a record assuming two bytes per character.
+   */
+  static long sizeOf(Record record) {
+    long size = RECORD_OVERHEAD;
+    for (String column : record.getColumns()) {
+      size += COLUMN_OVERHEAD + 2L * column.length();
+    }
+    return size;
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the values of one or more key columns into a single byte sequence that can be compared and hashed.
+ * <p/>
+ * Each value is written as its UTF-8 length (as a varint) followed by its UTF-8 bytes, so distinct keys always have distinct encodings
+ * (e.g. {@code ["ab", "c"]} and {@code ["a", "bc"]}).
+ * The buffer is reused for every key, encoding doesn't allocate once it has grown large enough.
+ * This class is not thread-safe.
+ */
+public final class KeyEncoder {
+
+  private byte[] buffer = new byte[128];
+  private int length;
+
+  public void reset() {
+    length = 0;
+  }
+
+  public void add(String value) {
+    int utf8Length = utf8Length(value);
+    ensureCapacity(5 + utf8Length);
+    writeVarInt(utf8Length);
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer[length++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[length++] = (byte) (0xC0 | (c >> 6));
+        buffer[length++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        // Unpaired surrogates can't be encoded, the JDK encoder replaces them with '?' as well
+        buffer[length++] = (byte) '?';
+      } else {
+        buffer[length++] = (byte) (0xE0 | (c >> 12));
+        buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[length++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public long hash() {
+    return hash(buffer, 0, length);
+  }
+
+  /**
+   * 64 bit FNV-1a followed by the MurmurHash3 finalizer so that all bits (including the high ones used for partitioning) are well mixed.
+   */
+  public static long hash(byte[] bytes, int offset, int length) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = offset; i < offset + length; i++) {
+      hash ^= bytes[i] & 0xFF;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * Turns an encoded key back into its column values.
+   */
+  public static List<String> decode(byte[] bytes, int offset, int length) {
+    List<String> values = new ArrayList<>();
+    int position = offset;
+    int end = offset + length;
+    while (position < end) {
+      int valueLength = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes[position++];
+        valueLength |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      values.add(new String(bytes, position, valueLength, StandardCharsets.UTF_8));
+      position += valueLength;
+    }
+    return values;
+  }
+
+  private void writeVarInt(int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[length++] = (byte) value;
+  }
+
+  private void ensureCapacity(int additional) {
+    if (length + additional > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+    }
+  }
+
+  private static int utf8Length(String value) {
+    // Upper bound for most strings is 3 bytes per char, but computing it exactly keeps the varint correct
+    int utf8Length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        utf8Length++;
+      } else if (c < 0x800) {
+        utf8Length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        utf8Length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        utf8Length++;
+      } else {
+        utf8Length += 3;
+      }
+    }
+    return utf8Length;
+  }
+
+}
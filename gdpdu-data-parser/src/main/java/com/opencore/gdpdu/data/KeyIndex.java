@@ -0,0 +1,606 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.StringJoiner;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A disk-backed index from the primary key of a table to the byte offsets of its records, for point lookups in huge tables.
+ * <p/>
+ * The index file holds one entry {@code [long hash][long offset][long recordNumber]} per record, sorted by the hash of the encoded key
+ * (see {@link KeyEncoder}), followed by the hash of the first entry of every block of {@value #BLOCK_SIZE} entries and a footer.
+ * Only those block hashes are kept in memory, so a lookup reads one block of the index and then lexes just the matching records
+ * of the data file. Different keys with the same hash are told apart by comparing the actual values.
+ * <p/>
+ * The index is built in bounded memory: Entries are sorted in runs which are merged into the final file if they don't fit.
+ * Offsets come from the lexer, so the same encodings as for a {@link RecordIndex} are supported.
+ * This class is thread-safe.
+ */
+public final class KeyIndex implements Closeable {
+
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(KeyIndex.class);
+
+  // "GDKI" followed by the format version
+  private static final int MAGIC = 0x47444B49;
+  private static final int VERSION = 2;
+  private static final int BLOCK_SIZE = 1024;
+  private static final int ENTRY_SIZE = 3 * Long.BYTES;
+  private static final int FOOTER_SIZE = 2 * Integer.BYTES + 4 * Long.BYTES;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final long size;
+  private final SidecarHeader header;
+  private final long[] blockHashes;
+
+  private KeyIndex(Path path, FileChannel channel, long size, SidecarHeader header, long[] blockHashes) {
+    this.path = path;
+    this.channel = channel;
+    this.size = size;
+    this.header = header;
+    this.blockHashes = blockHashes;
+  }
+
+  /**
+   * Lexes the whole table and writes the index of its primary key to {@code indexFile}, the stream must start at the beginning of the file.
+   * Records with fewer columns than the primary key has are not indexed.
+   *
+   * @param memoryBudget   heap used for sorting entries, 24 bytes per entry
+   * @param spillDirectory directory for sorted runs, null uses the default temporary directory
+   */
+  public static KeyIndex build(InputStream tableStream, Table table, Path indexFile, long memoryBudget, Path spillDirectory) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(indexFile, "'indexFile' can't be null");
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException("'memoryBudget' must be at least 1, was [" + memoryBudget + "]");
+    }
+    int[] keyColumns = findKeyColumns(table);
+
+    SidecarHeader.Builder headerBuilder = new SidecarHeader.Builder();
+    GdpduDataLexer lexer = new GdpduDataLexer(GdpduDataParser.createContext(table, null));
+    lexer.open(headerBuilder.wrap(tableStream));
+    KeyEncoder encoder = new KeyEncoder();
+    Record record = new Record();
+    try (SpillDirectory directory = new SpillDirectory(spillDirectory)) {
+      EntryBuffer buffer = new EntryBuffer((int) Math.min(Integer.MAX_VALUE / 3, Math.max(BLOCK_SIZE, memoryBudget / ENTRY_SIZE)));
+      List<Path> runs = new ArrayList<>();
+      try {
+        while (lexer.nextRecord(record)) {
+          if (!encode(record, keyColumns, encoder)) {
+            continue;
+          }
+          if (buffer.isFull()) {
+            Path run = directory.newFile("keys-" + runs.size());
+            buffer.sortAndWrite(run);
+            runs.add(run);
+          }
+          buffer.add(encoder.hash(), lexer.getRecordOffset(), lexer.getRecordNumber());
+        }
+      } finally {
+        lexer.close();
+      }
+      SidecarHeader header = headerBuilder.finish(lexer, table);
+
+      if (runs.isEmpty()) {
+        buffer.sort();
+        writeIndex(indexFile, buffer.iterator(), header);
+      } else {
+        Path run = directory.newFile("keys-" + runs.size());
+        buffer.sortAndWrite(run);
+        runs.add(run);
+        LOG.debug("Merging [{}] sorted runs into key index [{}]", runs.size(), indexFile);
+        writeIndex(indexFile, new RunMerger(runs), header);
+      }
+      return open(indexFile);
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  /**
+   * Opens an index that has been written by {@link #build(InputStream, Table, Path, long, Path)}.
+   */
+  public static KeyIndex open(Path indexFile) throws IOException {
+    FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ);
+    try {
+      long length = channel.size();
+      if (length < FOOTER_SIZE) {
+        throw new IOException("[" + indexFile + "] is not a key index");
+      }
+      ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+      readFully(channel, footer, length - FOOTER_SIZE);
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+      long size = in.readLong();
+      SidecarHeader header = SidecarHeader.read(in);
+      int version = in.readInt();
+      if (in.readInt() != MAGIC || version != VERSION) {
+        throw new IOException("[" + indexFile + "] is not a key index");
+      }
+
+      int blocks = (int) ((size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+      ByteBuffer hashes = ByteBuffer.allocate(blocks * Long.BYTES);
+      readFully(channel, hashes, size * ENTRY_SIZE);
+      long[] blockHashes = new long[blocks];
+      hashes.asLongBuffer().get(blockHashes);
+      return new KeyIndex(indexFile, channel, size, header, blockHashes);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Whether this index has been built from the given file, this is checked like {@link RecordIndex#matches(File)}.
+   */
+  public boolean matches(File dataFile) throws IOException {
+    return header.matches(dataFile);
+  }
+
+  /**
+   * Like {@link #matches(File)} but compares the checksum of the whole file, this reads the whole file.
+   */
+  public boolean verify(File dataFile) throws IOException {
+    return header.verify(dataFile);
+  }
+
+  /**
+   * Passes all records of the data file with the given primary key to the handler, usually there is at most one.
+   *
+   * @param key the values of the primary key columns in their declared order, written as in the data file
+   * @return the number of matching records
+   */
+  public long lookup(File dataFile, Table table, List<String> key, RecordHandler handler) throws ParsingException {
+    Objects.requireNonNull(dataFile, "'dataFile' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(key, "'key' can't be null");
+    Objects.requireNonNull(handler, "'handler' can't be null");
+    int[] keyColumns = findKeyColumns(table);
+    if (key.size() != keyColumns.length) {
+      throw new ParsingException("Table [" + table.getName() + "] has [" + keyColumns.length + "] primary key columns but the key has [" + key.size() + "]");
+    }
+
+    KeyEncoder encoder = new KeyEncoder();
+    for (String value : key) {
+      encoder.add(value);
+    }
+    long hash = encoder.hash();
+    long matches = 0;
+    try {
+      long[] candidates = findCandidates(hash);
+      Record record = new Record();
+      for (int i = 0; i < candidates.length; i += 2) {
+        // The lexer closes the stream, this covers a failure before it has been opened
+        try (FileInputStream is = new FileInputStream(dataFile)) {
+          is.getChannel().position(candidates[i]);
+          GdpduDataLexer lexer = new GdpduDataLexer(GdpduDataParser.createContext(table, null));
+          lexer.open(is, candidates[i], candidates[i + 1] - 1);
+          try {
+            if (lexer.nextRecord(record) && hasKey(record, keyColumns, key)) {
+              matches++;
+              handler.handle(lexer.getRecordNumber(), record);
+            }
+          } finally {
+            lexer.close();
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    return matches;
+  }
+
+  /**
+   * Number of indexed records.
+   */
+  public long size() {
+    return size;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * @return pairs of offset and record number of all entries with the hash
+   */
+  private long[] findCandidates(long hash) throws IOException {
+    // Entries with the same hash may start in the block before the first block hash that's not smaller
+    int block = Arrays.binarySearch(blockHashes, hash);
+    block = block >= 0 ? block : -block - 1;
+    while (block > 0 && blockHashes[block - 1] >= hash) {
+      block--;
+    }
+    block = Math.max(0, block - 1);
+
+    long[] candidates = new long[0];
+    ByteBuffer entries = ByteBuffer.allocate(BLOCK_SIZE * ENTRY_SIZE);
+    for (; block < blockHashes.length; block++) {
+      long first = (long) block * BLOCK_SIZE;
+      int count = (int) Math.min(BLOCK_SIZE, size - first);
+      entries.clear().limit(count * ENTRY_SIZE);
+      readFully(channel, entries, first * ENTRY_SIZE);
+      for (int i = 0; i < count; i++) {
+        long entryHash = entries.getLong();
+        long offset = entries.getLong();
+        long recordNumber = entries.getLong();
+        if (entryHash > hash) {
+          return candidates;
+        }
+        if (entryHash == hash) {
+          candidates = Arrays.copyOf(candidates, candidates.length + 2);
+          candidates[candidates.length - 2] = offset;
+          candidates[candidates.length - 1] = recordNumber;
+        }
+      }
+    }
+    return candidates;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    long current = position;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, current);
+      if (read == -1) {
+        throw new IOException("Unexpected end of key index");
+      }
+      current += read;
+    }
+    buffer.flip();
+  }
+
+  private static void writeIndex(Path indexFile, EntryIterator entries, SidecarHeader header) throws IOException {
+    long size = 0;
+    long[] blockHashes = new long[16];
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+      while (entries.next()) {
+        if (size % BLOCK_SIZE == 0) {
+          int block = (int) (size / BLOCK_SIZE);
+          if (block == blockHashes.length) {
+            blockHashes = Arrays.copyOf(blockHashes, block * 2);
+          }
+          blockHashes[block] = entries.getHash();
+        }
+        out.writeLong(entries.getHash());
+        out.writeLong(entries.getOffset());
+        out.writeLong(entries.getRecordNumber());
+        size++;
+      }
+      int blocks = (int) ((size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+      for (int i = 0; i < blocks; i++) {
+        out.writeLong(blockHashes[i]);
+      }
+      out.writeLong(size);
+      header.write(out);
+      out.writeInt(VERSION);
+      out.writeInt(MAGIC);
+    } finally {
+      entries.close();
+    }
+  }
+
+  /**
+   * Records start with the primary key columns.
+   */
+  private static int[] findKeyColumns(Table table) throws ParsingException {
+    if (table.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be indexed");
+    }
+    List<VariableColumn> primaryKeys = table.getVariableLength().getVariablePrimaryKeys();
+    if (primaryKeys.isEmpty()) {
+      throw new ParsingException("Table [" + table.getName() + "] has no primary key");
+    }
+    int[] columns = new int[primaryKeys.size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = i;
+    }
+    return columns;
+  }
+
+  private static boolean encode(Record record, int[] keyColumns, KeyEncoder encoder) {
+    List<String> values = record.getColumns();
+    encoder.reset();
+    for (int column : keyColumns) {
+      if (column >= values.size()) {
+        return false;
+      }
+      encoder.add(values.get(column));
+    }
+    return true;
+  }
+
+  private static boolean hasKey(Record record, int[] keyColumns, List<String> key) {
+    for (int i = 0; i < keyColumns.length; i++) {
+      if (keyColumns[i] >= record.getColumns().size() || !record.getColumns().get(keyColumns[i]).equals(key.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", KeyIndex.class.getSimpleName() + "[", "]")
+      .add("path=" + path)
+      .add("size=" + size)
+      .add("fileLength=" + header.getFileLength())
+      .add("sampleChecksum=" + header.getSampleChecksum())
+      .add("checksum=" + header.getChecksum())
+      .toString();
+  }
+
+  private interface EntryIterator extends Closeable {
+
+    boolean next() throws IOException;
+
+    long getHash();
+
+    long getOffset();
+
+    long getRecordNumber();
+
+  }
+
+  /**
+   * Entries in memory, stored as consecutive triples in a single {@code long[]} so that no object is created per entry.
+   */
+  private static final class EntryBuffer {
+
+    private final long[] entries;
+    private int size;
+
+    private EntryBuffer(int capacity) {
+      this.entries = new long[capacity * 3];
+    }
+
+    boolean isFull() {
+      return size * 3 == entries.length;
+    }
+
+    void add(long hash, long offset, long recordNumber) {
+      int index = size++ * 3;
+      entries[index] = hash;
+      entries[index + 1] = offset;
+      entries[index + 2] = recordNumber;
+    }
+
+    void sort() {
+      quickSort(0, size - 1);
+    }
+
+    void sortAndWrite(Path path) throws IOException {
+      sort();
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+        for (int i = 0; i < size * 3; i++) {
+          out.writeLong(entries[i]);
+        }
+      }
+      size = 0;
+    }
+
+    EntryIterator iterator() {
+      return new EntryIterator() {
+        private int index = -1;
+
+        @Override
+        public boolean next() {
+          return ++index < size;
+        }
+
+        @Override
+        public long getHash() {
+          return entries[index * 3];
+        }
+
+        @Override
+        public long getOffset() {
+          return entries[index * 3 + 1];
+        }
+
+        @Override
+        public long getRecordNumber() {
+          return entries[index * 3 + 2];
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+    }
+
+    /**
+     * Sorts by hash and record number, record numbers are unique so the order is total.
+     */
+    private void quickSort(int low, int high) {
+      while (low < high) {
+        if (high - low < 16) {
+          insertionSort(low, high);
+          return;
+        }
+        int middle = (low + high) >>> 1;
+        long pivotHash = entries[middle * 3];
+        long pivotRecord = entries[middle * 3 + 2];
+        int i = low;
+        int j = high;
+        while (i <= j) {
+          while (compare(i, pivotHash, pivotRecord) < 0) {
+            i++;
+          }
+          while (compare(j, pivotHash, pivotRecord) > 0) {
+            j--;
+          }
+          if (i <= j) {
+            swap(i++, j--);
+          }
+        }
+        // Recurse into the smaller part to bound the stack depth
+        if (j - low < high - i) {
+          quickSort(low, j);
+          low = i;
+        } else {
+          quickSort(i, high);
+          high = j;
+        }
+      }
+    }
+
+    private void insertionSort(int low, int high) {
+      for (int i = low + 1; i <= high; i++) {
+        for (int j = i; j > low && compare(j, entries[(j - 1) * 3], entries[(j - 1) * 3 + 2]) < 0; j--) {
+          swap(j, j - 1);
+        }
+      }
+    }
+
+    private int compare(int entry, long hash, long recordNumber) {
+      int result = Long.compare(entries[entry * 3], hash);
+      return result != 0 ? result : Long.compare(entries[entry * 3 + 2], recordNumber);
+    }
+
+    private void swap(int first, int second) {
+      for (int k = 0; k < 3; k++) {
+        long tmp = entries[first * 3 + k];
+        entries[first * 3 + k] = entries[second * 3 + k];
+        entries[second * 3 + k] = tmp;
+      }
+    }
+  }
+
+  /**
+   * Merges sorted runs of entries, the runs are deleted with their directory.
+   */
+  private static final class RunMerger implements EntryIterator {
+
+    private final List<DataInputStream> inputs = new ArrayList<>();
+    private final PriorityQueue<RunReader> queue = new PriorityQueue<>((first, second) -> first.hash != second.hash
+      ? Long.compare(first.hash, second.hash)
+      : Long.compare(first.recordNumber, second.recordNumber));
+    private RunReader current;
+    private long hash;
+    private long offset;
+    private long recordNumber;
+
+    private RunMerger(List<Path> runs) throws IOException {
+      try {
+        for (Path run : runs) {
+          DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+          inputs.add(in);
+          RunReader reader = new RunReader(in, Files.size(run) / ENTRY_SIZE);
+          if (reader.next()) {
+            queue.add(reader);
+          }
+        }
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      if (current != null && current.next()) {
+        queue.add(current);
+      }
+      current = queue.poll();
+      if (current == null) {
+        return false;
+      }
+      hash = current.hash;
+      offset = current.offset;
+      recordNumber = current.recordNumber;
+      return true;
+    }
+
+    @Override
+    public long getHash() {
+      return hash;
+    }
+
+    @Override
+    public long getOffset() {
+      return offset;
+    }
+
+    @Override
+    public long getRecordNumber() {
+      return recordNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (DataInputStream in : inputs) {
+        in.close();
+      }
+    }
+  }
+
+  private static final class RunReader {
+
+    private final DataInputStream in;
+    private long remaining;
+    private long hash;
+    private long offset;
+    private long recordNumber;
+
+    private RunReader(DataInputStream in, long entries) {
+      this.in = in;
+      this.remaining = entries;
+    }
+
+    boolean next() throws IOException {
+      if (remaining == 0) {
+        return false;
+      }
+      remaining--;
+      hash = in.readLong();
+      offset = in.readLong();
+      recordNumber = in.readLong();
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.deserializers.DeserializationContext;
+import com.opencore.gdpdu.index.models.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps records into domain objects and collects them, this is the one place that decides what happens to records that can't be mapped.
+ * For now they are logged and dropped.
+ */
+final class MappingHandler<T> implements RecordHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MappingHandler.class);
+
+  private final Table table;
+  private final Class<T> clazz;
+  private final RecordMapper<T> mapper;
+  private final List<T> results = new ArrayList<>();
+
+  MappingHandler(Table table, DeserializationContext context, Class<T> clazz) throws ParsingException {
+    this.table = table;
+    this.clazz = clazz;
+    this.mapper = new RecordMapper<>(table, context, clazz);
+  }
+
+  @Override
+  public void handle(long recordNumber, Record record) {
+    add(record);
+  }
+
+  /**
+   * Maps the record and collects the result.
+   */
+  void add(Record record) {
+    try {
+      results.add(mapper.map(record));
+    } catch (ParsingException e) {
+      failed(record, e);
+    }
+  }
+
+  /**
+   * Collects a record that has been mapped elsewhere, e.g. on another thread using {@link #getMapper()}.
+   */
+  void add(T result) {
+    results.add(result);
+  }
+
+  void failed(Record record, ParsingException e) {
+    // TODO: Do something with these errors and make it configurable whether to abort on error or not
+    LOG.warn("Encountered error while parsing record [{}] from table [{}] into class [{}]", record, table.getName(), clazz, e);
+  }
+
+  RecordMapper<T> getMapper() {
+    return mapper;
+  }
+
+  List<T> getResults() {
+    return results;
+  }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.math.BigDecimal;
+
+/**
+ * A decoded {@code Numeric} value that can be compared without creating a {@link BigDecimal} for every value.
+ * <p/>
+ * Values with up to 18 digits are kept as an unscaled {@code long} and a scale, only longer ones fall back to {@link BigDecimal}.
+ * Instances are mutable so a single one can be reused for every record. This class is not thread-safe.
+ */
+public final class NumericValue implements Comparable<NumericValue> {
+
+  private static final int MAX_LONG_DIGITS = 18;
+
+  private long unscaled;
+  private int scale;
+  private BigDecimal big;
+
+  /**
+   * Decodes a value in the notation of the data file, a sign may lead or trail.
+   *
+   * @return false if the value is not a number, the previous value is lost in that case
+   */
+  public boolean decode(String value, String decimalSymbol, String digitGroupingSymbol) {
+    int start = 0;
+    int end = value.length();
+    if (end == 0) {
+      return false;
+    }
+    boolean negative = false;
+    char first = value.charAt(0);
+    if (first == '-' || first == '+') {
+      negative = first == '-';
+      start++;
+    } else if (value.charAt(end - 1) == '-') {
+      negative = true;
+      end--;
+    }
+
+    long result = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean fraction = false;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (digits < MAX_LONG_DIGITS) {
+          result = result * 10 + (c - '0');
+        }
+        digits++;
+        if (fraction) {
+          fractionDigits++;
+        }
+      } else if (!fraction && value.startsWith(decimalSymbol, i)) {
+        fraction = true;
+        i += decimalSymbol.length() - 1;
+      } else if (!fraction && !digitGroupingSymbol.isEmpty() && value.startsWith(digitGroupingSymbol, i)) {
+        i += digitGroupingSymbol.length() - 1;
+      } else {
+        return false;
+      }
+    }
+    if (digits == 0) {
+      return false;
+    }
+
+    scale = fractionDigits;
+    if (digits > MAX_LONG_DIGITS) {
+      big = decodeBig(value, start, end, negative, decimalSymbol);
+      return true;
+    }
+    big = null;
+    unscaled = negative ? -result : result;
+    return true;
+  }
+
+  /**
+   * Whether the value is held as an unscaled {@code long}, otherwise only {@link #toBigDecimal()} is exact.
+   */
+  public boolean isCompact() {
+    return big == null;
+  }
+
+  public long getUnscaled() {
+    return unscaled;
+  }
+
+  /**
+   * The number of digits after the decimal symbol as written, this is also set for values that are not {@link #isCompact() compact}.
+   */
+  public int getScale() {
+    return scale;
+  }
+
+  @Override
+  public int compareTo(NumericValue other) {
+    if (big == null && other.big == null) {
+      if (scale == other.scale) {
+        return Long.compare(unscaled, other.unscaled);
+      }
+      try {
+        return scale < other.scale
+          ? Long.compare(Math.multiplyExact(unscaled, pow10(other.scale - scale)), other.unscaled)
+          : Long.compare(unscaled, Math.multiplyExact(other.unscaled, pow10(scale - other.scale)));
+      } catch (ArithmeticException e) {
+        // Rescaling overflowed, fall through to the exact comparison
+      }
+    }
+    return toBigDecimal().compareTo(other.toBigDecimal());
+  }
+
+  public NumericValue copy() {
+    NumericValue copy = new NumericValue();
+    copy.unscaled = unscaled;
+    copy.scale = scale;
+    copy.big = big;
+    return copy;
+  }
+
+  public BigDecimal toBigDecimal() {
+    return big != null ? big : BigDecimal.valueOf(unscaled, scale);
+  }
+
+  /**
+   * @throws ArithmeticException if the result doesn't fit into a {@code long}
+   */
+  public static long pow10(int exponent) {
+    long result = 1;
+    for (int i = 0; i < exponent; i++) {
+      result = Math.multiplyExact(result, 10);
+    }
+    return result;
+  }
+
+  private static BigDecimal decodeBig(String value, int start, int end, boolean negative, String decimalSymbol) {
+    StringBuilder digits = new StringBuilder(end - start + 1);
+    if (negative) {
+      digits.append('-');
+    }
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') {
+        digits.append(c);
+      } else if (value.startsWith(decimalSymbol, i)) {
+        digits.append('.');
+        i += decimalSymbol.length() - 1;
+      }
+    }
+    return new BigDecimal(digits.toString());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof NumericValue && compareTo((NumericValue) o) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return toBigDecimal().stripTrailingZeros().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return toBigDecimal().toPlainString();
+  }
+
+}
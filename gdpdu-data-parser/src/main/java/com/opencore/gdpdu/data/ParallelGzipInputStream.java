@@ -0,0 +1,369 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decompresses gzip data, files written by a {@link BlockGzipOutputStream} are inflated in parallel.
+ * <p/>
+ * The members of a block gzip file are read sequentially on the calling thread, which is cheap because their length is known from
+ * their header, and inflated by a pool of threads. Up to two blocks per thread are decompressed ahead of the reader,
+ * so lexing a table overlaps with decompressing the rest of it.
+ * <p/>
+ * Any other gzip file (including multi-member files written by other tools) is decompressed by a {@link GZIPInputStream}
+ * on the calling thread, a gzip member can't be split without knowing where the next one starts.
+ */
+public final class ParallelGzipInputStream extends InputStream {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelGzipInputStream.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int TRAILER_LENGTH = 8;
+  // Blocks are written with one MB by default, anything much larger is most likely a corrupt header
+  private static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+  private static final int FHCRC = 2;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+  private static final byte[] EMPTY = new byte[0];
+
+  private final InputStream in;
+  private final int threads;
+  private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+  private final InputStream fallback;
+  private ExecutorService executor;
+  private byte[] block = EMPTY;
+  private int position;
+  private int headerLength;
+  // Keeps the bytes of the first header in case they have to be passed on to a GZIPInputStream
+  private ByteArrayOutputStream firstHeader = new ByteArrayOutputStream();
+  private boolean endOfInput;
+  private boolean closed;
+
+  /**
+   * Reads the first gzip header to find out whether the data can be decompressed in parallel.
+   *
+   * @param threads number of threads that inflate blocks, they are only started for block gzip files
+   * @throws IOException if the data is not in gzip format
+   */
+  public ParallelGzipInputStream(InputStream in, int threads) throws IOException {
+    Objects.requireNonNull(in, "'in' can't be null");
+    if (threads < 1) {
+      throw new IllegalArgumentException("'threads' must be at least 1, was [" + threads + "]");
+    }
+    this.in = new BufferedInputStream(in, BUFFER_SIZE);
+    this.threads = threads;
+
+    long memberLength = readHeader();
+    byte[] header = firstHeader.toByteArray();
+    firstHeader = null;
+    if (memberLength < 0) {
+      // The GZIPInputStream reports empty data
+      this.fallback = new GZIPInputStream(new SequenceInputStream(new ByteArrayInputStream(header), this.in), BUFFER_SIZE);
+      LOG.debug("Data is not block compressed, decompressing it on the calling thread");
+    } else {
+      this.fallback = null;
+      this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("gdpdu-gunzip-"));
+      submit(memberLength);
+      fill();
+    }
+  }
+
+  /**
+   * Whether the data is block compressed and decompressed in parallel.
+   */
+  public boolean isParallel() {
+    return fallback == null;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (fallback != null) {
+      return fallback.read();
+    }
+    if (!ensureBlock()) {
+      return -1;
+    }
+    return block[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (fallback != null) {
+      return fallback.read(b, off, len);
+    }
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureBlock()) {
+      return -1;
+    }
+    int read = Math.min(len, block.length - position);
+    System.arraycopy(block, position, b, off, read);
+    position += read;
+    return read;
+  }
+
+  /**
+   * Skipping still decompresses the skipped blocks but doesn't copy them.
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    if (fallback != null) {
+      return fallback.skip(n);
+    }
+    long skipped = 0;
+    while (skipped < n && ensureBlock()) {
+      int chunk = (int) Math.min(n - skipped, block.length - position);
+      position += chunk;
+      skipped += chunk;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    if (fallback != null) {
+      return fallback.available();
+    }
+    return block.length - position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (executor != null) {
+      for (Future<byte[]> future : pending) {
+        future.cancel(true);
+      }
+      pending.clear();
+      executor.shutdownNow();
+    }
+    if (fallback != null) {
+      fallback.close();
+    } else {
+      in.close();
+    }
+  }
+
+  /**
+   * @return false at the end of the data
+   */
+  private boolean ensureBlock() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (position == block.length) {
+      Future<byte[]> next = pending.poll();
+      if (next == null) {
+        return false;
+      }
+      try {
+        block = next.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a block to be decompressed");
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+      position = 0;
+      fill();
+    }
+    return true;
+  }
+
+  private void fill() throws IOException {
+    while (!endOfInput && pending.size() < threads * 2) {
+      long memberLength = readHeader();
+      if (memberLength == -2) {
+        endOfInput = true;
+      } else if (memberLength == -1) {
+        throw new IOException("gzip member without block length, the data has not been written by a block gzip writer");
+      } else {
+        submit(memberLength);
+      }
+    }
+  }
+
+  private void submit(long memberLength) throws IOException {
+    long remaining = memberLength - headerLength;
+    if (remaining < TRAILER_LENGTH || remaining > MAX_BLOCK_SIZE) {
+      throw new IOException("Invalid gzip block length [" + memberLength + "]");
+    }
+    byte[] compressed = new byte[(int) remaining];
+    readFully(compressed);
+    pending.add(executor.submit(() -> inflate(compressed)));
+  }
+
+  private static byte[] inflate(byte[] compressed) throws IOException {
+    int dataLength = compressed.length - TRAILER_LENGTH;
+    long expectedCrc = readInt(compressed, dataLength);
+    long size = readInt(compressed, dataLength + 4);
+    if (size > MAX_BLOCK_SIZE) {
+      throw new IOException("Invalid gzip block size [" + size + "]");
+    }
+    byte[] result = new byte[(int) size];
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(compressed, 0, dataLength);
+      int length = 0;
+      while (length < result.length && !inflater.finished()) {
+        int inflated = inflater.inflate(result, length, result.length - length);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      // Reaches the end of the deflate stream if it's exactly as long as the trailer says
+      if (!inflater.finished() && length == result.length && inflater.inflate(new byte[1]) > 0) {
+        length++;
+      }
+      if (!inflater.finished() || inflater.getRemaining() > 0 || length != size) {
+        throw new IOException("Corrupt gzip block, its size doesn't match");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt gzip block", e);
+    } finally {
+      inflater.end();
+    }
+    CRC32 crc = new CRC32();
+    crc.update(result);
+    if (crc.getValue() != expectedCrc) {
+      throw new IOException("Corrupt gzip block, its CRC32 doesn't match");
+    }
+    return result;
+  }
+
+  /**
+   * Reads a gzip member header.
+   *
+   * @return the length of the whole member, -1 if the header has no block length or -2 at the end of the data
+   */
+  private long readHeader() throws IOException {
+    int first = in.read();
+    if (firstHeader != null && first != -1) {
+      firstHeader.write(first);
+    }
+    if (first == -1) {
+      return -2;
+    }
+    headerLength = 10;
+    if (first != 0x1f || readByte() != 0x8b) {
+      throw new IOException("Not in gzip format");
+    }
+    if (readByte() != 8) {
+      throw new IOException("Unsupported gzip compression method");
+    }
+    int flags = readByte();
+    // Modification time, extra flags and OS
+    for (int i = 0; i < 6; i++) {
+      readByte();
+    }
+
+    long memberLength = -1;
+    if ((flags & BlockGzipOutputStream.FEXTRA) != 0) {
+      int extraLength = readShort();
+      headerLength += 2 + extraLength;
+      byte[] extra = new byte[extraLength];
+      readFully(extra);
+      int offset = 0;
+      while (offset + 4 <= extraLength) {
+        int subfieldLength = (extra[offset + 2] & 0xff) | (extra[offset + 3] & 0xff) << 8;
+        if (extra[offset] == BlockGzipOutputStream.SUBFIELD_ID1 && extra[offset + 1] == BlockGzipOutputStream.SUBFIELD_ID2
+            && subfieldLength == 4 && offset + 8 <= extraLength) {
+          memberLength = readInt(extra, offset + 4);
+        }
+        offset += 4 + subfieldLength;
+      }
+    }
+    if ((flags & FNAME) != 0) {
+      skipString();
+    }
+    if ((flags & FCOMMENT) != 0) {
+      skipString();
+    }
+    if ((flags & FHCRC) != 0) {
+      readShort();
+      headerLength += 2;
+    }
+    return memberLength;
+  }
+
+  private void skipString() throws IOException {
+    do {
+      headerLength++;
+    } while (readByte() != 0);
+  }
+
+  private int readByte() throws IOException {
+    int b = in.read();
+    if (b == -1) {
+      throw new EOFException("Unexpected end of gzip data");
+    }
+    if (firstHeader != null) {
+      firstHeader.write(b);
+    }
+    return b;
+  }
+
+  private int readShort() throws IOException {
+    return readByte() | readByte() << 8;
+  }
+
+  private void readFully(byte[] b) throws IOException {
+    int offset = 0;
+    while (offset < b.length) {
+      int read = in.read(b, offset, b.length - offset);
+      if (read == -1) {
+        throw new EOFException("Unexpected end of gzip data");
+      }
+      offset += read;
+    }
+    if (firstHeader != null) {
+      firstHeader.write(b, 0, b.length);
+    }
+  }
+
+  private static long readInt(byte[] b, int offset) {
+    return (b[offset] & 0xffL) | (b[offset + 1] & 0xffL) << 8 | (b[offset + 2] & 0xffL) << 16 | (b[offset + 3] & 0xffL) << 24;
+  }
+
+}
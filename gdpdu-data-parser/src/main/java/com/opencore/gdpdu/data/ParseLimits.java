@@ -0,0 +1,115 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * Limits that bound the memory a parse can use, e.g. when a data file is malformed and a text encapsulator is never closed.
+ * <p/>
+ * All lengths are in characters.
+ * By default nothing is limited except for columns that declare a {@code MaxLength} in the {@code index.xml} file.
+ */
+public class ParseLimits {
+
+  private long maxColumnLength = Long.MAX_VALUE;
+  private boolean useIndexMaxLength = true;
+  private long maxRecordLength = Long.MAX_VALUE;
+  private long maxInFlightBytes = Long.MAX_VALUE;
+  private Action onLimitExceeded = Action.FAIL;
+
+  /**
+   * Applies to every column that has no {@code MaxLength} (or if {@link #isUseIndexMaxLength()} is false).
+   */
+  public long getMaxColumnLength() {
+    return maxColumnLength;
+  }
+
+  public void setMaxColumnLength(long maxColumnLength) {
+    this.maxColumnLength = requirePositive(maxColumnLength, "maxColumnLength");
+  }
+
+  /**
+   * Whether the {@code MaxLength} of a column in the {@code index.xml} file is used as the limit for that column.
+   */
+  public boolean isUseIndexMaxLength() {
+    return useIndexMaxLength;
+  }
+
+  public void setUseIndexMaxLength(boolean useIndexMaxLength) {
+    this.useIndexMaxLength = useIndexMaxLength;
+  }
+
+  /**
+   * Limits the sum of all columns of a single record.
+   */
+  public long getMaxRecordLength() {
+    return maxRecordLength;
+  }
+
+  public void setMaxRecordLength(long maxRecordLength) {
+    this.maxRecordLength = requirePositive(maxRecordLength, "maxRecordLength");
+  }
+
+  /**
+   * Limits the (estimated) heap used by records that have been lexed but not yet consumed.
+   * This only matters for the {@link PipelinedTableParser}, the lexer waits for the consumer when the budget is used up.
+   */
+  public long getMaxInFlightBytes() {
+    return maxInFlightBytes;
+  }
+
+  public void setMaxInFlightBytes(long maxInFlightBytes) {
+    this.maxInFlightBytes = requirePositive(maxInFlightBytes, "maxInFlightBytes");
+  }
+
+  public Action getOnLimitExceeded() {
+    return onLimitExceeded;
+  }
+
+  public void setOnLimitExceeded(Action onLimitExceeded) {
+    this.onLimitExceeded = Objects.requireNonNull(onLimitExceeded, "'onLimitExceeded' can't be null");
+  }
+
+  private static long requirePositive(long value, String name) {
+    if (value < 1) {
+      throw new IllegalArgumentException("'" + name + "' must be at least 1, was [" + value + "]");
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", ParseLimits.class.getSimpleName() + "[", "]")
+      .add("maxColumnLength=" + maxColumnLength)
+      .add("useIndexMaxLength=" + useIndexMaxLength)
+      .add("maxRecordLength=" + maxRecordLength)
+      .add("maxInFlightBytes=" + maxInFlightBytes)
+      .add("onLimitExceeded=" + onLimitExceeded)
+      .toString();
+  }
+
+  public enum Action {
+    /**
+     * Abort the parse with a {@link com.opencore.gdpdu.common.exceptions.ParsingException}.
+     */
+    FAIL,
+
+    /**
+     * Drop the offending record, skip ahead to the next record delimiter and continue.
+     */
+    SKIP_RECORD
+  }
+
+}
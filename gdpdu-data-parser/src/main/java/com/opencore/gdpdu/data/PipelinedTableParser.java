@@ -0,0 +1,311 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduDataParser.LongRange;
+import com.opencore.gdpdu.data.deserializers.DeserializationContext;
+import com.opencore.gdpdu.index.models.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This parses a variable length table with lexing and mapping running on separate threads.
+ * <p/>
+ * One thread lexes the file into the preallocated slots of a {@link RecordRingBuffer}, one or more threads map the slots to domain objects
+ * and the calling thread collects the results in the original order.
+ * The ring is bounded so a slow mapper stage holds back the lexer instead of buffering the whole file.
+ * With {@link ParseLimits#getMaxInFlightBytes()} the records in the ring are additionally bounded by their estimated size.
+ * <p/>
+ * A single instance can be used for multiple parses but not concurrently.
+ */
+public final class PipelinedTableParser {
+
+  public static final int DEFAULT_RING_SIZE = 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(PipelinedTableParser.class);
+
+  private final int mapperThreads;
+  private final int ringSize;
+  private final ParseLimits limits;
+
+  /**
+   * @param mapperThreads number of threads that deserialize records, the lexer always uses one additional thread
+   * @param ringSize      number of records that can be in flight between lexer and consumer, needs to be a power of two
+   */
+  public PipelinedTableParser(int mapperThreads, int ringSize) {
+    this(mapperThreads, ringSize, null);
+  }
+
+  /**
+   * @param mapperThreads number of threads that deserialize records, the lexer always uses one additional thread
+   * @param ringSize      number of records that can be in flight between lexer and consumer, needs to be a power of two
+   * @param limits        limits for columns, records and the memory in flight or null for no limits
+   */
+  public PipelinedTableParser(int mapperThreads, int ringSize, ParseLimits limits) {
+    if (mapperThreads < 1) {
+      throw new IllegalArgumentException("'mapperThreads' must be at least 1, was [" + mapperThreads + "]");
+    }
+    if (ringSize < 2 || Integer.bitCount(ringSize) != 1) {
+      throw new IllegalArgumentException("'ringSize' must be a power of two and at least 2, was [" + ringSize + "]");
+    }
+    this.mapperThreads = mapperThreads;
+    this.ringSize = ringSize;
+    this.limits = limits;
+  }
+
+  public <T> List<T> parse(InputStream tableStream, Table table, Class<T> clazz) throws ParsingException {
+    return parse(tableStream, table, clazz, null);
+  }
+
+  /**
+   * Only records that match the filter are mapped, the filter is evaluated on the lexer thread so other records never enter the ring.
+   *
+   * @param filter the filter to apply or null to return all records
+   */
+  public <T> List<T> parse(InputStream tableStream, Table table, Class<T> clazz, RecordFilter filter) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(clazz, "'clazz' can't be null");
+
+    DeserializationContext context = GdpduDataParser.createContext(table, limits);
+    MappingHandler<T> handler = new MappingHandler<>(table, context, clazz);
+    RecordMapper<T> mapper = handler.getMapper();
+    run(tableStream, table, context, filter == null ? null : filter.bind(table), thread -> slot -> {
+      try {
+        slot.result = mapper.map(slot.record);
+      } catch (ParsingException e) {
+        slot.error = e;
+      }
+    }, slot -> {
+      if (slot.error == null) {
+        handler.add(clazz.cast(slot.result));
+      } else {
+        handler.failed(slot.record, slot.error);
+      }
+    });
+    return handler.getResults();
+  }
+
+  /**
+   * Streams the raw records of a table to a handler that runs on the mapper threads, nothing is mapped or collected.
+   * <p/>
+   * The handler is called concurrently and in no particular order, so it has to be thread-safe.
+   * A {@link ParsingException} thrown by the handler aborts the scan.
+   *
+   * @return the number of records passed to the handler
+   */
+  public long scan(InputStream tableStream, Table table, RecordHandler handler) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(handler, "'handler' can't be null");
+
+    return scanRecords(tableStream, table, thread -> handler);
+  }
+
+  /**
+   * Like {@link #scan(InputStream, Table, RecordHandler)} but every mapper thread passes its records to its own handler,
+   * so the handlers don't have to be thread-safe, e.g. to compute partial results that are merged at the end.
+   *
+   * @param handlerFactory called once per mapper thread before the scan starts
+   * @return the handlers in the order they have been created, one per mapper thread
+   */
+  public <H extends RecordHandler> List<H> scan(InputStream tableStream, Table table, Supplier<H> handlerFactory) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(handlerFactory, "'handlerFactory' can't be null");
+
+    List<H> handlers = new ArrayList<>(mapperThreads);
+    for (int i = 0; i < mapperThreads; i++) {
+      handlers.add(Objects.requireNonNull(handlerFactory.get(), "'handlerFactory' can't return null"));
+    }
+    scanRecords(tableStream, table, handlers::get);
+    return handlers;
+  }
+
+  private long scanRecords(InputStream tableStream, Table table, IntFunction<? extends RecordHandler> handlers) throws ParsingException {
+    long[] count = new long[1];
+    run(tableStream, table, GdpduDataParser.createContext(table, limits), null, thread -> {
+      RecordHandler handler = handlers.apply(thread);
+      return slot -> {
+        // Only the lexer's final record after the last record delimiter can be completely empty
+        if (!slot.record.getColumns().isEmpty()) {
+          handler.handle(slot.recordNumber, slot.record);
+        }
+      };
+    }, slot -> {
+      if (!slot.record.getColumns().isEmpty()) {
+        count[0]++;
+      }
+    });
+    return count[0];
+  }
+
+  /**
+   * Runs the lexer and the mapper threads, the calling thread consumes the slots in the original order.
+   *
+   * @param mapStages returns the map stage for the mapper thread with the given index
+   */
+  private void run(InputStream tableStream, Table table, DeserializationContext context, RecordFilter.Predicate predicate,
+                   IntFunction<SlotStage> mapStages, SlotStage consumeStage) throws ParsingException {
+    GdpduDataLexer lexer = new GdpduDataLexer(context);
+    lexer.open(tableStream);
+
+    RecordRingBuffer ring = new RecordRingBuffer(ringSize);
+    InFlightBudget budget = limits == null || limits.getMaxInFlightBytes() == Long.MAX_VALUE ? null : new InFlightBudget(limits.getMaxInFlightBytes());
+    List<Thread> threads = new ArrayList<>();
+    threads.add(newThread("gdpdu-lexer-" + table.getName(), () -> lex(lexer, ring, budget, predicate, GdpduDataParser.fillDefaults(table.getRange()))));
+    for (int i = 0; i < mapperThreads; i++) {
+      SlotStage mapStage = mapStages.apply(i);
+      threads.add(newThread("gdpdu-mapper-" + table.getName() + "-" + i, () -> map(mapStage, ring)));
+    }
+    threads.forEach(Thread::start);
+
+    try {
+      long sequence = 0;
+      RecordRingBuffer.Slot slot;
+      while ((slot = ring.awaitMapped(sequence)) != null) {
+        consumeStage.process(slot);
+        if (budget != null) {
+          budget.release(slot.bytes);
+        }
+        ring.release(slot, sequence);
+        sequence++;
+      }
+    } finally {
+      // This is a no-op for the threads if everything has been consumed already, otherwise it stops them
+      ring.abort(null);
+      joinAll(threads);
+    }
+
+    Throwable failure = ring.getFailure();
+    if (lexer.getSkippedRecords() > 0) {
+      LOG.warn("Skipped [{}] records of table [{}] because they exceeded the limits", lexer.getSkippedRecords(), table.getName());
+    }
+    if (failure instanceof ParsingException) {
+      throw (ParsingException) failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure != null) {
+      throw new ParsingException(failure);
+    }
+  }
+
+  private static void lex(GdpduDataLexer lexer, RecordRingBuffer ring, InFlightBudget budget, RecordFilter.Predicate predicate, LongRange range) {
+    long sequence = 0;
+    try {
+      // GDPdU seems to be "1" based. We increment the index at the beginning of the loop so we start at 0 here
+      long index = 0;
+      long count = 0;
+      while (true) {
+        RecordRingBuffer.Slot slot = ring.awaitFree(sequence);
+        if (slot == null || !lexer.nextRecord(slot.record)) {
+          break;
+        }
+        index++;
+        if (index < range.from) {
+          continue;
+        }
+        if (index > range.to || count > range.length) {
+          break;
+        }
+        if (predicate != null && !predicate.test(slot.record)) {
+          // The slot is simply reused for the next record
+          count++;
+          continue;
+        }
+        if (budget != null && !acquire(lexer, ring, budget, slot)) {
+          if (ring.isAborted()) {
+            break;
+          }
+          continue;
+        }
+        count++;
+        slot.recordNumber = lexer.getRecordNumber();
+        ring.publishLexed(slot, sequence);
+        sequence++;
+      }
+    } catch (ParsingException | RuntimeException e) {
+      ring.abort(e);
+    } finally {
+      ring.finish(sequence);
+      try {
+        lexer.close();
+      } catch (ParsingException e) {
+        LOG.warn("Failed to close the table stream", e);
+      }
+    }
+  }
+
+  /**
+   * @return false if the record has been dropped (or the pipeline has been aborted) and must not be published
+   */
+  private static boolean acquire(GdpduDataLexer lexer, RecordRingBuffer ring, InFlightBudget budget, RecordRingBuffer.Slot slot) throws ParsingException {
+    long bytes = InFlightBudget.sizeOf(slot.record);
+    if (bytes > budget.getCapacity()) {
+      lexer.skipRecord("Record [" + lexer.getRecordNumber() + "] needs about [" + bytes + "] bytes which exceeds the in-flight budget of ["
+                         + budget.getCapacity() + "] bytes");
+      return false;
+    }
+    slot.bytes = bytes;
+    return budget.acquire(bytes, ring);
+  }
+
+  private static void map(SlotStage stage, RecordRingBuffer ring) {
+    try {
+      while (true) {
+        long sequence = ring.nextMapperSequence();
+        RecordRingBuffer.Slot slot = ring.awaitLexed(sequence);
+        if (slot == null) {
+          return;
+        }
+        stage.process(slot);
+        ring.publishMapped(slot, sequence);
+      }
+    } catch (ParsingException | RuntimeException e) {
+      ring.abort(e);
+    }
+  }
+
+  private static Thread newThread(String name, Runnable runnable) {
+    Thread thread = new Thread(runnable, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private static void joinAll(List<Thread> threads) throws ParsingException {
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ParsingException(e);
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface SlotStage {
+
+    void process(RecordRingBuffer.Slot slot) throws ParsingException;
+
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads large blocks of an underlying stream on a background thread, so that reading (e.g. from network storage) overlaps with lexing.
+ * <p/>
+ * A fixed pool of {@code depth} blocks is reused: the background thread fills free blocks while the consumer reads filled ones,
+ * with the default depth of two this is classic double buffering. The background thread is started by the first read,
+ * skipping before that skips in the underlying stream (e.g. to the start offset of a {@link RecordIndex}), afterwards the skipped
+ * blocks are still read.
+ * <p/>
+ * Like all streams this one must only be read by one thread at a time.
+ */
+public final class ReadAheadInputStream extends InputStream {
+
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+  public static final int DEFAULT_DEPTH = 2;
+
+  private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+  private static final Block END = new Block(0);
+
+  private final InputStream in;
+  private final BlockingQueue<Block> free;
+  // One more slot than blocks for the end marker or an error
+  private final BlockingQueue<Block> filled;
+  private Thread reader;
+  private Block current;
+  private int position;
+  private boolean endOfInput;
+  private IOException failure;
+  private volatile boolean closed;
+
+  public ReadAheadInputStream(InputStream in) {
+    this(in, DEFAULT_BLOCK_SIZE, DEFAULT_DEPTH);
+  }
+
+  /**
+   * @param blockSize bytes per read from the underlying stream
+   * @param depth     number of blocks, i.e. how many blocks can be read ahead of the consumer
+   */
+  public ReadAheadInputStream(InputStream in, int blockSize, int depth) {
+    this.in = Objects.requireNonNull(in, "'in' can't be null");
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("'blockSize' must be at least 1, was [" + blockSize + "]");
+    }
+    if (depth < 1) {
+      throw new IllegalArgumentException("'depth' must be at least 1, was [" + depth + "]");
+    }
+    this.free = new ArrayBlockingQueue<>(depth);
+    this.filled = new ArrayBlockingQueue<>(depth + 1);
+    for (int i = 0; i < depth; i++) {
+      free.add(new Block(blockSize));
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureBlock()) {
+      return -1;
+    }
+    return current.data[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureBlock()) {
+      return -1;
+    }
+    int read = Math.min(len, current.length - position);
+    System.arraycopy(current.data, position, b, off, read);
+    position += read;
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (reader == null) {
+      return in.skip(n);
+    }
+    long skipped = 0;
+    while (skipped < n && ensureBlock()) {
+      int chunk = (int) Math.min(n - skipped, current.length - position);
+      position += chunk;
+      skipped += chunk;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    return current == null ? 0 : current.length - position;
+  }
+
+  /**
+   * Stops the background thread and closes the underlying stream.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      // Closing the stream first also ends a read the background thread is blocked in
+      in.close();
+    } finally {
+      if (reader != null) {
+        reader.interrupt();
+        try {
+          reader.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return false at the end of the stream
+   */
+  private boolean ensureBlock() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (current == null || position == current.length) {
+      if (failure != null) {
+        throw failure;
+      }
+      if (endOfInput) {
+        return false;
+      }
+      if (current != null) {
+        free.add(current);
+        current = null;
+      }
+      if (reader == null) {
+        reader = new Thread(this::readBlocks, "gdpdu-read-ahead-" + THREAD_NUMBER.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+      }
+      Block next;
+      try {
+        next = filled.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a block to be read");
+      }
+      if (next == END || next.error != null) {
+        endOfInput = true;
+        if (next.error != null) {
+          // Every further read fails as well
+          failure = next.error;
+          throw failure;
+        }
+        return false;
+      }
+      current = next;
+      position = 0;
+    }
+    return true;
+  }
+
+  /**
+   * The loop of the background thread.
+   */
+  private void readBlocks() {
+    try {
+      while (!closed) {
+        Block block = free.take();
+        block.length = 0;
+        int read = 0;
+        while (block.length < block.data.length && (read = in.read(block.data, block.length, block.data.length - block.length)) != -1) {
+          block.length += read;
+        }
+        if (block.length > 0) {
+          filled.put(block);
+        }
+        if (read == -1) {
+          filled.put(END);
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      // The stream has been closed
+    } catch (Throwable e) {
+      // Anything else must end the stream as well, otherwise the consumer would wait forever
+      if (!closed) {
+        Block error = new Block(0);
+        error.error = e instanceof IOException ? (IOException) e : new IOException("Reading ahead failed", e);
+        // There is always room for it, the end marker has not been queued
+        filled.add(error);
+      }
+      if (e instanceof Error) {
+        throw (Error) e;
+      }
+    }
+  }
+
+  private static final class Block {
+
+    private final byte[] data;
+    private int length;
+    private IOException error;
+
+    private Block(int size) {
+      this.data = new byte[size];
+    }
+  }
+
+}
@@ -15,7 +15,12 @@ package com.opencore.gdpdu.data;
 import java.util.ArrayList;
 import java.util.List;
 
-class Record {
+/**
+ * A single record of a data file as it has been read by the {@link GdpduDataLexer}: Just the raw column values in file order.
+ * <p/>
+ * Records handed to a {@link RecordHandler} are reused for the next record, they must not be kept.
+ */
+public class Record {
 
   private final List<String> columns = new ArrayList<>();
 
@@ -26,4 +31,13 @@ class Record {
   public void addColumn(String column) {
     columns.add(column);
   }
+
+  public void clear() {
+    columns.clear();
+  }
+
+  @Override
+  public String toString() {
+    return columns.toString();
+  }
 }
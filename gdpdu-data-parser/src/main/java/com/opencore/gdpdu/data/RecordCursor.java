@@ -0,0 +1,123 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+
+/**
+ * Pulls the raw records of a variable length table one at a time, this is the counterpart to
+ * {@link GdpduDataParser#scanVariableLengthTable(java.io.InputStream, com.opencore.gdpdu.index.models.Table, ParseLimits, RecordHandler)}
+ * for consumers that need to read more than one table in lockstep (e.g. a merge join).
+ * <p/>
+ * The same {@link Record} instance is reused for every record, copy its values if they are needed after the next call to {@link #next()}.
+ * This class is not thread-safe.
+ */
+public final class RecordCursor implements AutoCloseable {
+
+  private final GdpduDataLexer lexer;
+  private final GdpduDataParser.LongRange range;
+  private final String tableName;
+  private final long fileLength;
+  private final Record record = new Record();
+  private long index;
+  private long count;
+  private boolean done;
+
+  /**
+   * @param fileLength the length of the data file to record in checkpoints, -1 if unknown
+   */
+  RecordCursor(GdpduDataLexer lexer, GdpduDataParser.LongRange range, String tableName, long fileLength) {
+    this.lexer = lexer;
+    this.range = range;
+    this.tableName = tableName;
+    this.fileLength = fileLength;
+  }
+
+  /**
+   * Continues a cursor at a checkpoint, the lexer has been opened at its offset.
+   */
+  RecordCursor(GdpduDataLexer lexer, GdpduDataParser.LongRange range, String tableName, long fileLength, Checkpoint checkpoint) {
+    this(lexer, range, tableName, fileLength);
+    this.index = checkpoint.getLexedRecords();
+    this.count = checkpoint.getCount();
+  }
+
+  /**
+   * Advances to the next record within the {@code Range} of the table, the trailing empty record at the end of a file is dropped.
+   *
+   * @return false if there are no more records
+   */
+  public boolean next() throws ParsingException {
+    while (!done && lexer.nextRecord(record)) {
+      index++;
+      if (index < range.from) {
+        continue;
+      }
+      if (index > range.to || count > range.length) {
+        break;
+      }
+      if (record.getColumns().isEmpty()) {
+        // Only the lexer's final record after the last record delimiter can be completely empty
+        continue;
+      }
+      count++;
+      return true;
+    }
+    done = true;
+    return false;
+  }
+
+  public Record getRecord() {
+    return record;
+  }
+
+  /**
+   * The 1-based number of the current record in the file, records dropped because of the limits still count.
+   */
+  public long getRecordNumber() {
+    return lexer.getRecordNumber();
+  }
+
+  /**
+   * Whether the current record has been terminated by a record delimiter.
+   * Only the last record of a file can be unterminated, if the file is still being written it might be incomplete.
+   */
+  public boolean isTerminated() {
+    return !lexer.isFinished();
+  }
+
+  /**
+   * Number of records returned so far.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the position after the current record, a cursor opened with this checkpoint continues with the next record.
+   *
+   * @throws ParsingException if offsets can't be computed for the encoding of the file
+   */
+  public Checkpoint checkpoint() throws ParsingException {
+    if (lexer.getByteOffset() == -1) {
+      throw new ParsingException("Table [" + tableName + "] can't be checkpointed, offsets can't be computed for its encoding");
+    }
+    return new Checkpoint(tableName, lexer.getByteOffset(), fileLength, lexer.getRecordNumber(), index, count, new byte[0]);
+  }
+
+  @Override
+  public void close() throws ParsingException {
+    lexer.close();
+  }
+
+}
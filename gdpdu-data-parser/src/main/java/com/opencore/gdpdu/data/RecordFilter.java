@@ -0,0 +1,338 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.IntPredicate;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+
+/**
+ * A condition on the raw values of a record, records that don't match are dropped right after lexing before anything is deserialized.
+ * <p/>
+ * Values are compared according to the data type of the column:
+ * {@code AlphaNumeric} values are compared as strings, {@code Numeric} values as numbers (e.g. {@code 1,5} equals {@code 1,50})
+ * and {@code Date} values as points in time using the {@code Format} of the column.
+ * All operands have to be written in the notation of the data file, i.e. with the decimal symbol of the table and the date format of the column.
+ * Empty values and values that can't be decoded never match.
+ * <p/>
+ * Filters are immutable and can be reused for multiple tables.
+ */
+public abstract class RecordFilter {
+
+  RecordFilter() {
+  }
+
+  public static RecordFilter equalTo(String column, String value) {
+    return in(column, Collections.singletonList(Objects.requireNonNull(value, "'value' can't be null")));
+  }
+
+  public static RecordFilter in(String column, String... values) {
+    return in(column, Arrays.asList(values));
+  }
+
+  public static RecordFilter in(String column, Collection<String> values) {
+    Objects.requireNonNull(column, "'column' can't be null");
+    Objects.requireNonNull(values, "'values' can't be null");
+    return new ColumnFilter(column, new ArrayList<>(values), null, null);
+  }
+
+  /**
+   * Both bounds are inclusive, null means unbounded.
+   */
+  public static RecordFilter between(String column, String from, String to) {
+    Objects.requireNonNull(column, "'column' can't be null");
+    return new ColumnFilter(column, null, from, to);
+  }
+
+  /**
+   * Matches if all filters match, they are evaluated in the given order.
+   */
+  public static RecordFilter and(RecordFilter... filters) {
+    for (RecordFilter filter : filters) {
+      Objects.requireNonNull(filter, "'filters' can't contain null");
+    }
+    return new AndFilter(Arrays.asList(filters));
+  }
+
+  /**
+   * Resolves the columns of this filter against a table definition.
+   * The returned predicate is not thread-safe, every parse needs its own.
+   */
+  public abstract Predicate bind(Table table) throws ParsingException;
+
+  /**
+   * Like {@link #bind(Table)} but for whole blocks of records: The returned predicate is false for a block number
+   * if the {@link BlockStatistics} prove that no record of the block matches.
+   */
+  abstract IntPredicate bindBlocks(Table table, BlockStatistics statistics) throws ParsingException;
+
+  @FunctionalInterface
+  public interface Predicate {
+
+    boolean test(Record record);
+
+  }
+
+  private static final class ColumnFilter extends RecordFilter {
+
+    private final String column;
+    private final List<String> values;
+    private final String from;
+    private final String to;
+
+    private ColumnFilter(String column, List<String> values, String from, String to) {
+      this.column = column;
+      this.values = values;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Predicate bind(Table table) throws ParsingException {
+      List<VariableColumn> columns = TableColumns.getColumns(table);
+      int index = TableColumns.findColumn(columns, column, table);
+      VariableColumn definition = columns.get(index);
+      if (definition.getDataType() == DataType.Numeric) {
+        return bindNumeric(index, table);
+      } else if (definition.getDataType() == DataType.Date) {
+        return bindDate(index, DatePattern.compile(definition, table));
+      }
+      return bindAlphaNumeric(index);
+    }
+
+    @Override
+    IntPredicate bindBlocks(Table table, BlockStatistics statistics) throws ParsingException {
+      List<VariableColumn> columns = TableColumns.getColumns(table);
+      int index = TableColumns.findColumn(columns, column, table);
+      VariableColumn definition = columns.get(index);
+      if (definition.getDataType() == DataType.Numeric && statistics.hasNumericZone(index)) {
+        return bindNumericBlocks(index, table, statistics);
+      } else if (definition.getDataType() == DataType.Date && statistics.hasDateZone(index)) {
+        return bindDateBlocks(index, DatePattern.compile(definition, table), statistics);
+      } else if (definition.getDataType() == DataType.AlphaNumeric && values != null && statistics.hasBloomFilter(index)) {
+        // Only AlphaNumeric values are compared as written, so only they can be looked up in the Bloom filter
+        KeyEncoder encoder = new KeyEncoder();
+        long[] hashes = new long[values.size()];
+        for (int i = 0; i < hashes.length; i++) {
+          hashes[i] = BlockStatistics.hash(encoder, values.get(i));
+        }
+        return block -> {
+          for (long hash : hashes) {
+            if (statistics.mightContain(index, block, hash)) {
+              return true;
+            }
+          }
+          return false;
+        };
+      }
+      return block -> true;
+    }
+
+    private Predicate bindAlphaNumeric(int index) {
+      if (values != null) {
+        Set<String> set = new HashSet<>(values);
+        return record -> index < record.getColumns().size() && set.contains(record.getColumns().get(index));
+      }
+      return record -> {
+        if (index >= record.getColumns().size()) {
+          return false;
+        }
+        String value = record.getColumns().get(index);
+        return (from == null || value.compareTo(from) >= 0) && (to == null || value.compareTo(to) <= 0);
+      };
+    }
+
+    private Predicate bindNumeric(int index, Table table) throws ParsingException {
+      String decimalSymbol = table.getDecimalSymbol();
+      String digitGroupingSymbol = table.getDigitGroupingSymbol() == null ? "" : table.getDigitGroupingSymbol();
+      NumericValue current = new NumericValue();
+      if (values != null) {
+        NumericValue[] set = new NumericValue[values.size()];
+        for (int i = 0; i < set.length; i++) {
+          set[i] = decodeNumeric(values.get(i), decimalSymbol, digitGroupingSymbol);
+        }
+        Arrays.sort(set);
+        return record -> index < record.getColumns().size()
+                         && current.decode(record.getColumns().get(index), decimalSymbol, digitGroupingSymbol)
+                         && Arrays.binarySearch(set, current) >= 0;
+      }
+      NumericValue lower = from == null ? null : decodeNumeric(from, decimalSymbol, digitGroupingSymbol);
+      NumericValue upper = to == null ? null : decodeNumeric(to, decimalSymbol, digitGroupingSymbol);
+      return record -> index < record.getColumns().size()
+                       && current.decode(record.getColumns().get(index), decimalSymbol, digitGroupingSymbol)
+                       && (lower == null || current.compareTo(lower) >= 0)
+                       && (upper == null || current.compareTo(upper) <= 0);
+    }
+
+    private Predicate bindDate(int index, DatePattern pattern) throws ParsingException {
+      if (values != null) {
+        long[] set = new long[values.size()];
+        for (int i = 0; i < set.length; i++) {
+          set[i] = decodeDate(values.get(i), pattern);
+        }
+        Arrays.sort(set);
+        return record -> {
+          if (index >= record.getColumns().size()) {
+            return false;
+          }
+          long value = pattern.parseTimestamp(record.getColumns().get(index));
+          return value != DatePattern.INVALID && Arrays.binarySearch(set, value) >= 0;
+        };
+      }
+      long lower = from == null ? Long.MIN_VALUE : decodeDate(from, pattern);
+      long upper = to == null ? Long.MAX_VALUE : decodeDate(to, pattern);
+      return record -> {
+        if (index >= record.getColumns().size()) {
+          return false;
+        }
+        long value = pattern.parseTimestamp(record.getColumns().get(index));
+        return value != DatePattern.INVALID && value >= lower && value <= upper;
+      };
+    }
+
+    private IntPredicate bindNumericBlocks(int index, Table table, BlockStatistics statistics) throws ParsingException {
+      String decimalSymbol = table.getDecimalSymbol();
+      String digitGroupingSymbol = table.getDigitGroupingSymbol() == null ? "" : table.getDigitGroupingSymbol();
+      BigDecimal lower;
+      BigDecimal upper;
+      if (values != null) {
+        if (values.isEmpty()) {
+          return block -> false;
+        }
+        lower = null;
+        upper = null;
+        for (String value : values) {
+          BigDecimal decoded = decodeNumeric(value, decimalSymbol, digitGroupingSymbol).toBigDecimal();
+          lower = lower == null || decoded.compareTo(lower) < 0 ? decoded : lower;
+          upper = upper == null || decoded.compareTo(upper) > 0 ? decoded : upper;
+        }
+      } else {
+        lower = from == null ? null : decodeNumeric(from, decimalSymbol, digitGroupingSymbol).toBigDecimal();
+        upper = to == null ? null : decodeNumeric(to, decimalSymbol, digitGroupingSymbol).toBigDecimal();
+      }
+      BigDecimal min = lower;
+      BigDecimal max = upper;
+      return block -> {
+        BigDecimal blockMin = statistics.getNumericMin(index, block);
+        return blockMin != null
+               && (max == null || blockMin.compareTo(max) <= 0)
+               && (min == null || statistics.getNumericMax(index, block).compareTo(min) >= 0);
+      };
+    }
+
+    private IntPredicate bindDateBlocks(int index, DatePattern pattern, BlockStatistics statistics) throws ParsingException {
+      long lower = Long.MAX_VALUE;
+      long upper = Long.MIN_VALUE;
+      if (values != null) {
+        for (String value : values) {
+          long decoded = decodeDate(value, pattern);
+          lower = Math.min(lower, decoded);
+          upper = Math.max(upper, decoded);
+        }
+      } else {
+        lower = from == null ? Long.MIN_VALUE : decodeDate(from, pattern);
+        upper = to == null ? Long.MAX_VALUE : decodeDate(to, pattern);
+      }
+      long min = lower;
+      long max = upper;
+      // Blocks without valid values have an empty zone (min > max) and never match
+      return block -> statistics.getDateMin(index, block) <= max && statistics.getDateMax(index, block) >= min;
+    }
+
+    private NumericValue decodeNumeric(String value, String decimalSymbol, String digitGroupingSymbol) throws ParsingException {
+      NumericValue decoded = new NumericValue();
+      if (!decoded.decode(value, decimalSymbol, digitGroupingSymbol)) {
+        throw new ParsingException("Value [" + value + "] for column [" + column + "] is not a valid Numeric value");
+      }
+      return decoded;
+    }
+
+    private long decodeDate(String value, DatePattern pattern) throws ParsingException {
+      long decoded = pattern.parseTimestamp(value);
+      if (decoded == DatePattern.INVALID) {
+        throw new ParsingException("Value [" + value + "] for column [" + column + "] doesn't match the date format [" + pattern + "]");
+      }
+      return decoded;
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", RecordFilter.class.getSimpleName() + "[", "]")
+        .add("column='" + column + "'")
+        .add(values != null ? "in=" + values : "from='" + from + "', to='" + to + "'")
+        .toString();
+    }
+  }
+
+  private static final class AndFilter extends RecordFilter {
+
+    private final List<RecordFilter> filters;
+
+    private AndFilter(List<RecordFilter> filters) {
+      this.filters = new ArrayList<>(filters);
+    }
+
+    @Override
+    public Predicate bind(Table table) throws ParsingException {
+      Predicate[] predicates = new Predicate[filters.size()];
+      for (int i = 0; i < predicates.length; i++) {
+        predicates[i] = filters.get(i).bind(table);
+      }
+      return record -> {
+        for (Predicate predicate : predicates) {
+          if (!predicate.test(record)) {
+            return false;
+          }
+        }
+        return true;
+      };
+    }
+
+    @Override
+    IntPredicate bindBlocks(Table table, BlockStatistics statistics) throws ParsingException {
+      IntPredicate[] predicates = new IntPredicate[filters.size()];
+      for (int i = 0; i < predicates.length; i++) {
+        predicates[i] = filters.get(i).bindBlocks(table, statistics);
+      }
+      return block -> {
+        for (IntPredicate predicate : predicates) {
+          if (!predicate.test(block)) {
+            return false;
+          }
+        }
+        return true;
+      };
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", RecordFilter.class.getSimpleName() + "[", "]")
+        .add("and=" + filters)
+        .toString();
+    }
+  }
+
+}
@@ -0,0 +1,29 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+
+/**
+ * Receives the raw records of a table one by one, see {@link GdpduDataParser#scanVariableLengthTable(java.io.InputStream, com.opencore.gdpdu.index.models.Table, ParseLimits, RecordHandler)}.
+ */
+@FunctionalInterface
+public interface RecordHandler {
+
+  /**
+   * @param recordNumber the 1-based number of the record in the data file
+   * @param record       the record, this object is reused and only valid for the duration of the call
+   */
+  void handle(long recordNumber, Record record) throws ParsingException;
+
+}
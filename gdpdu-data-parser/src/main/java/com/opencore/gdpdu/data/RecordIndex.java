@@ -0,0 +1,267 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Table;
+
+/**
+ * A sparse index of the byte offsets of the records of a variable length data file, so that a parse can start at any record.
+ * <p/>
+ * The offset of every {@code interval}-th record is kept together with the number of records, the length and two checksums of the file:
+ * A CRC32 of its first and last bytes to match it cheaply (see {@link #matches(File)}) and a CRC32 of the whole file (see {@link #verify(File)}).
+ * An index is built during a full parse (see {@link GdpduArchive#setBuildRecordIndexes(boolean)}) or by a dedicated pass that only lexes,
+ * it can be persisted as a small sidecar file next to the data file.
+ * <p/>
+ * Offsets are computed from the characters the lexer has seen, so files in UTF-16 or with malformed byte sequences can't be indexed.
+ */
+public final class RecordIndex {
+
+  public static final int DEFAULT_INTERVAL = 1024;
+
+  // "GDRI" followed by the format version
+  private static final int MAGIC = 0x47445249;
+  private static final int VERSION = 2;
+
+  private final int interval;
+  private final long recordCount;
+  private final SidecarHeader header;
+  private final long[] recordNumbers;
+  private final long[] offsets;
+
+  private RecordIndex(int interval, long recordCount, SidecarHeader header, long[] recordNumbers, long[] offsets) {
+    this.interval = interval;
+    this.recordCount = recordCount;
+    this.header = header;
+    this.recordNumbers = recordNumbers;
+    this.offsets = offsets;
+  }
+
+  /**
+   * Lexes the whole table without mapping the records, the stream must start at the beginning of the file.
+   */
+  public static RecordIndex build(InputStream tableStream, Table table, int interval) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    if (table.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be indexed");
+    }
+
+    Builder builder = new Builder(interval);
+    GdpduDataLexer lexer = new GdpduDataLexer(GdpduDataParser.createContext(table, null));
+    lexer.open(builder.wrap(tableStream));
+    try {
+      Record record = new Record();
+      while (lexer.nextRecord(record)) {
+        builder.add(lexer, record);
+      }
+    } finally {
+      lexer.close();
+    }
+    return builder.finish(lexer, table);
+  }
+
+  /**
+   * Reads an index that has been written by {@link #write(Path)}.
+   */
+  public static RecordIndex read(Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("[" + path + "] is not a record index");
+      }
+      int interval = in.readInt();
+      long recordCount = in.readLong();
+      SidecarHeader header = SidecarHeader.read(in);
+      int size = in.readInt();
+      long[] recordNumbers = new long[size];
+      long[] offsets = new long[size];
+      for (int i = 0; i < size; i++) {
+        recordNumbers[i] = in.readLong();
+        offsets[i] = in.readLong();
+      }
+      return new RecordIndex(interval, recordCount, header, recordNumbers, offsets);
+    }
+  }
+
+  public void write(Path path) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(interval);
+      out.writeLong(recordCount);
+      header.write(out);
+      out.writeInt(recordNumbers.length);
+      for (int i = 0; i < recordNumbers.length; i++) {
+        out.writeLong(recordNumbers[i]);
+        out.writeLong(offsets[i]);
+      }
+    }
+  }
+
+  /**
+   * Whether this index has been built from the given file, i.e. its length and the checksum of its first and last bytes still match.
+   * Only a few KB of the file are read, see {@link SampleChecksumInputStream}.
+   */
+  public boolean matches(File dataFile) throws IOException {
+    return header.matches(dataFile);
+  }
+
+  /**
+   * Like {@link #matches(File)} but compares the checksum of the whole file, this reads the whole file.
+   */
+  public boolean verify(File dataFile) throws IOException {
+    return header.verify(dataFile);
+  }
+
+  public int getInterval() {
+    return interval;
+  }
+
+  /**
+   * The number of the last record in the file, this includes records that have been dropped because they exceeded a limit.
+   */
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  public long getFileLength() {
+    return header.getFileLength();
+  }
+
+  /**
+   * The CRC32 of the first and last bytes of the file, see {@link SampleChecksumInputStream}.
+   */
+  public long getSampleChecksum() {
+    return header.getSampleChecksum();
+  }
+
+  public long getChecksum() {
+    return header.getChecksum();
+  }
+
+  SidecarHeader getHeader() {
+    return header;
+  }
+
+  /**
+   * @return the entry of the closest indexed record at or before the given record number
+   */
+  int find(long recordNumber) {
+    int index = Arrays.binarySearch(recordNumbers, recordNumber);
+    return index >= 0 ? index : Math.max(0, -index - 2);
+  }
+
+  long getRecordNumber(int entry) {
+    return recordNumbers[entry];
+  }
+
+  long getOffset(int entry) {
+    return offsets[entry];
+  }
+
+  int size() {
+    return recordNumbers.length;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", RecordIndex.class.getSimpleName() + "[", "]")
+      .add("interval=" + interval)
+      .add("recordCount=" + recordCount)
+      .add("entries=" + recordNumbers.length)
+      .add("fileLength=" + header.getFileLength())
+      .add("sampleChecksum=" + header.getSampleChecksum())
+      .add("checksum=" + header.getChecksum())
+      .toString();
+  }
+
+  /**
+   * Collects the offsets while a table is being lexed, the stream has to be wrapped with {@link #wrap(InputStream)} before it's lexed.
+   */
+  static final class Builder {
+
+    private final int interval;
+    private final SidecarHeader.Builder header = new SidecarHeader.Builder();
+    private long[] recordNumbers = new long[16];
+    private long[] offsets = new long[16];
+    private int size;
+    private long nextRecordNumber = 1;
+    private long recordCount;
+    private RecordIndex index;
+
+    Builder(int interval) {
+      if (interval < 1) {
+        throw new IllegalArgumentException("'interval' must be at least 1, was [" + interval + "]");
+      }
+      this.interval = interval;
+    }
+
+    InputStream wrap(InputStream inputStream) {
+      return header.wrap(inputStream);
+    }
+
+    /**
+     * Call this for every record the lexer returns.
+     */
+    void add(GdpduDataLexer lexer, Record record) {
+      if (record.getColumns().isEmpty()) {
+        // Only the lexer's final record after the last record delimiter can be completely empty
+        return;
+      }
+      long recordNumber = lexer.getRecordNumber();
+      recordCount = recordNumber;
+      if (recordNumber < nextRecordNumber || lexer.getRecordOffset() == -1) {
+        return;
+      }
+      if (size == recordNumbers.length) {
+        recordNumbers = Arrays.copyOf(recordNumbers, size * 2);
+        offsets = Arrays.copyOf(offsets, size * 2);
+      }
+      recordNumbers[size] = recordNumber;
+      offsets[size] = lexer.getRecordOffset();
+      size++;
+      nextRecordNumber = recordNumber + interval;
+    }
+
+    /**
+     * Call this after the lexer has reached the end of the file.
+     *
+     * @throws ParsingException if the offsets can't be trusted
+     */
+    RecordIndex finish(GdpduDataLexer lexer, Table table) throws ParsingException {
+      index = new RecordIndex(interval, recordCount, header.finish(lexer, table), Arrays.copyOf(recordNumbers, size), Arrays.copyOf(offsets, size));
+      return index;
+    }
+
+    /**
+     * @return the index or null if {@link #finish(GdpduDataLexer, Table)} hasn't succeeded
+     */
+    RecordIndex getIndex() {
+      return index;
+    }
+  }
+
+}
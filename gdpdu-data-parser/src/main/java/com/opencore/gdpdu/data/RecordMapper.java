@@ -0,0 +1,128 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.common.util.ClassRegistry;
+import com.opencore.gdpdu.common.util.ColumnInfo;
+import com.opencore.gdpdu.data.deserializers.DeserializationContext;
+import com.opencore.gdpdu.data.deserializers.Deserializers;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This maps generic {@link Record} objects to domain objects.
+ * <p/>
+ * Everything that only depends on the table definition and the class (column order, setters, parameter types) is resolved once up front
+ * so that mapping a single record doesn't need to do any lookups.
+ * <p/>
+ * Instances are immutable and can be shared between threads as long as the domain class' setters are thread-safe for distinct instances.
+ */
+// TODO: This is specific to variable length stuff now, need to see if this can be made generic enough to support fixed length as well
+final class RecordMapper<T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RecordMapper.class);
+
+  private final Class<T> clazz;
+  private final DeserializationContext context;
+  private final VariableColumn[] columns;
+  private final Method[] setters;
+  private final Class<?>[] parameterTypes;
+
+  RecordMapper(Table table, DeserializationContext context, Class<T> clazz) throws ParsingException {
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(context, "'context' can't be null");
+    Objects.requireNonNull(clazz, "'clazz' can't be null");
+
+    this.clazz = clazz;
+    this.context = context;
+
+    columns = TableColumns.getColumns(table).toArray(new VariableColumn[0]);
+
+    Map<String, ColumnInfo> writeMethods = ClassRegistry.getClassInformation(clazz);
+    setters = new Method[columns.length];
+    parameterTypes = new Class<?>[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      ColumnInfo columnInfo = writeMethods.get(columns[i].getName());
+      if (columnInfo != null) {
+        setters[i] = columnInfo.setter;
+        parameterTypes[i] = columnInfo.setter.getParameterTypes()[0]; // In the ClassRegistry we checked that every write method has exactly one parameter
+      }
+    }
+  }
+
+  int getColumnCount() {
+    return columns.length;
+  }
+
+  T map(Record record) throws ParsingException {
+    Objects.requireNonNull(record, "'record' can't be null");
+
+    List<String> values = record.getColumns();
+    if (columns.length != values.size()) {
+      throw new ParsingException("The table definition has [" + columns.length + "] columns, but the parsed record has [" + values.size() + "]");
+    }
+
+    T t = newInstance();
+    // The order of columns is not specified by a header in the file but by the order in the XML file
+    // So we iterate over the defined columns here
+    for (int i = 0; i < columns.length; i++) {
+      String currentValue = values.get(i);
+
+      // Validation happens later
+      if (currentValue == null || currentValue.isBlank()) {
+        LOG.trace("Skipping empty value for column [{}]", columns[i].getName());
+        continue;
+      }
+
+      // Here we deserialize the Strings into strongly typed values depending on their type
+      deserializeValue(t, i, currentValue);
+    }
+
+    return t;
+  }
+
+  private T newInstance() throws ParsingException {
+    try {
+      return clazz.getDeclaredConstructor().newInstance();
+    } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  /**
+   * This takes a value that we read from an input data file and tries to serialize it into a Java object.
+   */
+  private void deserializeValue(T t, int columnIndex, String currentValue) throws ParsingException {
+    Method method = setters[columnIndex];
+    if (method == null) {
+      return;
+    }
+
+    try {
+      Object object = Deserializers.deserialize(currentValue, parameterTypes[columnIndex], columns[columnIndex].getDataType(), context);
+      method.invoke(t, object);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+}
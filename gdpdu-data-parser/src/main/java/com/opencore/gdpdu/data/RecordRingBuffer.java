@@ -0,0 +1,177 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+
+/**
+ * A bounded ring of preallocated {@link Record} slots that connects one lexer, any number of mappers and one consumer.
+ * <p/>
+ * Every record gets a sequence number.
+ * Each slot remembers the last sequence that was lexed into it, mapped and consumed, all three only ever grow.
+ * A stage waits until the previous stage has published the sequence it is interested in, so no locks are needed.
+ * The consumer releases slots strictly in sequence order which means the output order is the input order.
+ */
+final class RecordRingBuffer {
+
+  private static final int SPIN_ITERATIONS = 100;
+  private static final int YIELD_ITERATIONS = 200;
+  private static final long PARK_NANOS = 50_000;
+
+  private final Slot[] slots;
+  private final int mask;
+
+  private final AtomicLong mapperSequence = new AtomicLong();
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  // Number of records the lexer published, only known once it is done
+  private volatile long end = Long.MAX_VALUE;
+  private volatile boolean aborted;
+
+  RecordRingBuffer(int size) {
+    if (size < 2 || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("'size' must be a power of two and at least 2, was [" + size + "]");
+    }
+    slots = new Slot[size];
+    mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      slots[i] = new Slot(i - size);
+    }
+  }
+
+  /**
+   * Waits until the slot for the given sequence has been consumed in the previous round and can be lexed into.
+   *
+   * @return the slot or null if the pipeline has been aborted
+   */
+  Slot awaitFree(long sequence) {
+    Slot slot = slots[(int) (sequence & mask)];
+    long previous = sequence - slots.length;
+    for (int i = 0; slot.consumed != previous; i++) {
+      if (aborted) {
+        return null;
+      }
+      idle(i);
+    }
+    return slot;
+  }
+
+  void publishLexed(Slot slot, long sequence) {
+    slot.lexed = sequence;
+  }
+
+  /**
+   * Called by the lexer after the last record has been published.
+   */
+  void finish(long count) {
+    end = count;
+  }
+
+  long nextMapperSequence() {
+    return mapperSequence.getAndIncrement();
+  }
+
+  /**
+   * @return the slot or null if there is no record with this sequence (end of file or aborted)
+   */
+  Slot awaitLexed(long sequence) {
+    Slot slot = slots[(int) (sequence & mask)];
+    for (int i = 0; slot.lexed != sequence; i++) {
+      if (aborted || sequence >= end) {
+        return null;
+      }
+      idle(i);
+    }
+    return slot;
+  }
+
+  void publishMapped(Slot slot, long sequence) {
+    slot.mapped = sequence;
+  }
+
+  /**
+   * @return the slot or null if there is no record with this sequence (end of file or aborted)
+   */
+  Slot awaitMapped(long sequence) {
+    Slot slot = slots[(int) (sequence & mask)];
+    for (int i = 0; slot.mapped != sequence; i++) {
+      if (aborted || sequence >= end) {
+        return null;
+      }
+      idle(i);
+    }
+    return slot;
+  }
+
+  void release(Slot slot, long sequence) {
+    // Drop the columns right away so that consumed records don't count against the memory that is in flight
+    slot.record.clear();
+    slot.result = null;
+    slot.error = null;
+    slot.bytes = 0;
+    slot.recordNumber = 0;
+    slot.consumed = sequence;
+  }
+
+  /**
+   * Stops all stages, the first failure wins.
+   */
+  void abort(Throwable cause) {
+    if (cause != null) {
+      failure.compareAndSet(null, cause);
+    }
+    aborted = true;
+  }
+
+  Throwable getFailure() {
+    return failure.get();
+  }
+
+  boolean isAborted() {
+    return aborted;
+  }
+
+  static void idle(int iteration) {
+    if (iteration < SPIN_ITERATIONS) {
+      Thread.onSpinWait();
+    } else if (iteration < YIELD_ITERATIONS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  static final class Slot {
+
+    final Record record = new Record();
+    Object result;
+    ParsingException error;
+    long bytes;
+    long recordNumber;
+
+    private volatile long lexed;
+    private volatile long mapped;
+    private volatile long consumed;
+
+    private Slot(long initialSequence) {
+      lexed = initialSequence;
+      mapped = initialSequence;
+      consumed = initialSequence;
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+/**
+ * Computes the CRC32 of the first and the last {@value #SAMPLE_SIZE} bytes of the stream while it's read.
+ * <p/>
+ * Together with the length this is how sidecar files are matched to their data file: {@link #checksum(File)} computes the same value
+ * with two short reads instead of reading the whole file. Changes that keep the length and touch neither end are not detected,
+ * that's what the full CRC32 of a sidecar file is for.
+ */
+final class SampleChecksumInputStream extends FilterInputStream {
+
+  static final int SAMPLE_SIZE = 64 * 1024;
+
+  private final byte[] head = new byte[SAMPLE_SIZE];
+  // The bytes after the head, as a ring buffer
+  private final byte[] tail = new byte[SAMPLE_SIZE];
+  private long count;
+
+  SampleChecksumInputStream(InputStream in) {
+    super(in);
+  }
+
+  /**
+   * The sample checksum of a whole file.
+   */
+  static long checksum(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      long length = raf.length();
+      int headLength = (int) Math.min(length, SAMPLE_SIZE);
+      int tailLength = (int) Math.min(SAMPLE_SIZE, Math.max(0, length - SAMPLE_SIZE));
+      byte[] buffer = new byte[headLength];
+      raf.readFully(buffer);
+      CRC32 crc = new CRC32();
+      crc.update(buffer);
+      buffer = new byte[tailLength];
+      raf.seek(length - tailLength);
+      raf.readFully(buffer);
+      crc.update(buffer);
+      return crc.getValue();
+    }
+  }
+
+  /**
+   * The sample checksum of the bytes that have been read so far.
+   */
+  long getValue() {
+    CRC32 crc = new CRC32();
+    crc.update(head, 0, (int) Math.min(count, SAMPLE_SIZE));
+    int tailLength = (int) Math.min(SAMPLE_SIZE, Math.max(0, count - SAMPLE_SIZE));
+    int start = count - SAMPLE_SIZE > SAMPLE_SIZE ? (int) ((count - SAMPLE_SIZE) % SAMPLE_SIZE) : 0;
+    int first = Math.min(tailLength, SAMPLE_SIZE - start);
+    crc.update(tail, start, first);
+    crc.update(tail, 0, tailLength - first);
+    return crc.getValue();
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b != -1) {
+      update(new byte[] {(byte) b}, 0, 1);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int read = super.read(b, off, len);
+    if (read > 0) {
+      update(b, off, read);
+    }
+    return read;
+  }
+
+  /**
+   * Skipped bytes are read, they might be part of the sample.
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    byte[] buffer = new byte[(int) Math.min(n, 8192)];
+    long skipped = 0;
+    while (skipped < n) {
+      int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+      if (read == -1) {
+        break;
+      }
+      skipped += read;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  private void update(byte[] b, int off, int len) {
+    if (count < SAMPLE_SIZE) {
+      int chunk = (int) Math.min(len, SAMPLE_SIZE - count);
+      System.arraycopy(b, off, head, (int) count, chunk);
+      count += chunk;
+      off += chunk;
+      len -= chunk;
+    }
+    while (len > 0) {
+      int position = (int) ((count - SAMPLE_SIZE) % SAMPLE_SIZE);
+      int chunk = Math.min(len, SAMPLE_SIZE - position);
+      System.arraycopy(b, off, tail, position, chunk);
+      count += chunk;
+      off += chunk;
+      len -= chunk;
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Table;
+
+/**
+ * The length and the checksums of the data file a sidecar file ({@link RecordIndex}, {@link KeyIndex}, {@link BlockStatistics}) has been built from.
+ * <p/>
+ * The CRC32 of the first and last bytes (see {@link SampleChecksumInputStream}) matches a sidecar file to its data file cheaply,
+ * the CRC32 of the whole file detects any change but requires reading the whole file.
+ */
+final class SidecarHeader {
+
+  private final long fileLength;
+  private final long sampleChecksum;
+  private final long checksum;
+
+  SidecarHeader(long fileLength, long sampleChecksum, long checksum) {
+    this.fileLength = fileLength;
+    this.sampleChecksum = sampleChecksum;
+    this.checksum = checksum;
+  }
+
+  /**
+   * Reads a header that has been written by {@link #write(DataOutput)}.
+   */
+  static SidecarHeader read(DataInput in) throws IOException {
+    long fileLength = in.readLong();
+    long sampleChecksum = in.readLong();
+    long checksum = in.readLong();
+    return new SidecarHeader(fileLength, sampleChecksum, checksum);
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeLong(fileLength);
+    out.writeLong(sampleChecksum);
+    out.writeLong(checksum);
+  }
+
+  /**
+   * Whether the given file is the one this header has been built from, i.e. its length and the checksum of its first and last bytes still match.
+   * Only a few KB of the file are read.
+   */
+  boolean matches(File dataFile) throws IOException {
+    return dataFile.length() == fileLength && SampleChecksumInputStream.checksum(dataFile) == sampleChecksum;
+  }
+
+  /**
+   * Like {@link #matches(File)} but compares the checksum of the whole file, this reads the whole file.
+   */
+  boolean verify(File dataFile) throws IOException {
+    return dataFile.length() == fileLength && checksum(dataFile) == checksum;
+  }
+
+  /**
+   * The CRC32 checksum of a whole file.
+   */
+  static long checksum(File file) throws IOException {
+    try (InputStream is = Files.newInputStream(file.toPath())) {
+      return checksum(is);
+    }
+  }
+
+  /**
+   * The CRC32 checksum of the rest of a stream, the stream is not closed.
+   */
+  static long checksum(InputStream inputStream) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] buffer = new byte[64 * 1024];
+    int read;
+    while ((read = inputStream.read(buffer)) != -1) {
+      crc.update(buffer, 0, read);
+    }
+    return crc.getValue();
+  }
+
+  long getFileLength() {
+    return fileLength;
+  }
+
+  long getSampleChecksum() {
+    return sampleChecksum;
+  }
+
+  long getChecksum() {
+    return checksum;
+  }
+
+  /**
+   * Computes the header while a table is being lexed, the stream has to be wrapped with {@link #wrap(InputStream)} before it's lexed.
+   */
+  static final class Builder {
+
+    private final CRC32 crc = new CRC32();
+    private CountingInputStream counter;
+    private SampleChecksumInputStream sample;
+
+    InputStream wrap(InputStream inputStream) {
+      counter = new CountingInputStream(inputStream);
+      sample = new SampleChecksumInputStream(counter);
+      return new CheckedInputStream(sample, crc);
+    }
+
+    /**
+     * Call this after the lexer has reached the end of the file.
+     *
+     * @throws ParsingException if the record offsets of the lexer can't be trusted
+     */
+    SidecarHeader finish(GdpduDataLexer lexer, Table table) throws ParsingException {
+      if (lexer.getByteOffset() == -1) {
+        throw new ParsingException("Table [" + table.getName() + "] can't be indexed, offsets can't be computed for its encoding");
+      }
+      if (lexer.getByteOffset() != counter.getCount()) {
+        throw new ParsingException("Table [" + table.getName() + "] can't be indexed, it contains malformed characters (read ["
+                                   + counter.getCount() + "] bytes but counted [" + lexer.getByteOffset() + "])");
+      }
+      return new SidecarHeader(counter.getCount(), sample.getValue(), crc.getValue());
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A private temporary directory for spill files of operators that don't fit into memory, it is only created when the first file is needed.
+ * Closing it deletes the directory including all files that are still in there.
+ */
+public final class SpillDirectory implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SpillDirectory.class);
+
+  private final Path parent;
+  private Path directory;
+
+  /**
+   * @param parent directory in which the temporary directory is created, null uses the default temporary directory
+   */
+  public SpillDirectory(Path parent) {
+    this.parent = parent;
+  }
+
+  /**
+   * @return the path of a file in this directory, the file itself is not created
+   */
+  public Path newFile(String name) throws IOException {
+    if (directory == null) {
+      directory = parent == null
+        ? Files.createTempDirectory("gdpdu-")
+        : Files.createTempDirectory(Files.createDirectories(parent), "gdpdu-");
+    }
+    return directory.resolve(name);
+  }
+
+  @Override
+  public void close() {
+    if (directory == null) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(SpillDirectory::deleteQuietly);
+    } catch (IOException e) {
+      LOG.warn("Could not delete spill directory [{}]", directory, e);
+    }
+    directory = null;
+  }
+
+  private static void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      LOG.warn("Could not delete [{}]", path, e);
+    }
+  }
+
+}
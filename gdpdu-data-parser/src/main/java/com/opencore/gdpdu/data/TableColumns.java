@@ -0,0 +1,53 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+
+/**
+ * Resolves the columns of a VariableLength table to their positions in a {@link Record}.
+ */
+public final class TableColumns {
+
+  private TableColumns() {
+  }
+
+  /**
+   * Returns the column definitions in the order they appear in a record: the primary key columns first, then the other columns.
+   */
+  public static List<VariableColumn> getColumns(Table table) {
+    List<VariableColumn> columns = new ArrayList<>(table.getVariableLength().getVariablePrimaryKeys());
+    columns.addAll(table.getVariableLength().getVariableColumns());
+    return columns;
+  }
+
+  /**
+   * @param columns the columns as returned by {@link #getColumns(Table)}
+   * @return the position of the column in a record
+   * @throws ParsingException if the table has no column with this name
+   */
+  public static int findColumn(List<VariableColumn> columns, String name, Table table) throws ParsingException {
+    for (int i = 0; i < columns.size(); i++) {
+      if (columns.get(i).getName().equals(name)) {
+        return i;
+      }
+    }
+    throw new ParsingException("Column [" + name + "] doesn't exist in table [" + table.getName() + "]");
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Objects;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the records that have been appended to a data file since the last read, e.g. of a journal that is written throughout the day.
+ * <p/>
+ * The reader remembers the position after the last complete record as a {@link Checkpoint}, every read continues there and
+ * stops at the end of the file as it was when the read started. A last record that isn't terminated by a record delimiter yet
+ * is not returned, the next read starts with it again. The position can be persisted with {@link #getCheckpoint()} to continue
+ * in another process.
+ * <p/>
+ * The file must only be appended to, a file that is shorter than at the last read is reported as an error.
+ * This class is not thread-safe.
+ */
+public final class TailReader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TailReader.class);
+
+  private final Table table;
+  private ParseLimits limits;
+  private Checkpoint checkpoint;
+
+  public TailReader(Table table) {
+    this(table, null);
+  }
+
+  /**
+   * @param checkpoint the position to continue at, e.g. from a previous process, or null to start at the beginning of the file
+   */
+  public TailReader(Table table, Checkpoint checkpoint) {
+    this.table = Objects.requireNonNull(table, "'table' can't be null");
+    this.checkpoint = checkpoint;
+  }
+
+  /**
+   * Limits for the lexer, null for no limits.
+   */
+  public void setLimits(ParseLimits limits) {
+    this.limits = limits;
+  }
+
+  /**
+   * The position after the last complete record that has been read or null if nothing has been read yet.
+   */
+  public Checkpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  /**
+   * Parses the complete records that have been appended since the last read.
+   */
+  public <T> List<T> read(File dataFile, Class<T> clazz) throws ParsingException {
+    Objects.requireNonNull(clazz, "'clazz' can't be null");
+
+    MappingHandler<T> handler = new MappingHandler<>(table, GdpduDataParser.createContext(table, limits), clazz);
+    read(dataFile, handler);
+    return handler.getResults();
+  }
+
+  /**
+   * Passes the complete records that have been appended since the last read to the handler.
+   *
+   * @return the number of records that have been passed to the handler
+   */
+  public long read(File dataFile, RecordHandler handler) throws ParsingException {
+    Objects.requireNonNull(dataFile, "'dataFile' can't be null");
+    Objects.requireNonNull(handler, "'handler' can't be null");
+
+    // Appends after this point are left for the next read
+    long length = dataFile.length();
+    if (checkpoint != null) {
+      checkpoint.checkFileLength(length);
+    }
+    if (length == (checkpoint == null ? 0 : checkpoint.getByteOffset())) {
+      return 0;
+    }
+
+    long count = 0;
+    try (InputStream is = new FileInputStream(dataFile);
+         RecordCursor cursor = GdpduDataParser.openVariableLengthTable(new BoundedInputStream(is, length), length, table, limits, checkpoint)) {
+      while (cursor.next()) {
+        if (!cursor.isTerminated()) {
+          LOG.debug("Last record of table [{}] is not terminated yet, it will be read again", table.getName());
+          break;
+        }
+        handler.handle(cursor.getRecordNumber(), cursor.getRecord());
+        checkpoint = cursor.checkpoint();
+        count++;
+      }
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    LOG.debug("Read [{}] new records of table [{}]", count, table.getName());
+    return count;
+  }
+
+}
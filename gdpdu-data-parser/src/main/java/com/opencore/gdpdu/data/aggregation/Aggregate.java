@@ -0,0 +1,72 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.aggregation;
+
+import java.util.Objects;
+
+/**
+ * One aggregate function of an {@link Aggregation}, e.g. the sum of a {@code Numeric} column.
+ */
+public final class Aggregate {
+
+  private final Function function;
+  private final String column;
+
+  private Aggregate(Function function, String column) {
+    this.function = function;
+    this.column = column;
+  }
+
+  /**
+   * Number of records per group.
+   */
+  public static Aggregate count() {
+    return new Aggregate(Function.COUNT, null);
+  }
+
+  public static Aggregate sum(String column) {
+    return new Aggregate(Function.SUM, Objects.requireNonNull(column, "'column' can't be null"));
+  }
+
+  public static Aggregate min(String column) {
+    return new Aggregate(Function.MIN, Objects.requireNonNull(column, "'column' can't be null"));
+  }
+
+  public static Aggregate max(String column) {
+    return new Aggregate(Function.MAX, Objects.requireNonNull(column, "'column' can't be null"));
+  }
+
+  public Function getFunction() {
+    return function;
+  }
+
+  /**
+   * The {@code Numeric} column this aggregate reads, null for {@link Function#COUNT}.
+   */
+  public String getColumn() {
+    return column;
+  }
+
+  @Override
+  public String toString() {
+    return function.name().toLowerCase() + "(" + (column == null ? "" : column) + ")";
+  }
+
+  public enum Function {
+    COUNT,
+    SUM,
+    MIN,
+    MAX
+  }
+
+}
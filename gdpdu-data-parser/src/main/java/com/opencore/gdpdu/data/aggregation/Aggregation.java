@@ -0,0 +1,278 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.aggregation;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.data.KeyEncoder;
+import com.opencore.gdpdu.data.NumericValue;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.data.PipelinedTableParser;
+import com.opencore.gdpdu.data.Record;
+import com.opencore.gdpdu.data.RecordFilter;
+import com.opencore.gdpdu.data.RecordHandler;
+import com.opencore.gdpdu.data.TableColumns;
+import com.opencore.gdpdu.index.models.AccuracyType;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A streaming group-by over a table, e.g. the sum of all amounts per VAT rate.
+ * <p/>
+ * Records are grouped by the raw values of the group by columns and aggregated in a single pass without mapping them to objects.
+ * Group state lives in primitive hash maps and sums are kept as scaled {@code long}s, so memory only depends on the number of groups.
+ * With more than one thread every mapper thread of a {@link PipelinedTableParser} aggregates into its own partial result,
+ * the partial results are merged at the end.
+ * <p/>
+ * An instance can be reused for multiple tables but not concurrently.
+ */
+public final class Aggregation {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Aggregation.class);
+
+  private final List<String> groupBy;
+  private final List<Aggregate> aggregates;
+  private int threads = 1;
+  private RecordFilter filter;
+  private ParseLimits limits;
+
+  /**
+   * @param groupBy    the columns to group by, an empty list puts all records into a single group
+   * @param aggregates the aggregates to compute per group
+   */
+  public Aggregation(List<String> groupBy, List<Aggregate> aggregates) {
+    this.groupBy = new ArrayList<>(Objects.requireNonNull(groupBy, "'groupBy' can't be null"));
+    this.aggregates = new ArrayList<>(Objects.requireNonNull(aggregates, "'aggregates' can't be null"));
+  }
+
+  /**
+   * @param threads number of threads that aggregate records, 1 aggregates them on the calling thread
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("'threads' must be at least 1, was [" + threads + "]");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Only records matching the filter are aggregated, null aggregates all records.
+   */
+  public void setFilter(RecordFilter filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Limits for the lexer, null for no limits.
+   */
+  public void setLimits(ParseLimits limits) {
+    this.limits = limits;
+  }
+
+  public AggregationResult aggregate(InputStream tableStream, Table table) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    if (table.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be aggregated");
+    }
+
+    List<VariableColumn> columns = TableColumns.getColumns(table);
+    int[] groupColumns = new int[groupBy.size()];
+    for (int i = 0; i < groupColumns.length; i++) {
+      groupColumns[i] = TableColumns.findColumn(columns, groupBy.get(i), table);
+    }
+    Aggregate[] functions = aggregates.toArray(new Aggregate[0]);
+    int[] valueColumns = new int[functions.length];
+    int[] impliedScales = new int[functions.length];
+    for (int i = 0; i < functions.length; i++) {
+      if (functions[i].getFunction() == Aggregate.Function.COUNT) {
+        valueColumns[i] = -1;
+        continue;
+      }
+      valueColumns[i] = TableColumns.findColumn(columns, functions[i].getColumn(), table);
+      VariableColumn column = columns.get(valueColumns[i]);
+      if (column.getDataType() != DataType.Numeric) {
+        throw new ParsingException("Column [" + column.getName() + "] of table [" + table.getName() + "] is not Numeric");
+      }
+      // With ImpliedAccuracy the decimal places are not written, "100" with an accuracy of 2 means 1.00
+      impliedScales[i] = column.getAccuracyType() == AccuracyType.ImpliedAccuracy ? (int) column.getAccuracy() : 0;
+    }
+
+    Plan plan = new Plan(table, groupColumns, functions, valueColumns, impliedScales);
+    List<Worker> workers;
+    if (threads == 1) {
+      Worker worker = new Worker(plan, filter);
+      GdpduDataParser.scanVariableLengthTable(tableStream, table, limits, worker);
+      workers = Collections.singletonList(worker);
+    } else {
+      PipelinedTableParser parser = new PipelinedTableParser(threads, PipelinedTableParser.DEFAULT_RING_SIZE, limits);
+      workers = parser.scan(tableStream, table, () -> new Worker(plan, filter));
+    }
+
+    GroupState state = new GroupState(functions);
+    for (Worker worker : workers) {
+      state.merge(worker.state);
+    }
+    AggregationResult result = toResult(state, functions);
+    LOG.debug("Finished aggregation of table [{}]: {}", table.getName(), result);
+    return result;
+  }
+
+  private AggregationResult toResult(GroupState state, Aggregate[] functions) {
+    List<AggregationResult.Group> groups = new ArrayList<>(state.getGroups().size());
+    long records = 0;
+    for (int group = 0; group < state.getGroups().size(); group++) {
+      List<BigDecimal> values = new ArrayList<>(functions.length);
+      for (int i = 0; i < functions.length; i++) {
+        if (functions[i].getFunction() == Aggregate.Function.COUNT) {
+          values.add(BigDecimal.valueOf(state.getCount(group)));
+        } else if (state.hasValue(i, group)) {
+          values.add(BigDecimal.valueOf(state.getValue(i, group), state.getScale(i)));
+        } else {
+          values.add(functions[i].getFunction() == Aggregate.Function.SUM ? BigDecimal.ZERO : null);
+        }
+      }
+      groups.add(new AggregationResult.Group(state.getGroups().getKey(group), state.getCount(group), values));
+      records += state.getCount(group);
+    }
+    groups.sort(Aggregation::compareKeys);
+    return new AggregationResult(groupBy, aggregates, groups, records, state.getInvalidValues());
+  }
+
+  private static int compareKeys(AggregationResult.Group first, AggregationResult.Group second) {
+    for (int i = 0; i < first.getKey().size(); i++) {
+      int result = first.getKey().get(i).compareTo(second.getKey().get(i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Everything a worker needs to know about the table, shared by all workers.
+   */
+  private static final class Plan {
+
+    private final String decimalSymbol;
+    private final String digitGroupingSymbol;
+    private final int[] groupColumns;
+    private final Aggregate[] functions;
+    private final int[] valueColumns;
+    private final int[] impliedScales;
+    private final int requiredColumns;
+    private final Table table;
+
+    private Plan(Table table, int[] groupColumns, Aggregate[] functions, int[] valueColumns, int[] impliedScales) {
+      this.table = table;
+      this.decimalSymbol = table.getDecimalSymbol();
+      this.digitGroupingSymbol = table.getDigitGroupingSymbol() == null ? "" : table.getDigitGroupingSymbol();
+      this.groupColumns = groupColumns;
+      this.functions = functions;
+      this.valueColumns = valueColumns;
+      this.impliedScales = impliedScales;
+      int required = 0;
+      for (int column : groupColumns) {
+        required = Math.max(required, column + 1);
+      }
+      this.requiredColumns = required;
+    }
+  }
+
+  /**
+   * Aggregates the records of one thread into its own {@link GroupState}.
+   */
+  private static final class Worker implements RecordHandler {
+
+    private final Plan plan;
+    private final RecordFilter filter;
+    private final GroupState state;
+    private final KeyEncoder encoder = new KeyEncoder();
+    private final NumericValue value = new NumericValue();
+    private RecordFilter.Predicate predicate;
+
+    private Worker(Plan plan, RecordFilter filter) {
+      this.plan = plan;
+      this.filter = filter;
+      this.state = new GroupState(plan.functions);
+    }
+
+    @Override
+    public void handle(long recordNumber, Record record) throws ParsingException {
+      if (filter != null && predicate == null) {
+        // Predicates are not thread-safe, every worker binds its own
+        predicate = filter.bind(plan.table);
+      }
+      if (predicate != null && !predicate.test(record)) {
+        return;
+      }
+      List<String> columns = record.getColumns();
+      if (columns.size() < plan.requiredColumns) {
+        LOG.debug("Record [{}] has only [{}] columns, it can't be grouped", recordNumber, columns.size());
+        return;
+      }
+
+      encoder.reset();
+      for (int column : plan.groupColumns) {
+        encoder.add(columns.get(column));
+      }
+      int group = state.group(encoder.hash(), encoder.getBuffer(), encoder.getLength());
+      state.addRecord(group);
+
+      // Aggregates over the same column (e.g. min and max) decode its value only once
+      int decodedColumn = -1;
+      boolean valid = false;
+      for (int i = 0; i < plan.functions.length; i++) {
+        int column = plan.valueColumns[i];
+        if (column == -1 || column >= columns.size() || columns.get(column).isEmpty()) {
+          continue;
+        }
+        if (column != decodedColumn) {
+          decodedColumn = column;
+          valid = value.decode(columns.get(column), plan.decimalSymbol, plan.digitGroupingSymbol);
+          if (!valid) {
+            state.addInvalidValue();
+          }
+        }
+        if (!valid) {
+          continue;
+        }
+        if (value.isCompact()) {
+          state.addValue(i, group, value.getUnscaled(), value.getScale() + plan.impliedScales[i], 1);
+        } else {
+          addBigValue(i, group, value.toBigDecimal().movePointLeft(plan.impliedScales[i]));
+        }
+      }
+    }
+
+    private void addBigValue(int aggregate, int group, BigDecimal decimal) throws ParsingException {
+      BigDecimal scaled = decimal.scale() < 0 ? decimal.setScale(0) : decimal;
+      try {
+        state.addValue(aggregate, group, scaled.unscaledValue().longValueExact(), scaled.scale(), 1);
+      } catch (ArithmeticException e) {
+        throw new ParsingException("Value [" + decimal + "] of aggregate [" + plan.functions[aggregate] + "] doesn't fit into a long");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.aggregation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The groups computed by an {@link Aggregation}, ordered by their key.
+ */
+public class AggregationResult {
+
+  private final List<String> groupBy;
+  private final List<Aggregate> aggregates;
+  private final List<Group> groups;
+  private final long records;
+  private final long invalidValues;
+
+  AggregationResult(List<String> groupBy, List<Aggregate> aggregates, List<Group> groups, long records, long invalidValues) {
+    this.groupBy = Collections.unmodifiableList(new ArrayList<>(groupBy));
+    this.aggregates = Collections.unmodifiableList(new ArrayList<>(aggregates));
+    this.groups = new ArrayList<>(groups);
+    this.records = records;
+    this.invalidValues = invalidValues;
+  }
+
+  public List<String> getGroupBy() {
+    return groupBy;
+  }
+
+  public List<Aggregate> getAggregates() {
+    return aggregates;
+  }
+
+  public List<Group> getGroups() {
+    return Collections.unmodifiableList(groups);
+  }
+
+  /**
+   * Number of records that were aggregated (i.e. that matched the filter).
+   */
+  public long getRecords() {
+    return records;
+  }
+
+  /**
+   * Values of aggregated columns that were not empty but couldn't be decoded as a number, they are ignored.
+   */
+  public long getInvalidValues() {
+    return invalidValues;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", AggregationResult.class.getSimpleName() + "[", "]")
+      .add("groupBy=" + groupBy)
+      .add("aggregates=" + aggregates)
+      .add("groups=" + groups.size())
+      .add("records=" + records)
+      .add("invalidValues=" + invalidValues)
+      .toString();
+  }
+
+  public static class Group {
+
+    private final List<String> key;
+    private final long count;
+    private final List<BigDecimal> values;
+
+    Group(List<String> key, long count, List<BigDecimal> values) {
+      this.key = Collections.unmodifiableList(new ArrayList<>(key));
+      this.count = count;
+      this.values = Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    /**
+     * The values of the group by columns.
+     */
+    public List<String> getKey() {
+      return key;
+    }
+
+    /**
+     * Number of records in this group.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * One value per aggregate, in the order of {@link AggregationResult#getAggregates()}.
+     * Min and max are null if the group had no values in that column.
+     */
+    public List<BigDecimal> getValues() {
+      return values;
+    }
+
+    public BigDecimal getValue(int aggregate) {
+      return values.get(aggregate);
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Group.class.getSimpleName() + "[", "]")
+        .add("key=" + key)
+        .add("count=" + count)
+        .add("values=" + values)
+        .toString();
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.aggregation;
+
+import java.util.Arrays;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GroupMap;
+import com.opencore.gdpdu.data.NumericValue;
+
+/**
+ * The partial result of an {@link Aggregation} as seen by one thread.
+ * <p/>
+ * Values are kept as scaled {@code long}s per aggregate and group. Every aggregate has a single scale,
+ * if a value with more decimal places shows up all values of that aggregate are rescaled once.
+ * This class is not thread-safe, partial results are merged after the scan.
+ */
+final class GroupState {
+
+  private final Aggregate[] aggregates;
+  private final GroupMap groups = new GroupMap();
+  private final int[] scales;
+  private long[] counts = new long[16];
+  private final long[][] values;
+  private final long[][] valueCounts;
+  private long invalidValues;
+
+  GroupState(Aggregate[] aggregates) {
+    this.aggregates = aggregates;
+    this.scales = new int[aggregates.length];
+    this.values = new long[aggregates.length][16];
+    this.valueCounts = new long[aggregates.length][16];
+  }
+
+  int group(long hash, byte[] key, int length) {
+    int group = groups.findOrInsert(hash, key, length);
+    ensureCapacity(group);
+    return group;
+  }
+
+  void addRecord(int group) {
+    counts[group]++;
+  }
+
+  void addInvalidValue() {
+    invalidValues++;
+  }
+
+  /**
+   * @param valueCount number of values that {@code unscaled} stands for (more than one when merging)
+   */
+  void addValue(int aggregate, int group, long unscaled, int scale, long valueCount) throws ParsingException {
+    try {
+      if (scale > scales[aggregate]) {
+        rescale(aggregate, scale);
+      }
+      long value = scale < scales[aggregate] ? Math.multiplyExact(unscaled, NumericValue.pow10(scales[aggregate] - scale)) : unscaled;
+      long[] current = values[aggregate];
+      boolean first = valueCounts[aggregate][group] == 0;
+      switch (aggregates[aggregate].getFunction()) {
+        case SUM:
+          current[group] = Math.addExact(current[group], value);
+          break;
+        case MIN:
+          current[group] = first ? value : Math.min(current[group], value);
+          break;
+        case MAX:
+          current[group] = first ? value : Math.max(current[group], value);
+          break;
+        default:
+          break;
+      }
+      valueCounts[aggregate][group] += valueCount;
+    } catch (ArithmeticException e) {
+      throw new ParsingException("Aggregate [" + aggregates[aggregate] + "] doesn't fit into a long with [" + scale + "] decimal places");
+    }
+  }
+
+  /**
+   * Adds all groups of another partial result to this one.
+   */
+  void merge(GroupState other) throws ParsingException {
+    for (int otherGroup = 0; otherGroup < other.groups.size(); otherGroup++) {
+      int group = groups.findOrInsert(other.groups, otherGroup);
+      ensureCapacity(group);
+      counts[group] += other.counts[otherGroup];
+      for (int i = 0; i < aggregates.length; i++) {
+        if (other.valueCounts[i][otherGroup] > 0) {
+          addValue(i, group, other.values[i][otherGroup], other.scales[i], other.valueCounts[i][otherGroup]);
+        }
+      }
+    }
+    invalidValues += other.invalidValues;
+  }
+
+  GroupMap getGroups() {
+    return groups;
+  }
+
+  long getCount(int group) {
+    return counts[group];
+  }
+
+  boolean hasValue(int aggregate, int group) {
+    return valueCounts[aggregate][group] > 0;
+  }
+
+  long getValue(int aggregate, int group) {
+    return values[aggregate][group];
+  }
+
+  int getScale(int aggregate) {
+    return scales[aggregate];
+  }
+
+  long getInvalidValues() {
+    return invalidValues;
+  }
+
+  /**
+   * New groups are always numbered one past the last one, so the arrays only need to grow when that index is reached.
+   */
+  private void ensureCapacity(int group) {
+    if (group == counts.length) {
+      counts = Arrays.copyOf(counts, group * 2);
+      for (int i = 0; i < aggregates.length; i++) {
+        values[i] = Arrays.copyOf(values[i], group * 2);
+        valueCounts[i] = Arrays.copyOf(valueCounts[i], group * 2);
+      }
+    }
+  }
+
+  private void rescale(int aggregate, int scale) {
+    long factor = NumericValue.pow10(scale - scales[aggregate]);
+    long[] current = values[aggregate];
+    for (int group = 0; group < groups.size(); group++) {
+      if (valueCounts[aggregate][group] > 0) {
+        current[group] = Math.multiplyExact(current[group], factor);
+      }
+    }
+    scales[aggregate] = scale;
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.batch;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The aggregated outcome of a {@link GdpduBatchProcessor} run.
+ */
+public class BatchReport {
+
+  private final List<ArchiveResult> results;
+  private final long elapsedMillis;
+
+  BatchReport(List<ArchiveResult> results, long elapsedMillis) {
+    this.results = new ArrayList<>(results);
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * One result per archive in the order in which the archives were discovered.
+   */
+  public List<ArchiveResult> getResults() {
+    return Collections.unmodifiableList(results);
+  }
+
+  public List<ArchiveResult> getFailures() {
+    List<ArchiveResult> failures = new ArrayList<>();
+    for (ArchiveResult result : results) {
+      if (!result.isSuccess()) {
+        failures.add(result);
+      }
+    }
+    return failures;
+  }
+
+  public int getSucceeded() {
+    return results.size() - getFailed();
+  }
+
+  public int getFailed() {
+    int failed = 0;
+    for (ArchiveResult result : results) {
+      if (!result.isSuccess()) {
+        failed++;
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Wall clock time of the whole run.
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", BatchReport.class.getSimpleName() + "[", "]")
+      .add("archives=" + results.size())
+      .add("succeeded=" + getSucceeded())
+      .add("failed=" + getFailed())
+      .add("elapsedMillis=" + elapsedMillis)
+      .toString();
+  }
+
+  public static class ArchiveResult {
+
+    private final Path indexXml;
+    private final Exception failure;
+    private final long elapsedMillis;
+
+    ArchiveResult(Path indexXml, Exception failure, long elapsedMillis) {
+      this.indexXml = indexXml;
+      this.failure = failure;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    public Path getIndexXml() {
+      return indexXml;
+    }
+
+    public boolean isSuccess() {
+      return failure == null;
+    }
+
+    /**
+     * The exception that aborted processing of this archive or null if it succeeded.
+     */
+    public Exception getFailure() {
+      return failure;
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", ArchiveResult.class.getSimpleName() + "[", "]")
+        .add("indexXml=" + indexXml)
+        .add("failure=" + failure)
+        .add("elapsedMillis=" + elapsedMillis)
+        .toString();
+    }
+  }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.DaemonThreadFactory;
+import com.opencore.gdpdu.data.GdpduArchive;
+import com.opencore.gdpdu.index.GdpduIndexCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This processes all GDPdU archives (i.e. every {@code index.xml} file) below a directory concurrently.
+ * <p/>
+ * Each archive runs on its own virtual thread when the JVM supports them (Java 21+), otherwise a pool of platform threads is used.
+ * The number of archives that are processed at the same time is limited globally in both cases.
+ * <p/>
+ * Work that doesn't depend on a single archive is shared between all of them:
+ * Identical {@code index.xml} files are only parsed and validated once (see {@link GdpduIndexCache}),
+ * class information is global anyway.
+ */
+public final class GdpduBatchProcessor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GdpduBatchProcessor.class);
+
+  private static final String INDEX_XML = "index.xml";
+  private static final String ZIP_SUFFIX = ".zip";
+
+  private final int maxConcurrency;
+  private final GdpduIndexCache indexCache;
+
+  public GdpduBatchProcessor(int maxConcurrency) {
+    this(maxConcurrency, new GdpduIndexCache());
+  }
+
+  /**
+   * @param maxConcurrency maximum number of archives that are processed at the same time
+   * @param indexCache     cache for parsed {@code index.xml} files, can be shared between multiple runs
+   */
+  public GdpduBatchProcessor(int maxConcurrency, GdpduIndexCache indexCache) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("'maxConcurrency' must be at least 1, was [" + maxConcurrency + "]");
+    }
+    this.maxConcurrency = maxConcurrency;
+    this.indexCache = Objects.requireNonNull(indexCache, "'indexCache' can't be null");
+  }
+
+  /**
+   * Finds all {@code index.xml} files (case-insensitive) below a directory, sorted by path.
+   */
+  public static List<Path> findIndexFiles(Path root) throws IOException {
+    Objects.requireNonNull(root, "'root' can't be null");
+    try (Stream<Path> paths = Files.walk(root)) {
+      return paths
+        .filter(Files::isRegularFile)
+        .filter(path -> path.getFileName().toString().toLowerCase(Locale.ROOT).equals(INDEX_XML))
+        .sorted()
+        .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Finds all ZIP files (case-insensitive) below a directory, sorted by path. They can be processed like {@code index.xml} files.
+   */
+  public static List<Path> findZipFiles(Path root) throws IOException {
+    Objects.requireNonNull(root, "'root' can't be null");
+    try (Stream<Path> paths = Files.walk(root)) {
+      return paths
+        .filter(Files::isRegularFile)
+        .filter(path -> path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(ZIP_SUFFIX))
+        .sorted()
+        .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Opens every archive below {@code root} and runs the task for it.
+   * A failing archive does not abort the run, it is recorded in the report instead.
+   */
+  public BatchReport process(Path root, ArchiveTask task) throws IOException {
+    return process(findIndexFiles(root), task);
+  }
+
+  /**
+   * Runs the task for every archive, the paths are either {@code index.xml} files or ZIP files containing them.
+   */
+  public BatchReport process(List<Path> indexFiles, ArchiveTask task) {
+    Objects.requireNonNull(indexFiles, "'indexFiles' can't be null");
+    Objects.requireNonNull(task, "'task' can't be null");
+
+    long start = System.nanoTime();
+    Semaphore permits = new Semaphore(maxConcurrency);
+    ExecutorService executor = newExecutor(maxConcurrency);
+    List<Future<BatchReport.ArchiveResult>> futures = new ArrayList<>(indexFiles.size());
+    try {
+      for (Path indexFile : indexFiles) {
+        futures.add(executor.submit(() -> processArchive(indexFile, task, permits)));
+      }
+
+      List<BatchReport.ArchiveResult> results = new ArrayList<>(futures.size());
+      for (int i = 0; i < futures.size(); i++) {
+        results.add(getResult(indexFiles.get(i), futures.get(i)));
+      }
+      BatchReport report = new BatchReport(results, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      LOG.debug("Finished batch: {}", report);
+      return report;
+    } finally {
+      shutdown(executor);
+    }
+  }
+
+  private BatchReport.ArchiveResult processArchive(Path indexFile, ArchiveTask task, Semaphore permits) throws InterruptedException {
+    permits.acquire();
+    long start = System.nanoTime();
+    try {
+      try (GdpduArchive archive = openArchive(indexFile)) {
+        task.process(archive);
+      }
+      return new BatchReport.ArchiveResult(indexFile, null, elapsedMillis(start));
+    } catch (ParsingException | IOException | RuntimeException e) {
+      LOG.warn("Processing archive [{}] failed", indexFile, e);
+      return new BatchReport.ArchiveResult(indexFile, e, elapsedMillis(start));
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * ZIP files are read directly, anything else is expected to be an {@code index.xml} file.
+   */
+  private GdpduArchive openArchive(Path path) throws ParsingException {
+    if (path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(ZIP_SUFFIX)) {
+      return GdpduArchive.openZip(path.toFile(), indexCache);
+    }
+    return GdpduArchive.open(path.toFile(), indexCache);
+  }
+
+  private static BatchReport.ArchiveResult getResult(Path indexFile, Future<BatchReport.ArchiveResult> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new BatchReport.ArchiveResult(indexFile, e, 0);
+    } catch (ExecutionException e) {
+      Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      return new BatchReport.ArchiveResult(indexFile, cause, 0);
+    }
+  }
+
+  private static long elapsedMillis(long startNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Virtual threads are only available from Java 21 on but we still support Java 11, so we look them up reflectively.
+   * Concurrency is limited by a semaphore in both cases, the platform thread pool just doesn't need more threads than that.
+   */
+  static ExecutorService newExecutor(int maxConcurrency) {
+    try {
+      ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      LOG.trace("Using virtual threads");
+      return executor;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.trace("Virtual threads are not available, falling back to platform threads");
+    }
+
+    return Executors.newFixedThreadPool(maxConcurrency, new DaemonThreadFactory("gdpdu-batch-"));
+  }
+
+  private static void shutdown(ExecutorService executor) {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
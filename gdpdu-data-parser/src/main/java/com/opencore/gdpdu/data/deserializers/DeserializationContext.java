@@ -28,6 +28,11 @@ public class DeserializationContext {
 
   private Charset charset;
 
+  private long maxColumnLength = Long.MAX_VALUE;
+  private long[] columnMaxLengths;
+  private long maxRecordLength = Long.MAX_VALUE;
+  private boolean skipOversizedRecords;
+
   public boolean isTrim() {
     return trim;
   }
@@ -94,4 +99,55 @@ public class DeserializationContext {
   public void setCharset(Charset charset) {
     this.charset = charset;
   }
+
+  /**
+   * Maximum number of characters of a single column, applies to all columns without an entry in {@link #getColumnMaxLengths()}.
+   */
+  public long getMaxColumnLength() {
+    return maxColumnLength;
+  }
+
+  public void setMaxColumnLength(long maxColumnLength) {
+    if (maxColumnLength < 0) {
+      throw new IllegalArgumentException("'maxColumnLength' must be 0 or larger");
+    }
+    this.maxColumnLength = maxColumnLength;
+  }
+
+  /**
+   * Maximum number of characters per column by column position, negative entries mean "use {@link #getMaxColumnLength()}".
+   * This may be null.
+   */
+  public long[] getColumnMaxLengths() {
+    return columnMaxLengths;
+  }
+
+  public void setColumnMaxLengths(long[] columnMaxLengths) {
+    this.columnMaxLengths = columnMaxLengths;
+  }
+
+  /**
+   * Maximum number of characters of all columns of a record combined.
+   */
+  public long getMaxRecordLength() {
+    return maxRecordLength;
+  }
+
+  public void setMaxRecordLength(long maxRecordLength) {
+    if (maxRecordLength < 0) {
+      throw new IllegalArgumentException("'maxRecordLength' must be 0 or larger");
+    }
+    this.maxRecordLength = maxRecordLength;
+  }
+
+  /**
+   * If true the lexer drops records that exceed one of the limits and continues with the next record, otherwise it fails.
+   */
+  public boolean isSkipOversizedRecords() {
+    return skipOversizedRecords;
+  }
+
+  public void setSkipOversizedRecords(boolean skipOversizedRecords) {
+    this.skipOversizedRecords = skipOversizedRecords;
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.join;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.opencore.gdpdu.data.GroupMap;
+import com.opencore.gdpdu.data.HeapSize;
+
+/**
+ * The in-memory side of a hash join: all records of a table grouped by their encoded key.
+ * <p/>
+ * Records with the same key are chained in insertion order through an {@code int} array, so a key maps to its records without a list per key.
+ * The heap used by the records is estimated as they are added so that the join can give up on the hash strategy early.
+ * This class is not thread-safe.
+ */
+final class BuildTable {
+
+  // The row itself, its record number and the chaining entries
+  private static final int ROW_INDEX_SIZE = 4 + 8 + 4 + 4;
+
+  private final GroupMap keys = new GroupMap();
+  private int[] firstRows = new int[16];
+  private int[] lastRows = new int[16];
+  private int[] nextRows = new int[16];
+  private String[][] rows = new String[16][];
+  private long[] recordNumbers = new long[16];
+  private int size;
+  private long estimatedBytes;
+
+  void add(long hash, byte[] key, int length, long recordNumber, List<String> columns) {
+    int group = keys.findOrInsert(hash, key, length);
+    if (group == firstRows.length) {
+      firstRows = Arrays.copyOf(firstRows, group * 2);
+      lastRows = Arrays.copyOf(lastRows, group * 2);
+    }
+    if (size == rows.length) {
+      nextRows = Arrays.copyOf(nextRows, size * 2);
+      rows = Arrays.copyOf(rows, size * 2);
+      recordNumbers = Arrays.copyOf(recordNumbers, size * 2);
+    }
+
+    int row = size++;
+    String[] values = columns.toArray(new String[0]);
+    rows[row] = values;
+    recordNumbers[row] = recordNumber;
+    nextRows[row] = -1;
+    // Both hold the row number + 1 so that 0 means the key has no rows yet
+    if (lastRows[group] == 0) {
+      firstRows[group] = row + 1;
+    } else {
+      nextRows[lastRows[group] - 1] = row;
+    }
+    lastRows[group] = row + 1;
+
+    estimatedBytes += ROW_INDEX_SIZE + length + HeapSize.of(values);
+  }
+
+  /**
+   * @return the first record with the key or -1 if there is none
+   */
+  int find(long hash, byte[] key, int length) {
+    int group = keys.find(hash, key, length);
+    return group == -1 ? -1 : firstRows[group] - 1;
+  }
+
+  /**
+   * @return the next record with the same key or -1 if this was the last one
+   */
+  int next(int row) {
+    return nextRows[row];
+  }
+
+  String[] getRow(int row) {
+    return rows[row];
+  }
+
+  long getRecordNumber(int row) {
+    return recordNumbers[row];
+  }
+
+  int size() {
+    return size;
+  }
+
+  long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+
+}
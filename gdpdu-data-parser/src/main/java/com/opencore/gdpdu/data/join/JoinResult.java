@@ -0,0 +1,75 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.join;
+
+import java.util.StringJoiner;
+
+/**
+ * Statistics of a {@link TableJoin} run.
+ */
+public class JoinResult {
+
+  private final Strategy strategy;
+  private final long leftRecords;
+  private final long rightRecords;
+  private final long rows;
+
+  JoinResult(Strategy strategy, long leftRecords, long rightRecords, long rows) {
+    this.strategy = strategy;
+    this.leftRecords = leftRecords;
+    this.rightRecords = rightRecords;
+    this.rows = rows;
+  }
+
+  public Strategy getStrategy() {
+    return strategy;
+  }
+
+  public long getLeftRecords() {
+    return leftRecords;
+  }
+
+  public long getRightRecords() {
+    return rightRecords;
+  }
+
+  /**
+   * Number of rows that have been passed to the {@link JoinHandler}.
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", JoinResult.class.getSimpleName() + "[", "]")
+      .add("strategy=" + strategy)
+      .add("leftRecords=" + leftRecords)
+      .add("rightRecords=" + rightRecords)
+      .add("rows=" + rows)
+      .toString();
+  }
+
+  public enum Strategy {
+    /**
+     * The right table has been loaded into memory and the left table was streamed against it.
+     */
+    HASH,
+
+    /**
+     * Both tables are sorted by their key columns and have been streamed side by side.
+     */
+    MERGE
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.join;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * A view on one record of each side of a {@link TableJoin}.
+ * <p/>
+ * The view is reused for every row, copy the values that are needed after {@link JoinHandler#handle(JoinedRow)} returns.
+ * Columns are in record order, i.e. primary key columns first.
+ */
+public final class JoinedRow {
+
+  private final Map<String, Integer> leftColumns;
+  private final Map<String, Integer> rightColumns;
+  private long leftRecordNumber;
+  private List<String> left;
+  private long rightRecordNumber;
+  private String[] right;
+
+  JoinedRow(Map<String, Integer> leftColumns, Map<String, Integer> rightColumns) {
+    this.leftColumns = leftColumns;
+    this.rightColumns = rightColumns;
+  }
+
+  void set(long leftRecordNumber, List<String> left, long rightRecordNumber, String[] right) {
+    this.leftRecordNumber = leftRecordNumber;
+    this.left = left;
+    this.rightRecordNumber = rightRecordNumber;
+    this.right = right;
+  }
+
+  public long getLeftRecordNumber() {
+    return leftRecordNumber;
+  }
+
+  public long getRightRecordNumber() {
+    return rightRecordNumber;
+  }
+
+  public List<String> getLeft() {
+    return Collections.unmodifiableList(left);
+  }
+
+  public List<String> getRight() {
+    return Collections.unmodifiableList(Arrays.asList(right));
+  }
+
+  /**
+   * @return the value of a column of the left table or null if the record is too short to have it
+   */
+  public String getLeft(String column) {
+    int index = indexOf(leftColumns, column);
+    return index < left.size() ? left.get(index) : null;
+  }
+
+  /**
+   * @return the value of a column of the right table or null if the record is too short to have it
+   */
+  public String getRight(String column) {
+    int index = indexOf(rightColumns, column);
+    return index < right.length ? right[index] : null;
+  }
+
+  private static int indexOf(Map<String, Integer> columns, String column) {
+    Integer index = columns.get(column);
+    if (index == null) {
+      throw new IllegalArgumentException("Column [" + column + "] doesn't exist, available columns are " + columns.keySet());
+    }
+    return index;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", JoinedRow.class.getSimpleName() + "[", "]")
+      .add("leftRecordNumber=" + leftRecordNumber)
+      .add("left=" + left)
+      .add("rightRecordNumber=" + rightRecordNumber)
+      .add("right=" + Arrays.toString(right))
+      .toString();
+  }
+
+}
@@ -0,0 +1,412 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.join;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduArchive;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.data.KeyEncoder;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.data.RecordCursor;
+import com.opencore.gdpdu.data.TableColumns;
+import com.opencore.gdpdu.index.models.ForeignKey;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An inner join of two tables of a {@link com.opencore.gdpdu.index.models.DataSet}, e.g. document lines with their document headers.
+ * <p/>
+ * The right table is read first and kept in memory as long as it fits into the memory budget, the left table is then streamed against it (hash join).
+ * If the right table is too large but both tables are sorted by their key columns they are streamed side by side instead (merge join),
+ * so neither table has to fit into memory. Otherwise the join fails.
+ * <p/>
+ * Keys are compared by their raw values: {@code "1"} and {@code "01"} are different keys and "sorted" means sorted as strings
+ * (column by column), which is the case for e.g. zero-padded document numbers.
+ * Records that are too short to contain all key columns are skipped.
+ * Rows are passed to a {@link JoinHandler} in the order of the left table, matching rows of the right table in their order.
+ */
+public final class TableJoin {
+
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(TableJoin.class);
+
+  private final Table left;
+  private final List<String> leftKeys;
+  private final Table right;
+  private final List<String> rightKeys;
+  private final Map<String, Integer> leftColumns;
+  private final Map<String, Integer> rightColumns;
+  private final int[] leftKeyColumns;
+  private final int[] rightKeyColumns;
+  private final KeyEncoder encoder = new KeyEncoder();
+  private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+  private ParseLimits limits;
+
+  /**
+   * @param leftKeys  the key columns of the left table
+   * @param rightKeys the key columns of the right table, in the same order as {@code leftKeys}
+   */
+  public TableJoin(Table left, List<String> leftKeys, Table right, List<String> rightKeys) throws ParsingException {
+    this.left = Objects.requireNonNull(left, "'left' can't be null");
+    this.leftKeys = new ArrayList<>(Objects.requireNonNull(leftKeys, "'leftKeys' can't be null"));
+    this.right = Objects.requireNonNull(right, "'right' can't be null");
+    this.rightKeys = new ArrayList<>(Objects.requireNonNull(rightKeys, "'rightKeys' can't be null"));
+    if (left.getVariableLength() == null || right.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be joined");
+    }
+    if (leftKeys.isEmpty() || leftKeys.size() != rightKeys.size()) {
+      throw new ParsingException("Key columns " + leftKeys + " of table [" + left.getName() + "] don't match key columns " + rightKeys
+                                 + " of table [" + right.getName() + "]");
+    }
+    this.leftColumns = indexColumns(left);
+    this.rightColumns = indexColumns(right);
+    this.leftKeyColumns = findColumns(left, leftColumns, leftKeys);
+    this.rightKeyColumns = findColumns(right, rightColumns, rightKeys);
+  }
+
+  /**
+   * Joins the table that declares a foreign key (left) with the table it references (right).
+   */
+  public static TableJoin onForeignKey(Table table, ForeignKey foreignKey, Table referencedTable) throws ParsingException {
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(foreignKey, "'foreignKey' can't be null");
+    Objects.requireNonNull(referencedTable, "'referencedTable' can't be null");
+    if (referencedTable.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be joined");
+    }
+
+    List<String> primaryKeys = new ArrayList<>();
+    for (VariableColumn column : referencedTable.getVariableLength().getVariablePrimaryKeys()) {
+      primaryKeys.add(column.getName());
+    }
+    if (primaryKeys.size() != foreignKey.getNames().size()) {
+      throw new ParsingException("Foreign key " + foreignKey.getNames() + " of table [" + table.getName() + "] doesn't match the primary key "
+                                 + primaryKeys + " of table [" + referencedTable.getName() + "]");
+    }
+    // Without an alias the foreign key columns refer to the primary key columns by position
+    List<String> referencedKeys = new ArrayList<>(primaryKeys.size());
+    for (int i = 0; i < primaryKeys.size(); i++) {
+      String alias = foreignKey.getAliases().get(foreignKey.getNames().get(i));
+      referencedKeys.add(alias != null && primaryKeys.contains(alias) ? alias : primaryKeys.get(i));
+    }
+    return new TableJoin(table, foreignKey.getNames(), referencedTable, referencedKeys);
+  }
+
+  /**
+   * Estimated heap the right table may use for a hash join.
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException("'memoryBudget' must be at least 1, was [" + memoryBudget + "]");
+    }
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Limits for the lexer, null for no limits.
+   */
+  public void setLimits(ParseLimits limits) {
+    this.limits = limits;
+  }
+
+  public JoinResult join(GdpduArchive archive, JoinHandler handler) throws ParsingException {
+    Objects.requireNonNull(archive, "'archive' can't be null");
+    return join(() -> archive.openTable(left), () -> archive.openTable(right), handler);
+  }
+
+  /**
+   * Each table may be read more than once, that's why streams are opened on demand and closed by the join.
+   */
+  public JoinResult join(TableSource leftSource, TableSource rightSource, JoinHandler handler) throws ParsingException {
+    Objects.requireNonNull(leftSource, "'leftSource' can't be null");
+    Objects.requireNonNull(rightSource, "'rightSource' can't be null");
+    Objects.requireNonNull(handler, "'handler' can't be null");
+
+    BuildTable buildTable = new BuildTable();
+    boolean fits = true;
+    boolean sorted = true;
+    long rightRecords = 0;
+    String[] previous = null;
+    try (InputStream is = rightSource.open(); RecordCursor cursor = GdpduDataParser.openVariableLengthTable(is, right, limits)) {
+      // Even if the table doesn't fit into memory it is read to the end to find out whether it's sorted
+      while ((fits || sorted) && cursor.next()) {
+        rightRecords++;
+        List<String> values = cursor.getRecord().getColumns();
+        if (!hasColumns(values, rightKeyColumns)) {
+          continue;
+        }
+        if (sorted) {
+          String[] key = extractKey(values, rightKeyColumns);
+          sorted = previous == null || compareKeys(previous, key) <= 0;
+          previous = key;
+        }
+        if (fits) {
+          encode(values, rightKeyColumns);
+          buildTable.add(encoder.hash(), encoder.getBuffer(), encoder.getLength(), cursor.getRecordNumber(), values);
+          if (buildTable.getEstimatedBytes() > memoryBudget) {
+            LOG.debug("Table [{}] doesn't fit into the memory budget of [{}] bytes after [{}] records", right.getName(), memoryBudget, rightRecords);
+            fits = false;
+            buildTable = null;
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+
+    JoinResult result;
+    if (fits) {
+      result = hashJoin(leftSource, buildTable, rightRecords, handler);
+    } else if (sorted && isSorted(leftSource)) {
+      result = mergeJoin(leftSource, rightSource, rightRecords, handler);
+    } else {
+      throw new ParsingException("Table [" + right.getName() + "] doesn't fit into the memory budget of [" + memoryBudget + "] bytes and the tables ["
+                                 + left.getName() + "] and [" + right.getName() + "] are not both sorted by their key columns");
+    }
+    LOG.debug("Finished join of tables [{}] and [{}]: {}", left.getName(), right.getName(), result);
+    return result;
+  }
+
+  private JoinResult hashJoin(TableSource leftSource, BuildTable buildTable, long rightRecords, JoinHandler handler) throws ParsingException {
+    JoinedRow row = new JoinedRow(leftColumns, rightColumns);
+    long leftRecords = 0;
+    long rows = 0;
+    try (InputStream is = leftSource.open(); RecordCursor cursor = GdpduDataParser.openVariableLengthTable(is, left, limits)) {
+      while (cursor.next()) {
+        leftRecords++;
+        List<String> values = cursor.getRecord().getColumns();
+        if (!hasColumns(values, leftKeyColumns)) {
+          continue;
+        }
+        encode(values, leftKeyColumns);
+        for (int match = buildTable.find(encoder.hash(), encoder.getBuffer(), encoder.getLength()); match != -1; match = buildTable.next(match)) {
+          row.set(cursor.getRecordNumber(), values, buildTable.getRecordNumber(match), buildTable.getRow(match));
+          handler.handle(row);
+          rows++;
+        }
+      }
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    return new JoinResult(JoinResult.Strategy.HASH, leftRecords, rightRecords, rows);
+  }
+
+  /**
+   * Checks the order of the left table up front so that the merge join doesn't fail halfway through after passing on rows already.
+   */
+  private boolean isSorted(TableSource leftSource) throws ParsingException {
+    String[] previous = null;
+    try (InputStream is = leftSource.open(); RecordCursor cursor = GdpduDataParser.openVariableLengthTable(is, left, limits)) {
+      while (cursor.next()) {
+        List<String> values = cursor.getRecord().getColumns();
+        if (!hasColumns(values, leftKeyColumns)) {
+          continue;
+        }
+        String[] key = extractKey(values, leftKeyColumns);
+        if (previous != null && compareKeys(previous, key) > 0) {
+          LOG.debug("Table [{}] is not sorted by {}, record [{}] is out of order", left.getName(), leftKeys, cursor.getRecordNumber());
+          return false;
+        }
+        previous = key;
+      }
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    return true;
+  }
+
+  private JoinResult mergeJoin(TableSource leftSource, TableSource rightSource, long rightRecords, JoinHandler handler) throws ParsingException {
+    JoinedRow row = new JoinedRow(leftColumns, rightColumns);
+    long leftRecords = 0;
+    long rows = 0;
+    try (InputStream leftStream = leftSource.open();
+         RecordCursor leftCursor = GdpduDataParser.openVariableLengthTable(leftStream, left, limits);
+         InputStream rightStream = rightSource.open();
+         RecordCursor rightCursor = GdpduDataParser.openVariableLengthTable(rightStream, right, limits)) {
+      RightGroups groups = new RightGroups(rightCursor);
+      while (leftCursor.next()) {
+        leftRecords++;
+        List<String> values = leftCursor.getRecord().getColumns();
+        if (!hasColumns(values, leftKeyColumns)) {
+          continue;
+        }
+        String[] key = extractKey(values, leftKeyColumns);
+        while (groups.getKey() == null || compareKeys(groups.getKey(), key) < 0) {
+          if (!groups.next()) {
+            break;
+          }
+        }
+        if (groups.getKey() == null || compareKeys(groups.getKey(), key) != 0) {
+          continue;
+        }
+        for (int i = 0; i < groups.size(); i++) {
+          row.set(leftCursor.getRecordNumber(), values, groups.getRecordNumber(i), groups.getRow(i));
+          handler.handle(row);
+          rows++;
+        }
+      }
+      return new JoinResult(JoinResult.Strategy.MERGE, leftRecords, rightRecords, rows);
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  private static boolean hasColumns(List<String> values, int[] keyColumns) {
+    for (int column : keyColumns) {
+      if (column >= values.size()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void encode(List<String> values, int[] keyColumns) {
+    encoder.reset();
+    for (int column : keyColumns) {
+      encoder.add(values.get(column));
+    }
+  }
+
+  private static String[] extractKey(List<String> values, int[] keyColumns) {
+    String[] key = new String[keyColumns.length];
+    for (int i = 0; i < keyColumns.length; i++) {
+      key[i] = values.get(keyColumns[i]);
+    }
+    return key;
+  }
+
+  private static int compareKeys(String[] first, String[] second) {
+    for (int i = 0; i < first.length; i++) {
+      int result = first[i].compareTo(second[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Records start with the primary key columns followed by the other columns.
+   */
+  private static Map<String, Integer> indexColumns(Table table) {
+    Map<String, Integer> columns = new LinkedHashMap<>();
+    for (VariableColumn column : TableColumns.getColumns(table)) {
+      columns.put(column.getName(), columns.size());
+    }
+    return Collections.unmodifiableMap(columns);
+  }
+
+  private static int[] findColumns(Table table, Map<String, Integer> columns, List<String> names) throws ParsingException {
+    int[] indices = new int[names.size()];
+    for (int i = 0; i < indices.length; i++) {
+      Integer index = columns.get(names.get(i));
+      if (index == null) {
+        throw new ParsingException("Key column [" + names.get(i) + "] doesn't exist in table [" + table.getName() + "]");
+      }
+      indices[i] = index;
+    }
+    return indices;
+  }
+
+  /**
+   * Opens the data of a table, see {@link GdpduArchive#openTable(Table)}.
+   */
+  @FunctionalInterface
+  public interface TableSource {
+
+    InputStream open() throws ParsingException;
+
+  }
+
+  /**
+   * Reads the sorted right table one key at a time, all records of the current key are buffered.
+   */
+  private final class RightGroups {
+
+    private final RecordCursor cursor;
+    private final List<String[]> rows = new ArrayList<>();
+    private long[] recordNumbers = new long[16];
+    private String[] key;
+    private String[] pendingRow;
+    private String[] pendingKey;
+    private long pendingRecordNumber;
+
+    private RightGroups(RecordCursor cursor) {
+      this.cursor = cursor;
+    }
+
+    /**
+     * @return false if there are no more keys
+     */
+    boolean next() throws ParsingException {
+      rows.clear();
+      key = null;
+      if (pendingRow == null && !readPending()) {
+        return false;
+      }
+      key = pendingKey;
+      do {
+        if (rows.size() == recordNumbers.length) {
+          recordNumbers = Arrays.copyOf(recordNumbers, rows.size() * 2);
+        }
+        recordNumbers[rows.size()] = pendingRecordNumber;
+        rows.add(pendingRow);
+      } while (readPending() && compareKeys(pendingKey, key) == 0);
+      return true;
+    }
+
+    private boolean readPending() throws ParsingException {
+      pendingRow = null;
+      while (cursor.next()) {
+        List<String> values = cursor.getRecord().getColumns();
+        if (hasColumns(values, rightKeyColumns)) {
+          pendingRow = values.toArray(new String[0]);
+          pendingKey = extractKey(values, rightKeyColumns);
+          pendingRecordNumber = cursor.getRecordNumber();
+          return true;
+        }
+      }
+      return false;
+    }
+
+    String[] getKey() {
+      return key;
+    }
+
+    int size() {
+      return rows.size();
+    }
+
+    String[] getRow(int index) {
+      return rows.get(index);
+    }
+
+    long getRecordNumber(int index) {
+      return recordNumbers[index];
+    }
+  }
+
+}
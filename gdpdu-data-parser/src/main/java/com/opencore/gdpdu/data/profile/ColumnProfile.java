@@ -0,0 +1,189 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+import com.opencore.gdpdu.index.models.DataType;
+
+/**
+ * Statistics about the raw values of one column, see {@link TableProfiler}.
+ */
+public class ColumnProfile {
+
+  private final String name;
+  private final DataType dataType;
+  private final long values;
+  private final long emptyValues;
+  private final long missingValues;
+  private final long invalidValues;
+  private final String min;
+  private final String max;
+  private final int minLength;
+  private final int maxLength;
+  private final double averageLength;
+  private final SortedMap<Integer, Long> lengthDistribution;
+  private final long distinctValues;
+  private final List<FrequentValue> topValues;
+
+  ColumnProfile(String name, DataType dataType, long values, long emptyValues, long missingValues, long invalidValues, String min, String max,
+                int minLength, int maxLength, double averageLength, SortedMap<Integer, Long> lengthDistribution, long distinctValues,
+                List<FrequentValue> topValues) {
+    this.name = name;
+    this.dataType = dataType;
+    this.values = values;
+    this.emptyValues = emptyValues;
+    this.missingValues = missingValues;
+    this.invalidValues = invalidValues;
+    this.min = min;
+    this.max = max;
+    this.minLength = minLength;
+    this.maxLength = maxLength;
+    this.averageLength = averageLength;
+    this.lengthDistribution = Collections.unmodifiableSortedMap(new TreeMap<>(lengthDistribution));
+    this.distinctValues = distinctValues;
+    this.topValues = Collections.unmodifiableList(new ArrayList<>(topValues));
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public DataType getDataType() {
+    return dataType;
+  }
+
+  /**
+   * Number of values that are not empty, this includes invalid values.
+   */
+  public long getValues() {
+    return values;
+  }
+
+  public long getEmptyValues() {
+    return emptyValues;
+  }
+
+  /**
+   * Number of records that ended before this column.
+   */
+  public long getMissingValues() {
+    return missingValues;
+  }
+
+  /**
+   * Number of {@code Numeric} or {@code Date} values that can't be decoded, they are not part of {@link #getMin()} and {@link #getMax()}.
+   */
+  public long getInvalidValues() {
+    return invalidValues;
+  }
+
+  /**
+   * The smallest value as it is written in the data file, ordered by the data type of the column. Null if there are no valid values.
+   */
+  public String getMin() {
+    return min;
+  }
+
+  public String getMax() {
+    return max;
+  }
+
+  /**
+   * Length in characters of the shortest value that is not empty, 0 if there are none.
+   */
+  public int getMinLength() {
+    return minLength;
+  }
+
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  public double getAverageLength() {
+    return averageLength;
+  }
+
+  /**
+   * Number of non-empty values per length bucket, the key is the smallest length of the bucket.
+   * Buckets grow in powers of two: {@code 1, 2-3, 4-7, 8-15} etc.
+   */
+  public SortedMap<Integer, Long> getLengthDistribution() {
+    return lengthDistribution;
+  }
+
+  /**
+   * Estimated number of distinct non-empty values, the standard error is below 1%.
+   */
+  public long getDistinctValues() {
+    return distinctValues;
+  }
+
+  /**
+   * The most frequent non-empty values, ordered by their count.
+   */
+  public List<FrequentValue> getTopValues() {
+    return topValues;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", ColumnProfile.class.getSimpleName() + "[", "]")
+      .add("name='" + name + "'")
+      .add("dataType=" + dataType)
+      .add("values=" + values)
+      .add("emptyValues=" + emptyValues)
+      .add("missingValues=" + missingValues)
+      .add("invalidValues=" + invalidValues)
+      .add("min='" + min + "'")
+      .add("max='" + max + "'")
+      .add("minLength=" + minLength)
+      .add("maxLength=" + maxLength)
+      .add("distinctValues=" + distinctValues)
+      .add("topValues=" + topValues)
+      .toString();
+  }
+
+  public static class FrequentValue {
+
+    private final String value;
+    private final long count;
+
+    FrequentValue(String value, long count) {
+      this.value = value;
+      this.count = count;
+    }
+
+    public String getValue() {
+      return value;
+    }
+
+    /**
+     * A lower bound of the number of occurrences, it's exact unless the column has a lot more distinct values than are tracked.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return value + "=" + count;
+    }
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.profile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent values of a stream in bounded memory using the Misra-Gries algorithm.
+ * <p/>
+ * At most {@code 2 * capacity} counters are kept. When they are all in use the counts are lowered by the {@code capacity + 1}-th largest count
+ * in a single step, counters that drop to zero are removed. Counts are therefore lower bounds of the real counts, they are off by at most
+ * {@code n / (capacity + 1)} for {@code n} values. Summaries can be merged.
+ */
+final class FrequentValues {
+
+  private final int capacity;
+  private final Map<String, long[]> counters = new HashMap<>();
+
+  FrequentValues(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("'capacity' must be at least 1, was [" + capacity + "]");
+    }
+    this.capacity = capacity;
+  }
+
+  void add(String value) {
+    long[] counter = counters.get(value);
+    if (counter != null) {
+      counter[0]++;
+      return;
+    }
+    if (counters.size() >= 2 * capacity) {
+      reduce();
+    }
+    counters.put(value, new long[] {1});
+  }
+
+  void merge(FrequentValues other) {
+    for (Map.Entry<String, long[]> entry : other.counters.entrySet()) {
+      long[] counter = counters.get(entry.getKey());
+      if (counter == null) {
+        counters.put(entry.getKey(), new long[] {entry.getValue()[0]});
+      } else {
+        counter[0] += entry.getValue()[0];
+      }
+    }
+    if (counters.size() > 2 * capacity) {
+      reduce();
+    }
+  }
+
+  /**
+   * @return up to {@code limit} values ordered by their count (descending) and value
+   */
+  List<Map.Entry<String, Long>> top(int limit) {
+    List<Map.Entry<String, Long>> entries = new ArrayList<>(counters.size());
+    for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+      entries.add(Map.entry(entry.getKey(), entry.getValue()[0]));
+    }
+    entries.sort((first, second) -> first.getValue().equals(second.getValue())
+      ? first.getKey().compareTo(second.getKey())
+      : Long.compare(second.getValue(), first.getValue()));
+    return entries.subList(0, Math.min(limit, entries.size()));
+  }
+
+  private void reduce() {
+    long[] counts = new long[counters.size()];
+    int i = 0;
+    for (long[] counter : counters.values()) {
+      counts[i++] = counter[0];
+    }
+    Arrays.sort(counts);
+    long threshold = counts[counts.length - capacity - 1];
+    Iterator<long[]> iterator = counters.values().iterator();
+    while (iterator.hasNext()) {
+      long[] counter = iterator.next();
+      counter[0] -= threshold;
+      if (counter[0] <= 0) {
+        iterator.remove();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.profile;
+
+/**
+ * Estimates the number of distinct values in a fixed amount of memory (Flajolet et al.), the standard error is about {@code 1.04 / sqrt(2^precision)}.
+ * <p/>
+ * Values are added by their 64 bit hash, which has to be well mixed (e.g. {@link com.opencore.gdpdu.data.KeyEncoder#hash()}).
+ * Sketches with the same precision can be merged, the result is the same as if all values had been added to one sketch.
+ */
+final class HyperLogLog {
+
+  private final int precision;
+  private final byte[] registers;
+
+  HyperLogLog(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("'precision' must be between 4 and 18, was [" + precision + "]");
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  void add(long hash) {
+    int register = (int) (hash >>> (64 - precision));
+    // The sentinel bit limits the rank if all remaining bits are zero
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    if (rank > registers[register]) {
+      registers[register] = (byte) rank;
+    }
+  }
+
+  void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Can't merge sketches with precision [" + precision + "] and [" + other.precision + "]");
+    }
+    for (int i = 0; i < registers.length; i++) {
+      registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+    }
+  }
+
+  long estimate() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double alpha = 0.7213 / (1 + 1.079 / m);
+    double estimate = alpha * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      // Linear counting is more accurate for small cardinalities
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The result of a {@link TableProfiler}: One {@link ColumnProfile} per column in the order in which they are declared.
+ */
+public class TableProfile {
+
+  private final String tableName;
+  private final long records;
+  private final List<ColumnProfile> columns;
+
+  TableProfile(String tableName, long records, List<ColumnProfile> columns) {
+    this.tableName = tableName;
+    this.records = records;
+    this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  public long getRecords() {
+    return records;
+  }
+
+  public List<ColumnProfile> getColumns() {
+    return columns;
+  }
+
+  /**
+   * @return the profile of the column or null if there is no such column
+   */
+  public ColumnProfile getColumn(String name) {
+    for (ColumnProfile column : columns) {
+      if (column.getName().equals(name)) {
+        return column;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", TableProfile.class.getSimpleName() + "[", "]")
+      .add("tableName='" + tableName + "'")
+      .add("records=" + records)
+      .add("columns=" + columns)
+      .toString();
+  }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.profile;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.DatePattern;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.data.KeyEncoder;
+import com.opencore.gdpdu.data.NumericValue;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.data.PipelinedTableParser;
+import com.opencore.gdpdu.data.Record;
+import com.opencore.gdpdu.data.RecordHandler;
+import com.opencore.gdpdu.data.TableColumns;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes statistics about every column of a table in a single pass without mapping the records to objects, e.g. to decide how to process an export.
+ * <p/>
+ * Per column it counts empty and invalid values, finds the minimum and maximum (ordered by the data type of the column), the length distribution,
+ * estimates the number of distinct values with a HyperLogLog sketch and finds the most frequent values with the Misra-Gries algorithm.
+ * Memory only depends on the number of columns, not on the number of records.
+ * With more than one thread every mapper thread of a {@link PipelinedTableParser} profiles into its own state, the states are merged at the end.
+ * <p/>
+ * An instance can be reused for multiple tables but not concurrently.
+ */
+public final class TableProfiler {
+
+  public static final int DEFAULT_TOP_VALUES = 10;
+
+  private static final Logger LOG = LoggerFactory.getLogger(TableProfiler.class);
+
+  // 16 KB per column and thread, the standard error is 0.8%
+  private static final int HLL_PRECISION = 14;
+  private static final int LENGTH_BUCKETS = 32;
+
+  private int threads = 1;
+  private int topValues = DEFAULT_TOP_VALUES;
+  private ParseLimits limits;
+
+  /**
+   * @param threads number of threads that profile records, 1 profiles them on the calling thread
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("'threads' must be at least 1, was [" + threads + "]");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Number of most frequent values to report per column, 0 disables them.
+   */
+  public void setTopValues(int topValues) {
+    if (topValues < 0) {
+      throw new IllegalArgumentException("'topValues' must be at least 0, was [" + topValues + "]");
+    }
+    this.topValues = topValues;
+  }
+
+  /**
+   * Limits for the lexer, null for no limits.
+   */
+  public void setLimits(ParseLimits limits) {
+    this.limits = limits;
+  }
+
+  public TableProfile profile(InputStream tableStream, Table table) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    if (table.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be profiled");
+    }
+
+    List<VariableColumn> columns = TableColumns.getColumns(table);
+    Plan plan = new Plan(table, columns, topValues);
+    List<Worker> workers;
+    if (threads == 1) {
+      Worker worker = new Worker(plan);
+      GdpduDataParser.scanVariableLengthTable(tableStream, table, limits, worker);
+      workers = Collections.singletonList(worker);
+    } else {
+      workers = new PipelinedTableParser(threads, PipelinedTableParser.DEFAULT_RING_SIZE, limits).scan(tableStream, table, () -> new Worker(plan));
+    }
+
+    Worker result = new Worker(plan);
+    for (Worker worker : workers) {
+      result.merge(worker);
+    }
+    List<ColumnProfile> profiles = new ArrayList<>(columns.size());
+    for (int i = 0; i < columns.size(); i++) {
+      profiles.add(result.states[i].toProfile(columns.get(i), topValues));
+    }
+    TableProfile profile = new TableProfile(table.getName(), result.records, profiles);
+    LOG.debug("Finished profiling table [{}]: {} records", table.getName(), result.records);
+    return profile;
+  }
+
+  /**
+   * Everything a worker needs to know about the table, shared by all workers.
+   */
+  private static final class Plan {
+
+    private final String decimalSymbol;
+    private final String digitGroupingSymbol;
+    private final DataType[] dataTypes;
+    private final DatePattern[] datePatterns;
+    private final int frequentValuesCapacity;
+
+    private Plan(Table table, List<VariableColumn> columns, int topValues) throws ParsingException {
+      this.decimalSymbol = table.getDecimalSymbol();
+      this.digitGroupingSymbol = table.getDigitGroupingSymbol() == null ? "" : table.getDigitGroupingSymbol();
+      this.dataTypes = new DataType[columns.size()];
+      this.datePatterns = new DatePattern[columns.size()];
+      for (int i = 0; i < dataTypes.length; i++) {
+        dataTypes[i] = columns.get(i).getDataType();
+        if (dataTypes[i] == DataType.Date && columns.get(i).getFormat() != null) {
+          datePatterns[i] = DatePattern.compile(columns.get(i), table);
+        }
+      }
+      // Tracking more values than are reported keeps the counts of the reported ones (nearly) exact
+      this.frequentValuesCapacity = topValues == 0 ? 0 : Math.max(64, topValues * 8);
+    }
+  }
+
+  /**
+   * Profiles the records of one thread.
+   */
+  private static final class Worker implements RecordHandler {
+
+    private final Plan plan;
+    private final ColumnState[] states;
+    private final KeyEncoder encoder = new KeyEncoder();
+    private final NumericValue value = new NumericValue();
+    private long records;
+
+    private Worker(Plan plan) {
+      this.plan = plan;
+      this.states = new ColumnState[plan.dataTypes.length];
+      for (int i = 0; i < states.length; i++) {
+        states[i] = new ColumnState(plan.frequentValuesCapacity);
+      }
+    }
+
+    @Override
+    public void handle(long recordNumber, Record record) {
+      records++;
+      List<String> columns = record.getColumns();
+      for (int i = 0; i < states.length; i++) {
+        if (i >= columns.size()) {
+          states[i].missingValues++;
+          continue;
+        }
+        String current = columns.get(i);
+        ColumnState state = states[i];
+        if (current.isEmpty()) {
+          state.emptyValues++;
+          continue;
+        }
+        state.addLength(current.length());
+        encoder.reset();
+        encoder.add(current);
+        state.distinct.add(encoder.hash());
+        if (state.frequent != null) {
+          state.frequent.add(current);
+        }
+
+        if (plan.dataTypes[i] == DataType.Numeric) {
+          if (value.decode(current, plan.decimalSymbol, plan.digitGroupingSymbol)) {
+            state.addNumber(current, value);
+          } else {
+            state.invalidValues++;
+          }
+        } else if (plan.dataTypes[i] == DataType.Date && plan.datePatterns[i] != null) {
+          long timestamp = plan.datePatterns[i].parseTimestamp(current);
+          if (timestamp == DatePattern.INVALID) {
+            state.invalidValues++;
+          } else {
+            state.addDate(current, timestamp);
+          }
+        } else {
+          state.addString(current);
+        }
+      }
+    }
+
+    void merge(Worker other) {
+      records += other.records;
+      for (int i = 0; i < states.length; i++) {
+        states[i].merge(other.states[i]);
+      }
+    }
+  }
+
+  /**
+   * The statistics of one column, only one of the typed minimums is used depending on the data type.
+   */
+  private static final class ColumnState {
+
+    private final HyperLogLog distinct = new HyperLogLog(HLL_PRECISION);
+    private final FrequentValues frequent;
+    private final long[] lengths = new long[LENGTH_BUCKETS];
+    private long values;
+    private long emptyValues;
+    private long missingValues;
+    private long invalidValues;
+    private long totalLength;
+    private int minLength = Integer.MAX_VALUE;
+    private int maxLength;
+    private String min;
+    private String max;
+    private NumericValue minNumber;
+    private NumericValue maxNumber;
+    private long minDate = Long.MAX_VALUE;
+    private long maxDate = Long.MIN_VALUE;
+
+    private ColumnState(int frequentValuesCapacity) {
+      this.frequent = frequentValuesCapacity == 0 ? null : new FrequentValues(frequentValuesCapacity);
+    }
+
+    void addLength(int length) {
+      values++;
+      totalLength += length;
+      minLength = Math.min(minLength, length);
+      maxLength = Math.max(maxLength, length);
+      // Bucket n holds the lengths from 2^n to 2^(n+1)-1
+      lengths[31 - Integer.numberOfLeadingZeros(length)]++;
+    }
+
+    void addNumber(String raw, NumericValue number) {
+      if (minNumber == null || number.compareTo(minNumber) < 0) {
+        minNumber = number.copy();
+        min = raw;
+      }
+      if (maxNumber == null || number.compareTo(maxNumber) > 0) {
+        maxNumber = number.copy();
+        max = raw;
+      }
+    }
+
+    void addDate(String raw, long timestamp) {
+      if (timestamp < minDate) {
+        minDate = timestamp;
+        min = raw;
+      }
+      if (timestamp > maxDate) {
+        maxDate = timestamp;
+        max = raw;
+      }
+    }
+
+    void addString(String raw) {
+      if (min == null || raw.compareTo(min) < 0) {
+        min = raw;
+      }
+      if (max == null || raw.compareTo(max) > 0) {
+        max = raw;
+      }
+    }
+
+    void merge(ColumnState other) {
+      values += other.values;
+      emptyValues += other.emptyValues;
+      missingValues += other.missingValues;
+      invalidValues += other.invalidValues;
+      totalLength += other.totalLength;
+      minLength = Math.min(minLength, other.minLength);
+      maxLength = Math.max(maxLength, other.maxLength);
+      for (int i = 0; i < lengths.length; i++) {
+        lengths[i] += other.lengths[i];
+      }
+      distinct.merge(other.distinct);
+      if (frequent != null) {
+        frequent.merge(other.frequent);
+      }
+
+      if (other.minNumber != null) {
+        addNumber(other.min, other.minNumber);
+        addNumber(other.max, other.maxNumber);
+      } else if (other.minDate != Long.MAX_VALUE) {
+        addDate(other.min, other.minDate);
+        addDate(other.max, other.maxDate);
+      } else if (other.min != null) {
+        addString(other.min);
+        addString(other.max);
+      }
+    }
+
+    ColumnProfile toProfile(VariableColumn column, int topValues) {
+      SortedMap<Integer, Long> distribution = new TreeMap<>();
+      for (int i = 0; i < lengths.length; i++) {
+        if (lengths[i] > 0) {
+          distribution.put(1 << i, lengths[i]);
+        }
+      }
+      List<ColumnProfile.FrequentValue> top = new ArrayList<>();
+      if (frequent != null) {
+        for (Map.Entry<String, Long> entry : frequent.top(topValues)) {
+          top.add(new ColumnProfile.FrequentValue(entry.getKey(), entry.getValue()));
+        }
+      }
+      return new ColumnProfile(column.getName(), column.getDataType(), values, emptyValues, missingValues, invalidValues, min, max,
+                               values == 0 ? 0 : minLength, maxLength, values == 0 ? 0 : (double) totalLength / values, distribution,
+                               values == 0 ? 0 : distinct.estimate(), top);
+    }
+  }
+
+}
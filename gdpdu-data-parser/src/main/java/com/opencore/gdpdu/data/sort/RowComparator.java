@@ -0,0 +1,127 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.sort;
+
+import java.util.Comparator;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.DatePattern;
+import com.opencore.gdpdu.data.NumericValue;
+import com.opencore.gdpdu.data.TableColumns;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+
+/**
+ * Orders {@link SortRow rows} by their sort keys, ties are broken by the record number so that sorting is stable.
+ * <p/>
+ * {@code AlphaNumeric} values are compared as strings, {@code Numeric} values as numbers and {@code Date} values as points in time
+ * (like {@link com.opencore.gdpdu.data.RecordFilter}). Keys are decoded once per row when it is created, not on every comparison.
+ * Values that are missing or can't be decoded sort before all others.
+ * <p/>
+ * Comparing is thread-safe, creating rows is not.
+ */
+final class RowComparator implements Comparator<SortRow> {
+
+  private static final int ALPHANUMERIC = 0;
+  private static final int NUMERIC = 1;
+  private static final int DATE = 2;
+
+  private final int[] columns;
+  private final int[] types;
+  private final boolean[] descending;
+  private final DatePattern[] patterns;
+  private final String decimalSymbol;
+  private final String digitGroupingSymbol;
+  private final NumericValue value = new NumericValue();
+
+  private RowComparator(Table table, int[] columns, int[] types, boolean[] descending, DatePattern[] patterns) {
+    this.columns = columns;
+    this.types = types;
+    this.descending = descending;
+    this.patterns = patterns;
+    this.decimalSymbol = table.getDecimalSymbol();
+    this.digitGroupingSymbol = table.getDigitGroupingSymbol() == null ? "" : table.getDigitGroupingSymbol();
+  }
+
+  static RowComparator create(Table table, List<SortKey> keys) throws ParsingException {
+    List<VariableColumn> definitions = TableColumns.getColumns(table);
+
+    int[] columns = new int[keys.size()];
+    int[] types = new int[keys.size()];
+    boolean[] descending = new boolean[keys.size()];
+    DatePattern[] patterns = new DatePattern[keys.size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = TableColumns.findColumn(definitions, keys.get(i).getColumn(), table);
+      VariableColumn definition = definitions.get(columns[i]);
+      if (definition.getDataType() == DataType.Numeric) {
+        types[i] = NUMERIC;
+      } else if (definition.getDataType() == DataType.Date) {
+        types[i] = DATE;
+        patterns[i] = DatePattern.compile(definition, table);
+      } else {
+        types[i] = ALPHANUMERIC;
+      }
+      descending[i] = keys.get(i).isDescending();
+    }
+    return new RowComparator(table, columns, types, descending, patterns);
+  }
+
+  SortRow createRow(long recordNumber, String[] values) {
+    Object[] keys = new Object[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      if (columns[i] >= values.length) {
+        continue;
+      }
+      String column = values[columns[i]];
+      if (types[i] == NUMERIC) {
+        keys[i] = value.decode(column, decimalSymbol, digitGroupingSymbol) ? value.copy() : null;
+      } else if (types[i] == DATE) {
+        long timestamp = patterns[i].parseTimestamp(column);
+        keys[i] = timestamp == DatePattern.INVALID ? null : timestamp;
+      } else {
+        keys[i] = column;
+      }
+    }
+    return new SortRow(recordNumber, values, keys);
+  }
+
+  @Override
+  public int compare(SortRow first, SortRow second) {
+    Object[] firstKeys = first.getKeys();
+    Object[] secondKeys = second.getKeys();
+    for (int i = 0; i < firstKeys.length; i++) {
+      int result = compareKey(i, firstKeys[i], secondKeys[i]);
+      if (result != 0) {
+        return descending[i] ? -result : result;
+      }
+    }
+    return Long.compare(first.getRecordNumber(), second.getRecordNumber());
+  }
+
+  private int compareKey(int key, Object first, Object second) {
+    if (first == null || second == null) {
+      return first == null ? (second == null ? 0 : -1) : 1;
+    }
+    switch (types[key]) {
+      case NUMERIC:
+        return ((NumericValue) first).compareTo((NumericValue) second);
+      case DATE:
+        return Long.compare((Long) first, (Long) second);
+      default:
+        return ((String) first).compareTo((String) second);
+    }
+  }
+
+}
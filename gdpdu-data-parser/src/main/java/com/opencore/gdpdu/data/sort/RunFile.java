@@ -0,0 +1,145 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.sort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.opencore.gdpdu.data.KeyEncoder;
+
+/**
+ * A sorted run of records on disk, each entry is {@code [long recordNumber][int length][columns]}.
+ * <p/>
+ * The columns are written with the {@link KeyEncoder} format (length-prefixed UTF-8), i.e. without any escaping or delimiters.
+ * A run is written once and read once, entries are read back in the order they were written.
+ */
+final class RunFile {
+
+  private final Path path;
+  private final long entries;
+
+  private RunFile(Path path, long entries) {
+    this.path = path;
+    this.entries = entries;
+  }
+
+  static RunFile write(Path path, List<SortRow> rows) throws IOException {
+    try (Writer writer = new Writer(path)) {
+      for (SortRow row : rows) {
+        writer.write(row);
+      }
+      return writer.finish();
+    }
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  long getEntries() {
+    return entries;
+  }
+
+  Reader openReader(RowComparator comparator) throws IOException {
+    return new Reader(new DataInputStream(new BufferedInputStream(Files.newInputStream(path))), entries, comparator);
+  }
+
+  void delete() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  static final class Writer implements Closeable {
+
+    private final Path path;
+    private final DataOutputStream out;
+    private final KeyEncoder encoder = new KeyEncoder();
+    private long entries;
+
+    Writer(Path path) throws IOException {
+      this.path = path;
+      this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    }
+
+    void write(SortRow row) throws IOException {
+      encoder.reset();
+      for (String column : row.getColumns()) {
+        encoder.add(column);
+      }
+      out.writeLong(row.getRecordNumber());
+      out.writeInt(encoder.getLength());
+      out.write(encoder.getBuffer(), 0, encoder.getLength());
+      entries++;
+    }
+
+    RunFile finish() throws IOException {
+      out.close();
+      return new RunFile(path, entries);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  static final class Reader implements Closeable {
+
+    private final DataInputStream in;
+    private final RowComparator comparator;
+    private long remaining;
+    private byte[] buffer = new byte[128];
+    private SortRow row;
+
+    private Reader(DataInputStream in, long entries, RowComparator comparator) {
+      this.in = in;
+      this.remaining = entries;
+      this.comparator = comparator;
+    }
+
+    /**
+     * @return false if there are no more entries
+     */
+    boolean next() throws IOException {
+      if (remaining == 0) {
+        row = null;
+        return false;
+      }
+      remaining--;
+      long recordNumber = in.readLong();
+      int length = in.readInt();
+      if (length > buffer.length) {
+        buffer = new byte[Math.max(length, buffer.length * 2)];
+      }
+      in.readFully(buffer, 0, length);
+      row = comparator.createRow(recordNumber, KeyEncoder.decode(buffer, 0, length).toArray(new String[0]));
+      return true;
+    }
+
+    SortRow getRow() {
+      return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+}
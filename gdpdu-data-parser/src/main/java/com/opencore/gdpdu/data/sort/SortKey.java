@@ -0,0 +1,51 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.sort;
+
+import java.util.Objects;
+
+/**
+ * A column to sort by and its direction.
+ */
+public final class SortKey {
+
+  private final String column;
+  private final boolean descending;
+
+  private SortKey(String column, boolean descending) {
+    this.column = Objects.requireNonNull(column, "'column' can't be null");
+    this.descending = descending;
+  }
+
+  public static SortKey ascending(String column) {
+    return new SortKey(column, false);
+  }
+
+  public static SortKey descending(String column) {
+    return new SortKey(column, true);
+  }
+
+  public String getColumn() {
+    return column;
+  }
+
+  public boolean isDescending() {
+    return descending;
+  }
+
+  @Override
+  public String toString() {
+    return column + (descending ? " DESC" : " ASC");
+  }
+
+}
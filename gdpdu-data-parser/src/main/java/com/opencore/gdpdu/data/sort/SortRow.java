@@ -0,0 +1,56 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.sort;
+
+import com.opencore.gdpdu.data.HeapSize;
+
+/**
+ * A record held in memory while sorting: its values plus the decoded sort keys (see {@link RowComparator}).
+ */
+final class SortRow {
+
+  // Object header, the record number and the references to both arrays
+  private static final int ROW_OVERHEAD = 32;
+  // A decoded key that isn't a String (NumericValue or Long)
+  private static final int KEY_SIZE = 32;
+
+  private final long recordNumber;
+  private final String[] columns;
+  private final Object[] keys;
+
+  SortRow(long recordNumber, String[] columns, Object[] keys) {
+    this.recordNumber = recordNumber;
+    this.columns = columns;
+    this.keys = keys;
+  }
+
+  long getRecordNumber() {
+    return recordNumber;
+  }
+
+  String[] getColumns() {
+    return columns;
+  }
+
+  Object[] getKeys() {
+    return keys;
+  }
+
+  /**
+   * Rough number of heap bytes used by this row, it decides when a run is full.
+   */
+  long estimateSize() {
+    return ROW_OVERHEAD + HeapSize.of(columns) + HeapSize.ofArray(keys.length) + (long) keys.length * KEY_SIZE;
+  }
+
+}
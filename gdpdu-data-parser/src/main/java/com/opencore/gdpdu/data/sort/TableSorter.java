@@ -0,0 +1,315 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.sort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.DaemonThreadFactory;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.data.Record;
+import com.opencore.gdpdu.data.RecordCursor;
+import com.opencore.gdpdu.data.RecordHandler;
+import com.opencore.gdpdu.data.SpillDirectory;
+import com.opencore.gdpdu.index.models.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts the records of a variable length table by one or more columns in bounded memory (an external merge sort).
+ * <p/>
+ * Records are read into runs that fit into a share of the memory budget. Full runs are sorted and written to temporary files
+ * in a compact binary format by a pool of threads while reading continues, at most one run per thread is in flight.
+ * The runs are then merged (k-way, in several passes if there are more than {@link #setMaxFanIn(int) maxFanIn} runs)
+ * and the sorted records are streamed to a {@link RecordHandler}. A table that fits into a single run never touches the disk.
+ * <p/>
+ * The sort is stable: records with equal keys keep their order. See {@link RowComparator} for how values are compared.
+ */
+public final class TableSorter {
+
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+  public static final int DEFAULT_MAX_FAN_IN = 64;
+
+  private static final Logger LOG = LoggerFactory.getLogger(TableSorter.class);
+
+  private final List<SortKey> keys;
+  private int threads = 1;
+  private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+  private int maxFanIn = DEFAULT_MAX_FAN_IN;
+  private Path spillDirectory;
+  private ParseLimits limits;
+
+  public TableSorter(List<SortKey> keys) {
+    Objects.requireNonNull(keys, "'keys' can't be null");
+    if (keys.isEmpty()) {
+      throw new IllegalArgumentException("'keys' can't be empty");
+    }
+    this.keys = new ArrayList<>(keys);
+  }
+
+  /**
+   * @param threads number of threads that sort and write runs, 1 does everything on the calling thread
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("'threads' must be at least 1, was [" + threads + "]");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Estimated heap used by records in memory, it is shared by the run that's being read and the runs that are being sorted.
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException("'memoryBudget' must be at least 1, was [" + memoryBudget + "]");
+    }
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Maximum number of runs that are merged at once, each of them needs an open file and a read buffer.
+   */
+  public void setMaxFanIn(int maxFanIn) {
+    if (maxFanIn < 2) {
+      throw new IllegalArgumentException("'maxFanIn' must be at least 2, was [" + maxFanIn + "]");
+    }
+    this.maxFanIn = maxFanIn;
+  }
+
+  /**
+   * @param spillDirectory directory for the runs, null uses the default temporary directory
+   */
+  public void setSpillDirectory(Path spillDirectory) {
+    this.spillDirectory = spillDirectory;
+  }
+
+  /**
+   * Limits for the lexer, null for no limits.
+   */
+  public void setLimits(ParseLimits limits) {
+    this.limits = limits;
+  }
+
+  /**
+   * Streams the records of the table to the handler in sorted order, the record numbers are those of the original file.
+   *
+   * @return the number of records that have been passed to the handler
+   */
+  public long sort(InputStream tableStream, Table table, RecordHandler handler) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    Objects.requireNonNull(handler, "'handler' can't be null");
+    if (table.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be sorted");
+    }
+
+    RowComparator comparator = RowComparator.create(table, keys);
+    // The run that is being read plus one run per thread that is being sorted
+    long runBudget = Math.max(1, memoryBudget / (threads + 1));
+    Semaphore permits = new Semaphore(threads);
+    try (SpillDirectory directory = new SpillDirectory(spillDirectory)) {
+      ExecutorService executor = threads == 1
+        ? null
+        : Executors.newFixedThreadPool(threads, new DaemonThreadFactory("gdpdu-sort-"));
+      try {
+        return sort(tableStream, table, handler, comparator, runBudget, permits, executor, directory);
+      } finally {
+        if (executor != null) {
+          // Runs that are still being written must be done before their directory is deleted
+          shutdown(executor);
+        }
+      }
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  private long sort(InputStream tableStream, Table table, RecordHandler handler, RowComparator comparator, long runBudget, Semaphore permits,
+                    ExecutorService executor, SpillDirectory directory) throws IOException, ParsingException {
+    List<Future<RunFile>> futures = new ArrayList<>();
+    List<SortRow> run = new ArrayList<>();
+    long runBytes = 0;
+    long count = 0;
+    try (RecordCursor cursor = GdpduDataParser.openVariableLengthTable(tableStream, table, limits)) {
+      while (cursor.next()) {
+        SortRow row = comparator.createRow(cursor.getRecordNumber(), cursor.getRecord().getColumns().toArray(new String[0]));
+        run.add(row);
+        runBytes += row.estimateSize();
+        count++;
+        if (runBytes > runBudget) {
+          futures.add(spill(run, comparator, directory.newFile("run-" + futures.size()), executor, permits));
+          run = new ArrayList<>();
+          runBytes = 0;
+        }
+      }
+    }
+
+    if (futures.isEmpty()) {
+      LOG.debug("Sorting [{}] records of table [{}] in memory", count, table.getName());
+      run.sort(comparator);
+      Record record = new Record();
+      for (SortRow row : run) {
+        emit(row, record, handler);
+      }
+      return count;
+    }
+
+    if (!run.isEmpty()) {
+      futures.add(spill(run, comparator, directory.newFile("run-" + futures.size()), executor, permits));
+    }
+    List<RunFile> runs = new ArrayList<>(futures.size());
+    for (Future<RunFile> future : futures) {
+      runs.add(getRun(future));
+    }
+    LOG.debug("Merging [{}] runs with [{}] records of table [{}]", runs.size(), count, table.getName());
+    merge(runs, comparator, directory, handler);
+    return count;
+  }
+
+  private static Future<RunFile> spill(List<SortRow> run, RowComparator comparator, Path path, ExecutorService executor, Semaphore permits)
+    throws ParsingException {
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ParsingException(e);
+    }
+    Callable<RunFile> task = () -> {
+      try {
+        run.sort(comparator);
+        return RunFile.write(path, run);
+      } finally {
+        permits.release();
+      }
+    };
+    if (executor == null) {
+      FutureTask<RunFile> future = new FutureTask<>(task);
+      future.run();
+      return future;
+    }
+    return executor.submit(task);
+  }
+
+  /**
+   * Merges groups of runs into larger runs until they can all be merged at once, the last merge goes straight to the handler.
+   */
+  private void merge(List<RunFile> runs, RowComparator comparator, SpillDirectory directory, RecordHandler handler)
+    throws IOException, ParsingException {
+    int pass = 0;
+    while (runs.size() > maxFanIn) {
+      List<RunFile> merged = new ArrayList<>();
+      for (int from = 0; from < runs.size(); from += maxFanIn) {
+        List<RunFile> group = runs.subList(from, Math.min(from + maxFanIn, runs.size()));
+        if (group.size() == 1) {
+          merged.add(group.get(0));
+          continue;
+        }
+        try (RunFile.Writer writer = new RunFile.Writer(directory.newFile("merge-" + pass + "-" + merged.size()))) {
+          mergeRuns(group, comparator, writer::write);
+          merged.add(writer.finish());
+        }
+      }
+      LOG.debug("Merge pass [{}] reduced [{}] runs to [{}]", pass, runs.size(), merged.size());
+      runs = merged;
+      pass++;
+    }
+
+    Record record = new Record();
+    mergeRuns(runs, comparator, row -> emit(row, record, handler));
+  }
+
+  private static void mergeRuns(List<RunFile> runs, RowComparator comparator, RowSink sink) throws IOException, ParsingException {
+    List<RunFile.Reader> readers = new ArrayList<>(runs.size());
+    PriorityQueue<RunFile.Reader> queue = new PriorityQueue<>(runs.size(), (first, second) -> comparator.compare(first.getRow(), second.getRow()));
+    try {
+      for (RunFile run : runs) {
+        RunFile.Reader reader = run.openReader(comparator);
+        readers.add(reader);
+        if (reader.next()) {
+          queue.add(reader);
+        }
+      }
+      while (!queue.isEmpty()) {
+        RunFile.Reader reader = queue.poll();
+        sink.accept(reader.getRow());
+        if (reader.next()) {
+          queue.add(reader);
+        }
+      }
+    } finally {
+      for (RunFile.Reader reader : readers) {
+        reader.close();
+      }
+    }
+    for (RunFile run : runs) {
+      run.delete();
+    }
+  }
+
+  private static void emit(SortRow row, Record record, RecordHandler handler) throws ParsingException {
+    record.clear();
+    for (String column : row.getColumns()) {
+      record.addColumn(column);
+    }
+    handler.handle(row.getRecordNumber(), record);
+  }
+
+  private static RunFile getRun(Future<RunFile> future) throws ParsingException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ParsingException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ParsingException) {
+        throw (ParsingException) e.getCause();
+      }
+      throw new ParsingException(e.getCause());
+    }
+  }
+
+  private static void shutdown(ExecutorService executor) {
+    executor.shutdownNow();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.warn("Sort threads didn't terminate in time");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @FunctionalInterface
+  private interface RowSink {
+
+    void accept(SortRow row) throws IOException, ParsingException;
+
+  }
+
+}
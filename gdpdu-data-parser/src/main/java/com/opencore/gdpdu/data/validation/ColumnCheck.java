@@ -0,0 +1,98 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.DatePattern;
+import com.opencore.gdpdu.data.NumericValue;
+import com.opencore.gdpdu.index.models.AccuracyType;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+
+/**
+ * Checks the raw values of one column against its definition in the {@code index.xml} file.
+ * Empty values are always valid. Instances are immutable and thread-safe.
+ */
+final class ColumnCheck {
+
+  private final String name;
+  private final DataType dataType;
+  private final long maxLength;
+  private final AccuracyType accuracyType;
+  private final long accuracy;
+  private final String decimalSymbol;
+  private final String digitGroupingSymbol;
+  private final DatePattern datePattern;
+  private final long validFrom;
+  private final long validTo;
+
+  /**
+   * @param validFrom first valid date as {@code yyyyMMdd}, 0 if unbounded
+   * @param validTo   last valid date as {@code yyyyMMdd}, {@link Long#MAX_VALUE} if unbounded
+   */
+  ColumnCheck(VariableColumn column, Table table, long validFrom, long validTo) throws ParsingException {
+    this.name = column.getName();
+    this.dataType = column.getDataType();
+    this.maxLength = column.getMaxLength() == null ? Long.MAX_VALUE : column.getMaxLength();
+    this.accuracyType = column.getAccuracyType();
+    this.accuracy = column.getAccuracy();
+    this.decimalSymbol = table.getDecimalSymbol();
+    this.digitGroupingSymbol = table.getDigitGroupingSymbol() == null ? "" : table.getDigitGroupingSymbol();
+    this.datePattern = dataType == DataType.Date ? DatePattern.compile(column, table) : null;
+    this.validFrom = validFrom;
+    this.validTo = validTo;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  /**
+   * @param number decodes {@code Numeric} values, every thread needs its own
+   * @return the first violation of the value or null if it's valid
+   */
+  ConformanceReport.Kind check(String value, NumericValue number) {
+    if (value.isEmpty()) {
+      return null;
+    }
+    if (value.length() > maxLength) {
+      return ConformanceReport.Kind.MAX_LENGTH;
+    }
+    if (dataType == DataType.Numeric) {
+      return checkNumber(value, number);
+    }
+    if (dataType == DataType.Date) {
+      long date = datePattern.parse(value);
+      if (date == DatePattern.INVALID) {
+        return ConformanceReport.Kind.DATE_FORMAT;
+      }
+      if (datePattern.hasDate() && (date < validFrom || date > validTo)) {
+        return ConformanceReport.Kind.VALIDITY;
+      }
+    }
+    return null;
+  }
+
+  private ConformanceReport.Kind checkNumber(String value, NumericValue number) {
+    if (!number.decode(value, decimalSymbol, digitGroupingSymbol)) {
+      return ConformanceReport.Kind.NUMBER_FORMAT;
+    }
+    if (accuracyType == AccuracyType.ImpliedAccuracy && number.getScale() > 0
+        || accuracyType == AccuracyType.Accuracy && number.getScale() > accuracy) {
+      return ConformanceReport.Kind.ACCURACY;
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The outcome of a {@link ConformanceValidator} run.
+ */
+public class ConformanceReport {
+
+  private final String table;
+  private final long checkedRecords;
+  private final long checkedCells;
+  private final List<Count> counts;
+  private final List<Violation> violations;
+
+  ConformanceReport(String table, long checkedRecords, long checkedCells, List<Count> counts, List<Violation> violations) {
+    this.table = table;
+    this.checkedRecords = checkedRecords;
+    this.checkedCells = checkedCells;
+    this.counts = new ArrayList<>(counts);
+    this.violations = new ArrayList<>(violations);
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public long getCheckedRecords() {
+    return checkedRecords;
+  }
+
+  public long getCheckedCells() {
+    return checkedCells;
+  }
+
+  /**
+   * Number of violations per column and kind, only combinations that occurred are included.
+   */
+  public List<Count> getCounts() {
+    return Collections.unmodifiableList(counts);
+  }
+
+  public long getViolationCount() {
+    long total = 0;
+    for (Count count : counts) {
+      total += count.getCount();
+    }
+    return total;
+  }
+
+  public long getViolationCount(String column, Kind kind) {
+    for (Count count : counts) {
+      if (count.getKind() == kind && (column == null ? count.getColumn() == null : column.equals(count.getColumn()))) {
+        return count.getCount();
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * The violations ordered by record number.
+   * This is only a sample if there were more violations than {@link ConformanceValidator#setMaxReportedViolations(int)}.
+   */
+  public List<Violation> getViolations() {
+    return Collections.unmodifiableList(violations);
+  }
+
+  public boolean isValid() {
+    return counts.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", ConformanceReport.class.getSimpleName() + "[", "]")
+      .add("table='" + table + "'")
+      .add("checkedRecords=" + checkedRecords)
+      .add("checkedCells=" + checkedCells)
+      .add("violationCount=" + getViolationCount())
+      .toString();
+  }
+
+  public enum Kind {
+    /**
+     * The record has more or fewer columns than the table, this is reported once per record without a column.
+     */
+    COLUMN_COUNT,
+
+    /**
+     * The value is longer than the {@code MaxLength} of the column.
+     */
+    MAX_LENGTH,
+
+    /**
+     * The value of a {@code Numeric} column is not a number.
+     */
+    NUMBER_FORMAT,
+
+    /**
+     * The value of a {@code Numeric} column has more decimal places than its {@code Accuracy} allows
+     * (or any decimal places with {@code ImpliedAccuracy}).
+     */
+    ACCURACY,
+
+    /**
+     * The value of a {@code Date} column doesn't match its {@code Format} or is not a valid date.
+     */
+    DATE_FORMAT,
+
+    /**
+     * The value of a {@code Date} column is outside the {@code Validity} range of the table.
+     */
+    VALIDITY
+  }
+
+  public static class Count {
+
+    private final String column;
+    private final Kind kind;
+    private final long count;
+
+    Count(String column, Kind kind, long count) {
+      this.column = column;
+      this.kind = kind;
+      this.count = count;
+    }
+
+    /**
+     * The column name or null for {@link Kind#COLUMN_COUNT}.
+     */
+    public String getColumn() {
+      return column;
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Count.class.getSimpleName() + "[", "]")
+        .add("column='" + column + "'")
+        .add("kind=" + kind)
+        .add("count=" + count)
+        .toString();
+    }
+  }
+
+  public static class Violation {
+
+    private final long recordNumber;
+    private final String column;
+    private final Kind kind;
+    private final String value;
+
+    Violation(long recordNumber, String column, Kind kind, String value) {
+      this.recordNumber = recordNumber;
+      this.column = column;
+      this.kind = kind;
+      this.value = value;
+    }
+
+    /**
+     * The 1-based number of the record.
+     */
+    public long getRecordNumber() {
+      return recordNumber;
+    }
+
+    /**
+     * The column name or null for {@link Kind#COLUMN_COUNT}.
+     */
+    public String getColumn() {
+      return column;
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    /**
+     * The offending value, long values are truncated.
+     * For {@link Kind#COLUMN_COUNT} this is the number of columns of the record.
+     */
+    public String getValue() {
+      return value;
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Violation.class.getSimpleName() + "[", "]")
+        .add("recordNumber=" + recordNumber)
+        .add("column='" + column + "'")
+        .add("kind=" + kind)
+        .add("value='" + value + "'")
+        .toString();
+    }
+  }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.DatePattern;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.data.NumericValue;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.data.PipelinedTableParser;
+import com.opencore.gdpdu.data.Record;
+import com.opencore.gdpdu.data.RecordHandler;
+import com.opencore.gdpdu.data.TableColumns;
+import com.opencore.gdpdu.index.models.Range;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.Validity;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This checks every value of a table against its column definition in the {@code index.xml} file, without mapping records to objects.
+ * <p/>
+ * The checks are {@code MaxLength}, the number format and {@code Accuracy} of {@code Numeric} columns,
+ * the {@code Format} of {@code Date} columns and whether dates are within the {@code Validity} range of the table.
+ * Records are lexed once, with more than one thread the values are checked concurrently on the mapper threads of a {@link PipelinedTableParser}.
+ * <p/>
+ * All violations are counted, only a bounded sample with the lowest record numbers is kept.
+ * The {@code MaxLength} of a column is not used as a lexer limit here (see {@link ParseLimits#isUseIndexMaxLength()}), overlong values are reported instead.
+ * An instance can be used for multiple tables but not concurrently.
+ */
+public final class ConformanceValidator {
+
+  public static final int DEFAULT_MAX_REPORTED_VIOLATIONS = 1000;
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConformanceValidator.class);
+
+  private static final int MAX_VALUE_LENGTH = 100;
+  private static final ConformanceReport.Kind[] KINDS = ConformanceReport.Kind.values();
+
+  private final int threads;
+  private ParseLimits limits = new ParseLimits();
+  private int maxReportedViolations = DEFAULT_MAX_REPORTED_VIOLATIONS;
+
+  /**
+   * @param threads number of threads that check values, 1 checks them on the calling thread
+   */
+  public ConformanceValidator(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("'threads' must be at least 1, was [" + threads + "]");
+    }
+    this.threads = threads;
+  }
+
+  public void setLimits(ParseLimits limits) {
+    this.limits = Objects.requireNonNull(limits, "'limits' can't be null");
+  }
+
+  /**
+   * Only this many violations are kept for the report, all of them are counted.
+   */
+  public void setMaxReportedViolations(int maxReportedViolations) {
+    if (maxReportedViolations < 0) {
+      throw new IllegalArgumentException("'maxReportedViolations' must be at least 0, was [" + maxReportedViolations + "]");
+    }
+    this.maxReportedViolations = maxReportedViolations;
+  }
+
+  public ConformanceReport validate(InputStream tableStream, Table table) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    Objects.requireNonNull(table, "'table' can't be null");
+    if (table.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be validated");
+    }
+
+    ColumnCheck[] checks = createChecks(table);
+    ParseLimits scanLimits = withoutIndexMaxLength(limits);
+    List<Worker> workers;
+    if (threads == 1) {
+      Worker worker = new Worker(checks, maxReportedViolations);
+      GdpduDataParser.scanVariableLengthTable(tableStream, table, scanLimits, worker);
+      workers = Collections.singletonList(worker);
+    } else {
+      PipelinedTableParser parser = new PipelinedTableParser(threads, PipelinedTableParser.DEFAULT_RING_SIZE, scanLimits);
+      workers = parser.scan(tableStream, table, () -> new Worker(checks, maxReportedViolations));
+    }
+
+    Worker result = new Worker(checks, maxReportedViolations);
+    for (Worker worker : workers) {
+      result.merge(worker);
+    }
+    ConformanceReport report = result.toReport(table.getName());
+    LOG.debug("Finished conformance check: {}", report);
+    return report;
+  }
+
+  /**
+   * Records start with the primary key columns followed by the other columns.
+   */
+  private static ColumnCheck[] createChecks(Table table) throws ParsingException {
+    long validFrom = 0;
+    long validTo = Long.MAX_VALUE;
+    Validity validity = table.getValidity();
+    if (validity != null && validity.getRange() != null) {
+      DatePattern pattern = compileValidity(validity, table);
+      if (pattern != null) {
+        Range range = validity.getRange();
+        validFrom = parseValidity(pattern, range.getFrom(), table, validFrom);
+        validTo = parseValidity(pattern, range.getTo(), table, validTo);
+      }
+    }
+
+    List<ColumnCheck> checks = new ArrayList<>();
+    for (VariableColumn column : TableColumns.getColumns(table)) {
+      checks.add(new ColumnCheck(column, table, validFrom, validTo));
+    }
+    return checks.toArray(new ColumnCheck[0]);
+  }
+
+  private static DatePattern compileValidity(Validity validity, Table table) {
+    if (validity.getFormat() == null) {
+      LOG.warn("Ignoring Validity of table [{}] because it has no format", table.getName());
+      return null;
+    }
+    try {
+      return DatePattern.compile(validity.getFormat());
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Ignoring Validity of table [{}]: {}", table.getName(), e.getMessage());
+      return null;
+    }
+  }
+
+  private static long parseValidity(DatePattern pattern, String value, Table table, long defaultValue) {
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    long date = pattern.parse(value);
+    if (date == DatePattern.INVALID || !pattern.hasDate()) {
+      LOG.warn("Ignoring Validity [{}] of table [{}] because it doesn't match the format [{}]", value, table.getName(), pattern);
+      return defaultValue;
+    }
+    return date;
+  }
+
+  private static ParseLimits withoutIndexMaxLength(ParseLimits limits) {
+    ParseLimits copy = new ParseLimits();
+    copy.setMaxColumnLength(limits.getMaxColumnLength());
+    copy.setUseIndexMaxLength(false);
+    copy.setMaxRecordLength(limits.getMaxRecordLength());
+    copy.setMaxInFlightBytes(limits.getMaxInFlightBytes());
+    copy.setOnLimitExceeded(limits.getOnLimitExceeded());
+    return copy;
+  }
+
+  /**
+   * Checks the records of one thread, the workers of a validation are merged into the report at the end.
+   * <p/>
+   * Only the violations with the lowest record numbers are kept, so the sample doesn't depend on how the records were spread over the threads.
+   */
+  private static final class Worker implements RecordHandler {
+
+    private static final Comparator<Sample> ORDER = Comparator.comparingLong((Sample sample) -> sample.recordNumber)
+      .thenComparingInt(sample -> sample.column);
+
+    private final ColumnCheck[] checks;
+    private final int maxReportedViolations;
+    private final long[] counts;
+    // A max-heap, the head is the violation that is dropped first
+    private final PriorityQueue<Sample> samples = new PriorityQueue<>(ORDER.reversed());
+    private final NumericValue number = new NumericValue();
+    private long records;
+    private long checkedCells;
+
+    private Worker(ColumnCheck[] checks, int maxReportedViolations) {
+      this.checks = checks;
+      this.maxReportedViolations = maxReportedViolations;
+      // One row per column and a last one for record level violations
+      this.counts = new long[(checks.length + 1) * KINDS.length];
+    }
+
+    @Override
+    public void handle(long recordNumber, Record record) {
+      records++;
+      List<String> values = record.getColumns();
+      if (values.size() != checks.length) {
+        addViolation(recordNumber, checks.length, ConformanceReport.Kind.COLUMN_COUNT, String.valueOf(values.size()));
+      }
+      int columns = Math.min(values.size(), checks.length);
+      for (int i = 0; i < columns; i++) {
+        ConformanceReport.Kind kind = checks[i].check(values.get(i), number);
+        if (kind != null) {
+          addViolation(recordNumber, i, kind, values.get(i));
+        }
+      }
+      checkedCells += columns;
+    }
+
+    private void addViolation(long recordNumber, int column, ConformanceReport.Kind kind, String value) {
+      counts[column * KINDS.length + kind.ordinal()]++;
+      if (isSampled(recordNumber, column)) {
+        String sample = value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) : value;
+        addSample(new Sample(recordNumber, column, kind, sample));
+      }
+    }
+
+    /**
+     * Whether a violation would be kept, i.e. the sample isn't full yet or the violation comes before the last one in it.
+     */
+    private boolean isSampled(long recordNumber, int column) {
+      if (samples.size() < maxReportedViolations) {
+        return true;
+      }
+      Sample last = samples.peek();
+      return last != null && (recordNumber < last.recordNumber || recordNumber == last.recordNumber && column < last.column);
+    }
+
+    private void merge(Worker other) {
+      records += other.records;
+      checkedCells += other.checkedCells;
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] += other.counts[i];
+      }
+      for (Sample sample : other.samples) {
+        addSample(sample);
+      }
+    }
+
+    private void addSample(Sample sample) {
+      if (!isSampled(sample.recordNumber, sample.column)) {
+        return;
+      }
+      if (samples.size() == maxReportedViolations) {
+        samples.poll();
+      }
+      samples.add(sample);
+    }
+
+    private String columnName(int column) {
+      return column < checks.length ? checks[column].getName() : null;
+    }
+
+    private ConformanceReport toReport(String table) {
+      List<ConformanceReport.Count> result = new ArrayList<>();
+      for (int column = 0; column <= checks.length; column++) {
+        for (ConformanceReport.Kind kind : KINDS) {
+          long count = counts[column * KINDS.length + kind.ordinal()];
+          if (count > 0) {
+            result.add(new ConformanceReport.Count(columnName(column), kind, count));
+          }
+        }
+      }
+      List<Sample> sorted = new ArrayList<>(samples);
+      sorted.sort(ORDER);
+      List<ConformanceReport.Violation> violations = new ArrayList<>(sorted.size());
+      for (Sample sample : sorted) {
+        violations.add(new ConformanceReport.Violation(sample.recordNumber, columnName(sample.column), sample.kind, sample.value));
+      }
+      return new ConformanceReport(table, records, checkedCells, result, violations);
+    }
+  }
+
+  private static final class Sample {
+
+    private final long recordNumber;
+    private final int column;
+    private final ConformanceReport.Kind kind;
+    private final String value;
+
+    private Sample(long recordNumber, int column, ConformanceReport.Kind kind, String value) {
+      this.recordNumber = recordNumber;
+      this.column = column;
+      this.kind = kind;
+      this.value = value;
+    }
+  }
+
+}
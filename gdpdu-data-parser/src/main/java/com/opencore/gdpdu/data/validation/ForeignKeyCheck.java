@@ -0,0 +1,335 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduArchive;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.data.KeyEncoder;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.data.Record;
+import com.opencore.gdpdu.data.SpillDirectory;
+import com.opencore.gdpdu.data.TableColumns;
+import com.opencore.gdpdu.index.models.ForeignKey;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This checks that every record of a table references an existing record of another table, as declared by a {@link ForeignKey}.
+ * <p/>
+ * It's a partitioned hash join on streamed data, neither table is materialized:
+ * First the primary keys of the referenced table are indexed into off-heap hash sets (see {@link PrimaryKeyCheck}),
+ * then the referencing table is streamed and its foreign key values are looked up.
+ * Partitions of the index that didn't fit into the memory budget are spilled to disk, the foreign keys that hash into
+ * those partitions are spilled as well and both sides are joined partition by partition in {@link #finish()}.
+ * <p/>
+ * The foreign key columns are matched to the primary key columns of the referenced table by name (after applying the aliases),
+ * if a name doesn't match the position is used.
+ * This class is not thread-safe, it must be closed to free the spill files.
+ */
+public final class ForeignKeyCheck implements Closeable {
+
+  public static final int DEFAULT_MAX_REPORTED_ORPHANS = 1000;
+
+  private static final Logger LOG = LoggerFactory.getLogger(ForeignKeyCheck.class);
+
+  private final Table table;
+  private final ForeignKey foreignKey;
+  private final Table referencedTable;
+  private final int[] columns;
+  private final int[] referencedColumns;
+  private final PagePool pool;
+  private final SpillDirectory spillDirectory;
+  private final PartitionedKeySet keys;
+  private final SpillFile[] references = new SpillFile[PartitionedKeySet.PARTITIONS];
+  private final KeyEncoder encoder = new KeyEncoder();
+  private final byte[] keyBuffer;
+  // The orphans with the lowest record numbers, the highest one on top because it's replaced first
+  private final PriorityQueue<ForeignKeyReport.Orphan> orphans =
+    new PriorityQueue<>(Comparator.comparingLong(ForeignKeyReport.Orphan::getRecordNumber).reversed());
+
+  private boolean indexComplete;
+  private int maxReportedOrphans = DEFAULT_MAX_REPORTED_ORPHANS;
+  private long checkedRecords;
+  private long nullReferences;
+  private long incompleteRecords;
+  private long orphanCount;
+
+  public ForeignKeyCheck(Table table, ForeignKey foreignKey, Table referencedTable) throws ParsingException {
+    this(table, foreignKey, referencedTable, PrimaryKeyCheck.DEFAULT_MEMORY_BUDGET, null);
+  }
+
+  /**
+   * @param table           the referencing table that declares the foreign key
+   * @param referencedTable the table the foreign key points to
+   * @param memoryBudget    off-heap bytes used for the index of the referenced keys
+   * @param spillDirectory  directory for the spill files, null uses the default temporary directory
+   */
+  public ForeignKeyCheck(Table table, ForeignKey foreignKey, Table referencedTable, long memoryBudget, Path spillDirectory) throws ParsingException {
+    this(table, foreignKey, referencedTable, memoryBudget, spillDirectory, PagePool.DEFAULT_PAGE_SIZE);
+  }
+
+  ForeignKeyCheck(Table table, ForeignKey foreignKey, Table referencedTable, long memoryBudget, Path spillDirectory, int pageSize)
+    throws ParsingException {
+    this.table = Objects.requireNonNull(table, "'table' can't be null");
+    this.foreignKey = Objects.requireNonNull(foreignKey, "'foreignKey' can't be null");
+    this.referencedTable = Objects.requireNonNull(referencedTable, "'referencedTable' can't be null");
+    if (table.getVariableLength() == null || referencedTable.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be checked");
+    }
+    this.columns = findColumns(table, foreignKey);
+    this.referencedColumns = findReferencedColumns(table, foreignKey, referencedTable);
+    this.pool = PrimaryKeyCheck.createPool(memoryBudget, pageSize);
+    this.spillDirectory = new SpillDirectory(spillDirectory);
+    this.keys = new PartitionedKeySet(pool, this.spillDirectory, referencedTable.getName());
+    this.keyBuffer = new byte[OffHeapKeySet.maxKeyLength(pool)];
+  }
+
+  /**
+   * Indexes the referenced table and checks the referencing table, both are opened from the archive.
+   */
+  public static ForeignKeyReport check(GdpduArchive archive, Table table, ForeignKey foreignKey, ParseLimits limits, long memoryBudget,
+                                       Path spillDirectory) throws ParsingException {
+    Table referencedTable = archive.getTable(foreignKey.getReferences());
+    try (ForeignKeyCheck check = new ForeignKeyCheck(table, foreignKey, referencedTable, memoryBudget, spillDirectory)) {
+      try (InputStream is = archive.openTable(referencedTable)) {
+        check.indexReferencedTable(is, limits);
+      }
+      try (InputStream is = archive.openTable(table)) {
+        check.checkTable(is, limits);
+      }
+      return check.finish();
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  /**
+   * Only this many orphans, those with the lowest record numbers, are kept for the report, all of them are counted.
+   */
+  public void setMaxReportedOrphans(int maxReportedOrphans) {
+    if (maxReportedOrphans < 0) {
+      throw new IllegalArgumentException("'maxReportedOrphans' must be at least 0, was [" + maxReportedOrphans + "]");
+    }
+    this.maxReportedOrphans = maxReportedOrphans;
+  }
+
+  /**
+   * Streams the referenced table, this must be done before {@link #checkTable(InputStream, ParseLimits)}.
+   */
+  public void indexReferencedTable(InputStream tableStream, ParseLimits limits) throws ParsingException {
+    if (indexComplete) {
+      throw new IllegalStateException("The referenced table has already been indexed");
+    }
+    GdpduDataParser.scanVariableLengthTable(tableStream, referencedTable, limits, this::addKey);
+    indexComplete = true;
+  }
+
+  /**
+   * Streams the referencing table, orphans in partitions that are still in memory are found right away.
+   */
+  public void checkTable(InputStream tableStream, ParseLimits limits) throws ParsingException {
+    indexComplete = true;
+    GdpduDataParser.scanVariableLengthTable(tableStream, table, limits, this::checkReference);
+  }
+
+  /**
+   * Joins the spilled partitions and returns the report, call this once after {@link #checkTable(InputStream, ParseLimits)}.
+   */
+  public ForeignKeyReport finish() throws ParsingException {
+    try {
+      keys.finishWriting();
+      for (int i = 0; i < PartitionedKeySet.PARTITIONS; i++) {
+        if (keys.isSpilled(i)) {
+          join(keys.getSpillFile(i), references[i], 1);
+        }
+      }
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+
+    // Spilled partitions are joined last, so the orphans aren't found in record order
+    List<ForeignKeyReport.Orphan> sorted = new ArrayList<>(orphans);
+    sorted.sort(Comparator.comparingLong(ForeignKeyReport.Orphan::getRecordNumber));
+    ForeignKeyReport report = new ForeignKeyReport(table.getName(), foreignKey.getNames(), referencedTable.getName(), checkedRecords, nullReferences,
+                                                   incompleteRecords, orphanCount, sorted, keys.getSpilledPartitions());
+    LOG.debug("Finished foreign key check: {}", report);
+    return report;
+  }
+
+  @Override
+  public void close() {
+    keys.release();
+    spillDirectory.close();
+  }
+
+  private void addKey(long recordNumber, Record record) throws ParsingException {
+    if (!encode(record, referencedColumns)) {
+      return;
+    }
+    PrimaryKeyCheck.checkKeyLength(encoder, keyBuffer, recordNumber);
+    // Duplicate primary keys don't matter here, that's what the PrimaryKeyCheck is for
+    keys.insert(encoder.hash(), encoder.getBuffer(), encoder.getLength(), recordNumber);
+  }
+
+  private void checkReference(long recordNumber, Record record) throws ParsingException {
+    if (!encode(record, columns)) {
+      incompleteRecords++;
+      return;
+    }
+    if (encoder.getLength() == columns.length) {
+      // Every value has a length of 0, this record doesn't reference anything
+      nullReferences++;
+      return;
+    }
+    checkedRecords++;
+    PrimaryKeyCheck.checkKeyLength(encoder, keyBuffer, recordNumber);
+
+    long hash = encoder.hash();
+    int partition = PartitionedKeySet.partition(hash, 0);
+    if (!keys.isSpilled(partition)) {
+      if (!keys.contains(hash, encoder.getBuffer(), encoder.getLength())) {
+        addOrphan(recordNumber, encoder.getBuffer(), encoder.getLength());
+      }
+      return;
+    }
+    try {
+      if (references[partition] == null) {
+        references[partition] = new SpillFile(spillDirectory.newFile("references-" + partition));
+      }
+      references[partition].write(hash, recordNumber, encoder.getBuffer(), encoder.getLength());
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  /**
+   * @return false if the record has too few columns
+   */
+  private boolean encode(Record record, int[] keyColumns) {
+    List<String> values = record.getColumns();
+    encoder.reset();
+    for (int column : keyColumns) {
+      if (column >= values.size()) {
+        return false;
+      }
+      encoder.add(values.get(column));
+    }
+    return true;
+  }
+
+  private void addOrphan(long recordNumber, byte[] key, int length) {
+    orphanCount++;
+    if (maxReportedOrphans == 0 || orphans.size() == maxReportedOrphans && orphans.peek().getRecordNumber() < recordNumber) {
+      return;
+    }
+    if (orphans.size() == maxReportedOrphans) {
+      orphans.poll();
+    }
+    orphans.add(new ForeignKeyReport.Orphan(recordNumber, KeyEncoder.decode(key, 0, length)));
+  }
+
+  /**
+   * Loads one partition of the referenced keys and probes it with the matching references.
+   * If the keys don't fit into memory both files are split up using the next bits of the hash.
+   */
+  private void join(SpillFile keyFile, SpillFile referenceFile, int level) throws IOException, ParsingException {
+    if (referenceFile == null) {
+      if (keyFile != null) {
+        keyFile.delete();
+      }
+      return;
+    }
+
+    OffHeapKeySet set = new OffHeapKeySet(pool);
+    try {
+      boolean fits = true;
+      if (keyFile != null) {
+        try (SpillFile.Reader reader = keyFile.openReader(keyBuffer)) {
+          while (fits && reader.next()) {
+            fits = set.insert(reader.getHash(), keyBuffer, reader.getLength(), reader.getRecordNumber()) != OffHeapKeySet.FULL;
+          }
+        }
+      }
+      if (fits) {
+        try (SpillFile.Reader reader = referenceFile.openReader(keyBuffer)) {
+          while (reader.next()) {
+            if (!set.contains(reader.getHash(), keyBuffer, reader.getLength())) {
+              addOrphan(reader.getRecordNumber(), keyBuffer, reader.getLength());
+            }
+          }
+        }
+        referenceFile.delete();
+        if (keyFile != null) {
+          keyFile.delete();
+        }
+        return;
+      }
+    } finally {
+      set.release();
+    }
+    if (level > PartitionedKeySet.MAX_LEVEL) {
+      throw PartitionedKeySet.budgetTooSmall(pool, referencedTable.getName());
+    }
+
+    LOG.debug("Spill file [{}] doesn't fit into memory, splitting it up", keyFile.getPath());
+    SpillFile[] keyParts = keyFile.split(level, spillDirectory, keyBuffer);
+    SpillFile[] referenceParts = referenceFile.split(level, spillDirectory, keyBuffer);
+    for (int i = 0; i < PartitionedKeySet.PARTITIONS; i++) {
+      join(keyParts[i], referenceParts[i], level + 1);
+    }
+  }
+
+  private static int[] findColumns(Table table, ForeignKey foreignKey) throws ParsingException {
+    List<VariableColumn> definitions = TableColumns.getColumns(table);
+    int[] columns = new int[foreignKey.getNames().size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = TableColumns.findColumn(definitions, foreignKey.getNames().get(i), table);
+    }
+    return columns;
+  }
+
+  private static int[] findReferencedColumns(Table table, ForeignKey foreignKey, Table referencedTable) throws ParsingException {
+    List<String> primaryKeys = new ArrayList<>();
+    for (VariableColumn column : referencedTable.getVariableLength().getVariablePrimaryKeys()) {
+      primaryKeys.add(column.getName());
+    }
+    if (primaryKeys.size() != foreignKey.getNames().size()) {
+      throw new ParsingException("Foreign key " + foreignKey.getNames() + " of table [" + table.getName() + "] doesn't match the primary key "
+                                 + primaryKeys + " of table [" + referencedTable.getName() + "]");
+    }
+
+    int[] columns = new int[primaryKeys.size()];
+    for (int i = 0; i < columns.length; i++) {
+      String name = foreignKey.getNames().get(i);
+      columns[i] = primaryKeys.indexOf(foreignKey.getAliases().getOrDefault(name, name));
+      if (columns[i] == -1) {
+        columns[i] = i;
+      }
+    }
+    return columns;
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The outcome of a {@link ForeignKeyCheck}.
+ */
+public class ForeignKeyReport {
+
+  private final String table;
+  private final List<String> columns;
+  private final String referencedTable;
+  private final long checkedRecords;
+  private final long nullReferences;
+  private final long incompleteRecords;
+  private final long orphanCount;
+  private final List<Orphan> orphans;
+  private final int spilledPartitions;
+
+  ForeignKeyReport(String table, List<String> columns, String referencedTable, long checkedRecords, long nullReferences, long incompleteRecords,
+                   long orphanCount, List<Orphan> orphans, int spilledPartitions) {
+    this.table = table;
+    this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+    this.referencedTable = referencedTable;
+    this.checkedRecords = checkedRecords;
+    this.nullReferences = nullReferences;
+    this.incompleteRecords = incompleteRecords;
+    this.orphanCount = orphanCount;
+    this.orphans = new ArrayList<>(orphans);
+    this.spilledPartitions = spilledPartitions;
+  }
+
+  /**
+   * The referencing table.
+   */
+  public String getTable() {
+    return table;
+  }
+
+  /**
+   * The foreign key columns of the referencing table.
+   */
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  public String getReferencedTable() {
+    return referencedTable;
+  }
+
+  public long getCheckedRecords() {
+    return checkedRecords;
+  }
+
+  /**
+   * Records in which all foreign key columns are empty, they don't reference anything and are not checked.
+   */
+  public long getNullReferences() {
+    return nullReferences;
+  }
+
+  /**
+   * Records that have fewer columns than the foreign key needs, they can't be checked.
+   */
+  public long getIncompleteRecords() {
+    return incompleteRecords;
+  }
+
+  /**
+   * Total number of records whose key doesn't exist in the referenced table.
+   */
+  public long getOrphanCount() {
+    return orphanCount;
+  }
+
+  /**
+   * The orphans ordered by record number.
+   * If there were more orphans than {@link ForeignKeyCheck#setMaxReportedOrphans(int)} these are the ones with the lowest record numbers.
+   */
+  public List<Orphan> getOrphans() {
+    return Collections.unmodifiableList(orphans);
+  }
+
+  /**
+   * Number of hash partitions of the referenced keys that didn't fit into the memory budget and were joined on disk.
+   */
+  public int getSpilledPartitions() {
+    return spilledPartitions;
+  }
+
+  public boolean isValid() {
+    return orphanCount == 0;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", ForeignKeyReport.class.getSimpleName() + "[", "]")
+      .add("table='" + table + "'")
+      .add("columns=" + columns)
+      .add("referencedTable='" + referencedTable + "'")
+      .add("checkedRecords=" + checkedRecords)
+      .add("nullReferences=" + nullReferences)
+      .add("incompleteRecords=" + incompleteRecords)
+      .add("orphanCount=" + orphanCount)
+      .add("spilledPartitions=" + spilledPartitions)
+      .toString();
+  }
+
+  public static class Orphan {
+
+    private final long recordNumber;
+    private final List<String> key;
+
+    Orphan(long recordNumber, List<String> key) {
+      this.recordNumber = recordNumber;
+      this.key = Collections.unmodifiableList(new ArrayList<>(key));
+    }
+
+    /**
+     * The 1-based number of the referencing record.
+     */
+    public long getRecordNumber() {
+      return recordNumber;
+    }
+
+    /**
+     * The values of the foreign key columns.
+     */
+    public List<String> getKey() {
+      return key;
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Orphan.class.getSimpleName() + "[", "]")
+        .add("recordNumber=" + recordNumber)
+        .add("key=" + key)
+        .toString();
+    }
+  }
+
+}
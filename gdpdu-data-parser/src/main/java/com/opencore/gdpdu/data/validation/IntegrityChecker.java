@@ -0,0 +1,144 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.DaemonThreadFactory;
+import com.opencore.gdpdu.data.GdpduArchive;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.index.models.ForeignKey;
+import com.opencore.gdpdu.index.models.Media;
+import com.opencore.gdpdu.index.models.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This checks the referential integrity of a whole archive: Every {@link ForeignKey} declared in the {@code index.xml} file is checked by a {@link ForeignKeyCheck}.
+ * <p/>
+ * The checks are independent of each other and run concurrently, each one has its own memory budget.
+ * The off-heap memory used at most is therefore {@code parallelism * memoryBudget}.
+ */
+public final class IntegrityChecker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(IntegrityChecker.class);
+
+  private final int parallelism;
+  private long memoryBudget = PrimaryKeyCheck.DEFAULT_MEMORY_BUDGET;
+  private Path spillDirectory;
+  private ParseLimits limits = new ParseLimits();
+
+  /**
+   * @param parallelism maximum number of foreign keys that are checked at the same time
+   */
+  public IntegrityChecker(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("'parallelism' must be at least 1, was [" + parallelism + "]");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Off-heap bytes used by each check.
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException("'memoryBudget' must be at least 1, was [" + memoryBudget + "]");
+    }
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Directory for the spill files, null uses the default temporary directory.
+   */
+  public void setSpillDirectory(Path spillDirectory) {
+    this.spillDirectory = spillDirectory;
+  }
+
+  public void setLimits(ParseLimits limits) {
+    this.limits = Objects.requireNonNull(limits, "'limits' can't be null");
+  }
+
+  /**
+   * Checks all foreign keys of the archive.
+   * Tables with a {@code FixedLength} layout can't be streamed yet, their foreign keys are skipped.
+   *
+   * @return one report per foreign key in the order in which they are declared
+   * @throws ParsingException if any of the checks failed (not if orphans were found)
+   */
+  public List<ForeignKeyReport> check(GdpduArchive archive) throws ParsingException {
+    Objects.requireNonNull(archive, "'archive' can't be null");
+
+    List<Table> tables = new ArrayList<>();
+    List<ForeignKey> foreignKeys = new ArrayList<>();
+    for (Media media : archive.getDataSet().getMedia()) {
+      for (Table table : media.getTables()) {
+        if (table.getVariableLength() == null) {
+          if (table.getFixedLength() != null && !table.getFixedLength().getForeignKeys().isEmpty()) {
+            LOG.warn("Skipping foreign keys of table [{}], FixedLength tables are not supported", table.getName());
+          }
+          continue;
+        }
+        for (ForeignKey foreignKey : table.getVariableLength().getForeignKeys()) {
+          tables.add(table);
+          foreignKeys.add(foreignKey);
+        }
+      }
+    }
+    if (foreignKeys.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    int threads = Math.min(parallelism, foreignKeys.size());
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("gdpdu-integrity-"));
+    try {
+      List<Future<ForeignKeyReport>> futures = new ArrayList<>(foreignKeys.size());
+      for (int i = 0; i < foreignKeys.size(); i++) {
+        Table table = tables.get(i);
+        ForeignKey foreignKey = foreignKeys.get(i);
+        futures.add(executor.submit(() -> ForeignKeyCheck.check(archive, table, foreignKey, limits, memoryBudget, spillDirectory)));
+      }
+
+      List<ForeignKeyReport> reports = new ArrayList<>(futures.size());
+      for (Future<ForeignKeyReport> future : futures) {
+        reports.add(getReport(future));
+      }
+      return reports;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static ForeignKeyReport getReport(Future<ForeignKeyReport> future) throws ParsingException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ParsingException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ParsingException) {
+        throw (ParsingException) e.getCause();
+      }
+      throw new ParsingException(e.getCause());
+    }
+  }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An open-addressing hash set of encoded keys that lives entirely in pages of a {@link PagePool}.
+ * <p/>
+ * The slot table stores the 64 bit hash and the address of the entry, linear probing resolves collisions.
+ * Entries ({@code [long hash][long recordNumber][int length][key bytes]}) are appended to arena pages and never straddle two pages.
+ * The exact key bytes are compared before a key is reported as a duplicate, equal hashes alone are not enough.
+ * <p/>
+ * Running out of pages is not an error: {@link #insert} returns {@link #FULL} without modifying the set,
+ * it's up to the caller to free memory (e.g. by spilling another set to disk) and retry.
+ * This class is not thread-safe.
+ */
+final class OffHeapKeySet {
+
+  static final long INSERTED = -1;
+  static final long FULL = -2;
+
+  static final int ENTRY_HEADER_SIZE = 20;
+  private static final int SLOT_SIZE = 16;
+
+  private final PagePool pool;
+  private final int pageSize;
+  private final int slotsPerPage;
+  private final int slotShift;
+
+  private ByteBuffer[] table;
+  private long capacity;
+  private long size;
+
+  private final List<ByteBuffer> arena = new ArrayList<>();
+  private int[] arenaUsed = new int[8];
+  private int arenaPosition;
+
+  OffHeapKeySet(PagePool pool) {
+    this.pool = pool;
+    this.pageSize = pool.getPageSize();
+    this.slotsPerPage = pageSize / SLOT_SIZE;
+    this.slotShift = Integer.numberOfTrailingZeros(slotsPerPage);
+  }
+
+  static int maxKeyLength(PagePool pool) {
+    return pool.getPageSize() - ENTRY_HEADER_SIZE;
+  }
+
+  /**
+   * @return {@link #INSERTED} if the key is new, {@link #FULL} if there was not enough memory
+   * or the record number of the first occurrence if the key is a duplicate
+   */
+  long insert(long hash, byte[] key, int length, long recordNumber) {
+    if (length > maxKeyLength(pool)) {
+      throw new IllegalArgumentException("'length' must be at most " + maxKeyLength(pool) + ", was [" + length + "]");
+    }
+    if (table == null && !resize(slotsPerPage)) {
+      return FULL;
+    }
+    if ((size + 1) * 10 > capacity * 7 && !resize(capacity * 2)) {
+      return FULL;
+    }
+
+    long index = probe(hash, key, length);
+    long existing = addressAt(index);
+    if (existing != 0) {
+      return recordNumberAt(existing - 1);
+    }
+
+    int entrySize = ENTRY_HEADER_SIZE + length;
+    if (arena.isEmpty() || arenaPosition + entrySize > pageSize) {
+      ByteBuffer page = pool.acquire();
+      if (page == null) {
+        return FULL;
+      }
+      if (!arena.isEmpty()) {
+        arenaUsed[arena.size() - 1] = arenaPosition;
+      }
+      arena.add(page);
+      if (arena.size() > arenaUsed.length) {
+        arenaUsed = Arrays.copyOf(arenaUsed, arenaUsed.length * 2);
+      }
+      arenaPosition = 0;
+    }
+
+    int pageIndex = arena.size() - 1;
+    ByteBuffer page = arena.get(pageIndex);
+    page.putLong(arenaPosition, hash);
+    page.putLong(arenaPosition + 8, recordNumber);
+    page.putInt(arenaPosition + 16, length);
+    for (int i = 0; i < length; i++) {
+      page.put(arenaPosition + ENTRY_HEADER_SIZE + i, key[i]);
+    }
+    long address = ((long) pageIndex << 32) | arenaPosition;
+    arenaPosition += entrySize;
+
+    ByteBuffer slotPage = table[(int) (index >>> slotShift)];
+    int slotPosition = (int) (index & (slotsPerPage - 1)) * SLOT_SIZE;
+    slotPage.putLong(slotPosition, hash);
+    slotPage.putLong(slotPosition + 8, address + 1);
+    size++;
+    return INSERTED;
+  }
+
+  boolean contains(long hash, byte[] key, int length) {
+    return table != null && addressAt(probe(hash, key, length)) != 0;
+  }
+
+  long size() {
+    return size;
+  }
+
+  /**
+   * Number of pool pages currently held by this set.
+   */
+  int getPages() {
+    return (table == null ? 0 : table.length) + arena.size();
+  }
+
+  /**
+   * Writes all entries in insertion order, in the same layout as they are stored.
+   */
+  void writeTo(DataOutput out) throws IOException {
+    byte[] buffer = new byte[pageSize];
+    for (int i = 0; i < arena.size(); i++) {
+      ByteBuffer page = arena.get(i);
+      int limit = i == arena.size() - 1 ? arenaPosition : arenaUsed[i];
+      int position = 0;
+      while (position < limit) {
+        int length = page.getInt(position + 16);
+        out.writeLong(page.getLong(position));
+        out.writeLong(page.getLong(position + 8));
+        out.writeInt(length);
+        for (int j = 0; j < length; j++) {
+          buffer[j] = page.get(position + ENTRY_HEADER_SIZE + j);
+        }
+        out.write(buffer, 0, length);
+        position += ENTRY_HEADER_SIZE + length;
+      }
+    }
+  }
+
+  /**
+   * Returns all pages to the pool, the set is empty (and usable) afterwards.
+   */
+  void release() {
+    if (table != null) {
+      for (ByteBuffer page : table) {
+        pool.release(page);
+      }
+    }
+    for (ByteBuffer page : arena) {
+      pool.release(page);
+    }
+    table = null;
+    capacity = 0;
+    size = 0;
+    arena.clear();
+    arenaPosition = 0;
+  }
+
+  private boolean resize(long newCapacity) {
+    int pages = (int) (newCapacity / slotsPerPage);
+    ByteBuffer[] newTable = new ByteBuffer[pages];
+    for (int i = 0; i < pages; i++) {
+      newTable[i] = pool.acquire();
+      if (newTable[i] == null) {
+        for (int j = 0; j < i; j++) {
+          pool.release(newTable[j]);
+        }
+        return false;
+      }
+      // Pages are recycled, a zero address marks an empty slot
+      for (int position = 0; position < pageSize; position += 8) {
+        newTable[i].putLong(position, 0);
+      }
+    }
+
+    long mask = newCapacity - 1;
+    if (table != null) {
+      for (ByteBuffer page : table) {
+        for (int position = 0; position < pageSize; position += SLOT_SIZE) {
+          long address = page.getLong(position + 8);
+          if (address == 0) {
+            continue;
+          }
+          long hash = page.getLong(position);
+          long index = hash & mask;
+          while (newTable[(int) (index >>> slotShift)].getLong((int) (index & (slotsPerPage - 1)) * SLOT_SIZE + 8) != 0) {
+            index = (index + 1) & mask;
+          }
+          ByteBuffer newPage = newTable[(int) (index >>> slotShift)];
+          int newPosition = (int) (index & (slotsPerPage - 1)) * SLOT_SIZE;
+          newPage.putLong(newPosition, hash);
+          newPage.putLong(newPosition + 8, address);
+        }
+        pool.release(page);
+      }
+    }
+    table = newTable;
+    capacity = newCapacity;
+    return true;
+  }
+
+  /**
+   * @return the slot that holds the key or the empty slot where it would be inserted
+   */
+  private long probe(long hash, byte[] key, int length) {
+    long mask = capacity - 1;
+    long index = hash & mask;
+    while (true) {
+      ByteBuffer page = table[(int) (index >>> slotShift)];
+      int position = (int) (index & (slotsPerPage - 1)) * SLOT_SIZE;
+      long address = page.getLong(position + 8);
+      if (address == 0 || page.getLong(position) == hash && keyEquals(address - 1, key, length)) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  private long addressAt(long index) {
+    return table[(int) (index >>> slotShift)].getLong((int) (index & (slotsPerPage - 1)) * SLOT_SIZE + 8);
+  }
+
+  private boolean keyEquals(long address, byte[] key, int length) {
+    ByteBuffer page = arena.get((int) (address >>> 32));
+    int position = (int) address;
+    if (page.getInt(position + 16) != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (page.get(position + ENTRY_HEADER_SIZE + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long recordNumberAt(long address) {
+    return arena.get((int) (address >>> 32)).getLong((int) address + 8);
+  }
+
+}
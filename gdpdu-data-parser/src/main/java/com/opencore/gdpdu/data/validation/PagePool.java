@@ -0,0 +1,76 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A fixed number of equally sized off-heap pages.
+ * <p/>
+ * All off-heap memory of a check is taken from one pool so the check never uses more than its budget.
+ * Released pages are kept and handed out again, direct buffers are never left to the garbage collector.
+ * This class is not thread-safe.
+ */
+final class PagePool {
+
+  static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+
+  private final long budget;
+  private final int pageSize;
+  private final int maxPages;
+  private final Deque<ByteBuffer> free = new ArrayDeque<>();
+  private int allocated;
+
+  PagePool(long budget, int pageSize) {
+    if (pageSize < 64 || Integer.bitCount(pageSize) != 1) {
+      throw new IllegalArgumentException("'pageSize' must be a power of two and at least 64, was [" + pageSize + "]");
+    }
+    this.budget = budget;
+    this.pageSize = pageSize;
+    this.maxPages = (int) Math.min(Integer.MAX_VALUE, budget / pageSize);
+  }
+
+  long getBudget() {
+    return budget;
+  }
+
+  int getPageSize() {
+    return pageSize;
+  }
+
+  int getMaxPages() {
+    return maxPages;
+  }
+
+  /**
+   * @return a page with undefined contents or null if the budget is used up
+   */
+  ByteBuffer acquire() {
+    ByteBuffer page = free.poll();
+    if (page != null) {
+      return page;
+    }
+    if (allocated >= maxPages) {
+      return null;
+    }
+    allocated++;
+    return ByteBuffer.allocateDirect(pageSize);
+  }
+
+  void release(ByteBuffer page) {
+    free.push(page);
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.IOException;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.SpillDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hash partitioned {@link OffHeapKeySet sets} that share one {@link PagePool} and spill to disk when it is used up.
+ * <p/>
+ * A key belongs to one of {@value #PARTITIONS} partitions, chosen by the top bits of its hash.
+ * When there are no pages left the largest partition still in memory is written to a {@link SpillFile},
+ * from then on every key of that partition is appended to the file instead. It's up to the caller to process the spill files,
+ * the next bits of the hash (see {@link #partition(long, int)}) can be used to split a file that still doesn't fit into memory.
+ * This class is not thread-safe.
+ */
+final class PartitionedKeySet {
+
+  static final int PARTITIONS = 16;
+  static final long SPILLED = -3;
+
+  /**
+   * Each level uses another {@value #PARTITION_BITS} bits of the 64 bit hash.
+   */
+  static final int MAX_LEVEL = 64 / 4 - 1;
+
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionedKeySet.class);
+
+  private static final int PARTITION_BITS = 4;
+
+  private final PagePool pool;
+  private final SpillDirectory spillDirectory;
+  private final String name;
+  private final OffHeapKeySet[] sets = new OffHeapKeySet[PARTITIONS];
+  private final SpillFile[] spillFiles = new SpillFile[PARTITIONS];
+  private int spilledPartitions;
+
+  /**
+   * @param name used in log and error messages
+   */
+  PartitionedKeySet(PagePool pool, SpillDirectory spillDirectory, String name) {
+    this.pool = pool;
+    this.spillDirectory = spillDirectory;
+    this.name = name;
+    for (int i = 0; i < PARTITIONS; i++) {
+      sets[i] = new OffHeapKeySet(pool);
+    }
+  }
+
+  /**
+   * @return {@link OffHeapKeySet#INSERTED}, {@link #SPILLED} if the key was written to the spill file of its partition
+   * or the record number of the first occurrence if the key is a duplicate
+   */
+  long insert(long hash, byte[] key, int length, long recordNumber) throws ParsingException {
+    int partition = partition(hash, 0);
+    try {
+      while (spillFiles[partition] == null) {
+        long result = sets[partition].insert(hash, key, length, recordNumber);
+        if (result != OffHeapKeySet.FULL) {
+          return result;
+        }
+        spillLargestPartition();
+      }
+      spillFiles[partition].write(hash, recordNumber, key, length);
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    return SPILLED;
+  }
+
+  boolean isSpilled(int partition) {
+    return spillFiles[partition] != null;
+  }
+
+  /**
+   * Only valid for partitions that have not been spilled.
+   */
+  boolean contains(long hash, byte[] key, int length) {
+    return sets[partition(hash, 0)].contains(hash, key, length);
+  }
+
+  /**
+   * The spill file of a partition or null if it's still in memory.
+   */
+  SpillFile getSpillFile(int partition) {
+    return spillFiles[partition];
+  }
+
+  int getSpilledPartitions() {
+    return spilledPartitions;
+  }
+
+  /**
+   * Frees all memory and closes the spill files so they can be read.
+   */
+  void finishWriting() throws IOException {
+    release();
+    for (SpillFile file : spillFiles) {
+      if (file != null) {
+        file.close();
+      }
+    }
+  }
+
+  /**
+   * Returns all pages of the in-memory partitions to the pool.
+   */
+  void release() {
+    for (OffHeapKeySet set : sets) {
+      set.release();
+    }
+  }
+
+  static int partition(long hash, int level) {
+    return (int) (hash >>> (64 - PARTITION_BITS * (level + 1))) & (PARTITIONS - 1);
+  }
+
+  static ParsingException budgetTooSmall(PagePool pool, String name) {
+    return new ParsingException("Memory budget of [" + pool.getBudget() + "] bytes is too small for [" + name + "]");
+  }
+
+  private void spillLargestPartition() throws IOException, ParsingException {
+    int victim = -1;
+    for (int i = 0; i < PARTITIONS; i++) {
+      if (spillFiles[i] == null && (victim == -1 || sets[i].getPages() > sets[victim].getPages())) {
+        victim = i;
+      }
+    }
+    if (victim == -1 || sets[victim].getPages() == 0) {
+      throw budgetTooSmall(pool, name);
+    }
+
+    spillFiles[victim] = new SpillFile(spillDirectory.newFile("keys-" + victim));
+    sets[victim].writeTo(spillFiles[victim].getOutput());
+    spillFiles[victim].addEntries(sets[victim].size());
+    LOG.debug("Spilled partition [{}] with [{}] keys of [{}] to [{}]", victim, sets[victim].size(), name, spillFiles[victim].getPath());
+    sets[victim].release();
+    spilledPartitions++;
+  }
+
+}
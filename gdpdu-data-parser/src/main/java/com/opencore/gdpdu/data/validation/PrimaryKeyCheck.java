@@ -0,0 +1,230 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.data.KeyEncoder;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.data.Record;
+import com.opencore.gdpdu.data.RecordHandler;
+import com.opencore.gdpdu.data.SpillDirectory;
+import com.opencore.gdpdu.index.models.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This checks that the primary key of a table is unique while the data file is being streamed, without materializing any records.
+ * <p/>
+ * The primary key columns of every record are encoded and hashed into one of {@value PartitionedKeySet#PARTITIONS} off-heap hash sets (chosen by the top bits of the hash).
+ * All sets share a fixed memory budget. When it is used up the largest set is written to a spill file on local disk,
+ * all further keys of that partition are appended to the file. Spill files are checked one by one in {@link #finish()},
+ * a file that still doesn't fit is split again using the next bits of the hash.
+ * <p/>
+ * The exact key bytes are kept so hash collisions never cause false positives.
+ * This class is not thread-safe, it must be closed to free the spill files.
+ */
+public final class PrimaryKeyCheck implements RecordHandler, Closeable {
+
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+  public static final int DEFAULT_MAX_REPORTED_DUPLICATES = 1000;
+
+  private static final Logger LOG = LoggerFactory.getLogger(PrimaryKeyCheck.class);
+
+  private final String tableName;
+  private final int keyColumns;
+  private final PagePool pool;
+  private final SpillDirectory spillDirectory;
+  private final PartitionedKeySet keys;
+  private final KeyEncoder encoder = new KeyEncoder();
+  private final byte[] keyBuffer;
+  private final List<PrimaryKeyReport.Duplicate> duplicates = new ArrayList<>();
+
+  private int maxReportedDuplicates = DEFAULT_MAX_REPORTED_DUPLICATES;
+  private long checkedRecords;
+  private long incompleteRecords;
+  private long duplicateCount;
+
+  public PrimaryKeyCheck(Table table) throws ParsingException {
+    this(table, DEFAULT_MEMORY_BUDGET, null);
+  }
+
+  /**
+   * @param memoryBudget   off-heap bytes used for the hash sets
+   * @param spillDirectory directory for the spill files, null uses the default temporary directory
+   */
+  public PrimaryKeyCheck(Table table, long memoryBudget, Path spillDirectory) throws ParsingException {
+    this(table, memoryBudget, spillDirectory, PagePool.DEFAULT_PAGE_SIZE);
+  }
+
+  PrimaryKeyCheck(Table table, long memoryBudget, Path spillDirectory, int pageSize) throws ParsingException {
+    Objects.requireNonNull(table, "'table' can't be null");
+    if (table.getVariableLength() == null) {
+      throw new ParsingException("Only VariableLength tables can be checked");
+    }
+    this.keyColumns = table.getVariableLength().getVariablePrimaryKeys().size();
+    if (keyColumns == 0) {
+      throw new ParsingException("Table [" + table.getName() + "] has no primary key");
+    }
+    this.tableName = table.getName();
+    this.pool = createPool(memoryBudget, pageSize);
+    this.spillDirectory = new SpillDirectory(spillDirectory);
+    this.keys = new PartitionedKeySet(pool, this.spillDirectory, tableName);
+    this.keyBuffer = new byte[OffHeapKeySet.maxKeyLength(pool)];
+  }
+
+  /**
+   * Streams a data file through a new check.
+   */
+  public static PrimaryKeyReport check(InputStream tableStream, Table table) throws ParsingException {
+    return check(tableStream, table, new ParseLimits(), DEFAULT_MEMORY_BUDGET, null);
+  }
+
+  public static PrimaryKeyReport check(InputStream tableStream, Table table, ParseLimits limits, long memoryBudget, Path spillDirectory)
+    throws ParsingException {
+    try (PrimaryKeyCheck check = new PrimaryKeyCheck(table, memoryBudget, spillDirectory)) {
+      GdpduDataParser.scanVariableLengthTable(tableStream, table, limits, check);
+      return check.finish();
+    }
+  }
+
+  /**
+   * Only this many duplicates are kept for the report, all of them are counted.
+   */
+  public void setMaxReportedDuplicates(int maxReportedDuplicates) {
+    if (maxReportedDuplicates < 0) {
+      throw new IllegalArgumentException("'maxReportedDuplicates' must be at least 0, was [" + maxReportedDuplicates + "]");
+    }
+    this.maxReportedDuplicates = maxReportedDuplicates;
+  }
+
+  @Override
+  public void handle(long recordNumber, Record record) throws ParsingException {
+    List<String> columns = record.getColumns();
+    if (columns.size() < keyColumns) {
+      incompleteRecords++;
+      return;
+    }
+    checkedRecords++;
+
+    encoder.reset();
+    for (int i = 0; i < keyColumns; i++) {
+      encoder.add(columns.get(i));
+    }
+    checkKeyLength(encoder, keyBuffer, recordNumber);
+    long result = keys.insert(encoder.hash(), encoder.getBuffer(), encoder.getLength(), recordNumber);
+    if (result >= 0) {
+      duplicateCount++;
+      if (duplicates.size() < maxReportedDuplicates) {
+        duplicates.add(new PrimaryKeyReport.Duplicate(recordNumber, result, KeyEncoder.decode(encoder.getBuffer(), 0, encoder.getLength())));
+      }
+    }
+  }
+
+  /**
+   * Checks the spilled partitions and returns the report, call this once after the last record.
+   */
+  public PrimaryKeyReport finish() throws ParsingException {
+    try {
+      keys.finishWriting();
+      for (int i = 0; i < PartitionedKeySet.PARTITIONS; i++) {
+        if (keys.isSpilled(i)) {
+          checkSpillFile(keys.getSpillFile(i), 1);
+        }
+      }
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+
+    duplicates.sort(Comparator.comparingLong(PrimaryKeyReport.Duplicate::getRecordNumber));
+    PrimaryKeyReport report =
+      new PrimaryKeyReport(tableName, checkedRecords, incompleteRecords, duplicateCount, duplicates, keys.getSpilledPartitions());
+    LOG.debug("Finished primary key check: {}", report);
+    return report;
+  }
+
+  @Override
+  public void close() {
+    keys.release();
+    spillDirectory.close();
+  }
+
+  /**
+   * Spill files start with the distinct keys the partition held in memory followed by all keys in record order, so the first occurrence always comes first.
+   * Duplicates are only added to the report once the whole file fit into memory, otherwise the file is split up and every part is checked again.
+   */
+  private void checkSpillFile(SpillFile file, int level) throws IOException, ParsingException {
+    OffHeapKeySet set = new OffHeapKeySet(pool);
+    List<PrimaryKeyReport.Duplicate> found = new ArrayList<>();
+    long foundCount = 0;
+    boolean fits = true;
+    try (SpillFile.Reader reader = file.openReader(keyBuffer)) {
+      while (reader.next()) {
+        long result = set.insert(reader.getHash(), keyBuffer, reader.getLength(), reader.getRecordNumber());
+        if (result == OffHeapKeySet.FULL) {
+          fits = false;
+          break;
+        }
+        if (result != OffHeapKeySet.INSERTED) {
+          foundCount++;
+          if (duplicates.size() + found.size() < maxReportedDuplicates) {
+            found.add(new PrimaryKeyReport.Duplicate(reader.getRecordNumber(), result, KeyEncoder.decode(keyBuffer, 0, reader.getLength())));
+          }
+        }
+      }
+    } finally {
+      set.release();
+    }
+
+    if (fits) {
+      duplicateCount += foundCount;
+      duplicates.addAll(found);
+      file.delete();
+      return;
+    }
+    if (level > PartitionedKeySet.MAX_LEVEL) {
+      throw PartitionedKeySet.budgetTooSmall(pool, tableName);
+    }
+
+    LOG.debug("Spill file [{}] doesn't fit into memory, splitting it up", file.getPath());
+    for (SpillFile part : file.split(level, spillDirectory, keyBuffer)) {
+      if (part != null) {
+        checkSpillFile(part, level + 1);
+      }
+    }
+  }
+
+  static PagePool createPool(long memoryBudget, int pageSize) {
+    PagePool pool = new PagePool(memoryBudget, pageSize);
+    if (pool.getMaxPages() < 2) {
+      throw new IllegalArgumentException("'memoryBudget' must be at least " + 2 * pageSize + ", was [" + memoryBudget + "]");
+    }
+    return pool;
+  }
+
+  static void checkKeyLength(KeyEncoder encoder, byte[] keyBuffer, long recordNumber) throws ParsingException {
+    if (encoder.getLength() > keyBuffer.length) {
+      throw new ParsingException("Key of record [" + recordNumber + "] exceeds the limit of [" + keyBuffer.length + "] bytes");
+    }
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The outcome of a {@link PrimaryKeyCheck}.
+ */
+public class PrimaryKeyReport {
+
+  private final String table;
+  private final long checkedRecords;
+  private final long incompleteRecords;
+  private final long duplicateCount;
+  private final List<Duplicate> duplicates;
+  private final int spilledPartitions;
+
+  PrimaryKeyReport(String table, long checkedRecords, long incompleteRecords, long duplicateCount, List<Duplicate> duplicates, int spilledPartitions) {
+    this.table = table;
+    this.checkedRecords = checkedRecords;
+    this.incompleteRecords = incompleteRecords;
+    this.duplicateCount = duplicateCount;
+    this.duplicates = new ArrayList<>(duplicates);
+    this.spilledPartitions = spilledPartitions;
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public long getCheckedRecords() {
+    return checkedRecords;
+  }
+
+  /**
+   * Records that have fewer columns than the primary key, they can't be checked.
+   */
+  public long getIncompleteRecords() {
+    return incompleteRecords;
+  }
+
+  /**
+   * Total number of records whose key was already used by an earlier record.
+   */
+  public long getDuplicateCount() {
+    return duplicateCount;
+  }
+
+  /**
+   * The duplicates ordered by record number.
+   * This is only a sample if there were more duplicates than {@link PrimaryKeyCheck#setMaxReportedDuplicates(int)}.
+   */
+  public List<Duplicate> getDuplicates() {
+    return Collections.unmodifiableList(duplicates);
+  }
+
+  /**
+   * Number of hash partitions that didn't fit into the memory budget and were spilled to disk.
+   */
+  public int getSpilledPartitions() {
+    return spilledPartitions;
+  }
+
+  public boolean isValid() {
+    return duplicateCount == 0;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", PrimaryKeyReport.class.getSimpleName() + "[", "]")
+      .add("table='" + table + "'")
+      .add("checkedRecords=" + checkedRecords)
+      .add("incompleteRecords=" + incompleteRecords)
+      .add("duplicateCount=" + duplicateCount)
+      .add("spilledPartitions=" + spilledPartitions)
+      .toString();
+  }
+
+  public static class Duplicate {
+
+    private final long recordNumber;
+    private final long firstRecordNumber;
+    private final List<String> key;
+
+    Duplicate(long recordNumber, long firstRecordNumber, List<String> key) {
+      this.recordNumber = recordNumber;
+      this.firstRecordNumber = firstRecordNumber;
+      this.key = Collections.unmodifiableList(new ArrayList<>(key));
+    }
+
+    /**
+     * The 1-based number of the record that repeats the key.
+     */
+    public long getRecordNumber() {
+      return recordNumber;
+    }
+
+    /**
+     * The 1-based number of the record that used the key first.
+     */
+    public long getFirstRecordNumber() {
+      return firstRecordNumber;
+    }
+
+    /**
+     * The values of the primary key columns.
+     */
+    public List<String> getKey() {
+      return key;
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Duplicate.class.getSimpleName() + "[", "]")
+        .add("recordNumber=" + recordNumber)
+        .add("firstRecordNumber=" + firstRecordNumber)
+        .add("key=" + key)
+        .toString();
+    }
+  }
+
+}
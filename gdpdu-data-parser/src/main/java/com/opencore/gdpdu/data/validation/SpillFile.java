@@ -0,0 +1,163 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.opencore.gdpdu.data.SpillDirectory;
+
+/**
+ * A file of hashed keys, each entry is {@code [long hash][long recordNumber][int length][key bytes]}.
+ * <p/>
+ * A spill file is written once and read afterwards, entries are read back in the order they were written.
+ */
+final class SpillFile implements Closeable {
+
+  private final Path path;
+  private DataOutputStream out;
+  private long entries;
+
+  SpillFile(Path path) throws IOException {
+    this.path = path;
+    this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  long getEntries() {
+    return entries;
+  }
+
+  DataOutputStream getOutput() {
+    return out;
+  }
+
+  void write(long hash, long recordNumber, byte[] key, int length) throws IOException {
+    out.writeLong(hash);
+    out.writeLong(recordNumber);
+    out.writeInt(length);
+    out.write(key, 0, length);
+    entries++;
+  }
+
+  /**
+   * Adds entries that were written directly to {@link #getOutput()}.
+   */
+  void addEntries(long count) {
+    entries += count;
+  }
+
+  /**
+   * Finishes writing, the file can be read afterwards.
+   */
+  @Override
+  public void close() throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+  }
+
+  Reader openReader(byte[] keyBuffer) throws IOException {
+    close();
+    return new Reader(new DataInputStream(new BufferedInputStream(Files.newInputStream(path))), entries, keyBuffer);
+  }
+
+  /**
+   * Distributes the entries over {@value PartitionedKeySet#PARTITIONS} new files using the hash bits of the given level and deletes this file.
+   * Partitions without entries are null, the order of the entries is preserved within every new file.
+   */
+  SpillFile[] split(int level, SpillDirectory directory, byte[] keyBuffer) throws IOException {
+    SpillFile[] files = new SpillFile[PartitionedKeySet.PARTITIONS];
+    try (Reader reader = openReader(keyBuffer)) {
+      while (reader.next()) {
+        int partition = PartitionedKeySet.partition(reader.getHash(), level);
+        if (files[partition] == null) {
+          files[partition] = new SpillFile(directory.newFile(path.getFileName() + "-" + partition));
+        }
+        files[partition].write(reader.getHash(), reader.getRecordNumber(), keyBuffer, reader.getLength());
+      }
+    } finally {
+      for (SpillFile file : files) {
+        if (file != null) {
+          file.close();
+        }
+      }
+    }
+    delete();
+    return files;
+  }
+
+  void delete() throws IOException {
+    close();
+    Files.deleteIfExists(path);
+  }
+
+  static final class Reader implements Closeable {
+
+    private final DataInputStream in;
+    private final byte[] keyBuffer;
+    private long remaining;
+    private long hash;
+    private long recordNumber;
+    private int length;
+
+    private Reader(DataInputStream in, long entries, byte[] keyBuffer) {
+      this.in = in;
+      this.remaining = entries;
+      this.keyBuffer = keyBuffer;
+    }
+
+    /**
+     * Reads the next entry, its key is copied into the key buffer.
+     */
+    boolean next() throws IOException {
+      if (remaining == 0) {
+        return false;
+      }
+      remaining--;
+      hash = in.readLong();
+      recordNumber = in.readLong();
+      length = in.readInt();
+      in.readFully(keyBuffer, 0, length);
+      return true;
+    }
+
+    long getHash() {
+      return hash;
+    }
+
+    long getRecordNumber() {
+      return recordNumber;
+    }
+
+    int getLength() {
+      return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+}
@@ -0,0 +1,342 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.data.RecordCursor;
+import com.opencore.gdpdu.index.models.FixedColumn;
+import com.opencore.gdpdu.index.models.FixedLength;
+import com.opencore.gdpdu.index.models.Range;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableLength;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The cheapest possible check of a data file: It counts the records and checks that every record has the expected number of columns
+ * ({@code VariableLength}) or the expected length ({@code FixedLength}), without decoding characters or creating any strings or records.
+ * <p/>
+ * The bytes are scanned for the delimiters directly, which works for single byte encodings and UTF-8 because no character can contain
+ * the bytes of an ASCII delimiter there. Other encodings (i.e. UTF-16) fall back to the regular lexer and report no byte offsets.
+ * Encapsulated text is handled like the lexer does, delimiters inside of it don't count.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public final class StructureCheck {
+
+  public static final int DEFAULT_MAX_REPORTED_ANOMALIES = 100;
+
+  private static final Logger LOG = LoggerFactory.getLogger(StructureCheck.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Table table;
+  private final List<StructureReport.Anomaly> anomalies = new ArrayList<>();
+  private int maxReportedAnomalies = DEFAULT_MAX_REPORTED_ANOMALIES;
+  private long anomalyCount;
+
+  public StructureCheck(Table table) throws ParsingException {
+    this.table = Objects.requireNonNull(table, "'table' can't be null");
+    if (table.getVariableLength() == null && table.getFixedLength() == null) {
+      throw new ParsingException("Neither VariableLength nor FixedLength found, aborting");
+    }
+  }
+
+  /**
+   * Streams a data file through a new check.
+   */
+  public static StructureReport check(InputStream tableStream, Table table) throws ParsingException {
+    return new StructureCheck(table).run(tableStream);
+  }
+
+  /**
+   * Only this many anomalies are kept for the report, all of them are counted.
+   */
+  public void setMaxReportedAnomalies(int maxReportedAnomalies) {
+    if (maxReportedAnomalies < 0) {
+      throw new IllegalArgumentException("'maxReportedAnomalies' must be at least 0, was [" + maxReportedAnomalies + "]");
+    }
+    this.maxReportedAnomalies = maxReportedAnomalies;
+  }
+
+  /**
+   * Checks the data file, the stream must start at the beginning of the file and is closed afterwards.
+   */
+  public StructureReport run(InputStream tableStream) throws ParsingException {
+    Objects.requireNonNull(tableStream, "'tableStream' can't be null");
+    anomalies.clear();
+    anomalyCount = 0;
+
+    Charset charset = table.getEncoding().getCharset();
+    boolean byteSafe = charset.equals(StandardCharsets.UTF_8) || charset.newEncoder().maxBytesPerChar() == 1;
+    StructureReport report;
+    try (InputStream is = tableStream) {
+      if (table.getVariableLength() != null) {
+        report = byteSafe ? scanVariableLength(is, charset) : lexVariableLength(is);
+      } else {
+        if (!byteSafe) {
+          throw new ParsingException("FixedLength tables in [" + charset + "] can't be checked");
+        }
+        report = scanFixedLength(is, charset);
+      }
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    LOG.debug("Finished structure check of table [{}]: {}", table.getName(), report);
+    return report;
+  }
+
+  private StructureReport scanVariableLength(InputStream is, Charset charset) throws IOException {
+    VariableLength variableLength = table.getVariableLength();
+    int expected = variableLength.getVariablePrimaryKeys().size() + variableLength.getVariableColumns().size();
+    byte[] recordDelimiter = variableLength.getRecordDelimiter().getBytes(charset);
+    byte[] columnDelimiter = variableLength.getColumnDelimiter().getBytes(charset);
+    String encapsulator = variableLength.getTextEncapsulator();
+    byte[] textEncapsulator = encapsulator == null ? new byte[0] : encapsulator.getBytes(charset);
+
+    Buffer buffer = new Buffer(is, Math.max(recordDelimiter.length, Math.max(columnDelimiter.length, textEncapsulator.length)));
+    long offset = buffer.skip(table.getSkipNumBytes());
+    long records = 0;
+    long recordOffset = offset;
+    boolean inRecord = false;
+    boolean columnStart = true;
+    boolean encapsulated = false;
+    int columns = 1;
+    while (buffer.ensure()) {
+      byte[] bytes = buffer.bytes;
+      int position = buffer.position;
+      int length;
+      if (encapsulated) {
+        if (buffer.matches(textEncapsulator)) {
+          encapsulated = false;
+          // The lexer allows another encapsulated part right after this one
+          columnStart = true;
+          length = textEncapsulator.length;
+        } else {
+          length = 1;
+        }
+      } else if (bytes[position] == recordDelimiter[0] && buffer.matches(recordDelimiter)) {
+        records++;
+        // An empty line is counted as a record but not reported, see lexVariableLength
+        if (columns != expected && (inRecord || columns > 1)) {
+          addAnomaly(StructureReport.Type.COLUMN_COUNT, records, recordOffset, columns, expected);
+        }
+        length = recordDelimiter.length;
+        inRecord = false;
+        columnStart = true;
+        columns = 1;
+        recordOffset = offset + length;
+      } else if (bytes[position] == columnDelimiter[0] && buffer.matches(columnDelimiter)) {
+        columns++;
+        columnStart = true;
+        inRecord = true;
+        length = columnDelimiter.length;
+      } else if (columnStart && textEncapsulator.length > 0 && bytes[position] == textEncapsulator[0] && buffer.matches(textEncapsulator)) {
+        encapsulated = true;
+        inRecord = true;
+        length = textEncapsulator.length;
+      } else {
+        columnStart = false;
+        inRecord = true;
+        length = 1;
+      }
+      buffer.position += length;
+      offset += length;
+    }
+
+    if (inRecord) {
+      // The last record doesn't need a record delimiter
+      records++;
+      if (encapsulated) {
+        addAnomaly(StructureReport.Type.UNTERMINATED_TEXT, records, recordOffset, 0, 0);
+      } else if (columns != expected) {
+        addAnomaly(StructureReport.Type.COLUMN_COUNT, records, recordOffset, columns, expected);
+      }
+    }
+    return new StructureReport(table.getName(), records, offset, anomalyCount, anomalies);
+  }
+
+  private StructureReport lexVariableLength(InputStream is) throws ParsingException {
+    VariableLength variableLength = table.getVariableLength();
+    int expected = variableLength.getVariablePrimaryKeys().size() + variableLength.getVariableColumns().size();
+    long records = 0;
+    try (RecordCursor cursor = GdpduDataParser.openVariableLengthTable(is, table, null)) {
+      while (cursor.next()) {
+        records = cursor.getRecordNumber();
+        List<String> values = cursor.getRecord().getColumns();
+        // The lexer returns an empty line as a record with a single empty column
+        boolean empty = values.size() == 1 && values.get(0).isEmpty();
+        if (values.size() != expected && !empty) {
+          addAnomaly(StructureReport.Type.COLUMN_COUNT, records, -1, values.size(), expected);
+        }
+      }
+    }
+    return new StructureReport(table.getName(), records, -1, anomalyCount, anomalies);
+  }
+
+  private StructureReport scanFixedLength(InputStream is, Charset charset) throws IOException, ParsingException {
+    FixedLength fixedLength = table.getFixedLength();
+    long declaredLength = fixedLength.getLength() == null ? -1 : fixedLength.getLength();
+    long requiredLength = 0;
+    for (List<FixedColumn> columns : List.of(fixedLength.getFixedPrimaryKeys(), fixedLength.getFixedColumns())) {
+      for (FixedColumn column : columns) {
+        requiredLength = Math.max(requiredLength, columnEnd(column.getFixedRange()));
+      }
+    }
+    byte[] recordDelimiter = fixedLength.getRecordDelimiter() == null ? new byte[0] : fixedLength.getRecordDelimiter().getBytes(charset);
+    if (recordDelimiter.length == 0 && declaredLength < 1) {
+      throw new ParsingException("Table [" + table.getName() + "] has neither a record delimiter nor a record length");
+    }
+    boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+
+    Buffer buffer = new Buffer(is, Math.max(1, recordDelimiter.length));
+    long offset = buffer.skip(table.getSkipNumBytes());
+    long records = 0;
+    long recordOffset = offset;
+    long characters = 0;
+    while (buffer.ensure()) {
+      byte b = buffer.bytes[buffer.position];
+      if (recordDelimiter.length > 0 && b == recordDelimiter[0] && buffer.matches(recordDelimiter)) {
+        records++;
+        checkLength(records, recordOffset, characters, declaredLength, requiredLength);
+        buffer.position += recordDelimiter.length;
+        offset += recordDelimiter.length;
+        recordOffset = offset;
+        characters = 0;
+        continue;
+      }
+      // Only the first byte of a UTF-8 sequence starts a character
+      if (!utf8 || (b & 0xC0) != 0x80) {
+        if (recordDelimiter.length == 0 && characters == declaredLength) {
+          records++;
+          recordOffset = offset;
+          characters = 0;
+        }
+        characters++;
+      }
+      buffer.position++;
+      offset++;
+    }
+    if (characters > 0) {
+      records++;
+      checkLength(records, recordOffset, characters, declaredLength, requiredLength);
+    }
+    return new StructureReport(table.getName(), records, offset, anomalyCount, anomalies);
+  }
+
+  private void checkLength(long recordNumber, long recordOffset, long characters, long declaredLength, long requiredLength) {
+    if (declaredLength > 0 && characters != declaredLength) {
+      addAnomaly(StructureReport.Type.RECORD_LENGTH, recordNumber, recordOffset, characters, declaredLength);
+    } else if (characters < requiredLength) {
+      addAnomaly(StructureReport.Type.RECORD_LENGTH, recordNumber, recordOffset, characters, requiredLength);
+    }
+  }
+
+  /**
+   * @return the 1-based position of the last character of the column or 0 if the range can't be interpreted
+   */
+  private static long columnEnd(Range range) {
+    if (range == null) {
+      return 0;
+    }
+    try {
+      if (range.getTo() != null && !range.getTo().isBlank()) {
+        return Long.parseLong(range.getTo().trim());
+      }
+      if (range.getFrom() != null && range.getLength() != null && !range.getFrom().isBlank() && !range.getLength().isBlank()) {
+        return Long.parseLong(range.getFrom().trim()) + Long.parseLong(range.getLength().trim()) - 1;
+      }
+    } catch (NumberFormatException e) {
+      LOG.debug("Ignoring invalid range [{}]", range);
+    }
+    return 0;
+  }
+
+  private void addAnomaly(StructureReport.Type type, long recordNumber, long byteOffset, long actual, long expected) {
+    anomalyCount++;
+    if (anomalies.size() < maxReportedAnomalies) {
+      anomalies.add(new StructureReport.Anomaly(type, recordNumber, byteOffset, actual, expected));
+    }
+  }
+
+  /**
+   * A window over the stream that always holds enough bytes to match the longest delimiter, unless the end of the stream is near.
+   */
+  private static final class Buffer {
+
+    private final InputStream is;
+    private final int lookahead;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    private Buffer(InputStream is, int lookahead) {
+      this.is = is;
+      this.lookahead = lookahead;
+    }
+
+    long skip(long count) throws IOException {
+      long skipped = 0;
+      while (skipped < count && ensure()) {
+        int step = (int) Math.min(count - skipped, limit - position);
+        position += step;
+        skipped += step;
+      }
+      return skipped;
+    }
+
+    /**
+     * @return false if all bytes have been consumed
+     */
+    boolean ensure() throws IOException {
+      if (limit - position >= lookahead || eof) {
+        return position < limit;
+      }
+      System.arraycopy(bytes, position, bytes, 0, limit - position);
+      limit -= position;
+      position = 0;
+      while (limit < bytes.length) {
+        int read = is.read(bytes, limit, bytes.length - limit);
+        if (read == -1) {
+          eof = true;
+          break;
+        }
+        limit += read;
+      }
+      return position < limit;
+    }
+
+    boolean matches(byte[] delimiter) {
+      if (limit - position < delimiter.length) {
+        return false;
+      }
+      for (int i = 0; i < delimiter.length; i++) {
+        if (bytes[position + i] != delimiter[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The outcome of a {@link StructureCheck}.
+ */
+public class StructureReport {
+
+  private final String table;
+  private final long records;
+  private final long bytes;
+  private final long anomalyCount;
+  private final List<Anomaly> anomalies;
+
+  StructureReport(String table, long records, long bytes, long anomalyCount, List<Anomaly> anomalies) {
+    this.table = table;
+    this.records = records;
+    this.bytes = bytes;
+    this.anomalyCount = anomalyCount;
+    this.anomalies = new ArrayList<>(anomalies);
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  /**
+   * Number of records in the file including the anomalous ones.
+   */
+  public long getRecords() {
+    return records;
+  }
+
+  /**
+   * Number of bytes that have been read, -1 if they couldn't be counted.
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  public long getAnomalyCount() {
+    return anomalyCount;
+  }
+
+  /**
+   * The first anomalies in the order in which they appear in the file.
+   * This is only a sample if there were more anomalies than {@link StructureCheck#setMaxReportedAnomalies(int)}.
+   */
+  public List<Anomaly> getAnomalies() {
+    return Collections.unmodifiableList(anomalies);
+  }
+
+  public boolean isValid() {
+    return anomalyCount == 0;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", StructureReport.class.getSimpleName() + "[", "]")
+      .add("table='" + table + "'")
+      .add("records=" + records)
+      .add("bytes=" + bytes)
+      .add("anomalyCount=" + anomalyCount)
+      .toString();
+  }
+
+  public enum Type {
+
+    /**
+     * A VariableLength record doesn't have as many columns as the table has primary keys and columns.
+     */
+    COLUMN_COUNT,
+
+    /**
+     * A FixedLength record is not as long as its declared length or too short for its columns.
+     */
+    RECORD_LENGTH,
+
+    /**
+     * The file ends inside an encapsulated text.
+     */
+    UNTERMINATED_TEXT
+
+  }
+
+  public static class Anomaly {
+
+    private final Type type;
+    private final long recordNumber;
+    private final long byteOffset;
+    private final long actual;
+    private final long expected;
+
+    Anomaly(Type type, long recordNumber, long byteOffset, long actual, long expected) {
+      this.type = type;
+      this.recordNumber = recordNumber;
+      this.byteOffset = byteOffset;
+      this.actual = actual;
+      this.expected = expected;
+    }
+
+    public Type getType() {
+      return type;
+    }
+
+    /**
+     * The 1-based number of the record.
+     */
+    public long getRecordNumber() {
+      return recordNumber;
+    }
+
+    /**
+     * The position of the first byte of the record within the file, -1 if it couldn't be computed.
+     */
+    public long getByteOffset() {
+      return byteOffset;
+    }
+
+    /**
+     * The number of columns or characters the record has.
+     */
+    public long getActual() {
+      return actual;
+    }
+
+    public long getExpected() {
+      return expected;
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Anomaly.class.getSimpleName() + "[", "]")
+        .add("type=" + type)
+        .add("recordNumber=" + recordNumber)
+        .add("byteOffset=" + byteOffset)
+        .add("actual=" + actual)
+        .add("expected=" + expected)
+        .toString();
+    }
+  }
+
+}
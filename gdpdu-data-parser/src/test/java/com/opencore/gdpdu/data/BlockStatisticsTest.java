@@ -0,0 +1,143 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static com.opencore.gdpdu.data.TestTables.createColumn;
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockStatisticsTest {
+
+  private static String data;
+
+  @TempDir
+  Path directory;
+
+  @BeforeAll
+  static void createData() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 1; i <= 1000; i++) {
+      // Ten blocks of 100 records, each one in its own month
+      builder.append('k').append(i).append(',').append(i).append(",2020").append(String.format("%02d", (i - 1) / 100 + 1)).append("15\n");
+    }
+    data = builder.toString();
+  }
+
+  @Test
+  void testZoneMaps() throws ParsingException {
+    Table table = createDatedTable();
+    BlockStatistics statistics = BlockStatistics.build(toStream(data), table, 100, Collections.emptyList());
+    assertEquals(10, statistics.getBlockCount());
+    assertEquals(1000, statistics.getRecordCount());
+
+    ReadCountingInputStream is = new ReadCountingInputStream(toStream(data));
+    List<TestModel> numbers = GdpduDataParser.parseVariableLengthTable(is, table, TestModel.class, RecordFilter.between("bar", "250", "260"), statistics);
+    assertEquals(11, numbers.size());
+    assertEquals(250, numbers.get(0).getBar());
+    assertTrue(is.read < data.length() / 5, "Read [" + is.read + "] bytes");
+
+    RecordFilter dates = RecordFilter.between("datum", "20200301", "20200430");
+    List<TestModel> months = GdpduDataParser.parseVariableLengthTable(toStream(data), table, TestModel.class, dates, statistics);
+    assertEquals(200, months.size());
+    assertEquals(201, months.get(0).getBar());
+    assertEquals(400, months.get(199).getBar());
+
+    RecordFilter none = RecordFilter.and(dates, RecordFilter.equalTo("bar", "999"));
+    assertTrue(GdpduDataParser.parseVariableLengthTable(toStream(data), table, TestModel.class, none, statistics).isEmpty());
+  }
+
+  @Test
+  void testBloomFilter() throws ParsingException, IOException {
+    Table table = createDatedTable();
+    BlockStatistics built = BlockStatistics.build(toStream(data), table, 100, Collections.singletonList("foo"));
+    built.write(directory.resolve("stats"));
+    BlockStatistics statistics = BlockStatistics.read(directory.resolve("stats"));
+
+    ReadCountingInputStream is = new ReadCountingInputStream(toStream(data));
+    List<TestModel> found = GdpduDataParser.parseVariableLengthTable(is, table, TestModel.class, RecordFilter.in("foo", "k555", "k556"), statistics);
+    assertEquals(2, found.size());
+    assertEquals("k555", found.get(0).getFoo());
+    assertTrue(is.read < data.length() / 5, "Read [" + is.read + "] bytes");
+
+    // Bloom filters can't be used for ranges, nothing is skipped
+    assertEquals(2, GdpduDataParser.parseVariableLengthTable(toStream(data), table, TestModel.class, RecordFilter.between("foo", "k998", "k999~"),
+                                                             statistics).size());
+  }
+
+  @Test
+  void testArchive() throws ParsingException, IOException {
+    Files.copy(Paths.get("src/test/resources/data1/index.xml"), directory.resolve("index.xml"));
+    Files.copy(Paths.get("src/test/resources/data1/data.csv"), directory.resolve("data.csv"));
+    GdpduArchive archive = GdpduArchive.open(directory.resolve("index.xml").toFile());
+    archive.setUseBlockStatistics(true);
+
+    List<TestModel> found = archive.parseTable("Testdatei Nr. 1", TestModel.class, RecordFilter.equalTo("bar", "20"));
+    assertEquals(1, found.size());
+    assertEquals("bar", found.get(0).getFoo());
+    assertTrue(archive.getBlockStatisticsFile(archive.getTable("Testdatei Nr. 1")).isFile());
+    assertTrue(archive.parseTable("Testdatei Nr. 1", TestModel.class, RecordFilter.equalTo("bar", "30")).isEmpty());
+  }
+
+  private static Table createDatedTable() {
+    Table table = createTable();
+    VariableColumn date = createColumn("datum", DataType.Date);
+    date.setFormat("YYYYMMDD");
+    table.getVariableLength().addVariableColumn(date);
+    return table;
+  }
+
+  private static final class ReadCountingInputStream extends FilterInputStream {
+
+    private long read;
+
+    private ReadCountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      read += b == -1 ? 0 : 1;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int count = super.read(b, off, len);
+      read += Math.max(0, count);
+      return count;
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testResumeScan() throws ParsingException, IOException {
+    StringBuilder data = new StringBuilder();
+    long expectedSum = 0;
+    for (int i = 1; i <= 5000; i++) {
+      // Multi-byte characters make sure offsets are counted in bytes
+      data.append(i % 3 == 0 ? "€" : "x").append(i).append(',').append(i).append('\n');
+      expectedSum += i;
+    }
+    Table table = createTable();
+    Path checkpointFile = directory.resolve("scan.checkpoint");
+
+    // The first run is killed after 2500 records, the last checkpoint holds the sum of the first 2000
+    long[] sum = new long[1];
+    assertThrows(IllegalStateException.class, () -> GdpduDataParser.scanVariableLengthTable(toStream(data.toString()), table, null,
+      (recordNumber, record) -> {
+        if (recordNumber > 2500) {
+          throw new IllegalStateException("Killed");
+        }
+        sum[0] += Long.parseLong(record.getColumns().get(1));
+      }, null, 1000, checkpoint -> write(checkpoint.withState(ByteBuffer.allocate(8).putLong(sum[0]).array()), checkpointFile)));
+
+    Checkpoint checkpoint = Checkpoint.read(checkpointFile);
+    assertEquals(2000, checkpoint.getRecordNumber());
+    assertEquals(2000, checkpoint.getCount());
+    long resumedSum = ByteBuffer.wrap(checkpoint.getState()).getLong();
+    assertEquals(2000L * 2001 / 2, resumedSum);
+
+    sum[0] = resumedSum;
+    List<Long> recordNumbers = new ArrayList<>();
+    long handled = GdpduDataParser.scanVariableLengthTable(toStream(data.toString()), table, null, (recordNumber, record) -> {
+      recordNumbers.add(recordNumber);
+      sum[0] += Long.parseLong(record.getColumns().get(1));
+    }, checkpoint, 1000, c -> { });
+    assertEquals(3000, handled);
+    assertEquals(2001, recordNumbers.get(0));
+    assertEquals(expectedSum, sum[0]);
+  }
+
+  @Test
+  void testCursor() throws ParsingException {
+    String data = "a,1\nb,2\nc,3\n";
+    Checkpoint checkpoint;
+    try (RecordCursor cursor = GdpduDataParser.openVariableLengthTable(toStream(data), createTable(), null)) {
+      assertTrue(cursor.next());
+      checkpoint = cursor.checkpoint();
+    }
+
+    try (RecordCursor cursor = GdpduDataParser.openVariableLengthTable(toStream(data), createTable(), null, checkpoint)) {
+      assertTrue(cursor.next());
+      assertEquals("b", cursor.getRecord().getColumns().get(0));
+      assertEquals(2, cursor.getRecordNumber());
+      assertTrue(cursor.next());
+      assertEquals(3, cursor.getCount());
+      assertFalse(cursor.next());
+    }
+
+    Table other = createTable();
+    other.setName("Other");
+    assertThrows(ParsingException.class, () -> GdpduDataParser.openVariableLengthTable(toStream(data), other, null, checkpoint));
+  }
+
+  @Test
+  void testFileLength() throws ParsingException, IOException {
+    File dataFile = directory.resolve("d").toFile();
+    Files.write(dataFile.toPath(), "a,1\nb,2\nc,3\n".getBytes(StandardCharsets.UTF_8));
+    Table table = createTable();
+
+    List<Checkpoint> checkpoints = new ArrayList<>();
+    assertEquals(3, GdpduDataParser.scanVariableLengthTable(dataFile, table, null, (recordNumber, record) -> { }, null, 2, checkpoints::add));
+    Checkpoint checkpoint = checkpoints.get(0);
+    assertEquals(12, checkpoint.getFileLength());
+
+    // Short file names can't be used as prefix for the temporary file
+    Path checkpointFile = directory.resolve("c");
+    checkpoint.write(checkpointFile);
+    assertEquals(12, Checkpoint.read(checkpointFile).getFileLength());
+
+    // A file that has been rewritten with fewer records is longer than the offset but shorter than when the checkpoint was taken
+    Files.write(dataFile.toPath(), "a,1\nb,2\nc\n".getBytes(StandardCharsets.UTF_8));
+    assertThrows(ParsingException.class, () -> GdpduDataParser.openVariableLengthTable(dataFile, table, null, checkpoint));
+  }
+
+  private static void write(Checkpoint checkpoint, Path path) throws ParsingException {
+    try {
+      checkpoint.write(path);
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.validation.ForeignKeyReport;
+import com.opencore.gdpdu.data.validation.IntegrityChecker;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GdpduArchiveTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testZip() throws ParsingException, IOException {
+    File zip = zip("data1", "index.xml", "data.csv");
+    try (GdpduArchive archive = GdpduArchive.openZip(zip)) {
+      assertTrue(archive.isZip());
+      List<TestModel> results = archive.parseTable("Testdatei Nr. 1", TestModel.class);
+      assertEquals(2, results.size());
+      assertEquals("foo", results.get(0).getFoo());
+
+      // The record index is stored next to the ZIP file and checked against the CRC32 of the entry
+      Table table = archive.getTable("Testdatei Nr. 1");
+      assertEquals("bar", archive.parseTable("Testdatei Nr. 1", TestModel.class, 2, 1).get(0).getFoo());
+      assertTrue(archive.getRecordIndexFile(table).isFile());
+      assertEquals(directory.toFile(), archive.getRecordIndexFile(table).getParentFile());
+
+      assertThrows(UnsupportedOperationException.class, () -> archive.getDataFile(table));
+      assertThrows(ParsingException.class, () -> archive.lookup("Testdatei Nr. 1", TestModel.class, "foo"));
+    }
+
+    try (GdpduArchive reopened = GdpduArchive.openZip(zip)) {
+      assertEquals(2, reopened.getRecordIndex(reopened.getTable("Testdatei Nr. 1")).getRecordCount());
+    }
+  }
+
+  @Test
+  void testZipTablesInParallel() throws ParsingException, IOException {
+    File zip = zip("data5", "index.xml", "header.csv", "lines.csv");
+    try (GdpduArchive archive = GdpduArchive.openZip(zip)) {
+      List<ForeignKeyReport> reports = new IntegrityChecker(2).check(archive);
+      assertEquals(1, reports.size());
+      assertEquals(2, reports.get(0).getOrphanCount());
+    }
+  }
+
+  @Test
+  void testZipWithoutIndexXml() throws IOException {
+    File zip = zip("data1", "data.csv");
+    assertThrows(ParsingException.class, () -> GdpduArchive.openZip(zip));
+  }
+
+  @Test
+  void testCompressedTable() throws ParsingException, IOException {
+    String indexXml = new String(Files.readAllBytes(Paths.get("src/test/resources/data1/index.xml")), StandardCharsets.ISO_8859_1);
+    Files.write(directory.resolve("index.xml"), indexXml.replace("<URL>data.csv</URL>", "<URL>data.csv.gz</URL>")
+      .getBytes(StandardCharsets.ISO_8859_1));
+    try (OutputStream os = new BlockGzipOutputStream(Files.newOutputStream(directory.resolve("data.csv.gz")), 16)) {
+      Files.copy(Paths.get("src/test/resources/data1/data.csv"), os);
+    }
+
+    try (GdpduArchive archive = GdpduArchive.open(directory.resolve("index.xml").toFile())) {
+      archive.setDecompressionThreads(2);
+      archive.setReadAhead(64, 2);
+      Table table = archive.getTable("Testdatei Nr. 1");
+      assertTrue(archive.isCompressed(table));
+      List<TestModel> results = archive.parseTable("Testdatei Nr. 1", TestModel.class);
+      assertEquals(2, results.size());
+      assertEquals("foo", results.get(0).getFoo());
+
+      // Index offsets refer to the decompressed data
+      assertEquals("bar", archive.parseTable("Testdatei Nr. 1", TestModel.class, 2, 1).get(0).getFoo());
+      assertThrows(ParsingException.class, () -> archive.lookup("Testdatei Nr. 1", TestModel.class, "foo"));
+    }
+
+    try (GdpduArchive reopened = GdpduArchive.open(directory.resolve("index.xml").toFile())) {
+      assertEquals(2, reopened.getRecordIndex(reopened.getTable("Testdatei Nr. 1")).getRecordCount());
+    }
+  }
+
+  /**
+   * Puts the files of a test resource directory into a directory of a new ZIP file.
+   */
+  private File zip(String resource, String... files) throws IOException {
+    Path zip = directory.resolve(resource + ".zip");
+    try (OutputStream os = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(os)) {
+      for (String file : files) {
+        zos.putNextEntry(new ZipEntry("export/" + file));
+        Files.copy(Paths.get("src/test/resources", resource, file), zos);
+        zos.closeEntry();
+      }
+    }
+    return zip.toFile();
+  }
+
+}
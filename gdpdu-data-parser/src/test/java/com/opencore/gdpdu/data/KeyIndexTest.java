@@ -0,0 +1,135 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static com.opencore.gdpdu.data.TestTables.createKeyedTable;
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyIndexTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testLookup() throws ParsingException, IOException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 1; i <= 5000; i++) {
+      // Multi-byte characters make sure offsets are counted in bytes
+      data.append(i % 7 == 0 ? "€" : "k").append(i).append(',').append(i).append('\n');
+    }
+    // A duplicate key, both records are returned
+    data.append("k43,-1\n");
+    File dataFile = directory.resolve("data.csv").toFile();
+    Files.write(dataFile.toPath(), data.toString().getBytes(StandardCharsets.UTF_8));
+    Table table = createKeyedTable();
+
+    // The small budget makes the build spill and merge several runs
+    try (KeyIndex index = KeyIndex.build(toStream(data.toString()), table, directory.resolve("data.keys"), 24 * 1500, directory)) {
+      assertEquals(5001, index.size());
+      assertTrue(index.matches(dataFile));
+      assertTrue(index.verify(dataFile));
+
+      List<TestModel> found = GdpduDataParser.lookup(dataFile, table, TestModel.class, index, Collections.singletonList("€4998"));
+      assertEquals(1, found.size());
+      assertEquals(4998, found.get(0).getBar());
+
+      List<TestModel> duplicates = GdpduDataParser.lookup(dataFile, table, TestModel.class, index, Collections.singletonList("k43"));
+      assertEquals(2, duplicates.size());
+      assertEquals(43, duplicates.get(0).getBar());
+      assertEquals(-1, duplicates.get(1).getBar());
+
+      assertEquals(0, GdpduDataParser.lookup(dataFile, table, TestModel.class, index, Collections.singletonList("k7")).size());
+      assertThrows(ParsingException.class, () -> index.lookup(dataFile, table, Arrays.asList("k1", "1"), (recordNumber, record) -> { }));
+    }
+  }
+
+  @Test
+  void testNoPrimaryKey() {
+    assertThrows(ParsingException.class, () -> KeyIndex.build(toStream("a,1\n"), createTable(), directory.resolve("data.keys"), 1024, null));
+  }
+
+  @Test
+  void testArchiveSidecar() throws ParsingException, IOException {
+    GdpduArchive archive = openKeyedArchive();
+    Table table = archive.getTable("Testdatei Nr. 1");
+
+    List<TestModel> found = archive.lookup("Testdatei Nr. 1", TestModel.class, "bar");
+    assertEquals(1, found.size());
+    assertEquals(20, found.get(0).getBar());
+    assertTrue(archive.getKeyIndexFile(table).isFile());
+    assertTrue(archive.lookup("Testdatei Nr. 1", TestModel.class, "baz").isEmpty());
+
+    // A new archive instance uses the sidecar
+    GdpduArchive reopened = GdpduArchive.open(directory.resolve("index.xml").toFile());
+    assertEquals(archive.getKeyIndexFile(table).toPath(), reopened.getKeyIndex(reopened.getTable("Testdatei Nr. 1")).getPath());
+    assertEquals("foo", reopened.lookup("Testdatei Nr. 1", TestModel.class, "foo").get(0).getFoo());
+  }
+
+  @Test
+  void testConcurrentArchiveLookups() throws Exception {
+    GdpduArchive archive = openKeyedArchive();
+    Table table = archive.getTable("Testdatei Nr. 1");
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<KeyIndex>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> archive.getKeyIndex(table)));
+      }
+      // Every thread gets the index that has been built once
+      for (Future<KeyIndex> future : futures) {
+        assertSame(futures.get(0).get(), future.get());
+      }
+    } finally {
+      executor.shutdown();
+      archive.close();
+    }
+  }
+
+  /**
+   * The archive from {@code data1} with {@code foo} as the primary key.
+   */
+  private GdpduArchive openKeyedArchive() throws ParsingException, IOException {
+    String indexXml = new String(Files.readAllBytes(Paths.get("src/test/resources/data1/index.xml")), StandardCharsets.UTF_8)
+      .replaceFirst("<VariableColumn>(\\s*<Name>foo</Name>\\s*<AlphaNumeric/>\\s*)</VariableColumn>", "<VariablePrimaryKey>$1</VariablePrimaryKey>");
+    Files.write(directory.resolve("index.xml"), indexXml.getBytes(StandardCharsets.UTF_8));
+    Files.copy(Paths.get("src/test/resources/data1/data.csv"), directory.resolve("data.csv"));
+    return GdpduArchive.open(directory.resolve("index.xml").toFile());
+  }
+
+}
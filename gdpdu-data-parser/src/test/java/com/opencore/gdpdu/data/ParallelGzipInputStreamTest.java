@@ -0,0 +1,143 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelGzipInputStreamTest {
+
+  @Test
+  void testBlockGzip() throws IOException {
+    byte[] data = createData(100_000);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream os = new BlockGzipOutputStream(compressed, 1000)) {
+      os.write(data, 0, 12345);
+      os.write(data[12345]);
+      os.write(data, 12346, data.length - 12346);
+    }
+
+    try (ParallelGzipInputStream is = new ParallelGzipInputStream(new ByteArrayInputStream(compressed.toByteArray()), 3)) {
+      assertTrue(is.isParallel());
+      assertArrayEquals(data, is.readAllBytes());
+    }
+
+    // Every block is a gzip member, so other tools can read the file as well
+    try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertArrayEquals(data, is.readAllBytes());
+    }
+
+    try (ParallelGzipInputStream is = new ParallelGzipInputStream(new ByteArrayInputStream(compressed.toByteArray()), 2)) {
+      assertEquals(50_000, is.skip(50_000));
+      assertEquals(data[50_000] & 0xff, is.read());
+    }
+  }
+
+  @Test
+  void testMultiMemberGzip() throws IOException {
+    byte[] data = createData(10_000);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    for (int i = 0; i < 2; i++) {
+      GZIPOutputStream os = new GZIPOutputStream(compressed);
+      os.write(data, i * 5000, 5000);
+      os.finish();
+    }
+
+    try (ParallelGzipInputStream is = new ParallelGzipInputStream(new ByteArrayInputStream(compressed.toByteArray()), 2)) {
+      assertFalse(is.isParallel());
+      assertArrayEquals(data, is.readAllBytes());
+    }
+  }
+
+  @Test
+  void testCorruptBlock() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream os = new BlockGzipOutputStream(compressed, 1000)) {
+      os.write(createData(5000));
+    }
+    byte[] corrupt = compressed.toByteArray();
+    // The CRC32 in the trailer of the last block
+    corrupt[corrupt.length - 8] ^= 1;
+
+    try (ParallelGzipInputStream is = new ParallelGzipInputStream(new ByteArrayInputStream(corrupt), 2)) {
+      assertThrows(IOException.class, is::readAllBytes);
+    }
+    assertThrows(IOException.class, () -> new ParallelGzipInputStream(new ByteArrayInputStream(new byte[] {1, 2, 3}), 2));
+  }
+
+  @Test
+  void testBoundedBuffer() throws IOException {
+    Random random = new Random(42);
+    byte[] data = new byte[1024 * 1024];
+    // Random bytes don't compress, so the compressed data is much larger than the 64 KB read buffer
+    random.nextBytes(data);
+    ByteArrayOutputStream blockCompressed = new ByteArrayOutputStream();
+    try (OutputStream os = new BlockGzipOutputStream(blockCompressed, 1000)) {
+      os.write(data);
+    }
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream os = new GZIPOutputStream(compressed)) {
+      os.write(data);
+    }
+
+    for (byte[] bytes : new byte[][] {blockCompressed.toByteArray(), compressed.toByteArray()}) {
+      MaxReadInputStream source = new MaxReadInputStream(bytes);
+      try (ParallelGzipInputStream is = new ParallelGzipInputStream(source, 2)) {
+        assertArrayEquals(data, is.readAllBytes());
+      }
+      // A growing read buffer would ask the source for ever larger chunks
+      assertTrue(source.maxRead <= 64 * 1024, "Read [" + source.maxRead + "] bytes at once");
+    }
+  }
+
+  private static byte[] createData(int length) {
+    Random random = new Random(42);
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      // Compressible but not trivial
+      data[i] = (byte) ('a' + random.nextInt(8));
+    }
+    return data;
+  }
+
+  private static final class MaxReadInputStream extends ByteArrayInputStream {
+
+    private int maxRead;
+
+    private MaxReadInputStream(byte[] buf) {
+      super(buf);
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) {
+      maxRead = Math.max(maxRead, len);
+      return super.read(b, off, len);
+    }
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParseLimitsTest {
+
+  private static final String LONG_COLUMN = "x".repeat(50);
+
+  @Test
+  void testUnterminatedEncapsulatorFails() {
+    ParseLimits limits = new ParseLimits();
+    limits.setMaxColumnLength(20);
+    String data = "foo,10\n\"bar,20\n" + "baz,30\n".repeat(20);
+
+    ParsingException e = assertThrows(ParsingException.class,
+                                      () -> GdpduDataParser.parseVariableLengthTable(toStream(data), createTable(), TestModel.class, limits));
+    assertEquals("Column [1] of record [2] exceeds the limit of [20] characters", e.getMessage());
+  }
+
+  @Test
+  void testSkipRecord() throws ParsingException {
+    ParseLimits limits = new ParseLimits();
+    limits.setMaxColumnLength(10);
+    limits.setOnLimitExceeded(ParseLimits.Action.SKIP_RECORD);
+    String data = "foo,10\n" + LONG_COLUMN + ",1\n\"" + LONG_COLUMN + "\nbar,20\n";
+
+    List<TestModel> models = GdpduDataParser.parseVariableLengthTable(toStream(data), createTable(), TestModel.class, limits);
+
+    assertEquals(2, models.size());
+    assertEquals("foo", models.get(0).getFoo());
+    assertEquals("bar", models.get(1).getFoo());
+  }
+
+  @Test
+  void testMaxLengthFromIndex() throws ParsingException {
+    Table table = createTable();
+    table.getVariableLength().getVariableColumns().get(0).setMaxLength(3L);
+    String data = "foo,10\nfooo,20\n";
+
+    assertThrows(ParsingException.class, () -> GdpduDataParser.parseVariableLengthTable(toStream(data), table, TestModel.class, new ParseLimits()));
+
+    // Without limits MaxLength is not enforced
+    assertEquals(2, GdpduDataParser.parseVariableLengthTable(toStream(data), table, TestModel.class).size());
+  }
+
+  @Test
+  void testMaxRecordLength() {
+    ParseLimits limits = new ParseLimits();
+    limits.setMaxRecordLength(8);
+    String data = "foo,10\nfoobar,200\n";
+
+    ParsingException e = assertThrows(ParsingException.class,
+                                      () -> GdpduDataParser.parseVariableLengthTable(toStream(data), createTable(), TestModel.class, limits));
+    assertEquals("Record [2] exceeds the limit of [8] characters", e.getMessage());
+  }
+
+  @Test
+  void testInFlightBudget() throws ParsingException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      data.append("row").append(i).append(',').append(i).append('\n');
+    }
+    data.append(LONG_COLUMN).append(",1\n");
+    ParseLimits limits = new ParseLimits();
+    limits.setMaxInFlightBytes(200);
+    limits.setOnLimitExceeded(ParseLimits.Action.SKIP_RECORD);
+
+    List<TestModel> models = new PipelinedTableParser(2, 64, limits).parse(toStream(data.toString()), createTable(), TestModel.class);
+
+    assertEquals(2000, models.size());
+    assertEquals("row1999", models.get(1999).getFoo());
+  }
+
+}
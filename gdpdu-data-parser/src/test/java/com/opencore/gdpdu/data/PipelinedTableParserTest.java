@@ -0,0 +1,135 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import org.junit.jupiter.api.Test;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PipelinedTableParserTest {
+
+  @Test
+  void testOrderIsPreserved() throws ParsingException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      data.append("row").append(i).append(',').append(i).append('\n');
+    }
+
+    List<TestModel> models = new PipelinedTableParser(3, 4).parse(toStream(data.toString()), createTable(), TestModel.class);
+
+    assertEquals(2000, models.size());
+    for (int i = 0; i < models.size(); i++) {
+      assertEquals("row" + i, models.get(i).getFoo());
+      assertEquals(i, models.get(i).getBar());
+    }
+  }
+
+  @Test
+  void testSameResultAsSequentialParser() throws ParsingException {
+    String data = "foo,10\nbar,20\n,\nbaz,x\n";
+
+    List<TestModel> sequential = GdpduDataParser.parseVariableLengthTable(toStream(data), createTable(), TestModel.class);
+    List<TestModel> pipelined = GdpduDataParser.parseVariableLengthTablePipelined(toStream(data), createTable(), TestModel.class, 2);
+
+    assertEquals(sequential.size(), pipelined.size());
+    for (int i = 0; i < sequential.size(); i++) {
+      assertEquals(sequential.get(i).getFoo(), pipelined.get(i).getFoo());
+      assertEquals(sequential.get(i).getBar(), pipelined.get(i).getBar());
+    }
+  }
+
+  @Test
+  void testSameResultAsSequentialParserAcrossRingWraps() throws ParsingException {
+    // Many times the ring size, with empty values and values that can't be mapped in between
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      if (i % 7 == 0) {
+        data.append("row").append(i).append(",x\n");
+      } else if (i % 5 == 0) {
+        data.append(",\n");
+      } else {
+        data.append("row").append(i).append(',').append(i).append('\n');
+      }
+    }
+
+    List<TestModel> sequential = GdpduDataParser.parseTable(toStream(data.toString()), createTable(), TestModel.class);
+    List<TestModel> pipelined = new PipelinedTableParser(3, 8).parse(toStream(data.toString()), createTable(), TestModel.class);
+
+    assertEquals(857, sequential.size());
+    assertEquals(sequential.size(), pipelined.size());
+    for (int i = 0; i < sequential.size(); i++) {
+      assertEquals(sequential.get(i).getFoo(), pipelined.get(i).getFoo());
+      assertEquals(sequential.get(i).getBar(), pipelined.get(i).getBar());
+    }
+  }
+
+  @Test
+  void testScan() throws ParsingException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 1; i <= 500; i++) {
+      data.append("row").append(i).append(',').append(i).append('\n');
+    }
+
+    AtomicLong recordNumbers = new AtomicLong();
+    long records = new PipelinedTableParser(3, 8).scan(toStream(data.toString()), createTable(), (recordNumber, record) -> {
+      assertEquals("row" + recordNumber, record.getColumns().get(0));
+      recordNumbers.addAndGet(recordNumber);
+    });
+
+    assertEquals(500, records);
+    assertEquals(500 * 501 / 2, recordNumbers.get());
+  }
+
+  @Test
+  void testScanWithHandlerPerThread() throws ParsingException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 1; i <= 500; i++) {
+      data.append("row").append(i).append(',').append(i).append('\n');
+    }
+
+    List<SumHandler> handlers = new PipelinedTableParser(3, 8).scan(toStream(data.toString()), createTable(), SumHandler::new);
+
+    assertEquals(3, handlers.size());
+    long sum = 0;
+    for (SumHandler handler : handlers) {
+      sum += handler.sum;
+    }
+    assertEquals(500 * 501 / 2, sum);
+  }
+
+  @Test
+  void testInvalidConfiguration() {
+    assertThrows(IllegalArgumentException.class, () -> new PipelinedTableParser(0, 8));
+    assertThrows(IllegalArgumentException.class, () -> new PipelinedTableParser(1, 6));
+  }
+
+  private static final class SumHandler implements RecordHandler {
+
+    // Only ever touched by the mapper thread this handler belongs to
+    private long sum;
+
+    @Override
+    public void handle(long recordNumber, Record record) {
+      sum += recordNumber;
+    }
+  }
+
+}
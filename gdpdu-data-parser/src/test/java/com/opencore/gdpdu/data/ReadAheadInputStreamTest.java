@@ -0,0 +1,97 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReadAheadInputStreamTest {
+
+  @Test
+  void testReadAhead() throws IOException {
+    byte[] data = createData(10_000);
+    try (InputStream is = new ReadAheadInputStream(new ByteArrayInputStream(data), 7, 2)) {
+      assertArrayEquals(data, is.readAllBytes());
+      assertEquals(-1, is.read());
+    }
+
+    try (InputStream is = new ReadAheadInputStream(new ByteArrayInputStream(data), 100, 3)) {
+      // Before the first read the underlying stream skips, afterwards the blocks are read and dropped
+      assertEquals(1000, is.skip(1000));
+      assertEquals(data[1000], (byte) is.read());
+      assertEquals(5000, is.skip(5000));
+      assertEquals(data[6001], (byte) is.read());
+      assertEquals(10_000 - 6002, is.skip(100_000));
+      assertEquals(-1, is.read());
+    }
+  }
+
+  @Test
+  void testError() throws IOException {
+    InputStream failing = new InputStream() {
+      private int count;
+
+      @Override
+      public int read() throws IOException {
+        if (count++ >= 250) {
+          throw new IOException("Disk on fire");
+        }
+        return 'a';
+      }
+    };
+    try (InputStream is = new ReadAheadInputStream(failing, 100, 2)) {
+      IOException e = assertThrows(IOException.class, is::readAllBytes);
+      assertEquals("Disk on fire", e.getMessage());
+    }
+  }
+
+  @Test
+  void testUncheckedError() throws IOException {
+    InputStream failing = new InputStream() {
+      @Override
+      public int read() {
+        throw new IllegalStateException("Broken stream");
+      }
+    };
+    try (InputStream is = new ReadAheadInputStream(failing, 100, 2)) {
+      IOException e = assertThrows(IOException.class, is::read);
+      assertEquals("Broken stream", e.getCause().getMessage());
+      assertThrows(IOException.class, is::read);
+    }
+  }
+
+  @Test
+  void testCloseWhileReadingAhead() throws IOException {
+    InputStream is = new ReadAheadInputStream(new ByteArrayInputStream(createData(100_000)), 10, 2);
+    is.read();
+    is.close();
+    assertThrows(IOException.class, is::read);
+  }
+
+  private static byte[] createData(int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) (i * 31);
+    }
+    return data;
+  }
+
+}
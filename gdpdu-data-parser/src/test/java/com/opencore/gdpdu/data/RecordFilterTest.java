@@ -0,0 +1,86 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordFilterTest {
+
+  private static final String DATA = "a,5\nb,10\nc,9\na,20\nb,100\n";
+
+  @Test
+  void testEqualTo() throws ParsingException {
+    List<TestModel> models = GdpduDataParser.parseVariableLengthTable(toStream(DATA), createTable(), TestModel.class, null, RecordFilter.equalTo("foo", "a"));
+
+    assertEquals(2, models.size());
+    assertEquals(5, models.get(0).getBar());
+    assertEquals(20, models.get(1).getBar());
+  }
+
+  @Test
+  void testNumericRangeAndIn() throws ParsingException {
+    // Compared as numbers "9" is within the range while "100" is not, as strings it would be the other way around
+    RecordFilter filter = RecordFilter.and(RecordFilter.between("bar", "9", "20,0"), RecordFilter.in("foo", "a", "c"));
+    List<TestModel> sequential = GdpduDataParser.parseVariableLengthTable(toStream(DATA), createTable(), TestModel.class, null, filter);
+    List<TestModel> pipelined = new PipelinedTableParser(2, 4).parse(toStream(DATA), createTable(), TestModel.class, filter);
+
+    assertEquals(2, sequential.size());
+    assertEquals(9, sequential.get(0).getBar());
+    assertEquals(20, sequential.get(1).getBar());
+    assertEquals(2, pipelined.size());
+    assertEquals(9, pipelined.get(0).getBar());
+    assertEquals(20, pipelined.get(1).getBar());
+  }
+
+  @Test
+  void testDate() throws ParsingException {
+    Table table = createTable();
+    table.getVariableLength().addVariableColumn(TestTables.createColumn("date", DataType.Date));
+    RecordFilter.Predicate predicate = RecordFilter.between("date", "30.12.2019", "01.01.2020").bind(table);
+
+    assertTrue(predicate.test(record("a", "1", "31.12.2019")));
+    assertTrue(predicate.test(record("a", "1", "01.01.2020")));
+    assertFalse(predicate.test(record("a", "1", "02.01.2020")));
+    assertFalse(predicate.test(record("a", "1", "01.01.2019")));
+    assertFalse(predicate.test(record("a", "1", "")));
+    assertFalse(predicate.test(record("a", "1")));
+  }
+
+  @Test
+  void testInvalidFilter() {
+    assertThrows(ParsingException.class, () -> RecordFilter.equalTo("baz", "a").bind(createTable()));
+    assertThrows(ParsingException.class, () -> RecordFilter.equalTo("bar", "x").bind(createTable()));
+  }
+
+  private static Record record(String... columns) {
+    Record record = new Record();
+    for (String column : columns) {
+      record.addColumn(column);
+    }
+    return record;
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.Range;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordIndexTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testSeek() throws ParsingException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 1; i <= 50; i++) {
+      // Multi-byte characters make sure offsets are counted in bytes
+      data.append(i % 3 == 0 ? "äöü€" : "abc").append(',').append(i).append('\n');
+    }
+    Table table = createTable();
+    RecordIndex index = RecordIndex.build(toStream(data.toString()), table, 8);
+
+    assertEquals(50, index.getRecordCount());
+    assertEquals(7, index.size());
+    assertEquals(data.toString().getBytes(StandardCharsets.UTF_8).length, index.getFileLength());
+
+    List<TestModel> page = GdpduDataParser.parseVariableLengthTable(toStream(data.toString()), table, TestModel.class, index, 23, 5);
+    assertEquals(5, page.size());
+    assertEquals(23, page.get(0).getBar());
+    assertEquals("abc", page.get(0).getFoo());
+    assertEquals("äöü€", page.get(1).getFoo());
+    assertEquals(27, page.get(4).getBar());
+
+    List<TestModel> end = GdpduDataParser.parseVariableLengthTable(toStream(data.toString()), table, TestModel.class, index, 48, 10);
+    assertEquals(3, end.size());
+  }
+
+  @Test
+  void testRange() throws ParsingException {
+    String data = "a,1\nb,2\nc,3\nd,4\ne,5\nf,6\n";
+    Table table = createTable();
+    Range range = new Range();
+    range.setFrom("2");
+    range.setTo("4");
+    table.setRange(range);
+    RecordIndex index = RecordIndex.build(toStream(data), table, 2);
+
+    List<TestModel> page = GdpduDataParser.parseVariableLengthTable(toStream(data), table, TestModel.class, index, 1, 10);
+    assertEquals(3, page.size());
+    assertEquals(2, page.get(0).getBar());
+    assertEquals(4, page.get(2).getBar());
+
+    List<TestModel> lastPage = GdpduDataParser.parseVariableLengthTable(toStream(data), table, TestModel.class, index, 4, 10);
+    assertEquals(1, lastPage.size());
+    assertEquals(4, lastPage.get(0).getBar());
+  }
+
+  @Test
+  void testArchiveSidecar() throws ParsingException, IOException {
+    Files.copy(Paths.get("src/test/resources/data1/index.xml"), directory.resolve("index.xml"));
+    Files.copy(Paths.get("src/test/resources/data1/data.csv"), directory.resolve("data.csv"));
+    GdpduArchive archive = GdpduArchive.open(directory.resolve("index.xml").toFile());
+    archive.setBuildRecordIndexes(true);
+    Table table = archive.getTable("Testdatei Nr. 1");
+    File sidecar = archive.getRecordIndexFile(table);
+
+    assertEquals(2, archive.parseTable("Testdatei Nr. 1", TestModel.class).size());
+    assertTrue(sidecar.isFile());
+    RecordIndex index = RecordIndex.read(sidecar.toPath());
+    assertEquals(2, index.getRecordCount());
+    assertTrue(index.matches(archive.getDataFile(table)));
+
+    List<TestModel> page = archive.parseTable("Testdatei Nr. 1", TestModel.class, 2, 1);
+    assertEquals(1, page.size());
+    assertEquals("bar", page.get(0).getFoo());
+
+    // A changed data file makes the sidecar stale, a new archive instance rebuilds it
+    Files.write(directory.resolve("data.csv"), "foo,10\nbar,20\nbaz,30\n".getBytes(StandardCharsets.UTF_8));
+    assertFalse(index.matches(archive.getDataFile(table)));
+    GdpduArchive reopened = GdpduArchive.open(directory.resolve("index.xml").toFile());
+    assertEquals(3, reopened.getRecordIndex(reopened.getTable("Testdatei Nr. 1")).getRecordCount());
+    assertEquals("baz", reopened.parseTable("Testdatei Nr. 1", TestModel.class, 3, 1).get(0).getFoo());
+  }
+
+  @Test
+  void testSampleChecksum() throws ParsingException, IOException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 1; i <= 50_000; i++) {
+      data.append('k').append(i).append(',').append(i).append('\n');
+    }
+    Path dataFile = directory.resolve("data.csv");
+    Files.write(dataFile, data.toString().getBytes(StandardCharsets.UTF_8));
+    // The file is more than twice the sample size, so the ring buffer of the tail has wrapped around
+    assertTrue(Files.size(dataFile) > 2 * SampleChecksumInputStream.SAMPLE_SIZE);
+
+    RecordIndex index = RecordIndex.build(Files.newInputStream(dataFile), createTable(), 100);
+    assertTrue(index.matches(dataFile.toFile()));
+    assertTrue(index.verify(dataFile.toFile()));
+
+    // Only the full checksum sees a change in the middle that keeps the length
+    int middle = data.length() / 2;
+    data.setCharAt(middle, data.charAt(middle) == '1' ? '2' : '1');
+    Files.write(dataFile, data.toString().getBytes(StandardCharsets.UTF_8));
+    assertTrue(index.matches(dataFile.toFile()));
+    assertFalse(index.verify(dataFile.toFile()));
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TailReaderTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testAppend() throws ParsingException, IOException {
+    File dataFile = directory.resolve("data.csv").toFile();
+    append(dataFile, "a,1\n€b,2\nc,");
+    TailReader reader = new TailReader(createTable());
+
+    // The last record is still being written
+    List<TestModel> results = reader.read(dataFile, TestModel.class);
+    assertEquals(2, results.size());
+    assertEquals("€b", results.get(1).getFoo());
+    assertEquals(0, reader.read(dataFile, TestModel.class).size());
+
+    append(dataFile, "3\nd,4\n");
+    results = reader.read(dataFile, TestModel.class);
+    assertEquals(2, results.size());
+    assertEquals("c", results.get(0).getFoo());
+    assertEquals(3, results.get(0).getBar());
+    assertEquals(4, reader.getCheckpoint().getRecordNumber());
+
+    // The position can be persisted and used by a new reader
+    Path checkpointFile = directory.resolve("data.checkpoint");
+    reader.getCheckpoint().write(checkpointFile);
+    append(dataFile, "e,5\n");
+    TailReader resumed = new TailReader(createTable(), Checkpoint.read(checkpointFile));
+    results = resumed.read(dataFile, TestModel.class);
+    assertEquals(1, results.size());
+    assertEquals("e", results.get(0).getFoo());
+  }
+
+  @Test
+  void testTruncated() throws ParsingException, IOException {
+    File dataFile = directory.resolve("data.csv").toFile();
+    append(dataFile, "a,1\nb,2\n");
+    TailReader reader = new TailReader(createTable());
+    assertEquals(2, reader.read(dataFile, TestModel.class).size());
+
+    Files.write(dataFile.toPath(), "a,1\n".getBytes(StandardCharsets.UTF_8));
+    assertThrows(ParsingException.class, () -> reader.read(dataFile, TestModel.class));
+  }
+
+  private static void append(File file, String data) throws IOException {
+    Files.write(file.toPath(), data.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+}
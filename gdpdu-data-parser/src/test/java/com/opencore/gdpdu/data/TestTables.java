@@ -0,0 +1,72 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Encoding;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import com.opencore.gdpdu.index.models.VariableLength;
+
+/**
+ * Builds small tables matching {@link TestModel} for tests that don't need an {@code index.xml} file.
+ */
+public final class TestTables {
+
+  private TestTables() {
+  }
+
+  public static InputStream toStream(String data) {
+    return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * A table with the columns {@code foo} (AlphaNumeric) and {@code bar} (Numeric), separated by {@code ,} and {@code \n}.
+   */
+  public static Table createTable() {
+    VariableLength variableLength = new VariableLength();
+    variableLength.setColumnDelimiter(",");
+    variableLength.setRecordDelimiter("\n");
+    variableLength.addVariableColumn(createColumn("foo", DataType.AlphaNumeric));
+    variableLength.addVariableColumn(createColumn("bar", DataType.Numeric));
+
+    Table table = new Table();
+    table.setName("Test");
+    table.setEncoding(Encoding.UTF8);
+    table.setVariableLength(variableLength);
+    return table;
+  }
+
+  /**
+   * Like {@link #createTable()} but {@code foo} is the primary key.
+   */
+  public static Table createKeyedTable() {
+    Table table = createTable();
+    VariableLength variableLength = table.getVariableLength();
+    variableLength.addVariablePrimaryKey(variableLength.getVariableColumns().get(0));
+    variableLength.setVariableColumns(variableLength.getVariableColumns().subList(1, 2));
+    return table;
+  }
+
+  public static VariableColumn createColumn(String name, DataType dataType) {
+    VariableColumn column = new VariableColumn();
+    column.setName(name);
+    column.setDataType(dataType);
+    return column;
+  }
+
+}
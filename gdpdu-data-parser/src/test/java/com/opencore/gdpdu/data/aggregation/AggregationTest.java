@@ -0,0 +1,116 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.aggregation;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.RecordFilter;
+import com.opencore.gdpdu.index.models.AccuracyType;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AggregationTest {
+
+  private static final String DATA = "b;2,25\na;1,5\nb;1.000\na;-3\nc;\nb;x\n";
+
+  private static final List<Aggregate> AGGREGATES =
+    Arrays.asList(Aggregate.count(), Aggregate.sum("bar"), Aggregate.min("bar"), Aggregate.max("bar"));
+
+  @Test
+  void testGroupBy() throws ParsingException {
+    AggregationResult result = new Aggregation(Collections.singletonList("foo"), AGGREGATES).aggregate(toStream(DATA), createSemicolonTable());
+    assertGroups(result);
+  }
+
+  @Test
+  void testGroupByWithThreads() throws ParsingException {
+    Aggregation aggregation = new Aggregation(Collections.singletonList("foo"), AGGREGATES);
+    aggregation.setThreads(3);
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      data.append(DATA);
+    }
+    AggregationResult result = aggregation.aggregate(toStream(data.toString()), createSemicolonTable());
+
+    assertEquals(600, result.getRecords());
+    assertEquals(100, result.getInvalidValues());
+    AggregationResult.Group b = result.getGroups().get(1);
+    assertEquals(300, b.getCount());
+    assertEquals(new BigDecimal("100225.00"), b.getValue(1));
+    assertEquals(new BigDecimal("2.25"), b.getValue(2));
+    assertEquals(new BigDecimal("1000.00"), b.getValue(3));
+  }
+
+  @Test
+  void testFilterAndImpliedAccuracy() throws ParsingException {
+    Table table = createSemicolonTable();
+    table.getVariableLength().getVariableColumns().get(1).setAccuracyType(AccuracyType.ImpliedAccuracy);
+    table.getVariableLength().getVariableColumns().get(1).setAccuracy(2);
+    Aggregation aggregation = new Aggregation(Collections.emptyList(), Collections.singletonList(Aggregate.sum("bar")));
+    aggregation.setFilter(RecordFilter.equalTo("foo", "a"));
+    AggregationResult result = aggregation.aggregate(toStream("a;150\nb;7\na;25\n"), table);
+
+    assertEquals(1, result.getGroups().size());
+    assertEquals(2, result.getRecords());
+    assertEquals(new BigDecimal("1.75"), result.getGroups().get(0).getValue(0));
+  }
+
+  @Test
+  void testInvalidColumns() {
+    assertThrows(ParsingException.class,
+      () -> new Aggregation(Collections.singletonList("baz"), AGGREGATES).aggregate(toStream(DATA), createSemicolonTable()));
+    assertThrows(ParsingException.class,
+      () -> new Aggregation(Collections.emptyList(), Collections.singletonList(Aggregate.sum("foo"))).aggregate(toStream(DATA), createSemicolonTable()));
+  }
+
+  private static void assertGroups(AggregationResult result) {
+    assertEquals(6, result.getRecords());
+    assertEquals(1, result.getInvalidValues());
+    assertEquals(3, result.getGroups().size());
+
+    // All groups share the scale of an aggregate, "2,25" in group b gives group a two decimal places as well
+    AggregationResult.Group a = result.getGroups().get(0);
+    assertEquals(Collections.singletonList("a"), a.getKey());
+    assertEquals(new BigDecimal("2"), a.getValue(0));
+    assertEquals(new BigDecimal("-1.50"), a.getValue(1));
+    assertEquals(new BigDecimal("-3.00"), a.getValue(2));
+    assertEquals(new BigDecimal("1.50"), a.getValue(3));
+
+    // "1.000" is a thousand, the dot is the digit grouping symbol
+    AggregationResult.Group b = result.getGroups().get(1);
+    assertEquals(3, b.getCount());
+    assertEquals(new BigDecimal("1002.25"), b.getValue(1));
+
+    AggregationResult.Group c = result.getGroups().get(2);
+    assertEquals(1, c.getCount());
+    assertNull(c.getValue(2));
+  }
+
+  private static Table createSemicolonTable() {
+    Table table = createTable();
+    table.getVariableLength().setColumnDelimiter(";");
+    return table;
+  }
+
+}
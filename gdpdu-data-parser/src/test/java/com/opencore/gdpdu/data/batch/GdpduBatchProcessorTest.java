@@ -0,0 +1,66 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.opencore.gdpdu.data.TestModel;
+import com.opencore.gdpdu.index.models.DataSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class GdpduBatchProcessorTest {
+
+  @TempDir
+  Path root;
+
+  @Test
+  void testProcessDirectory() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      Path archive = Files.createDirectories(root.resolve("register-" + i));
+      Files.copy(Paths.get("src/test/resources/data1/index.xml"), archive.resolve("index.xml"));
+      Files.copy(Paths.get("src/test/resources/data1/data.csv"), archive.resolve("data.csv"));
+    }
+    Path broken = Files.createDirectories(root.resolve("broken"));
+    Files.write(broken.resolve("INDEX.XML"), "<DataSet>".getBytes(StandardCharsets.UTF_8));
+
+    Set<DataSet> dataSets = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    BatchReport report = new GdpduBatchProcessor(2).process(root, archive -> {
+      dataSets.add(archive.getDataSet());
+      List<TestModel> models = archive.parseTable("Testdatei Nr. 1", TestModel.class);
+      assertEquals(2, models.size());
+    });
+
+    assertEquals(4, report.getResults().size());
+    assertEquals(3, report.getSucceeded());
+    assertEquals(1, report.getFailed());
+    assertFalse(report.getFailures().get(0).isSuccess());
+    assertEquals(broken.resolve("INDEX.XML"), report.getFailures().get(0).getIndexXml());
+
+    // All three index.xml files are identical so they should have been parsed only once
+    assertEquals(1, dataSets.size());
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.join;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduArchive;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TableJoinTest {
+
+  private static final String LEFT = "a,1\nb,2\nb,3\nd,4\ne,5\n";
+  private static final String RIGHT = "a,10\nb,20\nb,30\nc,40\ne,50\n";
+
+  @Test
+  void testForeignKey() throws ParsingException {
+    GdpduArchive archive = GdpduArchive.open(new File("src/test/resources/data5/index.xml"));
+    Table lines = archive.getTable("Positionen");
+    TableJoin join = TableJoin.onForeignKey(lines, lines.getVariableLength().getForeignKeys().get(0), archive.getTable("Belege"));
+    List<String> rows = new ArrayList<>();
+    JoinResult result = join.join(archive, row -> rows.add(row.getLeft("PositionNr") + "=" + row.getRight("Datum")));
+
+    assertEquals(JoinResult.Strategy.HASH, result.getStrategy());
+    assertEquals(6, result.getLeftRecords());
+    assertEquals(3, result.getRightRecords());
+    assertEquals(Arrays.asList("P1=2020-01-01", "P2=2020-01-01", "P5=2020-01-03"), rows);
+  }
+
+  @Test
+  void testHashAndMergeJoinAgree() throws ParsingException {
+    TableJoin join = new TableJoin(createTable(), Collections.singletonList("foo"), createTable(), Collections.singletonList("foo"));
+    List<String> hashRows = new ArrayList<>();
+    JoinResult hash = join.join(() -> toStream(LEFT), () -> toStream(RIGHT), row -> hashRows.add(format(row)));
+
+    join.setMemoryBudget(1);
+    List<String> mergeRows = new ArrayList<>();
+    JoinResult merge = join.join(() -> toStream(LEFT), () -> toStream(RIGHT), row -> mergeRows.add(format(row)));
+
+    assertEquals(JoinResult.Strategy.HASH, hash.getStrategy());
+    assertEquals(JoinResult.Strategy.MERGE, merge.getStrategy());
+    assertEquals(Arrays.asList("1:a,1|1:a,10", "2:b,2|2:b,20", "2:b,2|3:b,30", "3:b,3|2:b,20", "3:b,3|3:b,30", "5:e,5|5:e,50"), hashRows);
+    assertEquals(hashRows, mergeRows);
+    assertEquals(6, merge.getRows());
+    assertEquals(5, merge.getRightRecords());
+  }
+
+  @Test
+  void testUnsortedTablesDontFit() throws ParsingException {
+    TableJoin join = new TableJoin(createTable(), Collections.singletonList("foo"), createTable(), Collections.singletonList("foo"));
+    join.setMemoryBudget(1);
+
+    assertThrows(ParsingException.class, () -> join.join(() -> toStream("b,1\na,2\n"), () -> toStream(RIGHT), row -> { }));
+    assertThrows(ParsingException.class, () -> join.join(() -> toStream(LEFT), () -> toStream("b,1\na,2\n"), row -> { }));
+  }
+
+  @Test
+  void testInvalidKeys() {
+    assertThrows(ParsingException.class,
+      () -> new TableJoin(createTable(), Collections.singletonList("baz"), createTable(), Collections.singletonList("foo")));
+    assertThrows(ParsingException.class,
+      () -> new TableJoin(createTable(), Arrays.asList("foo", "bar"), createTable(), Collections.singletonList("foo")));
+  }
+
+  private static String format(JoinedRow row) {
+    return row.getLeftRecordNumber() + ":" + String.join(",", row.getLeft()) + "|" + row.getRightRecordNumber() + ":" + String.join(",", row.getRight());
+  }
+
+}
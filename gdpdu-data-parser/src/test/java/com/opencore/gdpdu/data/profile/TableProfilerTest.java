@@ -0,0 +1,79 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.profile;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import org.junit.jupiter.api.Test;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableProfilerTest {
+
+  @Test
+  void testProfile() throws ParsingException {
+    TableProfile profile = new TableProfiler().profile(toStream("b,10\na,9\n,x\nbb,1.000\nb\nccc,\n"), createTable());
+    assertEquals(6, profile.getRecords());
+
+    ColumnProfile foo = profile.getColumn("foo");
+    assertEquals(5, foo.getValues());
+    assertEquals(1, foo.getEmptyValues());
+    assertEquals("a", foo.getMin());
+    assertEquals("ccc", foo.getMax());
+    assertEquals(1, foo.getMinLength());
+    assertEquals(3, foo.getMaxLength());
+    assertEquals(3L, foo.getLengthDistribution().get(1));
+    assertEquals(2L, foo.getLengthDistribution().get(2));
+    assertEquals(4, foo.getDistinctValues());
+    assertEquals("b", foo.getTopValues().get(0).getValue());
+    assertEquals(2, foo.getTopValues().get(0).getCount());
+
+    // Numbers are ordered by their value, not as strings
+    ColumnProfile bar = profile.getColumn("bar");
+    assertEquals(4, bar.getValues());
+    assertEquals(1, bar.getEmptyValues());
+    assertEquals(1, bar.getMissingValues());
+    assertEquals(1, bar.getInvalidValues());
+    assertEquals("9", bar.getMin());
+    assertEquals("1.000", bar.getMax());
+    assertNull(profile.getColumn("baz"));
+  }
+
+  @Test
+  void testProfileWithThreads() throws ParsingException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      // One value is a lot more frequent than all others
+      data.append(i % 4 == 0 ? "frequent" : "v" + i).append(',').append(i).append('\n');
+    }
+    TableProfiler profiler = new TableProfiler();
+    profiler.setThreads(3);
+    profiler.setTopValues(3);
+    TableProfile profile = profiler.profile(toStream(data.toString()), createTable());
+
+    assertEquals(20000, profile.getRecords());
+    ColumnProfile foo = profile.getColumn("foo");
+    assertEquals("frequent", foo.getTopValues().get(0).getValue());
+    // Misra-Gries counts are lower bounds
+    assertTrue(foo.getTopValues().get(0).getCount() <= 5000);
+    assertTrue(foo.getTopValues().get(0).getCount() > 4000, foo.getTopValues().toString());
+    assertEquals(15001, foo.getDistinctValues(), 15001 * 0.03);
+    assertEquals("0", profile.getColumn("bar").getMin());
+    assertEquals("19999", profile.getColumn("bar").getMax());
+  }
+
+}
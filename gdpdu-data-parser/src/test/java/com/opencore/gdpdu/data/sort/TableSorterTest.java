@@ -0,0 +1,97 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.sort;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.TestTables;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TableSorterTest {
+
+  @TempDir
+  Path spillDirectory;
+
+  @Test
+  void testSortInMemory() throws ParsingException {
+    TableSorter sorter = new TableSorter(Arrays.asList(SortKey.descending("bar"), SortKey.ascending("foo")));
+    List<String> sorted = new ArrayList<>();
+    long count = sorter.sort(toStream("a,9\nb,10\nc,9\nd,x\na,10\n"), createTable(), (recordNumber, record) -> sorted.add(recordNumber + ":" + record));
+
+    // Numbers are compared as numbers, values that aren't numbers sort first (i.e. last when descending)
+    assertEquals(5, count);
+    assertEquals(Arrays.asList("5:[a, 10]", "2:[b, 10]", "1:[a, 9]", "3:[c, 9]", "4:[d, x]"), sorted);
+  }
+
+  @Test
+  void testSortWithRuns() throws ParsingException, IOException {
+    Random random = new Random(42);
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      data.append("key-").append(random.nextInt(300)).append(',').append(i).append('\n');
+    }
+    TableSorter inMemory = new TableSorter(Collections.singletonList(SortKey.ascending("foo")));
+    List<String> expected = new ArrayList<>();
+    inMemory.sort(toStream(data.toString()), createTable(), (recordNumber, record) -> expected.add(record.toString()));
+
+    TableSorter external = new TableSorter(Collections.singletonList(SortKey.ascending("foo")));
+    external.setThreads(3);
+    external.setMemoryBudget(20_000);
+    external.setMaxFanIn(4);
+    external.setSpillDirectory(spillDirectory);
+    List<String> sorted = new ArrayList<>();
+    long count = external.sort(toStream(data.toString()), createTable(), (recordNumber, record) -> sorted.add(record.toString()));
+
+    assertEquals(2000, count);
+    assertEquals(expected, sorted);
+    try (Stream<Path> files = Files.list(spillDirectory)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void testSortByDate() throws ParsingException {
+    Table table = createTable();
+    table.getVariableLength().addVariableColumn(TestTables.createColumn("date", DataType.Date));
+    TableSorter sorter = new TableSorter(Collections.singletonList(SortKey.ascending("date")));
+    List<String> sorted = new ArrayList<>();
+    sorter.sort(toStream("a,1,02.01.2020\nb,2,31.12.2019\nc,3,01.01.2020\n"), table, (recordNumber, record) -> sorted.add(record.getColumns().get(0)));
+
+    assertEquals(Arrays.asList("b", "c", "a"), sorted);
+  }
+
+  @Test
+  void testInvalidColumn() {
+    TableSorter sorter = new TableSorter(Collections.singletonList(SortKey.ascending("baz")));
+    assertThrows(ParsingException.class, () -> sorter.sort(toStream("a,1\n"), createTable(), (recordNumber, record) -> { }));
+  }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.DatePattern;
+import com.opencore.gdpdu.data.TestTables;
+import com.opencore.gdpdu.index.models.AccuracyType;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Range;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.Validity;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import com.opencore.gdpdu.index.models.VariableLength;
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConformanceValidatorTest {
+
+  private static final String DATA = "abc;1,50;01.02.2020\n"
+                                     + "abcdef;1,50;01.02.2020\n"
+                                     + "abc;1,505;01.02.2020\n"
+                                     + "abc;1.000,5-;30.02.2020\n"
+                                     + "abc;x;01.02.2019\n"
+                                     + "abc;;\n"
+                                     + "abc;1\n";
+
+  @Test
+  void testViolations() throws ParsingException {
+    ConformanceReport report = new ConformanceValidator(1).validate(TestTables.toStream(DATA), createTable());
+
+    assertEquals(7, report.getCheckedRecords());
+    assertEquals(20, report.getCheckedCells());
+    assertEquals(6, report.getViolationCount());
+    assertEquals(1, report.getViolationCount("name", ConformanceReport.Kind.MAX_LENGTH));
+    assertEquals(1, report.getViolationCount("amount", ConformanceReport.Kind.ACCURACY));
+    assertEquals(1, report.getViolationCount("amount", ConformanceReport.Kind.NUMBER_FORMAT));
+    assertEquals(1, report.getViolationCount("date", ConformanceReport.Kind.DATE_FORMAT));
+    assertEquals(1, report.getViolationCount("date", ConformanceReport.Kind.VALIDITY));
+    assertEquals(1, report.getViolationCount(null, ConformanceReport.Kind.COLUMN_COUNT));
+
+    ConformanceReport.Violation violation = report.getViolations().get(0);
+    assertEquals(2, violation.getRecordNumber());
+    assertEquals("name", violation.getColumn());
+    assertEquals("abcdef", violation.getValue());
+    assertNull(report.getViolations().get(5).getColumn());
+    assertEquals("2", report.getViolations().get(5).getValue());
+  }
+
+  @Test
+  void testSameResultWithThreads() throws ParsingException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      data.append(DATA);
+    }
+
+    ConformanceValidator validator = new ConformanceValidator(3);
+    validator.setMaxReportedViolations(10);
+    ConformanceReport report = validator.validate(TestTables.toStream(data.toString()), createTable());
+
+    assertEquals(700, report.getCheckedRecords());
+    assertEquals(600, report.getViolationCount());
+    assertEquals(100, report.getViolationCount("date", ConformanceReport.Kind.VALIDITY));
+    assertEquals(10, report.getViolations().size());
+
+    // The sample holds the first violations of the file no matter which thread found them
+    ConformanceValidator sequential = new ConformanceValidator(1);
+    sequential.setMaxReportedViolations(10);
+    List<ConformanceReport.Violation> expected = sequential.validate(TestTables.toStream(data.toString()), createTable()).getViolations();
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getRecordNumber(), report.getViolations().get(i).getRecordNumber());
+      assertEquals(expected.get(i).getColumn(), report.getViolations().get(i).getColumn());
+    }
+    assertEquals(12, report.getViolations().get(9).getRecordNumber());
+  }
+
+  @Test
+  void testDatePattern() {
+    DatePattern pattern = DatePattern.compile("YYYYMMDD hh:mm:ss");
+
+    assertEquals(20200229, pattern.parse("20200229 23:59:59"));
+    assertEquals(DatePattern.INVALID, pattern.parse("20210229 23:59:59"));
+    assertEquals(DatePattern.INVALID, pattern.parse("20200101 24:00:00"));
+    assertEquals(DatePattern.INVALID, pattern.parse("2020-01-01 00:00:00"));
+    assertEquals(19991231, DatePattern.compile("DD.MM.YY").parse("31.12.99"));
+    assertEquals(0, DatePattern.compile("hh:mm").parse("12:30"));
+  }
+
+  @Test
+  void testInvalidDateFormat() {
+    Table table = createTable();
+    table.getVariableLength().getVariableColumns().get(2).setFormat("DD.MM.DD");
+
+    ParsingException e = assertThrows(ParsingException.class, () -> new ConformanceValidator(1).validate(TestTables.toStream(DATA), table));
+    assertEquals("Column [date] in table [Conformance] has an invalid date format: Date format [DD.MM.DD] contains a field more than once",
+                 e.getMessage());
+  }
+
+  /**
+   * Columns {@code name} (AlphaNumeric, MaxLength 5), {@code amount} (Numeric, Accuracy 2) and {@code date}, valid in 2020.
+   */
+  private static Table createTable() {
+    VariableColumn name = TestTables.createColumn("name", DataType.AlphaNumeric);
+    name.setMaxLength(5L);
+    VariableColumn amount = TestTables.createColumn("amount", DataType.Numeric);
+    amount.setAccuracyType(AccuracyType.Accuracy);
+    amount.setAccuracy(2);
+
+    VariableLength variableLength = new VariableLength();
+    variableLength.setColumnDelimiter(";");
+    variableLength.setRecordDelimiter("\n");
+    variableLength.addVariableColumn(name);
+    variableLength.addVariableColumn(amount);
+    variableLength.addVariableColumn(TestTables.createColumn("date", DataType.Date));
+
+    Range range = new Range();
+    range.setFrom("01.01.2020");
+    range.setTo("31.12.2020");
+    Validity validity = new Validity();
+    validity.setRange(range);
+
+    Table table = new Table();
+    table.setName("Conformance");
+    table.setValidity(validity);
+    table.setVariableLength(variableLength);
+    return table;
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduArchive;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.data.TestTables;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.ForeignKey;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableLength;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForeignKeyCheckTest {
+
+  @TempDir
+  Path spillDirectory;
+
+  @Test
+  void testArchive() throws ParsingException {
+    GdpduArchive archive = GdpduArchive.open(new File("src/test/resources/data5/index.xml"));
+    List<ForeignKeyReport> reports = new IntegrityChecker(2).check(archive);
+
+    assertEquals(1, reports.size());
+    ForeignKeyReport report = reports.get(0);
+    assertFalse(report.isValid());
+    assertEquals("Positionen", report.getTable());
+    assertEquals("Belege", report.getReferencedTable());
+    assertEquals(5, report.getCheckedRecords());
+    assertEquals(1, report.getNullReferences());
+    assertEquals(2, report.getOrphanCount());
+    assertEquals(3, report.getOrphans().get(0).getRecordNumber());
+    assertEquals(Collections.singletonList("B4"), report.getOrphans().get(0).getKey());
+    assertEquals(6, report.getOrphans().get(1).getRecordNumber());
+    assertEquals(Collections.singletonList("B9"), report.getOrphans().get(1).getKey());
+  }
+
+  @Test
+  void testSpilling() throws ParsingException, IOException {
+    ForeignKeyReport report = checkSpilling(ForeignKeyCheck.DEFAULT_MAX_REPORTED_ORPHANS);
+
+    assertEquals(3000, report.getCheckedRecords());
+    assertEquals(30, report.getOrphanCount());
+    for (int i = 0; i < 30; i++) {
+      int recordNumber = (i + 1) * 100;
+      assertEquals(recordNumber, report.getOrphans().get(i).getRecordNumber());
+      assertEquals(Collections.singletonList("key-" + (1000 + recordNumber)), report.getOrphans().get(i).getKey());
+    }
+    assertTrue(report.getSpilledPartitions() > 0);
+    try (Stream<Path> files = Files.list(spillDirectory)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void testOrphanSampleKeepsTheFirstOrphans() throws ParsingException {
+    // Orphans in spilled partitions are found last but still belong to the sample
+    ForeignKeyReport report = checkSpilling(5);
+
+    assertEquals(30, report.getOrphanCount());
+    assertEquals(5, report.getOrphans().size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals((i + 1) * 100, report.getOrphans().get(i).getRecordNumber());
+    }
+  }
+
+  @Test
+  void testMismatchedKey() {
+    Table table = createReferencingTable();
+    ForeignKey foreignKey = new ForeignKey();
+    foreignKey.setNames(Arrays.asList("id", "ref"));
+    foreignKey.setReferences("Test");
+
+    assertThrows(ParsingException.class, () -> new ForeignKeyCheck(table, foreignKey, TestTables.createKeyedTable()));
+  }
+
+  /**
+   * Checks 3000 references to 1000 keys with a memory budget that's too small for the keys, every 100th reference is an orphan.
+   */
+  private ForeignKeyReport checkSpilling(int maxReportedOrphans) throws ParsingException {
+    StringBuilder keys = new StringBuilder();
+    for (int i = 1; i <= 1000; i++) {
+      keys.append("key-").append(i).append(",0\n");
+    }
+    StringBuilder references = new StringBuilder();
+    for (int i = 1; i <= 3000; i++) {
+      int key = i % 100 == 0 ? 1000 + i : i % 1000 + 1;
+      references.append(i).append(",key-").append(key).append('\n');
+    }
+
+    Table referencedTable = TestTables.createKeyedTable();
+    Table table = createReferencingTable();
+    try (ForeignKeyCheck check = new ForeignKeyCheck(table, table.getVariableLength().getForeignKeys().get(0), referencedTable, 8 * 1024,
+                                                     spillDirectory, 1024)) {
+      check.setMaxReportedOrphans(maxReportedOrphans);
+      check.indexReferencedTable(TestTables.toStream(keys.toString()), new ParseLimits());
+      check.checkTable(TestTables.toStream(references.toString()), new ParseLimits());
+      return check.finish();
+    }
+  }
+
+  /**
+   * Columns {@code id} (primary key) and {@code ref}, {@code ref} references {@code foo} of {@link TestTables#createKeyedTable()}.
+   */
+  private static Table createReferencingTable() {
+    ForeignKey foreignKey = new ForeignKey();
+    foreignKey.addName("ref");
+    foreignKey.setReferences("Test");
+    foreignKey.addAlias("ref", "foo");
+
+    VariableLength variableLength = new VariableLength();
+    variableLength.setColumnDelimiter(",");
+    variableLength.setRecordDelimiter("\n");
+    variableLength.addVariablePrimaryKey(TestTables.createColumn("id", DataType.Numeric));
+    variableLength.addVariableColumn(TestTables.createColumn("ref", DataType.AlphaNumeric));
+    variableLength.addForeignKey(foreignKey);
+
+    Table table = new Table();
+    table.setName("References");
+    table.setVariableLength(variableLength);
+    return table;
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.data.ParseLimits;
+import com.opencore.gdpdu.data.TestTables;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimaryKeyCheckTest {
+
+  @TempDir
+  Path spillDirectory;
+
+  @Test
+  void testDuplicates() throws ParsingException {
+    PrimaryKeyReport report = PrimaryKeyCheck.check(TestTables.toStream("a,1\nb,2\na,3\ncä,4\nb,5\na,6\n"), TestTables.createKeyedTable());
+
+    assertFalse(report.isValid());
+    assertEquals(6, report.getCheckedRecords());
+    assertEquals(3, report.getDuplicateCount());
+    assertEquals(0, report.getSpilledPartitions());
+    assertEquals(3, report.getDuplicates().get(0).getRecordNumber());
+    assertEquals(1, report.getDuplicates().get(0).getFirstRecordNumber());
+    assertEquals(Arrays.asList("a"), report.getDuplicates().get(0).getKey());
+    assertEquals(5, report.getDuplicates().get(1).getRecordNumber());
+    assertEquals(2, report.getDuplicates().get(1).getFirstRecordNumber());
+    assertEquals(6, report.getDuplicates().get(2).getRecordNumber());
+    assertEquals(1, report.getDuplicates().get(2).getFirstRecordNumber());
+  }
+
+  @Test
+  void testUniqueKeys() throws ParsingException {
+    PrimaryKeyReport report = PrimaryKeyCheck.check(TestTables.toStream("a,1\nb,2\nc,3\n"), TestTables.createKeyedTable());
+
+    assertTrue(report.isValid());
+    assertEquals(3, report.getCheckedRecords());
+  }
+
+  @Test
+  void testSpilling() throws ParsingException, IOException {
+    StringBuilder data = new StringBuilder();
+    for (int i = 1; i <= 2000; i++) {
+      // Every 100th record repeats the key of the record 50 before it
+      data.append(i % 100 == 0 ? "key-" + (i - 50) : "key-" + i).append(',').append(i).append('\n');
+    }
+
+    PrimaryKeyReport report;
+    try (PrimaryKeyCheck check = new PrimaryKeyCheck(TestTables.createKeyedTable(), 8 * 1024, spillDirectory, 1024)) {
+      GdpduDataParser.scanVariableLengthTable(TestTables.toStream(data.toString()), TestTables.createKeyedTable(), new ParseLimits(), check);
+      report = check.finish();
+    }
+
+    assertTrue(report.getSpilledPartitions() > 0);
+    assertEquals(2000, report.getCheckedRecords());
+    assertEquals(20, report.getDuplicateCount());
+    for (int i = 0; i < 20; i++) {
+      PrimaryKeyReport.Duplicate duplicate = report.getDuplicates().get(i);
+      assertEquals((i + 1) * 100L, duplicate.getRecordNumber());
+      assertEquals((i + 1) * 100L - 50, duplicate.getFirstRecordNumber());
+      assertEquals(Arrays.asList("key-" + ((i + 1) * 100 - 50)), duplicate.getKey());
+    }
+    try (Stream<Path> files = Files.list(spillDirectory)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  void testTableWithoutPrimaryKey() {
+    assertThrows(ParsingException.class, () -> new PrimaryKeyCheck(TestTables.createTable()));
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.data.validation;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.data.GdpduDataParser;
+import com.opencore.gdpdu.index.models.Encoding;
+import com.opencore.gdpdu.index.models.FixedColumn;
+import com.opencore.gdpdu.index.models.FixedLength;
+import com.opencore.gdpdu.index.models.Range;
+import com.opencore.gdpdu.index.models.Table;
+import org.junit.jupiter.api.Test;
+
+
+import static com.opencore.gdpdu.data.TestTables.createTable;
+import static com.opencore.gdpdu.data.TestTables.toStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StructureCheckTest {
+
+  @Test
+  void testVariableLength() throws ParsingException {
+    // Delimiters inside of encapsulated text don't count
+    String data = "a,1\nb\n\"x,\ny\",2\nc,3,4\n\"ä\"\"ö\",5";
+    StructureReport report = StructureCheck.check(toStream(data), createTable());
+
+    assertEquals(5, report.getRecords());
+    assertEquals(GdpduDataParser.scanVariableLengthTable(toStream(data), createTable(), null, (recordNumber, record) -> { }), report.getRecords());
+    assertEquals(data.getBytes(StandardCharsets.UTF_8).length, report.getBytes());
+    assertEquals(2, report.getAnomalyCount());
+    List<StructureReport.Anomaly> anomalies = report.getAnomalies();
+    assertEquals(2, anomalies.get(0).getRecordNumber());
+    assertEquals(4, anomalies.get(0).getByteOffset());
+    assertEquals(1, anomalies.get(0).getActual());
+    assertEquals(2, anomalies.get(0).getExpected());
+    assertEquals(4, anomalies.get(1).getRecordNumber());
+    assertEquals(data.indexOf("c,3"), anomalies.get(1).getByteOffset());
+    assertEquals(3, anomalies.get(1).getActual());
+  }
+
+  @Test
+  void testUnterminatedTextAndLimit() throws ParsingException {
+    StructureCheck check = new StructureCheck(createTable());
+    check.setMaxReportedAnomalies(1);
+    StructureReport report = check.run(toStream("a\nb\n\"c,1\n"));
+
+    assertEquals(3, report.getRecords());
+    assertEquals(3, report.getAnomalyCount());
+    assertEquals(1, report.getAnomalies().size());
+    assertFalse(report.isValid());
+    assertEquals(StructureReport.Type.UNTERMINATED_TEXT, check.run(toStream("a,1\n\"c,1\n")).getAnomalies().get(0).getType());
+  }
+
+  @Test
+  void testUtf16FallsBackToLexer() throws ParsingException {
+    Table table = createTable();
+    table.setEncoding(Encoding.UTF16);
+    StructureReport report = StructureCheck.check(new ByteArrayInputStream("a,1\nb\n".getBytes(StandardCharsets.UTF_16)), table);
+
+    assertEquals(2, report.getRecords());
+    assertEquals(1, report.getAnomalyCount());
+    assertEquals(-1, report.getAnomalies().get(0).getByteOffset());
+  }
+
+  @Test
+  void testEmptyRecords() throws ParsingException {
+    String data = "a,1\n\nb,2\n\n\nc,3\n";
+    StructureReport report = StructureCheck.check(toStream(data), createTable());
+    Table table = createTable();
+    table.setEncoding(Encoding.UTF16);
+    StructureReport lexed = StructureCheck.check(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_16)), table);
+
+    // Empty lines keep their record numbers but aren't reported
+    assertEquals(6, report.getRecords());
+    assertEquals(GdpduDataParser.scanVariableLengthTable(toStream(data), createTable(), null, (recordNumber, record) -> { }), report.getRecords());
+    assertEquals(lexed.getRecords(), report.getRecords());
+    assertEquals(0, report.getAnomalyCount());
+    assertEquals(0, lexed.getAnomalyCount());
+  }
+
+  @Test
+  void testFixedLength() throws ParsingException {
+    FixedLength fixedLength = new FixedLength();
+    fixedLength.setLength(5L);
+    fixedLength.setRecordDelimiter("\n");
+    fixedLength.setFixedColumns(Arrays.asList(createFixedColumn("1", "3"), createFixedColumn("4", "5")));
+    Table table = new Table();
+    table.setName("Fixed");
+    table.setEncoding(Encoding.UTF8);
+    table.setFixedLength(fixedLength);
+
+    // Characters are counted, not bytes
+    StructureReport report = StructureCheck.check(toStream("abcde\nab\nabcdef\näöüxy\n"), table);
+    assertEquals(4, report.getRecords());
+    assertEquals(2, report.getAnomalyCount());
+    assertEquals(2, report.getAnomalies().get(0).getActual());
+    assertEquals(9, report.getAnomalies().get(1).getByteOffset());
+    assertEquals(6, report.getAnomalies().get(1).getActual());
+
+    // Without a record delimiter the records follow each other directly
+    fixedLength.setRecordDelimiter("");
+    report = StructureCheck.check(toStream("abcdeäöüxyab"), table);
+    assertEquals(3, report.getRecords());
+    assertEquals(1, report.getAnomalyCount());
+    assertTrue(report.getAnomalies().get(0).getByteOffset() > 10);
+  }
+
+  private static FixedColumn createFixedColumn(String from, String to) {
+    Range range = new Range();
+    range.setFrom(from);
+    range.setTo(to);
+    FixedColumn column = new FixedColumn();
+    column.setName("column" + from);
+    column.setFixedRange(range);
+    return column;
+  }
+
+}
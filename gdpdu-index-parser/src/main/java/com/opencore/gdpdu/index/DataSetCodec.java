@@ -0,0 +1,424 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import com.opencore.gdpdu.index.models.AccuracyType;
+import com.opencore.gdpdu.index.models.DataSet;
+import com.opencore.gdpdu.index.models.DataSupplier;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Encoding;
+import com.opencore.gdpdu.index.models.Extension;
+import com.opencore.gdpdu.index.models.FixedColumn;
+import com.opencore.gdpdu.index.models.FixedLength;
+import com.opencore.gdpdu.index.models.ForeignKey;
+import com.opencore.gdpdu.index.models.Mapping;
+import com.opencore.gdpdu.index.models.Media;
+import com.opencore.gdpdu.index.models.Range;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.Validity;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import com.opencore.gdpdu.index.models.VariableLength;
+
+/**
+ * This writes a {@link DataSet} in a compact binary format and reads it back.
+ * <p/>
+ * Every field is written explicitly in declaration order, there is no reflection and no Java serialization involved.
+ * Strings are length prefixed UTF-8 with a length of -1 for null, lists are count prefixed and enums are written by name.
+ * <p/>
+ * The {@link #FORMAT_VERSION} needs to be increased whenever the models or this format change,
+ * snapshots with a different version are rejected.
+ */
+final class DataSetCodec {
+
+  static final int MAGIC = 0x47445049; // "GDPI"
+  static final int FORMAT_VERSION = 1;
+
+  private DataSetCodec() {
+  }
+
+  static void write(DataSet dataSet, DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+
+    out.writeInt(dataSet.getExtensions().size());
+    for (Extension extension : dataSet.getExtensions()) {
+      writeString(out, extension.getName());
+      writeString(out, extension.getUrl());
+    }
+    writeString(out, dataSet.getVersion());
+    DataSupplier dataSupplier = dataSet.getDataSupplier();
+    out.writeBoolean(dataSupplier != null);
+    if (dataSupplier != null) {
+      writeString(out, dataSupplier.getName());
+      writeString(out, dataSupplier.getLocation());
+      writeString(out, dataSupplier.getComment());
+    }
+    writeStrings(out, dataSet.getPreCommands());
+    out.writeInt(dataSet.getMedia().size());
+    for (Media media : dataSet.getMedia()) {
+      writeMedia(out, media);
+    }
+    writeStrings(out, dataSet.getPostCommands());
+  }
+
+  /**
+   * @throws IOException if the snapshot is truncated, corrupt or has been written by a different format version
+   */
+  static DataSet read(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a DataSet snapshot");
+    }
+    int version = in.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported snapshot version [" + version + "], expected [" + FORMAT_VERSION + "]");
+    }
+
+    DataSet dataSet = new DataSet();
+    for (int i = readCount(in); i > 0; i--) {
+      Extension extension = new Extension();
+      extension.setName(readString(in));
+      extension.setUrl(readString(in));
+      dataSet.addExtension(extension);
+    }
+    dataSet.setVersion(readString(in));
+    if (in.readBoolean()) {
+      DataSupplier dataSupplier = new DataSupplier();
+      dataSupplier.setName(readString(in));
+      dataSupplier.setLocation(readString(in));
+      dataSupplier.setComment(readString(in));
+      dataSet.setDataSupplier(dataSupplier);
+    }
+    for (int i = readCount(in); i > 0; i--) {
+      dataSet.addPreCommand(readString(in));
+    }
+    for (int i = readCount(in); i > 0; i--) {
+      dataSet.addMedia(readMedia(in));
+    }
+    for (int i = readCount(in); i > 0; i--) {
+      dataSet.addPostCommand(readString(in));
+    }
+    return dataSet;
+  }
+
+  private static void writeMedia(DataOutputStream out, Media media) throws IOException {
+    writeString(out, media.getName());
+    writeStrings(out, media.getPreCommands());
+    out.writeInt(media.getTables().size());
+    for (Table table : media.getTables()) {
+      writeTable(out, table);
+    }
+    writeStrings(out, media.getPostCommands());
+    writeString(out, media.getAcceptNotables());
+  }
+
+  private static Media readMedia(DataInputStream in) throws IOException {
+    Media media = new Media();
+    media.setName(readString(in));
+    for (int i = readCount(in); i > 0; i--) {
+      media.addPreCommand(readString(in));
+    }
+    for (int i = readCount(in); i > 0; i--) {
+      media.addTable(readTable(in));
+    }
+    for (int i = readCount(in); i > 0; i--) {
+      media.addPostCommand(readString(in));
+    }
+    media.setAcceptNotables(readString(in));
+    return media;
+  }
+
+  private static void writeTable(DataOutputStream out, Table table) throws IOException {
+    writeString(out, table.getName());
+    writeString(out, table.getUrl());
+    writeString(out, table.getDescription());
+    Validity validity = table.getValidity();
+    out.writeBoolean(validity != null);
+    if (validity != null) {
+      writeRange(out, validity.getRange());
+      writeString(out, validity.getFormat());
+    }
+    writeEnum(out, table.getEncoding());
+    writeString(out, table.getDecimalSymbol());
+    writeString(out, table.getDigitGroupingSymbol());
+    out.writeLong(table.getSkipNumBytes());
+    writeRange(out, table.getRange());
+    writeString(out, table.getEpoch());
+
+    VariableLength variableLength = table.getVariableLength();
+    out.writeBoolean(variableLength != null);
+    if (variableLength != null) {
+      writeString(out, variableLength.getColumnDelimiter());
+      writeString(out, variableLength.getRecordDelimiter());
+      writeString(out, variableLength.getTextEncapsulator());
+      writeVariableColumns(out, variableLength.getVariablePrimaryKeys());
+      writeVariableColumns(out, variableLength.getVariableColumns());
+      writeForeignKeys(out, variableLength.getForeignKeys());
+    }
+
+    FixedLength fixedLength = table.getFixedLength();
+    out.writeBoolean(fixedLength != null);
+    if (fixedLength != null) {
+      out.writeBoolean(fixedLength.getLength() != null);
+      if (fixedLength.getLength() != null) {
+        out.writeLong(fixedLength.getLength());
+      }
+      writeString(out, fixedLength.getRecordDelimiter());
+      writeFixedColumns(out, fixedLength.getFixedPrimaryKeys());
+      writeFixedColumns(out, fixedLength.getFixedColumns());
+      writeForeignKeys(out, fixedLength.getForeignKeys());
+    }
+  }
+
+  private static Table readTable(DataInputStream in) throws IOException {
+    Table table = new Table();
+    table.setName(readString(in));
+    table.setUrl(readString(in));
+    table.setDescription(readString(in));
+    if (in.readBoolean()) {
+      Validity validity = new Validity();
+      validity.setRange(readRange(in));
+      validity.setFormat(readString(in));
+      table.setValidity(validity);
+    }
+    table.setEncoding(readEnum(in, Encoding.class));
+    table.setDecimalSymbol(readString(in));
+    table.setDigitGroupingSymbol(readString(in));
+    table.setSkipNumBytes(in.readLong());
+    table.setRange(readRange(in));
+    table.setEpoch(readString(in));
+
+    if (in.readBoolean()) {
+      VariableLength variableLength = new VariableLength();
+      variableLength.setColumnDelimiter(readString(in));
+      variableLength.setRecordDelimiter(readString(in));
+      variableLength.setTextEncapsulator(readString(in));
+      for (int i = readCount(in); i > 0; i--) {
+        variableLength.addVariablePrimaryKey(readVariableColumn(in));
+      }
+      for (int i = readCount(in); i > 0; i--) {
+        variableLength.addVariableColumn(readVariableColumn(in));
+      }
+      for (int i = readCount(in); i > 0; i--) {
+        variableLength.addForeignKey(readForeignKey(in));
+      }
+      table.setVariableLength(variableLength);
+    }
+
+    if (in.readBoolean()) {
+      FixedLength fixedLength = new FixedLength();
+      if (in.readBoolean()) {
+        fixedLength.setLength(in.readLong());
+      }
+      fixedLength.setRecordDelimiter(readString(in));
+      for (int i = readCount(in); i > 0; i--) {
+        fixedLength.addPrimaryKey(readFixedColumn(in));
+      }
+      for (int i = readCount(in); i > 0; i--) {
+        fixedLength.addFixedColumn(readFixedColumn(in));
+      }
+      for (int i = readCount(in); i > 0; i--) {
+        fixedLength.addForeignKey(readForeignKey(in));
+      }
+      table.setFixedLength(fixedLength);
+    }
+    return table;
+  }
+
+  private static void writeVariableColumns(DataOutputStream out, List<VariableColumn> columns) throws IOException {
+    out.writeInt(columns.size());
+    for (VariableColumn column : columns) {
+      writeString(out, column.getName());
+      writeString(out, column.getDescription());
+      writeEnum(out, column.getDataType());
+      writeEnum(out, column.getAccuracyType());
+      out.writeLong(column.getAccuracy());
+      out.writeBoolean(column.getMaxLength() != null);
+      if (column.getMaxLength() != null) {
+        out.writeLong(column.getMaxLength());
+      }
+      writeString(out, column.getFormat());
+      writeMappings(out, column.getMappings());
+    }
+  }
+
+  private static VariableColumn readVariableColumn(DataInputStream in) throws IOException {
+    VariableColumn column = new VariableColumn();
+    column.setName(readString(in));
+    column.setDescription(readString(in));
+    column.setDataType(readEnum(in, DataType.class));
+    column.setAccuracyType(readEnum(in, AccuracyType.class));
+    column.setAccuracy(in.readLong());
+    if (in.readBoolean()) {
+      column.setMaxLength(in.readLong());
+    }
+    column.setFormat(readString(in));
+    for (int i = readCount(in); i > 0; i--) {
+      column.addMapping(readMapping(in));
+    }
+    return column;
+  }
+
+  private static void writeFixedColumns(DataOutputStream out, List<FixedColumn> columns) throws IOException {
+    out.writeInt(columns.size());
+    for (FixedColumn column : columns) {
+      writeString(out, column.getName());
+      writeString(out, column.getDescription());
+      writeEnum(out, column.getDataType());
+      writeEnum(out, column.getAccuracyType());
+      out.writeLong(column.getAccuracy());
+      writeString(out, column.getFormat());
+      writeMappings(out, column.getMappings());
+      writeRange(out, column.getFixedRange());
+    }
+  }
+
+  private static FixedColumn readFixedColumn(DataInputStream in) throws IOException {
+    FixedColumn column = new FixedColumn();
+    column.setName(readString(in));
+    column.setDescription(readString(in));
+    column.setDataType(readEnum(in, DataType.class));
+    column.setAccuracyType(readEnum(in, AccuracyType.class));
+    column.setAccuracy(in.readLong());
+    column.setFormat(readString(in));
+    for (int i = readCount(in); i > 0; i--) {
+      column.addMapping(readMapping(in));
+    }
+    column.setFixedRange(readRange(in));
+    return column;
+  }
+
+  private static void writeMappings(DataOutputStream out, List<Mapping> mappings) throws IOException {
+    out.writeInt(mappings.size());
+    for (Mapping mapping : mappings) {
+      writeString(out, mapping.getDescription());
+      writeString(out, mapping.getFrom());
+      writeString(out, mapping.getTo());
+    }
+  }
+
+  private static Mapping readMapping(DataInputStream in) throws IOException {
+    Mapping mapping = new Mapping();
+    mapping.setDescription(readString(in));
+    mapping.setFrom(readString(in));
+    mapping.setTo(readString(in));
+    return mapping;
+  }
+
+  private static void writeForeignKeys(DataOutputStream out, List<ForeignKey> foreignKeys) throws IOException {
+    out.writeInt(foreignKeys.size());
+    for (ForeignKey foreignKey : foreignKeys) {
+      writeStrings(out, foreignKey.getNames());
+      writeString(out, foreignKey.getReferences());
+      out.writeInt(foreignKey.getAliases().size());
+      for (Map.Entry<String, String> alias : foreignKey.getAliases().entrySet()) {
+        writeString(out, alias.getKey());
+        writeString(out, alias.getValue());
+      }
+    }
+  }
+
+  private static ForeignKey readForeignKey(DataInputStream in) throws IOException {
+    ForeignKey foreignKey = new ForeignKey();
+    for (int i = readCount(in); i > 0; i--) {
+      foreignKey.addName(readString(in));
+    }
+    foreignKey.setReferences(readString(in));
+    for (int i = readCount(in); i > 0; i--) {
+      foreignKey.addAlias(readString(in), readString(in));
+    }
+    return foreignKey;
+  }
+
+  private static void writeRange(DataOutputStream out, Range range) throws IOException {
+    out.writeBoolean(range != null);
+    if (range != null) {
+      writeString(out, range.getFrom());
+      writeString(out, range.getTo());
+      writeString(out, range.getLength());
+    }
+  }
+
+  private static Range readRange(DataInputStream in) throws IOException {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    Range range = new Range();
+    range.setFrom(readString(in));
+    range.setTo(readString(in));
+    range.setLength(readString(in));
+    return range;
+  }
+
+  private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+    writeString(out, value == null ? null : value.name());
+  }
+
+  private static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> type) throws IOException {
+    String name = readString(in);
+    if (name == null) {
+      return null;
+    }
+    try {
+      return Enum.valueOf(type, name);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unknown " + type.getSimpleName() + " [" + name + "]", e);
+    }
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+    out.writeInt(values.size());
+    for (String value : values) {
+      writeString(out, value);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[checkLength(length)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int readCount(DataInputStream in) throws IOException {
+    return checkLength(in.readInt());
+  }
+
+  private static int checkLength(int length) throws IOException {
+    // A corrupt snapshot must not make us allocate huge arrays or loop forever
+    if (length < 0 || length > 64 * 1024 * 1024) {
+      throw new IOException("Corrupt snapshot, invalid length [" + length + "]");
+    }
+    return length;
+  }
+
+}
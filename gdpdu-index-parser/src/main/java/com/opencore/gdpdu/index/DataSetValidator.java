@@ -0,0 +1,164 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.opencore.gdpdu.index.models.DataSet;
+import com.opencore.gdpdu.index.models.DataSupplier;
+import com.opencore.gdpdu.index.models.Extension;
+import com.opencore.gdpdu.index.models.FixedColumn;
+import com.opencore.gdpdu.index.models.FixedLength;
+import com.opencore.gdpdu.index.models.Media;
+import com.opencore.gdpdu.index.models.Range;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.Validity;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import com.opencore.gdpdu.index.models.VariableLength;
+
+/**
+ * This checks the same constraints as the Bean Validation annotations on the models, but directly and without any reflection.
+ * <p/>
+ * It needs to be kept in sync with the annotations, {@code GdpduIndexValidatorTest} compares both on the test files.
+ * Models that don't have any constraints (e.g. {@code Mapping} or {@code ForeignKey}) are not visited at all.
+ */
+final class DataSetValidator {
+
+  private static final String NOT_BLANK = "must not be blank";
+  private static final String NOT_EMPTY = "must not be empty";
+  private static final String POSITIVE_OR_ZERO = "must be greater than or equal to 0";
+
+  private final List<IndexViolation> violations = new ArrayList<>();
+
+  private DataSetValidator() {
+  }
+
+  static List<IndexViolation> validate(DataSet dataSet) {
+    DataSetValidator validator = new DataSetValidator();
+    validator.validateDataSet(dataSet);
+    return validator.violations;
+  }
+
+  private void validateDataSet(DataSet dataSet) {
+    for (int i = 0; i < dataSet.getExtensions().size(); i++) {
+      Extension extension = dataSet.getExtensions().get(i);
+      if (extension != null) {
+        String path = "extensions[" + i + "].";
+        notBlank(path + "name", extension.getName());
+        notBlank(path + "url", extension.getUrl());
+      }
+    }
+    notBlank("version", dataSet.getVersion());
+
+    DataSupplier dataSupplier = dataSet.getDataSupplier();
+    if (dataSupplier != null) {
+      notBlank("dataSupplier.name", dataSupplier.getName());
+      notBlank("dataSupplier.location", dataSupplier.getLocation());
+      notBlank("dataSupplier.comment", dataSupplier.getComment());
+    }
+
+    if (dataSet.getMedia() == null || dataSet.getMedia().isEmpty()) {
+      violations.add(new IndexViolation("media", NOT_EMPTY));
+      return;
+    }
+    for (int i = 0; i < dataSet.getMedia().size(); i++) {
+      Media media = dataSet.getMedia().get(i);
+      if (media != null) {
+        validateMedia("media[" + i + "].", media);
+      }
+    }
+  }
+
+  private void validateMedia(String path, Media media) {
+    notBlank(path + "name", media.getName());
+    for (int i = 0; i < media.getTables().size(); i++) {
+      Table table = media.getTables().get(i);
+      if (table != null) {
+        validateTable(path + "tables[" + i + "].", table);
+      }
+    }
+  }
+
+  private void validateTable(String path, Table table) {
+    Validity validity = table.getValidity();
+    if (validity != null) {
+      validateRange(path + "validity.range.", validity.getRange());
+    }
+    validateRange(path + "range.", table.getRange());
+
+    VariableLength variableLength = table.getVariableLength();
+    if (variableLength != null) {
+      validateVariableColumns(path + "variableLength.variablePrimaryKeys", variableLength.getVariablePrimaryKeys());
+      validateVariableColumns(path + "variableLength.variableColumns", variableLength.getVariableColumns());
+    }
+
+    FixedLength fixedLength = table.getFixedLength();
+    if (fixedLength != null) {
+      validateFixedColumns(path + "fixedLength.fixedPrimaryKeys", fixedLength.getFixedPrimaryKeys());
+      validateFixedColumns(path + "fixedLength.fixedColumns", fixedLength.getFixedColumns());
+    }
+  }
+
+  private void validateVariableColumns(String path, List<VariableColumn> columns) {
+    for (int i = 0; i < columns.size(); i++) {
+      VariableColumn column = columns.get(i);
+      if (column != null) {
+        String columnPath = path + "[" + i + "].";
+        notBlank(columnPath + "name", column.getName());
+        if (column.getMaxLength() != null && column.getMaxLength() < 0) {
+          violations.add(new IndexViolation(columnPath + "maxLength", POSITIVE_OR_ZERO));
+        }
+      }
+    }
+  }
+
+  private void validateFixedColumns(String path, List<FixedColumn> columns) {
+    for (int i = 0; i < columns.size(); i++) {
+      FixedColumn column = columns.get(i);
+      if (column != null) {
+        String columnPath = path + "[" + i + "].";
+        notBlank(columnPath + "name", column.getName());
+        if (column.getAccuracy() < 0) {
+          violations.add(new IndexViolation(columnPath + "accuracy", POSITIVE_OR_ZERO));
+        }
+        validateRange(columnPath + "fixedRange.", column.getFixedRange());
+      }
+    }
+  }
+
+  private void validateRange(String path, Range range) {
+    if (range != null && range.getLength() != null && !isPositiveOrZero(range.getLength())) {
+      violations.add(new IndexViolation(path + "length", POSITIVE_OR_ZERO));
+    }
+  }
+
+  private void notBlank(String path, String value) {
+    if (value == null || value.trim().isEmpty()) {
+      violations.add(new IndexViolation(path, NOT_BLANK));
+    }
+  }
+
+  /**
+   * Bean Validation accepts numbers in strings for {@code @PositiveOrZero}, anything that is not a number is a violation.
+   */
+  private static boolean isPositiveOrZero(String value) {
+    try {
+      return new BigDecimal(value).signum() >= 0;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.DataSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This caches parsed and validated {@link DataSet} objects keyed by the SHA-256 digest of the {@code index.xml} contents.
+ * <p/>
+ * Many exports (e.g. one per cash register and day) ship byte for byte identical {@code index.xml} files.
+ * With this cache each distinct file is only parsed and validated once.
+ * <p/>
+ * Optionally the cache also keeps a binary snapshot of every {@link DataSet} in a directory on disk.
+ * Snapshots survive restarts, on a hit neither XML parsing, DTD validation nor semantic validation are needed.
+ * Only files that passed validation are ever written as snapshots.
+ * <p/>
+ * The returned {@link DataSet} objects are shared, callers must not modify them.
+ * This class is thread-safe.
+ */
+public final class GdpduIndexCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(GdpduIndexCache.class);
+
+  private static final String SNAPSHOT_SUFFIX = ".dataset";
+
+  private final Map<String, DataSet> entries;
+  private final Path snapshotDirectory;
+
+  public GdpduIndexCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * @param maxEntries number of distinct {@code index.xml} files to keep, the least recently used ones are evicted first
+   */
+  public GdpduIndexCache(int maxEntries) {
+    this(maxEntries, null);
+  }
+
+  /**
+   * @param maxEntries        number of distinct {@code index.xml} files to keep in memory, the least recently used ones are evicted first
+   * @param snapshotDirectory directory for the binary snapshots, it will be created if necessary. Null disables snapshots.
+   */
+  public GdpduIndexCache(int maxEntries, Path snapshotDirectory) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("'maxEntries' must be at least 1, was [" + maxEntries + "]");
+    }
+    this.snapshotDirectory = snapshotDirectory;
+    entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, DataSet> eldest) {
+        return size() > maxEntries;
+      }
+    });
+  }
+
+  /**
+   * Returns the parsed and validated {@link DataSet} for an {@code index.xml} file.
+   *
+   * @throws ParsingException if the file can't be read, parsed or if it is semantically invalid
+   */
+  public DataSet load(File indexXml) throws ParsingException {
+    Objects.requireNonNull(indexXml, "'indexXml' can't be null");
+
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(indexXml.toPath());
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    return load(bytes);
+  }
+
+  /**
+   * Returns the parsed and validated {@link DataSet} for the contents of an {@code index.xml} file.
+   *
+   * @throws ParsingException if the file can't be parsed or if it is semantically invalid
+   */
+  public DataSet load(byte[] indexXml) throws ParsingException {
+    Objects.requireNonNull(indexXml, "'indexXml' can't be null");
+
+    String digest = digest(indexXml);
+    DataSet dataSet = entries.get(digest);
+    if (dataSet != null) {
+      LOG.trace("Cache hit for index.xml with digest [{}]", digest);
+      return dataSet;
+    }
+
+    if (snapshotDirectory != null) {
+      dataSet = readSnapshot(digest);
+      if (dataSet != null) {
+        entries.put(digest, dataSet);
+        return dataSet;
+      }
+    }
+
+    // Parsing happens outside of the lock, in the worst case two threads parse the same file at the same time
+    dataSet = parseAndValidate(indexXml);
+    entries.put(digest, dataSet);
+    if (snapshotDirectory != null) {
+      writeSnapshot(digest, dataSet);
+    }
+    return dataSet;
+  }
+
+  /**
+   * Clears the in-memory cache, snapshots on disk are kept.
+   */
+  public void clear() {
+    entries.clear();
+  }
+
+  private DataSet readSnapshot(String digest) {
+    Path snapshot = snapshotDirectory.resolve(digest + SNAPSHOT_SUFFIX);
+    if (!Files.isRegularFile(snapshot)) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+      DataSet dataSet = DataSetCodec.read(in);
+      LOG.trace("Snapshot hit for index.xml with digest [{}]", digest);
+      return dataSet;
+    } catch (IOException e) {
+      // A broken or outdated snapshot is not fatal, we just parse the file again and overwrite it
+      LOG.warn("Ignoring unreadable snapshot [{}]", snapshot, e);
+      return null;
+    }
+  }
+
+  private void writeSnapshot(String digest, DataSet dataSet) {
+    Path snapshot = snapshotDirectory.resolve(digest + SNAPSHOT_SUFFIX);
+    Path tempFile = null;
+    try {
+      Files.createDirectories(snapshotDirectory);
+      // Written to a temporary file first so concurrent readers (possibly other processes) never see a partial snapshot
+      tempFile = Files.createTempFile(snapshotDirectory, digest, ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        DataSetCodec.write(dataSet, out);
+      }
+      try {
+        Files.move(tempFile, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, snapshot, StandardCopyOption.REPLACE_EXISTING);
+      }
+      LOG.trace("Wrote snapshot [{}]", snapshot);
+    } catch (IOException e) {
+      LOG.warn("Failed to write snapshot [{}]", snapshot, e);
+      deleteQuietly(tempFile);
+    }
+  }
+
+  private static void deleteQuietly(Path path) {
+    if (path == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      LOG.trace("Failed to delete [{}]", path, e);
+    }
+  }
+
+  /**
+   * Parses and validates an {@code index.xml} file without any caching.
+   *
+   * @throws ParsingException if the file can't be parsed or if it is semantically invalid
+   */
+  public static DataSet parseAndValidate(byte[] indexXml) throws ParsingException {
+    LOG.trace("Beginning to parse index.xml");
+    DataSet dataSet;
+    try {
+      dataSet = GdpduStreamingIndexParser.parseXmlFile(new ByteArrayInputStream(indexXml));
+    } catch (IOException e) {
+      throw new ParsingException(e);
+    }
+    LOG.debug("Successfully parsed index.xml");
+
+    List<IndexViolation> violations = GdpduIndexValidator.validate(dataSet);
+    if (!violations.isEmpty()) {
+      for (IndexViolation violation : violations) {
+        LOG.warn("Violation found [{}] [{}]", violation.getPath(), violation.getMessage());
+      }
+      throw new ParsingException("invalid index.xml file");
+    }
+    return dataSet;
+  }
+
+  static String digest(byte[] bytes) {
+    MessageDigest messageDigest;
+    try {
+      messageDigest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    byte[] hash = messageDigest.digest(bytes);
+    StringBuilder sb = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+}
@@ -12,10 +12,12 @@
  */
 package com.opencore.gdpdu.index;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Locale;
 import java.util.Objects;
 import javax.xml.XMLConstants;
@@ -42,6 +44,7 @@ import com.opencore.gdpdu.index.models.VariableLength;
 import com.opencore.gdpdu.index.util.ElementWrapper;
 import com.opencore.gdpdu.index.util.ThrowingErrorHandler;
 import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
@@ -51,9 +54,30 @@ import org.xml.sax.SAXException;
  * Implementation note: This does not use a more sophisticated (JAXB or otherwise) XML parser on purpose.
  * First, this does not require any dependencies and second the Commands for Media are problematic to map because they appear twice. Once before the tables and once after.
  * I did not find a way to map this correctly into two distinct lists using JAXB.
+ *
+ * This class is thread-safe, DocumentBuilders are reused from a small pool and the DTDs are only read once.
+ *
+ * @see GdpduStreamingIndexParser for large files, it doesn't build a DOM
  */
 public final class GdpduIndexParser {
 
+  private static final String DTD_2004 = "gdpdu-01-09-2004.dtd";
+  private static final String DTD_2002 = "gdpdu-01-08-2002.dtd";
+
+  // The DTDs are tiny and needed for every single parse so they are read from the classpath only once
+  private static final byte[] DTD_2004_BYTES = loadDtd(DTD_2004);
+  private static final byte[] DTD_2002_BYTES = loadDtd(DTD_2002);
+
+  private static final ThrowingErrorHandler THROWING_ERROR_HANDLER = new ThrowingErrorHandler();
+
+  private static final EntityResolver DTD_RESOLVER = (String publicId, String systemId) -> resolveDtd(systemId);
+
+  private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = newDocumentBuilderFactory();
+
+  // DocumentBuilder is not thread-safe but can parse one document after another
+  private static final ParserPool<DocumentBuilder> DOCUMENT_BUILDERS =
+    new ParserPool<>(GdpduIndexParser::newDocumentBuilder, Runtime.getRuntime().availableProcessors());
+
   private GdpduIndexParser() {
   }
 
@@ -72,7 +96,7 @@ public final class GdpduIndexParser {
    */
   public static DataSet parseXmlFile(InputStream inputStream) throws IOException {
     Objects.requireNonNull(inputStream, "'inputStream' can't be null");
-    DocumentBuilder db = getDocumentBuilder();
+    DocumentBuilder db = DOCUMENT_BUILDERS.take();
 
     ElementWrapper rootElement;
     try {
@@ -80,15 +104,15 @@ public final class GdpduIndexParser {
       rootElement = new ElementWrapper(document.getDocumentElement());
     } catch (SAXException | IOException e) {
       throw new IOException("Failed parsing XML", e);
+    } finally {
+      // reset() would drop the entity resolver and error handler, the parser doesn't carry any state from one document to the next
+      DOCUMENT_BUILDERS.release(db);
     }
 
     return parseDataSet(rootElement);
   }
 
-  /**
-   * This sets up a DocumentBuilder which can be used to parse the XML file.
-   */
-  private static DocumentBuilder getDocumentBuilder() {
+  private static DocumentBuilderFactory newDocumentBuilderFactory() {
     DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
 
     // These two are Sonar warnings https://sonarcloud.io/organizations/opencore/rules?open=java%3AS2755&rule_key=java%3AS2755
@@ -96,12 +120,18 @@ public final class GdpduIndexParser {
     dbFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
 
     dbFactory.setValidating(true);
+    return dbFactory;
+  }
 
+  private static DocumentBuilder newDocumentBuilder() {
     DocumentBuilder db;
-    try {
-      db = dbFactory.newDocumentBuilder();
-    } catch (ParserConfigurationException e) {
-      throw new IllegalStateException("Setting up the XML Parser failed", e);
+    // The factory itself is not guaranteed to be thread-safe
+    synchronized (DOCUMENT_BUILDER_FACTORY) {
+      try {
+        db = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+      } catch (ParserConfigurationException e) {
+        throw new IllegalStateException("Setting up the XML Parser failed", e);
+      }
     }
 
     /*
@@ -110,21 +140,44 @@ public final class GdpduIndexParser {
     As per the GdPDU spec it is actually required to have the DTD file next to the index.xml file.
     We actually disable reading the DTD from the filesystem due to security concerns so if it doesn't match one of these well known ones we'll fail
      */
-    db.setEntityResolver((String publicId, String systemId) -> {
-      if (systemId.trim().toLowerCase(Locale.ROOT).endsWith("gdpdu-01-09-2004.dtd")) {
-        return new InputSource(Thread.currentThread().getContextClassLoader().getResourceAsStream("gdpdu-01-09-2004.dtd"));
-      } else if (systemId.trim().toLowerCase(Locale.ROOT).endsWith("gdpdu-01-08-2002.dtd")) {
-        return new InputSource(Thread.currentThread().getContextClassLoader().getResourceAsStream("gdpdu-01-08-2002.dtd"));
-      } else {
-        return null;
-      }
-    });
+    db.setEntityResolver(DTD_RESOLVER);
 
-    db.setErrorHandler(new ThrowingErrorHandler());
+    db.setErrorHandler(THROWING_ERROR_HANDLER);
     return db;
   }
 
-  private static void validateInput(File inputFile) {
+  /**
+   * Resolves the two published DTD versions from memory.
+   *
+   * @return the DTD or null if it is not one of the well known ones
+   */
+  static InputSource resolveDtd(String systemId) {
+    String normalized = systemId.trim().toLowerCase(Locale.ROOT);
+    byte[] dtd;
+    if (normalized.endsWith(DTD_2004)) {
+      dtd = DTD_2004_BYTES;
+    } else if (normalized.endsWith(DTD_2002)) {
+      dtd = DTD_2002_BYTES;
+    } else {
+      return null;
+    }
+    InputSource inputSource = new InputSource(new ByteArrayInputStream(dtd));
+    inputSource.setSystemId(systemId);
+    return inputSource;
+  }
+
+  private static byte[] loadDtd(String name) {
+    try (InputStream is = GdpduIndexParser.class.getClassLoader().getResourceAsStream(name)) {
+      if (is == null) {
+        throw new IllegalStateException("DTD [" + name + "] is missing from the classpath");
+      }
+      return is.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Reading DTD [" + name + "] failed", e);
+    }
+  }
+
+  static void validateInput(File inputFile) {
     Objects.requireNonNull(inputFile, "'inputFile' can't be null");
 
     String msg = "inputFile [" + inputFile + "]";
@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.validation.ConstraintViolation;
@@ -33,17 +34,42 @@ import com.opencore.gdpdu.index.models.VariableColumn;
 
 public final class GdpduIndexValidator {
 
-  private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+  // Limits the number of distinct table shapes remembered per class, in practice there are only a handful
+  private static final int MAX_SHAPES_PER_CLASS = 1024;
+
+  /**
+   * Remembers the table shapes (see {@link #fingerprint(Table)}) that a class has successfully been validated against.
+   * A {@link ClassValue} doesn't keep classes (and their class loaders) alive.
+   */
+  private static final ClassValue<Set<String>> VALID_SHAPES = new ClassValue<>() {
+    @Override
+    protected Set<String> computeValue(Class<?> type) {
+      return ConcurrentHashMap.newKeySet();
+    }
+  };
 
   private GdpduIndexValidator() {
   }
 
   /**
-   * This runs validations on a {@link DataSet}.
+   * This runs validations on a {@link DataSet} using Bean Validation.
    * When using {@link GdpduIndexParser} it should already be syntactically correct due to the DTD but this validates a few semantic things as well.
+   *
+   * @see #validate(DataSet) for a faster alternative with the same rules
    */
   public static Set<ConstraintViolation<DataSet>> validateDataSet(DataSet dataSet) {
-    return VALIDATOR.validate(dataSet);
+    return ValidatorHolder.VALIDATOR.validate(dataSet);
+  }
+
+  /**
+   * This checks the same rules as {@link #validateDataSet(DataSet)} but without Bean Validation.
+   * There is no bootstrap cost and no reflection involved, which matters for short-lived processes.
+   *
+   * @return the violations in document order, empty if the {@link DataSet} is valid
+   */
+  public static List<IndexViolation> validate(DataSet dataSet) {
+    Objects.requireNonNull(dataSet, "'dataSet' can't be null");
+    return DataSetValidator.validate(dataSet);
   }
 
   /**
@@ -52,11 +78,20 @@ public final class GdpduIndexValidator {
    * <p/>
    * It currently returns a list of Strings containing error messages.
    * TODO: This is not optimal and could be improved later to e.g. return structured violation objects
+   * <p/>
+   * The outcome only depends on the class and the names and types of the columns.
+   * Once a class has passed against a table shape, further tables of the same shape are not checked again.
    */
   public static <T> List<String> validateTableAgainstClass(Class<T> clazz, Table table) throws ParsingException {
     Objects.requireNonNull(table, "'table' can't be null");
     Objects.requireNonNull(clazz, "'clazz' can't be null");
 
+    String fingerprint = table.getVariableLength() == null ? null : fingerprint(table);
+    Set<String> validShapes = VALID_SHAPES.get(clazz);
+    if (fingerprint != null && validShapes.contains(fingerprint)) {
+      return new ArrayList<>();
+    }
+
     Map<String, ColumnInfo> infoMap = ClassRegistry.getClassInformation(clazz);
     Objects.requireNonNull(infoMap);
 
@@ -84,9 +119,31 @@ public final class GdpduIndexValidator {
     } else {
       throw new IllegalArgumentException("Neither VariableLength nor FixedLength found, aborting");
     }
+
+    // Errors contain the table name so only successful outcomes are remembered
+    if (errors.isEmpty() && validShapes.size() < MAX_SHAPES_PER_CLASS) {
+      validShapes.add(fingerprint);
+    }
     return errors;
   }
 
+  /**
+   * This describes everything about a variable length table that {@link #validateTableAgainstClass(Class, Table)} looks at: Column names and data types.
+   */
+  static String fingerprint(Table table) {
+    StringBuilder sb = new StringBuilder();
+    appendColumns(sb, table.getVariableLength().getVariablePrimaryKeys());
+    appendColumns(sb, table.getVariableLength().getVariableColumns());
+    return sb.toString();
+  }
+
+  private static void appendColumns(StringBuilder sb, List<VariableColumn> columns) {
+    for (VariableColumn column : columns) {
+      // Control characters as separators as they can't appear in an index.xml file
+      sb.append(column.getName()).append('\u0001').append(column.getDataType()).append('\u0002');
+    }
+  }
+
   /**
    * This validates a class against an index.xml file to make sure that each column in the index.xml has a field in the class.
    * The reverse can be checked using {@link #validateTableAgainstClass(Class, Table)}.
@@ -115,4 +172,12 @@ public final class GdpduIndexValidator {
     }
   }
 
+  /**
+   * Bootstrapping Bean Validation (Hibernate Validator and Expression Language) is expensive so it only happens when it's first needed.
+   */
+  private static final class ValidatorHolder {
+
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+  }
+
 }
@@ -0,0 +1,555 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import com.opencore.gdpdu.index.models.AccuracyType;
+import com.opencore.gdpdu.index.models.DataSet;
+import com.opencore.gdpdu.index.models.DataSupplier;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Encoding;
+import com.opencore.gdpdu.index.models.Extension;
+import com.opencore.gdpdu.index.models.FixedColumn;
+import com.opencore.gdpdu.index.models.FixedLength;
+import com.opencore.gdpdu.index.models.ForeignKey;
+import com.opencore.gdpdu.index.models.Mapping;
+import com.opencore.gdpdu.index.models.Media;
+import com.opencore.gdpdu.index.models.Range;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.Validity;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import com.opencore.gdpdu.index.models.VariableLength;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * This parses an {@code index.xml} file into a {@link DataSet} in a single forward pass without building a DOM first.
+ * <p/>
+ * The result is the same as with {@link GdpduIndexParser}, the document is validated against the DTD while it is being read.
+ * Memory use only depends on the resulting {@link DataSet} and not on the size of the document,
+ * which matters for exports with thousands of tables.
+ * <p/>
+ * Implementation note: The JDK's StAX parser can read a DTD but not validate against it so this uses a validating SAX parser instead.
+ * Because the DTD guarantees the structure, the handler only needs to know the parent of an element to know where it belongs.
+ * <p/>
+ * This class is thread-safe, parsers are reused from a small pool.
+ */
+public final class GdpduStreamingIndexParser {
+
+  private static final SAXParserFactory SAX_PARSER_FACTORY = newSaxParserFactory();
+
+  // SAXParser is not thread-safe but can parse one document after another
+  private static final ParserPool<SAXParser> SAX_PARSERS =
+    new ParserPool<>(GdpduStreamingIndexParser::newSaxParser, Runtime.getRuntime().availableProcessors());
+
+  private GdpduStreamingIndexParser() {
+  }
+
+  public static DataSet parseXmlFile(String path) throws IOException {
+    return parseXmlFile(new File(path));
+  }
+
+  public static DataSet parseXmlFile(File inputFile) throws IOException {
+    GdpduIndexParser.validateInput(inputFile);
+    try (InputStream is = new FileInputStream(inputFile)) {
+      return parseXmlFile(is);
+    }
+  }
+
+  /**
+   * This tries to parse a file according to the GDPdU/GoBD standard.
+   * It does not do any validation apart from schema validation according to the DTD.
+   */
+  public static DataSet parseXmlFile(InputStream inputStream) throws IOException {
+    Objects.requireNonNull(inputStream, "'inputStream' can't be null");
+
+    DataSetHandler handler = new DataSetHandler();
+    SAXParser parser = SAX_PARSERS.take();
+    try {
+      parser.parse(inputStream, handler);
+    } catch (SAXException | IOException e) {
+      throw new IOException("Failed parsing XML", e);
+    } finally {
+      // reset() would drop the properties, the handler is passed to every parse and nothing else carries over
+      SAX_PARSERS.release(parser);
+    }
+    return handler.dataSet;
+  }
+
+  private static SAXParserFactory newSaxParserFactory() {
+    SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setValidating(true);
+    factory.setNamespaceAware(false);
+    return factory;
+  }
+
+  private static SAXParser newSaxParser() {
+    // The factory itself is not guaranteed to be thread-safe
+    synchronized (SAX_PARSER_FACTORY) {
+      try {
+        SAXParser parser = SAX_PARSER_FACTORY.newSAXParser();
+        // These two are Sonar warnings https://sonarcloud.io/organizations/opencore/rules?open=java%3AS2755&rule_key=java%3AS2755
+        parser.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        parser.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        return parser;
+      } catch (ParserConfigurationException | SAXException e) {
+        throw new IllegalStateException("Setting up the XML Parser failed", e);
+      }
+    }
+  }
+
+  /**
+   * Builds the model objects while the document is read.
+   * Complex elements are pushed on a stack, text elements are assigned to whatever is on top of the stack when they end.
+   */
+  private static final class DataSetHandler extends DefaultHandler {
+
+    private final Deque<Object> stack = new ArrayDeque<>();
+    private final StringBuilder text = new StringBuilder();
+
+    private DataSet dataSet;
+    private Locator locator;
+
+    // Commands appear before and after Media/Table elements, we can only tell them apart by their position
+    private boolean mediaSeen;
+    private boolean tableSeen;
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+      this.locator = locator;
+    }
+
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId) {
+      return GdpduIndexParser.resolveDtd(systemId);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+      text.setLength(0);
+      Object parent = stack.peek();
+      switch (qName) {
+        case "DataSet":
+          dataSet = new DataSet();
+          stack.push(dataSet);
+          break;
+        case "Extension":
+          stack.push(new Extension());
+          break;
+        case "DataSupplier":
+          stack.push(new DataSupplier());
+          break;
+        case "Media":
+          mediaSeen = true;
+          tableSeen = false;
+          stack.push(new Media());
+          break;
+        case "Table":
+          stack.push(new Table());
+          break;
+        case "Validity":
+          stack.push(new Validity());
+          break;
+        case "Range":
+        case "FixedRange":
+          stack.push(new Range());
+          break;
+        case "VariableLength":
+          stack.push(new VariableLength());
+          break;
+        case "FixedLength":
+          stack.push(new FixedLength());
+          break;
+        case "VariableColumn":
+        case "VariablePrimaryKey":
+          stack.push(new VariableColumn());
+          break;
+        case "FixedColumn":
+        case "FixedPrimaryKey":
+          stack.push(new FixedColumn());
+          break;
+        case "ForeignKey":
+          stack.push(new ForeignKey());
+          break;
+        case "Alias":
+          stack.push(new String[2]);
+          break;
+        case "Map":
+          stack.push(new Mapping());
+          break;
+        case "ANSI":
+          ((Table) parent).setEncoding(Encoding.ANSI);
+          break;
+        case "Macintosh":
+          ((Table) parent).setEncoding(Encoding.Macintosh);
+          break;
+        case "OEM":
+          ((Table) parent).setEncoding(Encoding.OEM);
+          break;
+        case "UTF16":
+          ((Table) parent).setEncoding(Encoding.UTF16);
+          break;
+        case "UTF7":
+          ((Table) parent).setEncoding(Encoding.UTF7);
+          break;
+        case "UTF8":
+          ((Table) parent).setEncoding(Encoding.UTF8);
+          break;
+        case "Numeric":
+          setDataType(parent, DataType.Numeric);
+          break;
+        case "AlphaNumeric":
+          setDataType(parent, DataType.AlphaNumeric);
+          break;
+        case "Date":
+          setDataType(parent, DataType.Date);
+          break;
+        default:
+          // Text elements are handled once they end
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      text.append(ch, start, length);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+      switch (qName) {
+        case "DataSet":
+        case "Numeric":
+        case "AlphaNumeric":
+        case "Date":
+        case "ANSI":
+        case "Macintosh":
+        case "OEM":
+        case "UTF16":
+        case "UTF7":
+        case "UTF8":
+          break;
+        case "Extension":
+          Extension extension = (Extension) stack.pop();
+          ((DataSet) stack.element()).addExtension(extension);
+          break;
+        case "DataSupplier":
+          DataSupplier dataSupplier = (DataSupplier) stack.pop();
+          ((DataSet) stack.element()).setDataSupplier(dataSupplier);
+          break;
+        case "Media":
+          Media media = (Media) stack.pop();
+          ((DataSet) stack.element()).addMedia(media);
+          break;
+        case "Table":
+          Table table = (Table) stack.pop();
+          ((Media) stack.element()).addTable(table);
+          tableSeen = true;
+          break;
+        case "Validity":
+          Validity validity = (Validity) stack.pop();
+          ((Table) stack.element()).setValidity(validity);
+          break;
+        case "Range":
+          endRange((Range) stack.pop());
+          break;
+        case "FixedRange":
+          Range fixedRange = (Range) stack.pop();
+          ((FixedColumn) stack.element()).setFixedRange(fixedRange);
+          break;
+        case "VariableLength":
+          VariableLength variableLength = (VariableLength) stack.pop();
+          ((Table) stack.element()).setVariableLength(variableLength);
+          break;
+        case "FixedLength":
+          FixedLength fixedLength = (FixedLength) stack.pop();
+          ((Table) stack.element()).setFixedLength(fixedLength);
+          break;
+        case "VariableColumn":
+          VariableColumn variableColumn = (VariableColumn) stack.pop();
+          ((VariableLength) stack.element()).addVariableColumn(variableColumn);
+          break;
+        case "VariablePrimaryKey":
+          VariableColumn variablePrimaryKey = (VariableColumn) stack.pop();
+          ((VariableLength) stack.element()).addVariablePrimaryKey(variablePrimaryKey);
+          break;
+        case "FixedColumn":
+          FixedColumn fixedColumn = (FixedColumn) stack.pop();
+          ((FixedLength) stack.element()).addFixedColumn(fixedColumn);
+          break;
+        case "FixedPrimaryKey":
+          FixedColumn fixedPrimaryKey = (FixedColumn) stack.pop();
+          ((FixedLength) stack.element()).addPrimaryKey(fixedPrimaryKey);
+          break;
+        case "ForeignKey":
+          endForeignKey((ForeignKey) stack.pop());
+          break;
+        case "Alias":
+          String[] alias = (String[]) stack.pop();
+          ((ForeignKey) stack.element()).addAlias(alias[0], alias[1]);
+          break;
+        case "Map":
+          endMapping((Mapping) stack.pop());
+          break;
+        default:
+          endTextElement(qName, text.toString());
+      }
+      text.setLength(0);
+    }
+
+    private void endRange(Range range) {
+      Object parent = stack.element();
+      if (parent instanceof Table) {
+        ((Table) parent).setRange(range);
+      } else {
+        ((Validity) parent).setRange(range);
+      }
+    }
+
+    private void endForeignKey(ForeignKey foreignKey) {
+      Object parent = stack.element();
+      if (parent instanceof VariableLength) {
+        ((VariableLength) parent).addForeignKey(foreignKey);
+      } else {
+        ((FixedLength) parent).addForeignKey(foreignKey);
+      }
+    }
+
+    private void endMapping(Mapping mapping) {
+      Object parent = stack.element();
+      if (parent instanceof VariableColumn) {
+        ((VariableColumn) parent).addMapping(mapping);
+      } else {
+        ((FixedColumn) parent).addMapping(mapping);
+      }
+    }
+
+    private static void setDataType(Object column, DataType dataType) {
+      if (column instanceof VariableColumn) {
+        ((VariableColumn) column).setDataType(dataType);
+      } else {
+        ((FixedColumn) column).setDataType(dataType);
+      }
+    }
+
+    private void endTextElement(String name, String value) throws SAXParseException {
+      try {
+        endTextElement(stack.element(), name, value);
+      } catch (NumberFormatException e) {
+        throw new SAXParseException("Value [" + value + "] of element [" + name + "] is not a number", locator, e);
+      }
+    }
+
+    private void endTextElement(Object parent, String name, String value) throws SAXParseException {
+      switch (name) {
+        case "Version":
+          ((DataSet) parent).setVersion(value);
+          break;
+        case "Command":
+          endCommand(parent, value);
+          break;
+        case "Name":
+          endName(parent, value);
+          break;
+        case "URL":
+          if (parent instanceof Extension) {
+            ((Extension) parent).setUrl(value);
+          } else {
+            ((Table) parent).setUrl(value);
+          }
+          break;
+        case "Location":
+          ((DataSupplier) parent).setLocation(value);
+          break;
+        case "Comment":
+          ((DataSupplier) parent).setComment(value);
+          break;
+        case "AcceptNoTables":
+          ((Media) parent).setAcceptNotables(value);
+          break;
+        case "Description":
+          endDescription(parent, value);
+          break;
+        case "DecimalSymbol":
+          ((Table) parent).setDecimalSymbol(value);
+          break;
+        case "DigitGroupingSymbol":
+          ((Table) parent).setDigitGroupingSymbol(value);
+          break;
+        case "SkipNumBytes":
+          ((Table) parent).setSkipNumBytes(Long.parseLong(value));
+          break;
+        case "Epoch":
+          ((Table) parent).setEpoch(value);
+          break;
+        case "Format":
+          endFormat(parent, value);
+          break;
+        case "From":
+          endFrom(parent, value);
+          break;
+        case "To":
+          endTo(parent, value);
+          break;
+        case "Length":
+          if (parent instanceof Range) {
+            ((Range) parent).setLength(value);
+          } else {
+            ((FixedLength) parent).setLength(Long.parseLong(value));
+          }
+          break;
+        case "ColumnDelimiter":
+          ((VariableLength) parent).setColumnDelimiter(value);
+          break;
+        case "RecordDelimiter":
+          if (parent instanceof VariableLength) {
+            ((VariableLength) parent).setRecordDelimiter(value);
+          } else {
+            ((FixedLength) parent).setRecordDelimiter(value);
+          }
+          break;
+        case "TextEncapsulator":
+          ((VariableLength) parent).setTextEncapsulator(value);
+          break;
+        case "MaxLength":
+          ((VariableColumn) parent).setMaxLength(Long.valueOf(value));
+          break;
+        case "ImpliedAccuracy":
+          setAccuracy(parent, AccuracyType.ImpliedAccuracy, Long.parseLong(value));
+          break;
+        case "Accuracy":
+          setAccuracy(parent, AccuracyType.Accuracy, Long.parseLong(value));
+          break;
+        case "References":
+          ((ForeignKey) parent).setReferences(value);
+          break;
+        default:
+          throw new SAXParseException("Unexpected element [" + name + "]", locator);
+      }
+    }
+
+    private void endCommand(Object parent, String value) {
+      if (parent instanceof DataSet) {
+        if (mediaSeen) {
+          ((DataSet) parent).addPostCommand(value);
+        } else {
+          ((DataSet) parent).addPreCommand(value);
+        }
+      } else if (tableSeen) {
+        ((Media) parent).addPostCommand(value);
+      } else {
+        ((Media) parent).addPreCommand(value);
+      }
+    }
+
+    private static void endName(Object parent, String value) {
+      if (parent instanceof Extension) {
+        ((Extension) parent).setName(value);
+      } else if (parent instanceof DataSupplier) {
+        ((DataSupplier) parent).setName(value);
+      } else if (parent instanceof Media) {
+        ((Media) parent).setName(value);
+      } else if (parent instanceof Table) {
+        ((Table) parent).setName(value);
+      } else if (parent instanceof VariableColumn) {
+        ((VariableColumn) parent).setName(value);
+      } else if (parent instanceof FixedColumn) {
+        ((FixedColumn) parent).setName(value);
+      } else {
+        ((ForeignKey) parent).addName(value);
+      }
+    }
+
+    private static void endDescription(Object parent, String value) {
+      if (parent instanceof Table) {
+        ((Table) parent).setDescription(value);
+      } else if (parent instanceof VariableColumn) {
+        ((VariableColumn) parent).setDescription(value);
+      } else if (parent instanceof FixedColumn) {
+        ((FixedColumn) parent).setDescription(value);
+      } else {
+        ((Mapping) parent).setDescription(value);
+      }
+    }
+
+    private static void endFormat(Object parent, String value) {
+      if (parent instanceof Validity) {
+        ((Validity) parent).setFormat(value);
+      } else if (parent instanceof VariableColumn) {
+        ((VariableColumn) parent).setFormat(value);
+      } else {
+        ((FixedColumn) parent).setFormat(value);
+      }
+    }
+
+    private static void endFrom(Object parent, String value) {
+      if (parent instanceof Range) {
+        ((Range) parent).setFrom(value);
+      } else if (parent instanceof Mapping) {
+        ((Mapping) parent).setFrom(value);
+      } else {
+        ((String[]) parent)[0] = value;
+      }
+    }
+
+    private static void endTo(Object parent, String value) {
+      if (parent instanceof Range) {
+        ((Range) parent).setTo(value);
+      } else if (parent instanceof Mapping) {
+        ((Mapping) parent).setTo(value);
+      } else {
+        ((String[]) parent)[1] = value;
+      }
+    }
+
+    private static void setAccuracy(Object column, AccuracyType accuracyType, long accuracy) {
+      if (column instanceof VariableColumn) {
+        ((VariableColumn) column).setAccuracyType(accuracyType);
+        ((VariableColumn) column).setAccuracy(accuracy);
+      } else {
+        ((FixedColumn) column).setAccuracyType(accuracyType);
+        ((FixedColumn) column).setAccuracy(accuracy);
+      }
+    }
+
+    @Override
+    public void warning(SAXParseException e) throws SAXException {
+      throw e;
+    }
+
+    @Override
+    public void error(SAXParseException e) throws SAXException {
+      throw e;
+    }
+
+    @Override
+    public void fatalError(SAXParseException e) throws SAXException {
+      throw e;
+    }
+  }
+
+}
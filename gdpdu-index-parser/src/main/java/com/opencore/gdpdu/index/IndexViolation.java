@@ -0,0 +1,66 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * A single semantic problem found by {@link GdpduIndexValidator#validate(com.opencore.gdpdu.index.models.DataSet)}.
+ * <p/>
+ * Paths and messages use the same format as Bean Validation (e.g. {@code media[0].tables[2].name}, {@code must not be blank}).
+ */
+public final class IndexViolation {
+
+  private final String path;
+  private final String message;
+
+  public IndexViolation(String path, String message) {
+    this.path = Objects.requireNonNull(path, "'path' can't be null");
+    this.message = Objects.requireNonNull(message, "'message' can't be null");
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    IndexViolation that = (IndexViolation) o;
+    return path.equals(that.path) && message.equals(that.message);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(path, message);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", IndexViolation.class.getSimpleName() + "[", "]")
+      .add("path='" + path + "'")
+      .add("message='" + message + "'")
+      .toString();
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A small pool of XML parsers, they are expensive to create but not thread-safe.
+ * <p/>
+ * Parsers are taken for a single parse and released afterwards. Unlike a {@code ThreadLocal} this also reuses parsers when every parse
+ * runs on a new (e.g. virtual) thread. If the pool is empty a new parser is created, if it's full a released parser is dropped.
+ */
+final class ParserPool<T> {
+
+  private final Supplier<T> factory;
+  private final BlockingQueue<T> parsers;
+
+  ParserPool(Supplier<T> factory, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("'capacity' must be at least 1, was [" + capacity + "]");
+    }
+    this.factory = factory;
+    this.parsers = new ArrayBlockingQueue<>(capacity);
+  }
+
+  T take() {
+    T parser = parsers.poll();
+    return parser == null ? factory.get() : parser;
+  }
+
+  void release(T parser) {
+    parsers.offer(parser);
+  }
+
+}
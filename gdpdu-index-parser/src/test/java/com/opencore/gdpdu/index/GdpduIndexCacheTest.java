@@ -0,0 +1,79 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.models.DataSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GdpduIndexCacheTest {
+
+  @TempDir
+  Path snapshots;
+
+  @Test
+  void testMemoryCache() throws IOException, ParsingException {
+    byte[] indexXml = Files.readAllBytes(Paths.get("src/test/resources/complex-index.xml"));
+    GdpduIndexCache cache = new GdpduIndexCache();
+
+    assertSame(cache.load(indexXml), cache.load(indexXml));
+    assertThrows(ParsingException.class, () -> cache.load("<DataSet>".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void testSnapshotRoundTrip() throws IOException, ParsingException {
+    byte[] indexXml = Files.readAllBytes(Paths.get("src/test/resources/complex-index.xml"));
+    DataSet parsed = new GdpduIndexCache(1, snapshots).load(indexXml);
+    Path snapshot = snapshots.resolve(GdpduIndexCache.digest(indexXml) + ".dataset");
+    assertTrue(Files.isRegularFile(snapshot));
+
+    DataSet restored = new GdpduIndexCache(1, snapshots).load(indexXml);
+    assertEquals(parsed.toString(), restored.toString());
+  }
+
+  @Test
+  void testSnapshotSkipsParsing() throws IOException, ParsingException {
+    byte[] indexXml = Files.readAllBytes(Paths.get("src/test/resources/complex-index.xml"));
+    new GdpduIndexCache(1, snapshots).load(indexXml);
+
+    // If the snapshot is used the bytes are never parsed, otherwise this would fail
+    byte[] notXml = "not xml".getBytes(StandardCharsets.UTF_8);
+    Files.copy(snapshots.resolve(GdpduIndexCache.digest(indexXml) + ".dataset"), snapshots.resolve(GdpduIndexCache.digest(notXml) + ".dataset"));
+    assertEquals("1.0", new GdpduIndexCache(1, snapshots).load(notXml).getVersion());
+  }
+
+  @Test
+  void testCorruptSnapshotIsReplaced() throws IOException, ParsingException {
+    byte[] indexXml = Files.readAllBytes(Paths.get("src/test/resources/complex-index.xml"));
+    Path snapshot = snapshots.resolve(GdpduIndexCache.digest(indexXml) + ".dataset");
+    Files.write(snapshot, new byte[] {1, 2, 3});
+
+    assertEquals("1.0", new GdpduIndexCache(1, snapshots).load(indexXml).getVersion());
+    assertEquals("1.0", new GdpduIndexCache(1, snapshots).load(indexXml).getVersion());
+    assertTrue(Files.size(snapshot) > 3);
+  }
+
+}
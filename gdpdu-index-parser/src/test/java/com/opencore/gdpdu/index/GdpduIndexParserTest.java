@@ -14,6 +14,11 @@ package com.opencore.gdpdu.index;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.opencore.gdpdu.index.models.DataSet;
 import com.opencore.gdpdu.index.models.DataSupplier;
@@ -93,4 +98,31 @@ class GdpduIndexParserTest {
     assertEquals(7, variableLength.getVariableColumns().size());
 
   }
+
+  @Test
+  void testParserIsReusedAfterFailure() throws IOException {
+    // Parsers are reused so a failed parse must not affect the next one
+    for (int i = 0; i < 3; i++) {
+      assertThrows(IOException.class, () -> GdpduIndexParser.parseXmlFile("src/test/resources/malformed-index.xml"));
+      assertEquals(3, GdpduIndexParser.parseXmlFile("src/test/resources/complex-index.xml").getMedia().size());
+      assertThrows(IOException.class, () -> GdpduStreamingIndexParser.parseXmlFile("src/test/resources/malformed-index.xml"));
+      assertEquals(3, GdpduStreamingIndexParser.parseXmlFile("src/test/resources/complex-index.xml").getMedia().size());
+    }
+  }
+
+  @Test
+  void testConcurrentParsing() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<DataSet>> futures = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        futures.add(executor.submit(() -> GdpduIndexParser.parseXmlFile("src/test/resources/complex-index.xml")));
+      }
+      for (Future<DataSet> future : futures) {
+        assertEquals("1.0", future.get().getVersion());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
@@ -0,0 +1,164 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.opencore.gdpdu.common.exceptions.ParsingException;
+import com.opencore.gdpdu.index.annotations.Column;
+import com.opencore.gdpdu.index.models.DataSet;
+import com.opencore.gdpdu.index.models.DataSupplier;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.Extension;
+import com.opencore.gdpdu.index.models.FixedColumn;
+import com.opencore.gdpdu.index.models.FixedLength;
+import com.opencore.gdpdu.index.models.Media;
+import com.opencore.gdpdu.index.models.Range;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.Validity;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import com.opencore.gdpdu.index.models.VariableLength;
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GdpduIndexValidatorTest {
+
+  @Test
+  void testValidFile() throws IOException {
+    DataSet dataSet = GdpduStreamingIndexParser.parseXmlFile("src/test/resources/complex-index.xml");
+
+    assertTrue(GdpduIndexValidator.validate(dataSet).isEmpty());
+    assertTrue(GdpduIndexValidator.validateDataSet(dataSet).isEmpty());
+  }
+
+  @Test
+  void testSameViolationsAsBeanValidation() {
+    DataSet dataSet = new DataSet();
+    dataSet.setVersion(" ");
+    dataSet.addExtension(new Extension());
+    dataSet.setDataSupplier(new DataSupplier());
+
+    Table variableTable = new Table();
+    variableTable.setRange(createRange("-1"));
+    Validity validity = new Validity();
+    validity.setRange(createRange("abc"));
+    variableTable.setValidity(validity);
+    VariableLength variableLength = new VariableLength();
+    VariableColumn variableColumn = new VariableColumn();
+    variableColumn.setMaxLength(-1L);
+    variableLength.addVariablePrimaryKey(variableColumn);
+    variableLength.addVariableColumn(new VariableColumn());
+    variableTable.setVariableLength(variableLength);
+
+    Table fixedTable = new Table();
+    fixedTable.setRange(createRange("10"));
+    FixedLength fixedLength = new FixedLength();
+    FixedColumn fixedColumn = new FixedColumn();
+    fixedColumn.setAccuracy(-2);
+    fixedColumn.setFixedRange(createRange("-3"));
+    fixedLength.addFixedColumn(fixedColumn);
+    fixedTable.setFixedLength(fixedLength);
+
+    Media media = new Media();
+    media.addTable(variableTable);
+    media.addTable(fixedTable);
+    dataSet.addMedia(media);
+
+    Set<IndexViolation> expected = GdpduIndexValidator.validateDataSet(dataSet).stream()
+      .map(violation -> new IndexViolation(violation.getPropertyPath().toString(), violation.getMessage()))
+      .collect(Collectors.toSet());
+    Set<IndexViolation> actual = new HashSet<>(GdpduIndexValidator.validate(dataSet));
+
+    assertEquals(15, expected.size());
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void testEmptyMedia() {
+    DataSet dataSet = new DataSet();
+    dataSet.setVersion("1.0");
+
+    assertEquals(1, GdpduIndexValidator.validate(dataSet).size());
+    assertEquals("media", GdpduIndexValidator.validate(dataSet).get(0).getPath());
+    assertEquals(GdpduIndexValidator.validateDataSet(dataSet).iterator().next().getMessage(), GdpduIndexValidator.validate(dataSet).get(0).getMessage());
+  }
+
+  @Test
+  void testTableAgainstClassIsCachedByShape() throws ParsingException {
+    Table store1 = createTable("Store 1", DataType.Numeric);
+    Table store2 = createTable("Store 2", DataType.Numeric);
+    Table wrongType = createTable("Store 3", DataType.AlphaNumeric);
+
+    assertEquals(GdpduIndexValidator.fingerprint(store1), GdpduIndexValidator.fingerprint(store2));
+    assertNotEquals(GdpduIndexValidator.fingerprint(store1), GdpduIndexValidator.fingerprint(wrongType));
+
+    assertTrue(GdpduIndexValidator.validateTableAgainstClass(CachedModel.class, store1).isEmpty());
+    assertTrue(GdpduIndexValidator.validateTableAgainstClass(CachedModel.class, store2).isEmpty());
+
+    // Failures are not cached and always report the right table
+    List<String> errors = GdpduIndexValidator.validateTableAgainstClass(CachedModel.class, wrongType);
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).contains("Store 3"));
+    assertEquals(1, GdpduIndexValidator.validateTableAgainstClass(CachedModel.class, wrongType).size());
+  }
+
+  private static Table createTable(String name, DataType amountType) {
+    VariableLength variableLength = new VariableLength();
+    variableLength.addVariablePrimaryKey(createColumn("id", DataType.AlphaNumeric));
+    variableLength.addVariableColumn(createColumn("amount", amountType));
+    Table table = new Table();
+    table.setName(name);
+    table.setVariableLength(variableLength);
+    return table;
+  }
+
+  private static VariableColumn createColumn(String name, DataType dataType) {
+    VariableColumn column = new VariableColumn();
+    column.setName(name);
+    column.setDataType(dataType);
+    return column;
+  }
+
+  private static Range createRange(String length) {
+    Range range = new Range();
+    range.setFrom("1");
+    range.setLength(length);
+    return range;
+  }
+
+  public static class CachedModel {
+
+    @Column("id")
+    private String id;
+
+    @Column(value = "amount", type = DataType.Numeric)
+    private long amount;
+
+    public void setId(String id) {
+      this.id = id;
+    }
+
+    public void setAmount(long amount) {
+      this.amount = amount;
+    }
+  }
+
+}
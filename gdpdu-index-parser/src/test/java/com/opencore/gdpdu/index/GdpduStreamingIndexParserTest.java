@@ -0,0 +1,112 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import com.opencore.gdpdu.index.models.AccuracyType;
+import com.opencore.gdpdu.index.models.DataSet;
+import com.opencore.gdpdu.index.models.DataType;
+import com.opencore.gdpdu.index.models.ForeignKey;
+import com.opencore.gdpdu.index.models.Media;
+import com.opencore.gdpdu.index.models.Table;
+import com.opencore.gdpdu.index.models.VariableColumn;
+import com.opencore.gdpdu.index.models.VariableLength;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXParseException;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GdpduStreamingIndexParserTest {
+
+  private static final String COMPLEX_INDEX = "src/test/resources/complex-index.xml";
+
+  @Test
+  void testNonexistantFile() {
+    assertThrows(IllegalArgumentException.class, () -> GdpduStreamingIndexParser.parseXmlFile("doesnotexist.xml"));
+
+    InputStream is = null;
+    assertThrows(NullPointerException.class, () -> GdpduStreamingIndexParser.parseXmlFile(is));
+  }
+
+  @Test
+  void testInvalidFile() {
+    assertThrows(IOException.class, () -> GdpduStreamingIndexParser.parseXmlFile("src/test/resources/malformed-index.xml"));
+  }
+
+  @Test
+  void testInvalidNumber() throws IOException {
+    String index = new String(Files.readAllBytes(Paths.get(COMPLEX_INDEX)), StandardCharsets.UTF_8);
+    InputStream is = new ByteArrayInputStream(index.replace("<Accuracy>7</Accuracy>", "<Accuracy>seven</Accuracy>").getBytes(StandardCharsets.UTF_8));
+
+    IOException e = assertThrows(IOException.class, () -> GdpduStreamingIndexParser.parseXmlFile(is));
+    assertTrue(e.getCause() instanceof SAXParseException);
+    assertEquals(66, ((SAXParseException) e.getCause()).getLineNumber());
+  }
+
+  @Test
+  void testSameResultAsDomParser() throws IOException {
+    DataSet dom = GdpduIndexParser.parseXmlFile(COMPLEX_INDEX);
+    DataSet streaming = GdpduStreamingIndexParser.parseXmlFile(COMPLEX_INDEX);
+
+    assertEquals(dom.getExtensions().toString(), streaming.getExtensions().toString());
+    assertEquals(dom.getVersion(), streaming.getVersion());
+    assertEquals(dom.getDataSupplier().toString(), streaming.getDataSupplier().toString());
+    assertEquals(dom.getPreCommands(), streaming.getPreCommands());
+    assertEquals(dom.getPostCommands(), streaming.getPostCommands());
+    assertEquals(dom.getMedia().size(), streaming.getMedia().size());
+    for (int i = 1; i < dom.getMedia().size(); i++) {
+      assertEquals(dom.getMedia().get(i).toString(), streaming.getMedia().get(i).toString());
+    }
+
+    Media media = streaming.getMedia().get(0);
+    assertEquals("echo Pre-Tables", media.getPreCommands().get(0));
+    assertEquals("echo Post-Tables", media.getPostCommands().get(0));
+
+    Table table = media.getTables().get(0);
+    Table domTable = dom.getMedia().get(0).getTables().get(0);
+    assertEquals(domTable.getValidity().toString(), table.getValidity().toString());
+    assertEquals(domTable.getRange().toString(), table.getRange().toString());
+    assertEquals(domTable.getEncoding(), table.getEncoding());
+    assertEquals(domTable.getDigitGroupingSymbol(), table.getDigitGroupingSymbol());
+    assertEquals(domTable.getSkipNumBytes(), table.getSkipNumBytes());
+
+    VariableLength variableLength = table.getVariableLength();
+    assertEquals("||", variableLength.getColumnDelimiter());
+    assertEquals("\n", variableLength.getRecordDelimiter());
+    assertEquals("'''", variableLength.getTextEncapsulator());
+    assertEquals(1, variableLength.getVariablePrimaryKeys().size());
+    assertEquals(7, variableLength.getVariableColumns().size());
+
+    VariableColumn a = variableLength.getVariableColumns().get(0);
+    assertEquals(DataType.Numeric, a.getDataType());
+    assertEquals(AccuracyType.ImpliedAccuracy, a.getAccuracyType());
+    assertEquals(3, a.getAccuracy());
+    assertEquals(10L, variableLength.getVariableColumns().get(3).getMaxLength());
+    assertEquals("YY-MM-DD", variableLength.getVariableColumns().get(5).getFormat());
+    assertEquals(2, variableLength.getVariableColumns().get(6).getMappings().size());
+
+    ForeignKey foreignKey = variableLength.getForeignKeys().get(0);
+    assertEquals(2, foreignKey.getNames().size());
+    assertEquals("Table 2", foreignKey.getReferences());
+  }
+
+}
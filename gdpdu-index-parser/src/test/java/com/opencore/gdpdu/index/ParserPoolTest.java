@@ -0,0 +1,52 @@
+/*
+ * Licensed to OpenCore GmbH & Co. KG under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ * OpenCore GmbH & Co. KG licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.opencore.gdpdu.index;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ParserPoolTest {
+
+  @Test
+  void testReuse() throws InterruptedException {
+    AtomicInteger created = new AtomicInteger();
+    ParserPool<Object> pool = new ParserPool<>(() -> {
+      created.incrementAndGet();
+      return new Object();
+    }, 1);
+
+    Object first = pool.take();
+    pool.release(first);
+    // Unlike a ThreadLocal the pool also hands the parser to other threads
+    Object[] taken = new Object[1];
+    Thread thread = new Thread(() -> taken[0] = pool.take());
+    thread.start();
+    thread.join();
+    assertSame(first, taken[0]);
+
+    Object second = pool.take();
+    assertNotSame(first, second);
+    pool.release(first);
+    // The pool is full, this one is dropped
+    pool.release(second);
+    assertSame(first, pool.take());
+    assertEquals(2, created.get());
+  }
+
+}